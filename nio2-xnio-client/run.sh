@@ -34,6 +34,12 @@ port=$2
 n=$3;
 delay=$4;
 nReq=$5;
+# the remaining arguments are the client options (see README), e.g., --procSample FILE
+if [ $# -ge 5 ]; then
+	shift 5;
+else
+	shift $#;
+fi
 
 if [ "x$host" = "x" ]; then
 	printf "ERROR: you should provide the hostname\n";
@@ -75,7 +81,7 @@ printf "\tDelay = $delay ms\n";
 printf "\tTotal number requests = $nReq\n";
 printf "\n\t-> Log file: $filename\n";
 
-java $JAVA_OPTS -jar target/nio2-xnio-client.jar $host $port $n $delay $nReq > /tmp/$log_file
+java $JAVA_OPTS -jar target/nio2-xnio-client.jar $host $port $n $delay $nReq "$@" > /tmp/$log_file
 
 #printf "max \t min \t avg\n" > $filename
 #egrep -v '[a-zA-Z]|^\s*$' /tmp/$log_file > $filename
@@ -49,11 +49,8 @@ do
   fi
   ssh cluster08 top -b -p $pid 2>&1 1> $$.top &
 
-  date > $n-$i-$nReq-ifconfig-log.txt
-  /sbin/ifconfig eth2 >> $n-$i-$nReq-ifconfig-log.txt
-  sh run.sh $host $port $n $i $nReq
-  /sbin/ifconfig eth2 >> $n-$i-$nReq-ifconfig-log.txt
-  date >> $n-$i-$nReq-ifconfig-log.txt
+  # the client samples its NIC, context switches and retransmits from /proc
+  sh run.sh $host $port $n $i $nReq --procSample $n-$i-$nReq-proc-log.txt
 
   #stop the top
   ssh cluster08 ps -ef | grep -v grep | grep jfclere | grep top 2>&1 1> $$.tmp
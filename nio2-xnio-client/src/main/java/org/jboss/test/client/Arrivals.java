@@ -0,0 +1,119 @@
+/**
+ * JBoss, Home of Professional Open Source. Copyright 2011, Red Hat, Inc., and
+ * individual
+ * contributors as indicated by the @author tags. See the copyright.txt file in
+ * the distribution
+ * for a full listing of individual contributors.
+ * 
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation; either
+ * version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this
+ * software; if not, write to the Free Software Foundation, Inc., 51 Franklin
+ * St, Fifth Floor,
+ * Boston, MA 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.client;
+
+import java.util.Random;
+
+/**
+ * {@code Arrivals}
+ * 
+ * The send schedule of a client in open-loop mode (see
+ * {@link ClientOptions#rate}). The intended send times only depend on the
+ * arrival process and the rate, never on the responses, so that a stalled
+ * server does not slow the client down: the late requests are measured from
+ * their intended send time instead of being silently omitted.
+ * 
+ * The processes are:
+ * <ul>
+ * <li>"constant": one request every 1/rate second, each client starting at a
+ * random phase</li>
+ * <li>"poisson": exponential gaps of mean 1/rate second</li>
+ * <li>"onoff": Poisson arrivals during the ON periods only, at the rate which
+ * keeps the mean rate. The periods are shared by all the clients, so that
+ * their bursts add up.</li>
+ * </ul>
+ * 
+ * Created on Oct 19, 2026 at 1:37:52 PM
+ */
+public class Arrivals {
+
+	private String	process;
+	// the mean gap between two requests, in ns
+	private double	gap;
+	private long	on;
+	private long	off;
+	private Random	random;
+	// the intended time of the last request, in ns of active time for "onoff"
+	private double	time;
+
+	/**
+	 * Create a new instance of {@code Arrivals}
+	 * 
+	 * @param process
+	 *            "constant", "poisson" or "onoff"
+	 * @param rate
+	 *            the rate of the client in requests per second
+	 * @param on
+	 *            the length of the ON periods in ms
+	 * @param off
+	 *            the length of the OFF periods in ms
+	 * @param seed
+	 *            the seed of the schedule
+	 */
+	public Arrivals(String process, double rate, long on, long off, long seed) {
+		this.process = process;
+		this.gap = 1e9 / rate;
+		this.on = on * 1000000L;
+		this.off = off * 1000000L;
+		this.random = new Random(seed);
+		if (process.equals("onoff")) {
+			// the requests of a cycle are sent during its ON period
+			this.gap = this.gap * this.on / (this.on + this.off);
+		}
+		if (process.equals("constant")) {
+			this.time = -this.gap * this.random.nextDouble();
+		}
+	}
+
+	/**
+	 * @param seed
+	 *            the seed of the run, see {@link JioClient#SEED}
+	 * @param client
+	 *            the client following the schedule
+	 * @return the seed of the schedule of the client, the close seeds of the
+	 *         clients are spread as {@link Random} does not scramble them
+	 */
+	public static long seed(long seed, long client) {
+		return seed ^ (client * 0x9E3779B97F4A7C15L);
+	}
+
+	/**
+	 * @return the intended send time of the next request, in ns after the
+	 *         start of the schedule
+	 */
+	public long next() {
+		if (this.process.equals("constant")) {
+			this.time += this.gap;
+			return (long) this.time;
+		}
+		this.time += -Math.log(1.0 - this.random.nextDouble()) * this.gap;
+		if (this.process.equals("poisson")) {
+			return (long) this.time;
+		}
+		long cycles = (long) (this.time / this.on);
+		return cycles * (this.on + this.off) + (long) (this.time - (double) cycles * this.on);
+	}
+}
@@ -0,0 +1,337 @@
+/**
+ * JBoss, Home of Professional Open Source. Copyright 2011, Red Hat, Inc., and
+ * individual
+ * contributors as indicated by the @author tags. See the copyright.txt file in
+ * the distribution
+ * for a full listing of individual contributors.
+ * 
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation; either
+ * version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this
+ * software; if not, write to the Free Software Foundation, Inc., 51 Franklin
+ * St, Fifth Floor,
+ * Boston, MA 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.client;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@code ClientOptions}
+ * 
+ * The optional settings of the clients, given on the command line as
+ * {@code --name value} pairs anywhere after the program name. The remaining
+ * arguments are the positional ones of {@link JioClient}.
+ * 
+ * Created on Oct 19, 2026 at 11:52:09 AM
+ */
+public final class ClientOptions {
+
+	/**
+	 * The number of parallel ranged requests used to fetch the file. The
+	 * default (0) fetches the whole file with a single request.
+	 */
+	public static int	ranges		= 0;
+
+	/**
+	 * The percentage of requests sending the validators ({@code ETag} and
+	 * {@code Last-Modified}) of the last full response. The default (0) never
+	 * sends conditional requests.
+	 */
+	public static int	validators	= 0;
+
+	/**
+	 * The {@code Accept-Encoding} header of the requests for the whole file,
+	 * e.g., "gzip", {@code null} (default) not to send it and get the
+	 * identity content
+	 */
+	public static String	encoding	= null;
+
+	/**
+	 * The TLS mode: "off" (default) for plain connections, "resume" to resume
+	 * the TLS session of the previous connections or "full" to run a full
+	 * handshake on every connection.
+	 */
+	public static String	tls			= "off";
+
+	/**
+	 * Log the {@code Server-Timing} durations of the responses after the
+	 * client timestamps, "on" or "off" (default). The servers must be run
+	 * with {@code -Dorg.jboss.server.serverTiming=true}.
+	 */
+	public static boolean	timing		= false;
+
+	/**
+	 * The file to which the {@link ProcSampler} writes the counters of the OS
+	 * (context switches, network, TCP retransmissions), {@code null}
+	 * (default) to disable it
+	 */
+	public static String	procSample	= null;
+
+	/**
+	 * The period (in milliseconds) of the samples of the counters of the OS
+	 */
+	public static long		procInterval	= 100;
+
+	/**
+	 * The client engine: "blocking" (default) runs one thread, with a blocking
+	 * socket, per client, "nio" drives all the clients from a few selector
+	 * loops, see {@link NioClient}
+	 */
+	public static String	engine			= "blocking";
+
+	/**
+	 * The number of selector loops of the "nio" engine, one per processor by
+	 * default
+	 */
+	public static int		loops			= Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * The target rate of the client process in requests per second, shared by
+	 * its clients. The default (0) runs the clients in closed loop, each one
+	 * waiting the delay after a response before its next request. Otherwise
+	 * they run in open loop: the requests are sent on the schedule of
+	 * {@link Arrivals}, whatever the response times are.
+	 */
+	public static double	rate			= 0;
+
+	/**
+	 * The arrival process of the open loop: "constant", "poisson" (default)
+	 * or "onoff"
+	 */
+	public static String	arrivals		= "poisson";
+
+	/**
+	 * The length (in milliseconds) of the ON periods of the "onoff" arrivals
+	 */
+	public static long		burstOn			= 1000;
+
+	/**
+	 * The length (in milliseconds) of the OFF periods of the "onoff" arrivals
+	 */
+	public static long		burstOff		= 1000;
+
+	/**
+	 * The seed of the arrival schedules, 0 (default) for a random one. The
+	 * client ID is mixed in, so that the client JVMs of a distributed run do
+	 * not follow the same schedules.
+	 */
+	public static long		seed			= 0;
+
+	/**
+	 * The file to which the merged {@link LatencyHistogram} of the clients is
+	 * written at the end, {@code null} (default) not to write it
+	 */
+	public static String	histogram		= null;
+
+	/**
+	 * Print the "WRITE"/"READ" line of every response, "on" (default) or
+	 * "off" to only keep the histogram
+	 */
+	public static boolean	lines			= true;
+
+	/**
+	 * The file of the binary {@link EventLog} of the requests, {@code null}
+	 * (default) not to write it
+	 */
+	public static String	eventLog		= null;
+
+	/**
+	 * The number of records of the ring of each client thread (or loop) of the
+	 * event log
+	 */
+	public static int		eventBuffer		= 1024;
+
+	/**
+	 * The threads of the "blocking" engine: "platform" (default) or "virtual"
+	 * to run each client on a virtual thread (Java 21 or later)
+	 */
+	public static String	threads			= "platform";
+
+	/**
+	 * The number of requests kept outstanding on each connection: the default
+	 * (1) waits for a response before the next request, more pipelines the
+	 * requests, whose responses are read in order
+	 */
+	public static int		pipeline		= 1;
+
+	/**
+	 * Create a new instance of {@code ClientOptions}
+	 */
+	private ClientOptions() {
+		super();
+	}
+
+	/**
+	 * Parse the options and return the positional arguments
+	 * 
+	 * @param args
+	 *            the command line arguments
+	 * @return the arguments which are not options
+	 */
+	public static String[] parse(String[] args) {
+		List<String> positional = new ArrayList<String>();
+		for (int i = 0; i < args.length; i++) {
+			if (!args[i].startsWith("--")) {
+				positional.add(args[i]);
+				continue;
+			}
+			String name = args[i].substring(2);
+			if (i + 1 >= args.length) {
+				throw new IllegalArgumentException("Missing value for option --" + name);
+			}
+			String value = args[++i];
+			if (name.equals("ranges")) {
+				ranges = Integer.parseInt(value);
+				if (ranges < 0) {
+					throw new IllegalArgumentException("Negative number of ranges: " + ranges);
+				}
+			} else if (name.equals("validators")) {
+				validators = Integer.parseInt(value);
+				if (validators < 0 || validators > 100) {
+					throw new IllegalArgumentException("Validators share out of [0, 100]: "
+							+ validators);
+				}
+			} else if (name.equals("encoding")) {
+				if (value.trim().length() == 0) {
+					throw new IllegalArgumentException("Empty encoding");
+				}
+				encoding = value;
+			} else if (name.equals("tls")) {
+				if (!value.equals("off") && !value.equals("resume") && !value.equals("full")) {
+					throw new IllegalArgumentException("Unknown TLS mode: " + value);
+				}
+				tls = value;
+			} else if (name.equals("timing")) {
+				if (!value.equals("off") && !value.equals("on")) {
+					throw new IllegalArgumentException("Unknown timing mode: " + value);
+				}
+				timing = value.equals("on");
+			} else if (name.equals("procSample")) {
+				procSample = value;
+			} else if (name.equals("procInterval")) {
+				procInterval = Long.parseLong(value);
+				if (procInterval <= 0) {
+					throw new IllegalArgumentException("Non positive sample interval: "
+							+ procInterval);
+				}
+			} else if (name.equals("engine")) {
+				if (!value.equals("blocking") && !value.equals("nio")) {
+					throw new IllegalArgumentException("Unknown engine: " + value);
+				}
+				engine = value;
+			} else if (name.equals("loops")) {
+				loops = Integer.parseInt(value);
+				if (loops < 1) {
+					throw new IllegalArgumentException("Non positive number of loops: " + loops);
+				}
+			} else if (name.equals("rate")) {
+				rate = Double.parseDouble(value);
+				if (rate < 0) {
+					throw new IllegalArgumentException("Negative rate: " + rate);
+				}
+			} else if (name.equals("arrivals")) {
+				if (!value.equals("constant") && !value.equals("poisson") && !value.equals("onoff")) {
+					throw new IllegalArgumentException("Unknown arrival process: " + value);
+				}
+				arrivals = value;
+			} else if (name.equals("burst")) {
+				String periods[] = value.split(":");
+				if (periods.length != 2) {
+					throw new IllegalArgumentException("Burst periods are not ON:OFF: " + value);
+				}
+				burstOn = Long.parseLong(periods[0]);
+				burstOff = Long.parseLong(periods[1]);
+				if (burstOn <= 0 || burstOff < 0) {
+					throw new IllegalArgumentException("Invalid burst periods: " + value);
+				}
+			} else if (name.equals("seed")) {
+				seed = Long.parseLong(value);
+			} else if (name.equals("histogram")) {
+				histogram = value;
+			} else if (name.equals("lines")) {
+				if (!value.equals("off") && !value.equals("on")) {
+					throw new IllegalArgumentException("Unknown lines mode: " + value);
+				}
+				lines = value.equals("on");
+			} else if (name.equals("eventLog")) {
+				eventLog = value;
+			} else if (name.equals("eventBuffer")) {
+				eventBuffer = Integer.parseInt(value);
+				if (eventBuffer < 1) {
+					throw new IllegalArgumentException("Non positive event buffer: " + eventBuffer);
+				}
+			} else if (name.equals("threads")) {
+				if (!value.equals("platform") && !value.equals("virtual")) {
+					throw new IllegalArgumentException("Unknown threads: " + value);
+				}
+				threads = value;
+			} else if (name.equals("pipeline")) {
+				pipeline = Integer.parseInt(value);
+				if (pipeline < 1) {
+					throw new IllegalArgumentException("Non positive pipeline depth: " + pipeline);
+				}
+			} else {
+				throw new IllegalArgumentException("Unknown option --" + name);
+			}
+		}
+		if (threads.equals("virtual")) {
+			if (engine.equals("nio")) {
+				throw new IllegalArgumentException("The nio engine does not use --threads");
+			}
+			try {
+				Thread.class.getMethod("startVirtualThread", Runnable.class);
+			} catch (NoSuchMethodException e) {
+				throw new IllegalArgumentException("Virtual threads need Java 21 or later");
+			}
+		}
+		if (rate > 0 && ranges > 0) {
+			throw new IllegalArgumentException("The open loop (--rate) does not support --ranges");
+		}
+		if (pipeline > 1 && ranges > 0) {
+			throw new IllegalArgumentException("The pipelining (--pipeline) does not support --ranges");
+		}
+		if (engine.equals("nio") && (ranges > 0 || !tls.equals("off"))) {
+			throw new IllegalArgumentException("The nio engine supports neither --ranges nor --tls");
+		}
+		return positional.toArray(new String[positional.size()]);
+	}
+
+	/**
+	 * Print the usage of the options
+	 */
+	public static void usage() {
+		System.err.println("  Options:");
+		System.err.println("\t--ranges N: Fetch the file with N parallel ranged requests. (default is 0, i.e., one full request)");
+		System.err.println("\t--validators P: Send If-None-Match/If-Modified-Since on P% of the requests. (default is 0)");
+		System.err.println("\t--encoding CODINGS: Send Accept-Encoding: CODINGS, e.g., gzip, with the requests for the whole file. (default is none)");
+		System.err.println("\t--tls MODE: Connect over TLS, MODE is off, resume or full. (default is off)");
+		System.err.println("\t--timing on|off: Log the Server-Timing durations (in ns) after the timestamps, as SERVER queue parse lookup write. (default is off)");
+		System.err.println("\t--procSample FILE: Sample the context switches, network and TCP retransmissions of the client from /proc into FILE. (default is none)");
+		System.err.println("\t--procInterval MS: The period of the /proc samples. (default is 100ms)");
+		System.err.println("\t--engine blocking|nio: Run one thread per client or drive all the clients from a few selector loops. (default is blocking)");
+		System.err.println("\t--threads platform|virtual: Run the clients of the blocking engine on platform or virtual threads (Java 21+). (default is platform)");
+		System.err.println("\t--loops N: The number of selector loops of the nio engine. (default is the number of processors)");
+		System.err.println("\t--rate R: Send R requests/s in total in open loop, logging the intended send time as WRITE and the actual one as SENT. (default is 0, i.e., closed loop)");
+		System.err.println("\t--arrivals P: The arrival process of the open loop, constant, poisson or onoff. (default is poisson)");
+		System.err.println("\t--burst ON:OFF: The ON and OFF periods (in ms) of the onoff arrivals. (default is 1000:1000)");
+		System.err.println("\t--seed S: The seed of the arrival schedules, mixed with the client ID. (default is 0, i.e., random)");
+		System.err.println("\t--histogram FILE: Write the histogram of the response times of all the clients into FILE. (default is none)");
+		System.err.println("\t--eventLog FILE: Write a binary record of every request into FILE, see EventLog to convert it. (default is none)");
+		System.err.println("\t--eventBuffer N: The records buffered per client thread for the event log. (default is 1024)");
+		System.err.println("\t--pipeline N: Keep up to N requests outstanding on each connection, the responses are read in order. (default is 1, i.e., no pipelining)");
+		System.err.println("\t--lines on|off: Print the WRITE/READ line of every response. (default is on)");
+	}
+}
@@ -0,0 +1,375 @@
+/**
+ * JBoss, Home of Professional Open Source. Copyright 2011, Red Hat, Inc., and
+ * individual
+ * contributors as indicated by the @author tags. See the copyright.txt file in
+ * the distribution
+ * for a full listing of individual contributors.
+ * 
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation; either
+ * version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this
+ * software; if not, write to the Free Software Foundation, Inc., 51 Franklin
+ * St, Fifth Floor,
+ * Boston, MA 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.client;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@code EventLog}
+ * 
+ * A binary log of every request, written without going through
+ * {@code System.out} (see {@link ClientOptions#eventLog}). Every client
+ * thread (or loop of the nio engine) records into its own {@link Recorder}, a
+ * preallocated ring of fixed-size records, and a background thread moves the
+ * records to a memory-mapped file every {@link #FLUSH_INTERVAL} ms. A recorder
+ * whose ring is full waits for the writer rather than losing records. If the
+ * writer fails, e.g., the disk is full, the log is marked as failed and the
+ * records are dropped and counted from then on, so that the clients never
+ * wait for a writer which is gone.
+ * 
+ * The file is a header followed by the records, all big-endian:
+ * 
+ * <pre>
+ * header: int magic, int record_size, int flags (1: open loop), int 0, long epoch_ms
+ * record: int client, int status, long start, long intended, long sent, long read, long bytes
+ * </pre>
+ * 
+ * The times are in ns since the {@code epoch_ms} of the header, the start is
+ * the one of the client (the origin of its "WRITE"/"READ" lines), the client
+ * is the thread id of the blocking engine or the connection index of the nio
+ * engine. The status is 0 and the bytes are the bytes read when the response
+ * is not parsed, otherwise they are the status and the body length. The
+ * {@link #main} method converts the file to the text lines of the client.
+ * 
+ * Created on Oct 19, 2026 at 4:12:26 PM
+ */
+public final class EventLog {
+
+	/**
+	 * The first int of the file, "JEVT"
+	 */
+	public static final int				MAGIC			= 0x4a455654;
+	/**
+	 * The size of a record in bytes
+	 */
+	public static final int				RECORD_SIZE		= 48;
+	/**
+	 * The size of the header in bytes
+	 */
+	public static final int				HEADER_SIZE		= 24;
+	/**
+	 * The period of the background writer in milliseconds
+	 */
+	public static final long			FLUSH_INTERVAL	= 10;
+	private static final int			FIELDS			= 6;
+	private static final long			REGION_SIZE		= 16 * 1024 * 1024;
+
+	private final List<Recorder>		recorders		= new CopyOnWriteArrayList<Recorder>();
+	private final int					capacity;
+	private final long					baseNanos		= System.nanoTime();
+	private final RandomAccessFile		file;
+	private final FileChannel			channel;
+	private final Thread				writer;
+	private MappedByteBuffer			region;
+	// the file offset of the region and the size of the file written
+	private long						regionOffset;
+	private long						size;
+	private volatile boolean			closed;
+	// set by the writer when it cannot write the file anymore
+	private volatile boolean			failed;
+
+	/**
+	 * {@code Recorder}
+	 * 
+	 * The ring of records of a single thread
+	 */
+	public final class Recorder {
+		private final long			ring[]	= new long[capacity * FIELDS];
+		// written by the recording thread only
+		private final AtomicLong	head	= new AtomicLong();
+		// written by the writer only
+		private final AtomicLong	tail	= new AtomicLong();
+		// the times the ring was full, and the records dropped after a failure
+		private long				waits;
+		private long				dropped;
+
+		/**
+		 * Record a response. It must be called by one thread at a time.
+		 * 
+		 * @param client
+		 * @param status
+		 *            the status of the response, 0 if unknown
+		 * @param start
+		 *            the start time of the client ({@code System.nanoTime()})
+		 * @param intended
+		 *            the intended send time
+		 * @param sent
+		 *            the actual send time
+		 * @param read
+		 *            the time the response was read
+		 * @param bytes
+		 *            the number of bytes read
+		 */
+		public void record(int client, int status, long start, long intended, long sent,
+				long read, long bytes) {
+			if (failed) {
+				this.dropped++;
+				return;
+			}
+			long h = this.head.get();
+			if (h - this.tail.get() >= capacity) {
+				this.waits++;
+				do {
+					Thread.yield();
+					if (failed) {
+						this.dropped++;
+						return;
+					}
+				} while (h - this.tail.get() >= capacity);
+			}
+			int i = (int) (h % capacity) * FIELDS;
+			this.ring[i] = ((long) client << 32) | (status & 0xffffffffL);
+			this.ring[i + 1] = start - baseNanos;
+			this.ring[i + 2] = intended - baseNanos;
+			this.ring[i + 3] = sent - baseNanos;
+			this.ring[i + 4] = read - baseNanos;
+			this.ring[i + 5] = bytes;
+			this.head.lazySet(h + 1);
+		}
+
+		/**
+		 * Move the published records to the file
+		 * 
+		 * @throws IOException
+		 */
+		private void drain() throws IOException {
+			long t = this.tail.get();
+			long h = this.head.get();
+			for (; t < h; t++) {
+				int i = (int) (t % capacity) * FIELDS;
+				MappedByteBuffer out = reserve();
+				out.putInt((int) (this.ring[i] >>> 32));
+				out.putInt((int) this.ring[i]);
+				for (int j = 1; j < FIELDS; j++) {
+					out.putLong(this.ring[i + j]);
+				}
+				size += RECORD_SIZE;
+			}
+			this.tail.lazySet(h);
+		}
+	}
+
+	/**
+	 * Create a new instance of {@code EventLog} and start its writer
+	 * 
+	 * @param filename
+	 * @param capacity
+	 *            the number of records of the ring of each recorder
+	 * @param openLoop
+	 *            {@code true} if the clients run in open loop
+	 * @throws IOException
+	 */
+	public EventLog(String filename, int capacity, boolean openLoop) throws IOException {
+		this.capacity = capacity;
+		this.file = new RandomAccessFile(filename, "rw");
+		this.file.setLength(0);
+		this.channel = this.file.getChannel();
+		this.region = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, REGION_SIZE);
+		this.region.putInt(MAGIC);
+		this.region.putInt(RECORD_SIZE);
+		this.region.putInt(openLoop ? 1 : 0);
+		this.region.putInt(0);
+		// the epoch time of baseNanos
+		this.region.putLong(System.currentTimeMillis()
+				- (System.nanoTime() - this.baseNanos) / 1000000);
+		this.size = HEADER_SIZE;
+		this.writer = new Thread("event-log-writer") {
+			@Override
+			public void run() {
+				try {
+					while (!closed) {
+						sleep(FLUSH_INTERVAL);
+						drain();
+					}
+				} catch (Exception exp) {
+					failed = true;
+					System.err.println("ERROR: the event log writer failed, the next records are dropped");
+					exp.printStackTrace();
+				}
+			}
+		};
+		this.writer.setDaemon(true);
+		this.writer.start();
+	}
+
+	/**
+	 * @return a new recorder, for a single thread
+	 */
+	public Recorder newRecorder() {
+		Recorder recorder = new Recorder();
+		this.recorders.add(recorder);
+		return recorder;
+	}
+
+	/**
+	 * Move the published records of all the recorders to the file
+	 * 
+	 * @throws IOException
+	 */
+	private synchronized void drain() throws IOException {
+		for (Recorder recorder : this.recorders) {
+			recorder.drain();
+		}
+	}
+
+	/**
+	 * @return the region with room for the next record, mapping the next one
+	 *         when it is full
+	 * @throws IOException
+	 */
+	private MappedByteBuffer reserve() throws IOException {
+		if (this.region.remaining() < RECORD_SIZE) {
+			this.regionOffset = this.size;
+			this.region = this.channel.map(FileChannel.MapMode.READ_WRITE, this.regionOffset,
+					REGION_SIZE);
+		}
+		return this.region;
+	}
+
+	/**
+	 * Stop the writer, once the clients are done, write the remaining records
+	 * and cut the file to its size. Once the writer failed, the remaining
+	 * records are dropped and the file keeps the records written until then.
+	 * 
+	 * @throws IOException
+	 */
+	public void close() throws IOException {
+		this.closed = true;
+		try {
+			this.writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		try {
+			if (!this.failed) {
+				drain();
+				this.region.force();
+			}
+			this.region = null;
+			this.channel.truncate(this.size);
+		} finally {
+			this.file.close();
+		}
+	}
+
+	/**
+	 * @return the number of times a recorder found its ring full and waited
+	 *         for the writer
+	 */
+	public long getWaits() {
+		long waits = 0;
+		for (Recorder recorder : this.recorders) {
+			waits += recorder.waits;
+		}
+		return waits;
+	}
+
+	/**
+	 * @return the number of records dropped because the writer failed
+	 */
+	public long getDropped() {
+		long dropped = 0;
+		for (Recorder recorder : this.recorders) {
+			dropped += recorder.dropped;
+			// the records left in the ring when the writer failed
+			dropped += recorder.head.get() - recorder.tail.get();
+		}
+		return dropped;
+	}
+
+	/**
+	 * Convert an event log to the text lines of the client, in the order of
+	 * the records
+	 * 
+	 * @param filename
+	 * @param out
+	 * @throws IOException
+	 */
+	public static void convert(String filename, PrintStream out) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(
+				filename), 1024 * 1024));
+		try {
+			if (in.readInt() != MAGIC || in.readInt() != RECORD_SIZE) {
+				throw new IOException(filename + " is not an event log");
+			}
+			boolean openLoop = (in.readInt() & 1) != 0;
+			in.readInt();
+			in.readLong();
+			StringBuilder sb = new StringBuilder();
+			while (true) {
+				try {
+					in.readInt();
+				} catch (EOFException e) {
+					break;
+				}
+				in.readInt();
+				long start = in.readLong();
+				long intended = in.readLong();
+				long sent = in.readLong();
+				long read = in.readLong();
+				in.readLong();
+				sb.setLength(0);
+				sb.append("WRITE ").append(intended - start).append(" READ ").append(read - start);
+				if (openLoop) {
+					sb.append(" SENT ").append(sent - start);
+				}
+				out.println(sb);
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Print the "WRITE"/"READ" lines of an event log
+	 * 
+	 * @param args
+	 *            the event log file
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 1) {
+			System.err.println("Usage: java " + EventLog.class.getName() + " file");
+			System.exit(1);
+		}
+		PrintStream out = new PrintStream(new BufferedOutputStream(System.out, 1024 * 1024),
+				false);
+		convert(args[0], out);
+		out.flush();
+	}
+}
@@ -0,0 +1,293 @@
+/**
+ * JBoss, Home of Professional Open Source. Copyright 2011, Red Hat, Inc., and
+ * individual
+ * contributors as indicated by the @author tags. See the copyright.txt file in
+ * the distribution
+ * for a full listing of individual contributors.
+ * 
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation; either
+ * version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this
+ * software; if not, write to the Free Software Foundation, Inc., 51 Franklin
+ * St, Fifth Floor,
+ * Boston, MA 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.client;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Inet4Address;
+import java.net.Socket;
+import java.security.GeneralSecurityException;
+import java.security.cert.X509Certificate;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+
+/**
+ * {@code HttpConnection}
+ * 
+ * A keep-alive connection to the server, with its session. Over TLS (see
+ * {@link ClientOptions#tls}) the handshake is run when the connection is
+ * opened and its duration is logged on a "HANDSHAKE" line. The server
+ * certificate is not checked, the servers use self-signed ones.
+ * 
+ * Created on Oct 19, 2026 at 11:20:44 AM
+ */
+public class HttpConnection {
+
+	/**
+     *
+     */
+	public static final String	CRLF		= "\r\n";
+	private Socket				socket;
+	private DataOutputStream	dos;
+	private InputStream			is;
+	private String				sessionId;
+	private byte				bytes[]		= new byte[JioClient.READ_BUFFER_SIZE];
+	// the TLS context shared by the connections, so that they resume sessions
+	private static SSLContext	sharedContext;
+
+	/**
+	 * {@code Response}
+	 * 
+	 * The status and the header of a response read by
+	 * {@link HttpConnection#readResponse()}
+	 */
+	public static class Response {
+		/**
+		 * The status code
+		 */
+		public int					status;
+		/**
+		 * The header fields, with lower case names
+		 */
+		public Map<String, String>	headers	= new HashMap<String, String>();
+		/**
+		 * The number of bytes of the body
+		 */
+		public long					length;
+
+		/**
+		 * @param name
+		 *            the lower case header name
+		 * @return the header value or {@code null}
+		 */
+		public String getHeader(String name) {
+			return this.headers.get(name);
+		}
+	}
+
+	/**
+	 * Create a new instance of {@code HttpConnection} and open the connection
+	 * with the server
+	 * 
+	 * @param hostname
+	 * @param port
+	 * @throws IOException
+	 */
+	public HttpConnection(String hostname, int port) throws IOException {
+		if (ClientOptions.tls.equals("off")) {
+			this.socket = new Socket(hostname, port);
+		} else {
+			SSLContext context = ClientOptions.tls.equals("resume") ? getSharedContext()
+					: createContext();
+			// connect first, so that only the handshake is timed
+			Socket plain = new Socket(hostname, port);
+			SSLSocket sslSocket = (SSLSocket) context.getSocketFactory().createSocket(plain,
+					hostname, port, true);
+			long start = System.nanoTime();
+			sslSocket.startHandshake();
+			long time = System.nanoTime() - start;
+			System.out.println("HANDSHAKE " + time + " " + sslSocket.getSession().getProtocol()
+					+ " " + sslSocket.getSession().getCipherSuite());
+			this.socket = sslSocket;
+		}
+		this.socket.setSoTimeout(60000);
+		this.dos = new DataOutputStream(this.socket.getOutputStream());
+		this.is = new BufferedInputStream(this.socket.getInputStream(), JioClient.READ_BUFFER_SIZE);
+	}
+
+	/**
+	 * @return the context shared by all the connections
+	 * @throws IOException
+	 */
+	private static synchronized SSLContext getSharedContext() throws IOException {
+		if (sharedContext == null) {
+			sharedContext = createContext();
+		}
+		return sharedContext;
+	}
+
+	/**
+	 * @return a new context, with its own (empty) session cache
+	 * @throws IOException
+	 */
+	private static SSLContext createContext() throws IOException {
+		TrustManager trustAll = new X509TrustManager() {
+			public void checkClientTrusted(X509Certificate[] chain, String authType) {
+				// not used by the client
+			}
+
+			public void checkServerTrusted(X509Certificate[] chain, String authType) {
+				// accept the self-signed certificates of the servers
+			}
+
+			public X509Certificate[] getAcceptedIssuers() {
+				return new X509Certificate[0];
+			}
+		};
+		try {
+			SSLContext context = SSLContext.getInstance("TLS");
+			context.init(null, new TrustManager[] { trustAll }, null);
+			return context;
+		} catch (GeneralSecurityException e) {
+			throw new IOException("Cannot create the TLS context: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Open the session: every connection gets its own session id
+	 * 
+	 * @param name
+	 *            a name identifying the connection
+	 * @return the session id
+	 * @throws IOException
+	 */
+	public String initSession(String name) throws IOException {
+		// HTTP REQUEST HERE (every client gets its own session)
+		write("POST /session-" + name + "-" + Inet4Address.getLocalHost().toString() + " HTTP/1.1"
+				+ CRLF + CRLF);
+
+		String response = readLine();
+		// do this trick for Netty as first line contain HTTP header
+		while (!response.startsWith("jSessionId:")) {
+			response = readLine();
+		}
+
+		System.out.println("RECEIVED FROM SERVER : " + response);
+		String tab[] = response.split("\\s+");
+		this.sessionId = tab[1];
+		return this.sessionId;
+	}
+
+	/**
+	 * 
+	 * @param data
+	 * @throws IOException
+	 */
+	public void write(String data) throws IOException {
+		this.dos.write(data.getBytes());
+		this.dos.flush();
+	}
+
+	/**
+	 * Read a response whose content ends with the NUL marker
+	 * 
+	 * @return the number of bytes read
+	 * @throws IOException
+	 */
+	public long read() throws IOException {
+		int nBytes = -1;
+		long n = 0;
+
+		while ((nBytes = this.is.read(bytes)) != -1) {
+			n += nBytes;
+			// NUL signals the end of the request
+			if (nBytes >= 1 && bytes[nBytes - 1] == '\0') {
+				/// end of message
+				break;
+			}
+		}
+		return n;
+	}
+
+	/**
+	 * Read a response delimited by its {@code Content-Length} header. The body
+	 * is read and dropped.
+	 * 
+	 * @return the response status and header
+	 * @throws IOException
+	 */
+	public Response readResponse() throws IOException {
+		Response response = new Response();
+		String statusLine = readLine();
+		String tab[] = statusLine.split("\\s+");
+		response.status = Integer.parseInt(tab[1]);
+
+		String line;
+		while ((line = readLine()).length() > 0) {
+			int colon = line.indexOf(':');
+			if (colon > 0) {
+				response.headers.put(line.substring(0, colon).trim().toLowerCase(Locale.ENGLISH),
+						line.substring(colon + 1).trim());
+			}
+		}
+
+		String contentLength = response.getHeader("content-length");
+		long remaining = contentLength == null ? 0 : Long.parseLong(contentLength);
+		response.length = remaining;
+		while (remaining > 0) {
+			int nBytes = this.is.read(bytes, 0, (int) Math.min(bytes.length, remaining));
+			if (nBytes < 0) {
+				throw new EOFException("Connection closed by the server");
+			}
+			remaining -= nBytes;
+		}
+		return response;
+	}
+
+	/**
+	 * @return the next header line, without its line terminator
+	 * @throws IOException
+	 */
+	private String readLine() throws IOException {
+		ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+		int b;
+		while ((b = this.is.read()) != '\n') {
+			if (b < 0) {
+				throw new EOFException("Connection closed by the server");
+			}
+			line.write(b);
+		}
+		return line.toString().trim();
+	}
+
+	/**
+	 * Close the connection
+	 */
+	public void close() {
+		try {
+			this.socket.close();
+		} catch (IOException ioex) {
+			// NOPE
+		}
+	}
+
+	/**
+	 * @return the session id
+	 */
+	public String getSessionId() {
+		return this.sessionId;
+	}
+}
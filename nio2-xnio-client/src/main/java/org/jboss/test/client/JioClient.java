@@ -25,19 +25,25 @@
  */
 package org.jboss.test.client;
 
-import java.io.BufferedReader;
+import java.io.BufferedOutputStream;
 import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.lang.management.ManagementFactory;
-import java.net.Inet4Address;
-import java.net.Socket;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * {@code JioClient}
@@ -69,20 +75,57 @@ public class JioClient extends Thread {
 	 */
 	public static final int				DEFAULT_DELAY		= 1000;
 	public static final int				DEFAULT_NREQ		= 1000000;
+	/**
+	 * The responses read by all the clients, see {@link ProcSampler}
+	 */
+	static final AtomicLong				RESPONSES			= new AtomicLong();
+	/**
+	 * The time at which the clients were released, the start of the open loop
+	 */
+	static volatile long				RELEASED;
+	/**
+	 * The seed of the arrival schedules, from {@link ClientOptions#seed} and
+	 * the client ID
+	 */
+	static long							SEED;
+	// the CPU time of the process when the clients were released
+	private static long					cpuAtStart;
+	/**
+	 * The binary log of the requests, see {@link ClientOptions#eventLog}
+	 */
+	static EventLog						EVENTS;
 	private String						hostname;
 	private int							port;
 	private int							max;
 	private int							delay;
-	private Socket						channel;
+	private HttpConnection				channel;
 	private String						sessionId;
-	private DataOutputStream			dos;
-	private InputStream					is;
+	// the connections used to fetch the ranges, the first one is the channel
+	private HttpConnection				segments[];
+	private long						fileSize;
+	// the validators of the last full response, sent back on conditional requests
+	private String						etag;
+	private String						lastModified;
+	// the response times of this client, see ClientOptions#histogram, shared
+	// by several virtual threads
+	private LatencyHistogram			histogram;
+	// guards the histogram and the recorder, not a monitor as a virtual
+	// thread blocked on it, or yielding in the recorder, would pin its carrier
+	private Lock						recordLock;
+	// the records of this client in the event log, null without event log
+	private EventLog.Recorder			events;
+	/**
+	 * The number of histograms (and event log recorders) shared by the
+	 * virtual threads
+	 */
+	public static final int				STRIPES				= 64;
 	private static final AtomicInteger	COUNTER				= new AtomicInteger(0);
 	private static final Random			RAND				= new Random();
 	
-        // used for synchronizing threads
+        // used for synchronizing threads, without monitor as it would pin
+        // the carriers of the virtual threads
         private static AtomicInteger counter;
-        private static Object lock;
+        private static CountDownLatch lock;
         
 	/**
 	 * Create a new instance of {@code JioClient}
@@ -98,7 +141,7 @@ public class JioClient extends Thread {
 		this.max = d_max;
 		this.delay = delay;
                 JioClient.counter = new AtomicInteger(0);
-                JioClient.lock = new Object();
+                JioClient.lock = new CountDownLatch(1);
 	}
 	
 	/**
@@ -119,25 +162,24 @@ public class JioClient extends Thread {
                         // Initialize the communication between client and server
 			init();
                         
-			while (COUNTER.get() < N_THREADS) {
-				sleep(100);
-			}
-                        
-                        // increment the counter and spin lock
+                        // increment the counter and spin lock, the clients are
+                        // released once all of them are connected
                         JioClient.counter.incrementAndGet();
-                        synchronized( JioClient.lock ) {
-                            JioClient.lock.wait();
-                        }
+                        JioClient.lock.await();
                         
                         // all threads will start this at pseudo-equal time
 			runit();
 		} catch (Throwable exp) {
 			exp.printStackTrace();
 		} finally {
-			try {
+			if (this.segments != null) {
+				for (HttpConnection segment : this.segments) {
+					if (segment != null) {
+						segment.close();
+					}
+				}
+			} else if (this.channel != null) {
 				this.channel.close();
-			} catch (IOException ioex) {
-				// NOPE
 			}
 		}
 	}
@@ -148,10 +190,7 @@ public class JioClient extends Thread {
 	 */
 	protected void connect() throws Exception {
 		// Open connection with server
-		this.channel = new Socket(this.hostname, this.port);
-		this.channel.setSoTimeout(60000);
-		this.dos = new DataOutputStream(this.channel.getOutputStream());
-		this.is = this.channel.getInputStream();
+		this.channel = new HttpConnection(this.hostname, this.port);
 		COUNTER.incrementAndGet();
 	}
 	
@@ -165,18 +204,17 @@ public class JioClient extends Thread {
 		this.connect();
                 
                 // HTTP REQUEST HERE  (every client gets its own session)
-		write("POST /session-" + getId() +"-"+Inet4Address.getLocalHost().toString()+" HTTP/1.1" + CRLF + CRLF);
-               
-		BufferedReader in = new BufferedReader(new InputStreamReader(this.channel.getInputStream()));
-		String response = in.readLine();
-                // do this trick for Netty as first line contain HTTP header
-                while( ! response.startsWith("jSessionId:") ) {
-                    response = in.readLine();
+                this.sessionId = this.channel.initSession(String.valueOf(getId()));
+
+                if (ClientOptions.ranges > 0) {
+                        // one more connection, with its own session, for every other range
+                        this.segments = new HttpConnection[ClientOptions.ranges];
+                        this.segments[0] = this.channel;
+                        for (int i = 1; i < this.segments.length; i++) {
+                                this.segments[i] = new HttpConnection(this.hostname, this.port);
+                                this.segments[i].initSession(getId() + "-" + i);
+                        }
                 }
-                
-		System.out.println("RECEIVED FROM SERVER : " + response);
-		String tab[] = response.split("\\s+");
-                this.sessionId = tab[1];
 	}
 	
 	/**
@@ -185,7 +223,13 @@ public class JioClient extends Thread {
 	 */
 	public void runit() throws Exception {
 		// Wait a delay to ensure that all threads are ready
-		sleep(DEFAULT_DELAY + (new Random()).nextInt(COUNTER.get()));
+		if (ClientOptions.rate <= 0) {
+			sleep(DEFAULT_DELAY + (new Random()).nextInt(COUNTER.get()));
+		}
+		if (this.segments != null) {
+			runRanged();
+			return;
+		}
 		long time = 0;
 		String response = null;
 		int counter = 0;
@@ -193,39 +237,81 @@ public class JioClient extends Thread {
 		int max_count = 50 * 1000 / delay;
 
 		List<Long> delays = new ArrayList<Long>();
+		Random random = new Random();
 
                 long timeWrite;
                 long timeRead;
                 long startTime = System.nanoTime();
+		// in open loop, all the clients follow their schedule from the same start
+		Arrivals arrivals = null;
+		long intended = 0;
+		if (ClientOptions.rate > 0) {
+			arrivals = new Arrivals(ClientOptions.arrivals, ClientOptions.rate / N_THREADS,
+					ClientOptions.burstOn, ClientOptions.burstOff,
+					Arrivals.seed(SEED, getId()));
+			startTime = RELEASED + DEFAULT_DELAY * 1000000L;
+		}
+		if (ClientOptions.pipeline > 1) {
+			runPipelined(startTime, arrivals);
+			return;
+		}
 		while ((this.max--) > 0) {
                         // long wait = this.delay - time;
                         // if (wait>0)
 			//    sleep(wait);
 			// time = System.currentTimeMillis();
 			//System.out.println("WRITE TO SERVER");
-			sleep(this.delay);
+			if (arrivals == null) {
+				sleep(this.delay);
+			} else {
+				// a late request is sent at once, its latency counts from the intended time
+				intended = startTime + arrivals.next();
+				long wait = intended - System.nanoTime();
+				if (wait > 0) {
+					sleep(wait / 1000000, (int) (wait % 1000000));
+				}
+			}
 		        timeWrite =  System.nanoTime();
+			if (arrivals == null) {
+				intended = timeWrite;
+			}
                         
                         // HTTP REQUEST HERE !!! 
-                        StringBuffer buf = new StringBuffer();
-                        buf.append("GET /data/file.txt?jSessionId=" + this.sessionId + " HTTP/1.1" + CRLF);
-                        if( this.max != 0 ) {
-                            buf.append("Connection: keep-alive \n");
-                        }
-                        buf.append(CRLF);
-			write(buf.toString());
+                        boolean conditional = this.etag != null
+                                        && random.nextInt(100) < ClientOptions.validators;
+			write(request(this.sessionId, this.max != 0, conditional ? this.etag : null,
+					this.lastModified));
 			/*
                         //System.out.println("Send this HTTP request: ");
                         System.out.println("GET /data/file.txt?jSessionId=" + this.sessionId + " HTTP/1.1" + CRLF + CRLF);
                         */
                         
                         //get the response 
-                        response = read();
+                        String serverTiming = null;
+                        int status = 0;
+                        long bytes;
+                        if (ClientOptions.validators > 0 || ClientOptions.timing) {
+                            // a 304 has no NUL marker, read the framed response
+                            HttpConnection.Response r = this.channel.readResponse();
+                            if (r.status == 200) {
+                                this.etag = r.getHeader("etag");
+                                this.lastModified = r.getHeader("last-modified");
+                            }
+                            serverTiming = r.getHeader("server-timing");
+                            status = r.status;
+                            bytes = r.length;
+                        } else {
+                            // NUL signals the end of the request
+                            bytes = this.channel.read();
+                        }
                         
 			// time = System.currentTimeMillis() - time;
 			timeRead = System.nanoTime();
 			// delays.add(time);
-			System.out.println("WRITE " + (timeWrite - startTime) + " READ " + (timeRead - startTime));
+			if (ClientOptions.lines) {
+				System.out.println(logLine(startTime, intended, timeWrite, timeRead, serverTiming));
+			}
+			record(status, startTime, intended, timeWrite, timeRead, bytes);
 		        delays.add(timeRead - timeWrite);
 
 			/*
@@ -254,14 +340,261 @@ public class JioClient extends Thread {
         */
     }
 	
+	/**
+	 * Keep up to {@link ClientOptions#pipeline} requests outstanding on the
+	 * connection: a request is written without waiting for the responses of
+	 * the previous ones, which are read in order. In closed loop, the
+	 * requests are written in bursts, the delay after the last response read;
+	 * without delay the pipeline stays full. In open loop, a request is
+	 * written once it is due and the pipeline has room, the responses are
+	 * read meanwhile. The response time of every request counts from its own
+	 * write, or its intended time in open loop.
+	 * 
+	 * @param startTime
+	 * @param arrivals
+	 *            the schedule of the open loop, {@code null} in closed loop
+	 * @throws Exception
+	 */
+	protected void runPipelined(long startTime, Arrivals arrivals) throws Exception {
+		Random random = new Random();
+		// the intended and the actual send times of the outstanding requests
+		ArrayDeque<long[]> outstanding = new ArrayDeque<long[]>(ClientOptions.pipeline);
+		long lastRead = System.nanoTime();
+		long intended = -1;
+		while (this.max > 0 || !outstanding.isEmpty()) {
+			if (this.max > 0 && outstanding.size() < ClientOptions.pipeline) {
+				if (arrivals != null && intended < 0) {
+					intended = startTime + arrivals.next();
+				}
+				long wait = (arrivals == null ? lastRead + this.delay * 1000000L : intended)
+						- System.nanoTime();
+				if (wait <= 0 || outstanding.isEmpty()) {
+					if (wait > 0) {
+						sleep(wait / 1000000, (int) (wait % 1000000));
+					}
+					long timeWrite = System.nanoTime();
+					this.max--;
+					boolean conditional = this.etag != null
+							&& random.nextInt(100) < ClientOptions.validators;
+					write(request(this.sessionId, this.max != 0, conditional ? this.etag : null,
+							this.lastModified));
+					outstanding.add(new long[] { arrivals == null ? timeWrite : intended,
+							timeWrite });
+					intended = -1;
+					continue;
+				}
+			}
+			// the responses are concatenated, only the framed read splits them
+			long sent[] = outstanding.remove();
+			HttpConnection.Response r = this.channel.readResponse();
+			long timeRead = System.nanoTime();
+			lastRead = timeRead;
+			if (r.status == 200) {
+				this.etag = r.getHeader("etag");
+				this.lastModified = r.getHeader("last-modified");
+			}
+			String serverTiming = r.getHeader("server-timing");
+			if (ClientOptions.lines) {
+				System.out.println(logLine(startTime, sent[0], sent[1], timeRead, serverTiming));
+			}
+			record(r.status, startTime, sent[0], sent[1], timeRead, r.length);
+		}
+	}
+
+	/**
+	 * Fetch the file with one ranged request per connection. All the requests
+	 * are sent before reading the responses, so that the server handles them
+	 * concurrently. The response time is the time to get the whole file.
+	 * 
+	 * @throws Exception
+	 */
+	protected void runRanged() throws Exception {
+		// learn the file size from the Content-Range of a one byte range
+		this.channel.write(rangeRequest(this.channel, 0, 0));
+		HttpConnection.Response probe = this.channel.readResponse();
+		String contentRange = probe.getHeader("content-range");
+		if (probe.status != 206 || contentRange == null) {
+			throw new IOException("The server does not support ranged requests (status "
+					+ probe.status + ")");
+		}
+		this.fileSize = Long.parseLong(contentRange.substring(contentRange.indexOf('/') + 1).trim());
+		long segmentSize = (this.fileSize + this.segments.length - 1) / this.segments.length;
+
+		long timeWrite;
+		long timeRead;
+		long startTime = System.nanoTime();
+		while ((this.max--) > 0) {
+			sleep(this.delay);
+			timeWrite = System.nanoTime();
+			for (int i = 0; i < this.segments.length; i++) {
+				long first = i * segmentSize;
+				long last = Math.min(this.fileSize, first + segmentSize) - 1;
+				if (first <= last) {
+					this.segments[i].write(rangeRequest(this.segments[i], first, last));
+				}
+			}
+			int status = 206;
+			long bytes = 0;
+			for (int i = 0; i < this.segments.length; i++) {
+				if (i * segmentSize < this.fileSize) {
+					HttpConnection.Response response = this.segments[i].readResponse();
+					if (response.status != 206) {
+						System.err.println("Unexpected response status " + response.status);
+						status = response.status;
+					}
+					bytes += response.length;
+				}
+			}
+			timeRead = System.nanoTime();
+			if (ClientOptions.lines) {
+				System.out.println("WRITE " + (timeWrite - startTime) + " READ "
+						+ (timeRead - startTime));
+			}
+			record(status, startTime, timeWrite, timeWrite, timeRead, bytes);
+		}
+	}
+
+	/**
+	 * Record a response in the histogram and the event log
+	 * 
+	 * @param status
+	 *            the status of the response, 0 if it is not parsed
+	 * @param startTime
+	 * @param intended
+	 *            the intended send time
+	 * @param timeWrite
+	 *            the actual send time
+	 * @param timeRead
+	 * @param bytes
+	 *            the bytes read, the body length of a parsed response
+	 */
+	private void record(int status, long startTime, long intended, long timeWrite,
+			long timeRead, long bytes) {
+		// uncontended, unless the histogram is shared by virtual threads
+		this.recordLock.lock();
+		try {
+			this.histogram.record(timeRead - intended);
+			if (this.events != null) {
+				this.events.record((int) getId(), status, startTime, intended, timeWrite,
+						timeRead, bytes);
+			}
+		} finally {
+			this.recordLock.unlock();
+		}
+		RESPONSES.incrementAndGet();
+	}
+
+	/**
+	 * @param sessionId
+	 * @param keepAlive
+	 *            {@code false} for the last request of the connection
+	 * @param etag
+	 *            the validator to send, {@code null} for an unconditional
+	 *            request
+	 * @param lastModified
+	 * @return the request for the file, see also {@link NioClient}
+	 */
+	static String request(String sessionId, boolean keepAlive, String etag, String lastModified) {
+		StringBuilder buf = new StringBuilder();
+		buf.append("GET /data/file.txt?jSessionId=" + sessionId + " HTTP/1.1" + CRLF);
+		if (keepAlive) {
+			buf.append("Connection: keep-alive \n");
+		}
+		if (etag != null) {
+			buf.append("If-None-Match: " + etag + CRLF);
+			buf.append("If-Modified-Since: " + lastModified + CRLF);
+		}
+		if (ClientOptions.encoding != null) {
+			buf.append("Accept-Encoding: " + ClientOptions.encoding + CRLF);
+		}
+		buf.append(CRLF);
+		return buf.toString();
+	}
+
+	/**
+	 * @param startTime
+	 * @param intended
+	 *            the intended send time, the same as the actual one in closed
+	 *            loop
+	 * @param timeWrite
+	 *            the actual send time
+	 * @param timeRead
+	 * @param serverTiming
+	 *            the {@code Server-Timing} header or {@code null}
+	 * @return the log line of a response: "WRITE intended READ read", followed
+	 *         in open loop by "SENT actual" and with {@code --timing} by the
+	 *         server durations
+	 */
+	static String logLine(long startTime, long intended, long timeWrite, long timeRead,
+			String serverTiming) {
+		StringBuilder sb = new StringBuilder();
+		sb.append("WRITE ").append(intended - startTime).append(" READ ").append(
+				timeRead - startTime);
+		if (ClientOptions.rate > 0) {
+			sb.append(" SENT ").append(timeWrite - startTime);
+		}
+		if (ClientOptions.timing) {
+			sb.append(serverTiming(serverTiming));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * @param header
+	 *            the {@code Server-Timing} header, e.g.,
+	 *            {@code queue;dur=0.012, parse;dur=0.050, lookup;dur=0.004, write;dur=0.120}
+	 * @return the queue, parse, lookup and write durations in nanoseconds, as
+	 *         {@code " SERVER q p l w"}, or an empty string without header
+	 */
+	static String serverTiming(String header) {
+		if (header == null) {
+			return "";
+		}
+		String names[] = { "queue", "parse", "lookup", "write" };
+		long durations[] = new long[names.length];
+		for (String metric : header.split(",")) {
+			String params[] = metric.trim().split(";");
+			for (int i = 0; i < names.length; i++) {
+				if (!params[0].trim().equals(names[i])) {
+					continue;
+				}
+				for (int j = 1; j < params.length; j++) {
+					String param = params[j].trim();
+					if (param.startsWith("dur=")) {
+						durations[i] = Math.round(Double.parseDouble(param.substring(4)) * 1e6);
+					}
+				}
+			}
+		}
+		StringBuilder sb = new StringBuilder(" SERVER");
+		for (long duration : durations) {
+			sb.append(' ').append(duration);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * @param connection
+	 * @param first
+	 * @param last
+	 * @return the request for the bytes between first and last (inclusive)
+	 */
+	private static String rangeRequest(HttpConnection connection, long first, long last) {
+		StringBuilder buf = new StringBuilder();
+		buf.append("GET /data/file.txt?jSessionId=" + connection.getSessionId() + " HTTP/1.1" + CRLF);
+		buf.append("Connection: keep-alive" + CRLF);
+		buf.append("Range: bytes=" + first + "-" + last + CRLF);
+		buf.append(CRLF);
+		return buf.toString();
+	}
+
 	/**
 	 * 
 	 * @param data
 	 * @throws Exception
 	 */
 	public void write(String data) throws Exception {
-		this.dos.write(data.getBytes());
-		this.dos.flush();
+		this.channel.write(data);
 	}
 	
 	/**
@@ -270,42 +603,8 @@ public class JioClient extends Thread {
 	 * @throws Exception
 	 */
 	public String read() throws Exception {
-		byte bytes[] = new byte[READ_BUFFER_SIZE];
-		int nBytes = -1;
-		long n = 0;
-                
-		while ((nBytes = this.is.read(bytes)) != -1) {
-			n += nBytes;
-                        //System.out.println(new String(bytes, 0, nBytes));
-                        // NUL signals the end of the request
-                        if (nBytes >= 1 && bytes[nBytes - 1] == '\0' ) { // && bytes[nBytes - 2] == '\r') {
-                                /// end of message
-				break;
-			}
-		}
-            /*    System.out.println("header: " + header.toString());
-                int content_length=0;
-                // we have the header here, get the "Content-length:" value 
-                String header_lines[] = header.toString().split("\n");
-                for( int i=0; i < header_lines.length; ++i ) { 
-                    if( header_lines[i].startsWith("Content-Length:") ) { 
-                        content_length = Integer.parseInt(
-                                header_lines[i].substring(header_lines[i].indexOf(":")+1).trim());
-                        break;
-                    }
-                }
-                //System.out.println("Content length: " + content_length );
-                int read=0;
-                while ((nBytes = this.is.read(bytes)) != -1) {
-                    read += nBytes;
-                    System.out.println("content: " + new String(bytes, 0, nBytes));
-                    System.out.println("read: " + read + " total content length " + content_length);
-                    if( read >= content_length ) { 
-                        break;
-                    }
-                }*/
-                // print here data received from server (the file content)
-                //System.out.println(new String(bytes));
+		// NUL signals the end of the request
+		this.channel.read();
 		return "Hello world!";
 	}
 	
@@ -326,7 +625,14 @@ public class JioClient extends Thread {
                 System.out.println("PID: "+PID);
                 System.out.flush();
             
-		if (args.length < 3) {
+		boolean validOptions = true;
+		try {
+			args = ClientOptions.parse(args);
+		} catch (IllegalArgumentException exp) {
+			System.err.println("Error: " + exp.getMessage());
+			validOptions = false;
+		}
+		if (!validOptions || args.length < 3) {
 			System.err.println("Usage: java " + JioClient.class.getName()
 					+ "distributedSynch hostname port [clientID] [n] [delay] [nReq] [wDir]");
                         System.err.println("\tdistributedMode: Set 'yes' if synchronization with other remote clients is desired.");
@@ -337,6 +643,7 @@ public class JioClient extends Thread {
 			System.err.println("\tdelay: The delay between requests. (default is 1000ms)");
 			System.err.println("\tnReq: The total number of requests. (default is 1000000)");
                         System.err.println("\twDir: The working directory. (default is ~/)");
+			ClientOptions.usage();
 			System.exit(1);
 		}
 		
@@ -391,6 +698,8 @@ public class JioClient extends Thread {
 			}
 		}
 		N_THREADS = n;
+		long seed = ClientOptions.seed != 0 ? ClientOptions.seed : RAND.nextLong();
+		SEED = seed * 31 + clientID.hashCode();
 		
 		System.out.println("\n Running test with parameters:");
                 System.out.println("\tDistributed mode: " + distributedMode);
@@ -400,31 +709,202 @@ public class JioClient extends Thread {
 		System.out.println("\tn: " + n);
 		System.out.println("\tdelay: " + delay);
 		System.out.println("\tnReq: " + nReq);
+		if (ClientOptions.ranges > 0) {
+			System.out.println("\tranges: " + ClientOptions.ranges);
+		}
+		if (ClientOptions.validators > 0) {
+			System.out.println("\tvalidators: " + ClientOptions.validators + "%");
+		}
+		if (ClientOptions.encoding != null) {
+			System.out.println("\tencoding: " + ClientOptions.encoding);
+		}
+		if (!ClientOptions.tls.equals("off")) {
+			System.out.println("\ttls: " + ClientOptions.tls);
+		}
+		if (ClientOptions.timing) {
+			System.out.println("\ttiming: on");
+		}
+		if (ClientOptions.rate > 0) {
+			System.out.println("\trate: " + ClientOptions.rate + " req/s, " + ClientOptions.arrivals
+					+ " arrivals"
+					+ (ClientOptions.arrivals.equals("onoff") ? " (" + ClientOptions.burstOn + "ms on, "
+							+ ClientOptions.burstOff + "ms off)" : ""));
+			System.out.println("\tseed: " + seed);
+		}
+		if (ClientOptions.eventLog != null) {
+			System.out.println("\teventLog: " + ClientOptions.eventLog);
+		}
+		if (ClientOptions.procSample != null) {
+			System.out.println("\tprocSample: " + ClientOptions.procSample + " every "
+					+ ClientOptions.procInterval + "ms");
+		}
+		if (ClientOptions.engine.equals("nio")) {
+			System.out.println("\tengine: nio, " + ClientOptions.loops + " loops");
+		}
+		ProcSampler procSampler = ClientOptions.procSample == null ? null : ProcSampler
+				.start(ClientOptions.procSample, ClientOptions.procInterval);
+		Timer progress = null;
+		if (!ClientOptions.lines) {
+			// without the response lines, the testing tool still sees the log growing
+			progress = new Timer("progress", true);
+			progress.schedule(new TimerTask() {
+				@Override
+				public void run() {
+					System.out.println("PROGRESS " + RESPONSES.get());
+				}
+			}, 1000, 1000);
+		}
 		
+		if (ClientOptions.eventLog != null) {
+			EVENTS = new EventLog(ClientOptions.eventLog, ClientOptions.eventBuffer,
+					ClientOptions.rate > 0);
+		}
+		LatencyHistogram latencies;
+		if (ClientOptions.engine.equals("nio")) {
+			NioClient client = new NioClient(hostname, port, n, nReq / n, delay);
+			client.start();
+			awaitStart(distributedMode, clientID, wDir, NioClient.SETTLED, n);
+			client.release();
+			client.join();
+			latencies = client.getHistogram();
+		} else {
+			latencies = runThreads(distributedMode, clientID, wDir, hostname, port, n, delay, nReq);
+		}
+		if (procSampler != null) {
+			procSampler.finish();
+		}
+		if (progress != null) {
+			progress.cancel();
+		}
+		if (EVENTS != null) {
+			EVENTS.close();
+			long waits = EVENTS.getWaits();
+			if (waits > 0) {
+				System.err.println("WARNING: the clients waited " + waits
+						+ " times for the event log writer, increase --eventBuffer");
+			}
+			long dropped = EVENTS.getDropped();
+			if (dropped > 0) {
+				System.err.println("ERROR: " + dropped
+						+ " records were dropped, the event log writer failed");
+			}
+		}
+		System.out.println(latencies.summary());
+		// the cost of the load generator itself, to compare the engines and threads
+		long cpu = processCpuTime() - cpuAtStart;
+		System.out.println("CPU mode="
+				+ (ClientOptions.engine.equals("nio") ? "nio" : ClientOptions.threads)
+				+ " cpu_ms=" + cpu / 1000000 + " responses=" + RESPONSES.get()
+				+ " cpu_us_per_response="
+				+ (RESPONSES.get() == 0 ? 0 : cpu / 1000 / RESPONSES.get()));
+		if (ClientOptions.histogram != null) {
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+					new FileOutputStream(ClientOptions.histogram)));
+			try {
+				latencies.write(out);
+			} finally {
+				out.close();
+			}
+		}
+                
+                // as the threads are finished, signal it again with a new empty file
+                String ready_filename = wDir+"/"+clientID+"-finished";
+                new File(ready_filename).createNewFile();
+	}
+
+	/**
+	 * Run one thread, with its blocking connection, per client. The virtual
+	 * threads (see {@link ClientOptions#threads}) run the same code, but share
+	 * {@link #STRIPES} histograms and event log recorders so that a client
+	 * costs a few KB.
+	 * 
+	 * @return the response times of all the clients
+	 * @throws Exception
+	 */
+	private static LatencyHistogram runThreads(String distributedMode, String clientID, String wDir,
+			String hostname, int port, int n, int delay, int nReq) throws Exception {
 		JioClient clients[] = new JioClient[n];
 		
 		int nReqClient = nReq / n;
 		
+		boolean virtual = ClientOptions.threads.equals("virtual");
+		LatencyHistogram histograms[] = new LatencyHistogram[virtual ? Math.min(n, STRIPES) : n];
+		EventLog.Recorder recorders[] = new EventLog.Recorder[histograms.length];
+		Lock locks[] = new Lock[histograms.length];
+		for (int i = 0; i < histograms.length; i++) {
+			histograms[i] = new LatencyHistogram();
+			recorders[i] = EVENTS == null ? null : EVENTS.newRecorder();
+			locks[i] = new ReentrantLock();
+		}
 		for (int i = 0; i < clients.length; i++) {
 			clients[i] = new JioClient(hostname, port, nReqClient, delay);
+			clients[i].histogram = histograms[i % histograms.length];
+			clients[i].events = recorders[i % recorders.length];
+			clients[i].recordLock = locks[i % locks.length];
 		}
 		
+		Thread threads[] = new Thread[n];
 		for (int i = 0; i < clients.length; i++) {
-			clients[i].start();
+			if (virtual) {
+				threads[i] = newVirtualThread(clients[i]);
+			} else {
+				clients[i].start();
+				threads[i] = clients[i];
+			}
 		}
                 
                 // wait that all threads incremented the counter, thus saying that they are 
                 // ready to go further
-                while( JioClient.counter.get() != clients.length ) {
+                awaitStart(distributedMode, clientID, wDir, JioClient.counter, clients.length);
+                // the counter is set, so release the threads 
+                RELEASED = System.nanoTime();
+                JioClient.lock.countDown();
+		
+                // join the threads
+		for (int i = 0; i < threads.length; i++) {
+			threads[i].join();
+		}
+		LatencyHistogram latencies = new LatencyHistogram();
+		for (LatencyHistogram histogram : histograms) {
+			latencies.add(histogram);
+		}
+		return latencies;
+	}
+
+	/**
+	 * Start a virtual thread running the client. The client is built for Java
+	 * 6, so {@code Thread.startVirtualThread} of Java 21 is called by
+	 * reflection.
+	 * 
+	 * @param client
+	 *            the client, used as a plain {@link Runnable}
+	 * @return the virtual thread
+	 * @throws Exception
+	 *             if virtual threads are not supported by the JVM
+	 */
+	static Thread newVirtualThread(Runnable client) throws Exception {
+		Method startVirtualThread = Thread.class.getMethod("startVirtualThread", Runnable.class);
+		return (Thread) startVirtualThread.invoke(null, client);
+	}
+
+	/**
+	 * Wait for the clients to be connected, and in distributed mode for the
+	 * coordinator of the testing tool, before they may send their requests
+	 * 
+	 * @param ready
+	 *            the number of clients ready
+	 * @param expected
+	 *            the number of clients
+	 * @throws Exception
+	 */
+	static void awaitStart(String distributedMode, String clientID, String wDir,
+			AtomicInteger ready, int expected) throws Exception {
+                while( ready.get() != expected ) {
                     System.out.println("Wait the threads to reach same state ...");
                     Thread.sleep(500);
                 }
                 if( distributedMode.equals("no") ) {
                     System.out.println("Threads are now at same state, so release them.");
-                    // the counter is set, so release the threads 
-                    synchronized(JioClient.lock) {
-                        JioClient.lock.notifyAll();
-                    }
                 }
                 else if( distributedMode.equals("yes") ) {
                     // threads are now waiting for a signal to continue
@@ -442,21 +922,19 @@ public class JioClient extends Thread {
                     while( ! new File(read_to_start_filename).exists() ) {
                         Thread.sleep(50);
                     }
-                    
-                    // now it's the time to signal the threads to send requests
-                    // release the locked threads
-                    synchronized(JioClient.lock) {
-                        JioClient.lock.notifyAll();
-                    }
                 }
-		
-                // join the threads
-		for (int i = 0; i < clients.length; i++) {
-			clients[i].join();
+                cpuAtStart = processCpuTime();
+	}
+
+	/**
+	 * @return the CPU time of the process in nanoseconds, 0 if the JVM does
+	 *         not provide it
+	 */
+	static long processCpuTime() {
+		OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+		if (os instanceof com.sun.management.OperatingSystemMXBean) {
+			return ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime();
 		}
-                
-                // as the threads are finished, signal it again with a new empty file
-                String ready_filename = wDir+"/"+clientID+"-finished";
-                new File(ready_filename).createNewFile();
+		return 0;
 	}
 }
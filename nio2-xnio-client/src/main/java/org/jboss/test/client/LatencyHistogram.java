@@ -0,0 +1,264 @@
+/**
+ * JBoss, Home of Professional Open Source. Copyright 2011, Red Hat, Inc., and
+ * individual
+ * contributors as indicated by the @author tags. See the copyright.txt file in
+ * the distribution
+ * for a full listing of individual contributors.
+ * 
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation; either
+ * version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this
+ * software; if not, write to the Free Software Foundation, Inc., 51 Franklin
+ * St, Fifth Floor,
+ * Boston, MA 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.client;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+/**
+ * {@code LatencyHistogram}
+ * 
+ * A log-linear histogram of response times in nanoseconds, laid out as the
+ * one of the server but twice as fine: every power of two is split into
+ * {@value #SUB_BUCKETS} linear buckets (16 on the server), so a recorded value
+ * is known within 1/{@value #SUB_BUCKETS} of its magnitude. Each platform
+ * thread client records into its own histogram, without allocating, the
+ * virtual ones share a few under a lock, and the histograms are added up at
+ * the end.
+ * 
+ * The serialized form holds the non-empty buckets only:
+ * 
+ * <pre>
+ * int magic, int sub_bucket_bits, long count, long sum, long max, int n,
+ * n * (int index, long count)
+ * </pre>
+ * 
+ * so that the histograms of several client hosts can be merged into exact
+ * global percentiles (within the resolution of the buckets).
+ * 
+ * Created on Oct 19, 2026 at 3:05:18 PM
+ */
+public final class LatencyHistogram {
+
+	/**
+	 * The first int of the serialized form, "JHIS"
+	 */
+	public static final int		MAGIC			= 0x4a484953;
+	private static final int	SUB_BUCKET_BITS	= 5;
+	/**
+	 * The number of linear buckets per power of two
+	 */
+	public static final int		SUB_BUCKETS		= 1 << SUB_BUCKET_BITS;
+	private static final int	BUCKETS			= (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	private long				counts[]		= new long[BUCKETS];
+	private long				count;
+	private long				sum;
+	private long				max;
+
+	/**
+	 * Record a response time. It is not thread safe, the clients sharing a
+	 * histogram must lock it.
+	 * 
+	 * @param nanos
+	 *            the response time in nanoseconds, a negative one counts as 0
+	 */
+	public void record(long nanos) {
+		long value = Math.max(0, nanos);
+		this.counts[index(value)]++;
+		this.count++;
+		this.sum += value;
+		if (value > this.max) {
+			this.max = value;
+		}
+	}
+
+	/**
+	 * Add the values recorded by another histogram
+	 * 
+	 * @param other
+	 */
+	public void add(LatencyHistogram other) {
+		for (int i = 0; i < BUCKETS; i++) {
+			this.counts[i] += other.counts[i];
+		}
+		this.count += other.count;
+		this.sum += other.sum;
+		this.max = Math.max(this.max, other.max);
+	}
+
+	/**
+	 * @param value
+	 * @return the index of the bucket of the value
+	 */
+	static int index(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int magnitude = 63 - Long.numberOfLeadingZeros(value);
+		int shift = magnitude - SUB_BUCKET_BITS;
+		return ((shift + 1) << SUB_BUCKET_BITS) + (int) ((value >>> shift) - SUB_BUCKETS);
+	}
+
+	/**
+	 * @param index
+	 * @return the highest value of the bucket
+	 */
+	static long highestValue(int index) {
+		if (index < SUB_BUCKETS) {
+			return index;
+		}
+		int shift = (index >>> SUB_BUCKET_BITS) - 1;
+		long lowest = (long) (SUB_BUCKETS + (index & (SUB_BUCKETS - 1))) << shift;
+		return lowest + (1L << shift) - 1;
+	}
+
+	/**
+	 * @return the number of recorded values
+	 */
+	public long getCount() {
+		return this.count;
+	}
+
+	/**
+	 * @return the mean of the recorded values in nanoseconds, 0 if there is
+	 *         none
+	 */
+	public long getMean() {
+		return this.count == 0 ? 0 : this.sum / this.count;
+	}
+
+	/**
+	 * @return the highest recorded value in nanoseconds
+	 */
+	public long getMax() {
+		return this.max;
+	}
+
+	/**
+	 * @param percentiles
+	 *            the percentiles, in [0, 100] and in increasing order
+	 * @return the values of the percentiles in nanoseconds, each one is the
+	 *         highest value of its bucket (bounded by the maximum)
+	 */
+	public long[] getPercentiles(double... percentiles) {
+		long values[] = new long[percentiles.length];
+		if (this.count == 0) {
+			return values;
+		}
+		long seen = 0;
+		int p = 0;
+		for (int i = 0; i < BUCKETS && p < percentiles.length; i++) {
+			seen += this.counts[i];
+			while (p < percentiles.length && seen > 0
+					&& seen >= Math.ceil(percentiles[p] / 100 * this.count)) {
+				values[p++] = Math.min(highestValue(i), this.max);
+			}
+		}
+		while (p < percentiles.length) {
+			values[p++] = this.max;
+		}
+		return values;
+	}
+
+	/**
+	 * @return the summary of the histogram, as a "LATENCY" line of the log
+	 */
+	public String summary() {
+		long values[] = getPercentiles(50, 90, 99, 99.9, 99.99);
+		return "LATENCY count=" + this.count + " mean_us=" + getMean() / 1000 + " p50_us="
+				+ values[0] / 1000 + " p90_us=" + values[1] / 1000 + " p99_us=" + values[2] / 1000
+				+ " p99.9_us=" + values[3] / 1000 + " p99.99_us=" + values[4] / 1000 + " max_us="
+				+ this.max / 1000;
+	}
+
+	/**
+	 * Write the serialized form of the histogram
+	 * 
+	 * @param out
+	 * @throws IOException
+	 */
+	public void write(DataOutputStream out) throws IOException {
+		int n = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			if (this.counts[i] != 0) {
+				n++;
+			}
+		}
+		out.writeInt(MAGIC);
+		out.writeInt(SUB_BUCKET_BITS);
+		out.writeLong(this.count);
+		out.writeLong(this.sum);
+		out.writeLong(this.max);
+		out.writeInt(n);
+		for (int i = 0; i < BUCKETS; i++) {
+			if (this.counts[i] != 0) {
+				out.writeInt(i);
+				out.writeLong(this.counts[i]);
+			}
+		}
+	}
+
+	/**
+	 * Read a serialized histogram and add its values to this one
+	 * 
+	 * @param in
+	 * @throws IOException
+	 *             if it is not a histogram with the same buckets
+	 */
+	public void read(DataInputStream in) throws IOException {
+		if (in.readInt() != MAGIC || in.readInt() != SUB_BUCKET_BITS) {
+			throw new IOException("Not a latency histogram with " + SUB_BUCKETS
+					+ " sub-buckets");
+		}
+		this.count += in.readLong();
+		this.sum += in.readLong();
+		this.max = Math.max(this.max, in.readLong());
+		for (int n = in.readInt(); n > 0; n--) {
+			int index = in.readInt();
+			this.counts[index] += in.readLong();
+		}
+	}
+
+	/**
+	 * Merge the histograms written by several clients and print the global
+	 * summary
+	 * 
+	 * @param args
+	 *            the histogram files
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.err.println("Usage: java " + LatencyHistogram.class.getName() + " file...");
+			System.exit(1);
+		}
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (String filename : args) {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(
+					new FileInputStream(filename)));
+			try {
+				histogram.read(in);
+			} finally {
+				in.close();
+			}
+		}
+		System.out.println(histogram.summary());
+	}
+}
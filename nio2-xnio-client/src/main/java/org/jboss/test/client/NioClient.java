@@ -0,0 +1,672 @@
+/**
+ * JBoss, Home of Professional Open Source. Copyright 2011, Red Hat, Inc., and
+ * individual
+ * contributors as indicated by the @author tags. See the copyright.txt file in
+ * the distribution
+ * for a full listing of individual contributors.
+ * 
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation; either
+ * version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this
+ * software; if not, write to the Free Software Foundation, Inc., 51 Franklin
+ * St, Fifth Floor,
+ * Boston, MA 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.client;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@code NioClient}
+ * 
+ * The "nio" engine of the client (see {@link ClientOptions#engine}). The
+ * clients are the same as the ones of {@link JioClient}: a keep-alive
+ * connection with its own session, sending a request {@code delay} ms after
+ * the previous response and logging its "WRITE"/"READ" line. But instead of
+ * one thread per client, they are spread over a few selector loops, each one
+ * driving its connections as state machines and scheduling their requests
+ * with a timer queue (in open loop, on the schedule of {@link Arrivals}). A
+ * connection costs a few hundred bytes and a socket, so that a single box can
+ * run hundreds of thousands of them.
+ * 
+ * With {@link ClientOptions#pipeline}, a connection keeps several requests
+ * outstanding, and matches the responses with them in order.
+ * 
+ * Each loop opens its connections itself, with at most
+ * {@link #MAX_CONNECTING} of them being connected at once so that the accept
+ * queue of the server does not overflow.
+ * 
+ * Created on Oct 19, 2026 at 10:14:37 AM
+ */
+public class NioClient {
+
+	/**
+	 * The maximum number of connections being opened by a loop at once
+	 */
+	public static final int				MAX_CONNECTING	= 256;
+	/**
+	 * The number of clients whose session is open, or which failed to open it
+	 */
+	static final AtomicInteger			SETTLED			= new AtomicInteger(0);
+	private static final Random			RAND			= new Random();
+	private static final int			CONNECTING		= 0;
+	private static final int			SESSION			= 1;
+	private static final int			IDLE			= 2;
+	private static final int			WRITING			= 3;
+	private static final int			READING			= 4;
+	private static final int			CLOSED			= 5;
+	private static final Comparator<Connection>	BY_DUE	= new Comparator<Connection>() {
+		@Override
+		public int compare(Connection c1, Connection c2) {
+			return Long.signum(c1.due - c2.due);
+		}
+	};
+
+	private InetSocketAddress			address;
+	private String						localHost;
+	private int							delay;
+	private int							clients;
+	private Loop						loops[];
+	// the time at which the clients were released, 0 until then
+	private volatile long				released;
+
+	/**
+	 * Create a new instance of {@code NioClient}
+	 * 
+	 * @param hostname
+	 * @param port
+	 * @param n
+	 *            the number of clients
+	 * @param nReqClient
+	 *            the number of requests of each client
+	 * @param delay
+	 *            the delay between a response and the next request
+	 * @throws IOException
+	 */
+	public NioClient(String hostname, int port, int n, int nReqClient, int delay)
+			throws IOException {
+		this.address = new InetSocketAddress(hostname, port);
+		this.localHost = Inet4Address.getLocalHost().toString();
+		this.delay = delay;
+		this.clients = n;
+		this.loops = new Loop[Math.min(ClientOptions.loops, n)];
+		for (int i = 0; i < this.loops.length; i++) {
+			this.loops[i] = new Loop(i);
+		}
+		for (int i = 0; i < n; i++) {
+			this.loops[i % this.loops.length].pending.add(new Connection(i, nReqClient));
+		}
+	}
+
+	/**
+	 * Start the loops, which open the connections and their sessions
+	 */
+	public void start() {
+		for (Loop loop : this.loops) {
+			loop.start();
+		}
+	}
+
+	/**
+	 * Let the clients send their requests
+	 */
+	public void release() {
+		this.released = System.nanoTime();
+		for (Loop loop : this.loops) {
+			loop.selector.wakeup();
+		}
+	}
+
+	/**
+	 * Wait for all the clients to be done
+	 * 
+	 * @throws InterruptedException
+	 */
+	public void join() throws InterruptedException {
+		for (Loop loop : this.loops) {
+			loop.join();
+		}
+	}
+
+	/**
+	 * @return the response times of all the clients, once they are done
+	 */
+	public LatencyHistogram getHistogram() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (Loop loop : this.loops) {
+			histogram.add(loop.histogram);
+		}
+		return histogram;
+	}
+
+	/**
+	 * {@code Connection}
+	 * 
+	 * A client and its connection
+	 */
+	private static class Connection {
+		private int				id;
+		private int				max;
+		private int				state	= CONNECTING;
+		private SocketChannel	channel;
+		private SelectionKey	key;
+		private String			sessionId;
+		private ByteBuffer		out;
+		// the time of the next request, see Loop#timers
+		private long			due;
+		// the connection is in Loop#timers
+		private boolean			queued;
+		private long			startTime;
+		// the intended and the actual send times of the outstanding requests,
+		// in order, see ClientOptions#pipeline
+		private long			intended[]	= new long[ClientOptions.pipeline];
+		private long			written[]	= new long[ClientOptions.pipeline];
+		private int				first;
+		private int				inFlight;
+		private long			lastRead;
+		// the bytes of the response
+		private long			bytes;
+		// the schedule of the open loop, null in closed loop
+		private Arrivals		arrivals;
+		// the response being read, when it is framed by its Content-Length
+		private StringBuilder	line	= new StringBuilder();
+		private int				status;
+		private long			contentLength;
+		private long			bodyRemaining;
+		private String			serverTiming;
+		// the validators of the last full response
+		private String			etag;
+		private String			lastModified;
+
+		/**
+		 * Create a new instance of {@code Connection}
+		 * 
+		 * @param id
+		 * @param max
+		 *            the number of requests to send
+		 */
+		Connection(int id, int max) {
+			this.id = id;
+			this.max = max;
+		}
+
+		/**
+		 * A request is sent
+		 * 
+		 * @param intended
+		 * @param timeWrite
+		 */
+		void sent(long intended, long timeWrite) {
+			int i = (this.first + this.inFlight++) % this.written.length;
+			this.intended[i] = intended;
+			this.written[i] = timeWrite;
+		}
+
+		/**
+		 * The response of the oldest outstanding request is read
+		 */
+		void answered() {
+			this.first = (this.first + 1) % this.written.length;
+			this.inFlight--;
+		}
+
+		/**
+		 * Start reading a new response
+		 */
+		void reset() {
+			this.line.setLength(0);
+			this.status = 0;
+			this.contentLength = 0;
+			this.bodyRemaining = -1;
+			this.serverTiming = null;
+			this.bytes = 0;
+		}
+
+		/**
+		 * Parse the bytes of a response framed by its {@code Content-Length}
+		 * header. The body is dropped.
+		 * 
+		 * @param in
+		 * @return {@code true} when the response is complete
+		 */
+		boolean parse(ByteBuffer in) {
+			while (in.hasRemaining()) {
+				if (this.bodyRemaining >= 0) {
+					int n = (int) Math.min(in.remaining(), this.bodyRemaining);
+					in.position(in.position() + n);
+					this.bodyRemaining -= n;
+					if (this.bodyRemaining == 0) {
+						return true;
+					}
+					continue;
+				}
+				byte b = in.get();
+				if (b != '\n') {
+					this.line.append((char) b);
+					continue;
+				}
+				// trimming also drops the NUL marker of the previous response
+				String header = this.line.toString().trim();
+				this.line.setLength(0);
+				if (this.status == 0) {
+					if (header.length() > 0) {
+						this.status = Integer.parseInt(header.split("\\s+")[1]);
+					}
+				} else if (header.length() == 0) {
+					this.bodyRemaining = this.contentLength;
+					if (this.bodyRemaining == 0) {
+						return true;
+					}
+				} else {
+					header(header);
+				}
+			}
+			return false;
+		}
+
+		/**
+		 * @param header
+		 *            a header field of the response
+		 */
+		private void header(String header) {
+			int colon = header.indexOf(':');
+			if (colon <= 0) {
+				return;
+			}
+			String name = header.substring(0, colon).trim();
+			String value = header.substring(colon + 1).trim();
+			if (name.equalsIgnoreCase("content-length")) {
+				this.contentLength = Long.parseLong(value);
+			} else if (name.equalsIgnoreCase("server-timing")) {
+				this.serverTiming = value;
+			} else if (this.status == 200 && name.equalsIgnoreCase("etag")) {
+				this.etag = value;
+			} else if (this.status == 200 && name.equalsIgnoreCase("last-modified")) {
+				this.lastModified = value;
+			}
+		}
+	}
+
+	/**
+	 * {@code Loop}
+	 * 
+	 * A selector thread and its connections
+	 */
+	private class Loop extends Thread {
+		private Selector					selector;
+		// the connections not opened yet
+		private LinkedList<Connection>		pending	= new LinkedList<Connection>();
+		// the connections waiting for the release
+		private List<Connection>			ready	= new ArrayList<Connection>();
+		// the connections waiting to send their next request, by due time
+		private PriorityQueue<Connection>	timers	= new PriorityQueue<Connection>(1024, BY_DUE);
+		private ByteBuffer					buffer	= ByteBuffer
+															.allocateDirect(JioClient.READ_BUFFER_SIZE);
+		private Random						random	= new Random();
+		// the response times of the connections of the loop
+		private LatencyHistogram			histogram	= new LatencyHistogram();
+		// the records of the loop in the event log, null without event log
+		private EventLog.Recorder			events		= JioClient.EVENTS == null ? null
+																: JioClient.EVENTS.newRecorder();
+		private int							connecting;
+		private int							open;
+		private boolean						started;
+
+		/**
+		 * Create a new instance of {@code Loop}
+		 * 
+		 * @param index
+		 * @throws IOException
+		 */
+		Loop(int index) throws IOException {
+			super("nio-client-" + index);
+			this.selector = Selector.open();
+		}
+
+		@Override
+		public void run() {
+			try {
+				while (this.open > 0 || !this.pending.isEmpty()) {
+					connect();
+					if (!this.started && released != 0) {
+						this.started = true;
+						for (Connection c : this.ready) {
+							schedule(c);
+						}
+						this.ready = null;
+					}
+					long timeout = 0;
+					if (!this.timers.isEmpty()) {
+						timeout = Math.max(1, (this.timers.peek().due - System.nanoTime()) / 1000000);
+					}
+					this.selector.select(timeout);
+					Iterator<SelectionKey> keys = this.selector.selectedKeys().iterator();
+					while (keys.hasNext()) {
+						SelectionKey key = keys.next();
+						keys.remove();
+						handle((Connection) key.attachment(), key);
+					}
+					long now = System.nanoTime();
+					while (!this.timers.isEmpty() && this.timers.peek().due - now <= 0) {
+						send(this.timers.poll());
+					}
+				}
+				this.selector.close();
+			} catch (Throwable exp) {
+				exp.printStackTrace();
+			}
+		}
+
+		/**
+		 * Open the pending connections, up to {@link NioClient#MAX_CONNECTING}
+		 * at once
+		 */
+		private void connect() {
+			while (this.connecting < MAX_CONNECTING && !this.pending.isEmpty()) {
+				Connection c = this.pending.removeFirst();
+				this.connecting++;
+				this.open++;
+				try {
+					c.channel = SocketChannel.open();
+					c.channel.configureBlocking(false);
+					c.key = c.channel.register(this.selector, SelectionKey.OP_CONNECT, c);
+					if (c.channel.connect(address)) {
+						connected(c);
+					}
+				} catch (IOException exp) {
+					fail(c, exp);
+				}
+			}
+		}
+
+		/**
+		 * @param c
+		 * @param key
+		 */
+		private void handle(Connection c, SelectionKey key) {
+			try {
+				if (!key.isValid()) {
+					return;
+				}
+				if (key.isConnectable()) {
+					if (c.channel.finishConnect()) {
+						connected(c);
+					}
+					return;
+				}
+				if (key.isWritable()) {
+					write(c);
+				}
+				if (key.isValid() && key.isReadable()) {
+					read(c);
+				}
+			} catch (Exception exp) {
+				fail(c, exp);
+			}
+		}
+
+		/**
+		 * Open the session of the connection
+		 * 
+		 * @param c
+		 * @throws IOException
+		 */
+		private void connected(Connection c) throws IOException {
+			c.state = SESSION;
+			c.out = ByteBuffer.wrap(("POST /session-" + c.id + "-" + localHost + " HTTP/1.1"
+					+ JioClient.CRLF + JioClient.CRLF).getBytes());
+			write(c);
+		}
+
+		/**
+		 * Write the rest of the pending request
+		 * 
+		 * @param c
+		 * @throws IOException
+		 */
+		private void write(Connection c) throws IOException {
+			c.channel.write(c.out);
+			if (c.out.hasRemaining()) {
+				c.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+				return;
+			}
+			c.out = null;
+			c.key.interestOps(SelectionKey.OP_READ);
+			if (c.state == WRITING) {
+				c.state = READING;
+				next(c);
+			}
+		}
+
+		/**
+		 * @param c
+		 * @throws IOException
+		 */
+		private void read(Connection c) throws IOException {
+			this.buffer.clear();
+			int nBytes = c.channel.read(this.buffer);
+			if (nBytes < 0) {
+				throw new EOFException("Connection closed by the server");
+			}
+			this.buffer.flip();
+			if (c.state == SESSION) {
+				session(c);
+			} else if (c.state == WRITING || c.state == READING) {
+				c.bytes += nBytes;
+				if (ClientOptions.validators > 0 || ClientOptions.timing
+						|| ClientOptions.pipeline > 1) {
+					// a 304 has no NUL marker, and the pipelined responses
+					// follow each other, read the framed responses
+					while (c.state != CLOSED && c.parse(this.buffer)) {
+						received(c);
+					}
+				} else if (nBytes >= 1 && this.buffer.get(nBytes - 1) == '\0') {
+					// NUL signals the end of the request
+					received(c);
+				}
+			}
+		}
+
+		/**
+		 * Look for the session id in the response to the session request
+		 * 
+		 * @param c
+		 */
+		private void session(Connection c) {
+			while (this.buffer.hasRemaining()) {
+				byte b = this.buffer.get();
+				if (b != '\n') {
+					c.line.append((char) b);
+					continue;
+				}
+				String response = c.line.toString().trim();
+				c.line.setLength(0);
+				// do this trick for Netty as first line contain HTTP header
+				if (response.startsWith("jSessionId:")) {
+					System.out.println("RECEIVED FROM SERVER : " + response);
+					c.sessionId = response.split("\\s+")[1];
+					c.state = IDLE;
+					c.reset();
+					this.connecting--;
+					SETTLED.incrementAndGet();
+					if (this.started) {
+						schedule(c);
+					} else {
+						this.ready.add(c);
+					}
+					return;
+				}
+			}
+		}
+
+		/**
+		 * Schedule the first request of the connection, as {@link JioClient}
+		 * does after the release, but spreading the clients over the delay
+		 * 
+		 * @param c
+		 */
+		private void schedule(Connection c) {
+			if (c.max <= 0) {
+				close(c);
+				return;
+			}
+			if (ClientOptions.rate > 0) {
+				// in open loop, all the clients follow their schedule from the same start
+				c.arrivals = new Arrivals(ClientOptions.arrivals, ClientOptions.rate / clients,
+						ClientOptions.burstOn, ClientOptions.burstOff,
+						Arrivals.seed(JioClient.SEED, c.id));
+				c.startTime = released + JioClient.DEFAULT_DELAY * 1000000L;
+				c.due = c.startTime + c.arrivals.next();
+			} else {
+				c.startTime = released + (JioClient.DEFAULT_DELAY + RAND.nextInt(delay)) * 1000000L;
+				c.due = c.startTime + delay * 1000000L;
+			}
+			// the first burst of pipelined requests is due at once
+			c.lastRead = c.due - delay * 1000000L;
+			c.queued = true;
+			this.timers.add(c);
+		}
+
+		/**
+		 * Schedule the next request of the connection, if the pipeline has
+		 * room for it. In closed loop, it is due the delay after the last
+		 * response, so that the pipelined requests are sent in bursts.
+		 * 
+		 * @param c
+		 */
+		private void next(Connection c) {
+			if (c.queued || c.out != null || c.max <= 0 || c.inFlight >= ClientOptions.pipeline) {
+				return;
+			}
+			// a late request is sent at once, its latency counts from the intended time
+			c.due = c.arrivals == null ? c.lastRead + delay * 1000000L : c.startTime
+					+ c.arrivals.next();
+			c.queued = true;
+			this.timers.add(c);
+		}
+
+		/**
+		 * Send the next request of the connection
+		 * 
+		 * @param c
+		 */
+		private void send(Connection c) {
+			c.queued = false;
+			if (c.state == CLOSED) {
+				return;
+			}
+			if (c.arrivals == null && c.lastRead + delay * 1000000L - System.nanoTime() > 0) {
+				// a response was read since, the delay counts from it
+				next(c);
+				return;
+			}
+			c.max--;
+			boolean conditional = c.etag != null
+					&& this.random.nextInt(100) < ClientOptions.validators;
+			c.out = ByteBuffer.wrap(JioClient.request(c.sessionId, c.max != 0,
+					conditional ? c.etag : null, c.lastModified).getBytes());
+			c.state = WRITING;
+			long timeWrite = System.nanoTime();
+			// the due time of the request is its intended send time
+			c.sent(c.arrivals == null ? timeWrite : c.due, timeWrite);
+			try {
+				write(c);
+			} catch (IOException exp) {
+				fail(c, exp);
+			}
+		}
+
+		/**
+		 * Log the response of the oldest outstanding request and schedule the
+		 * next request
+		 * 
+		 * @param c
+		 */
+		private void received(Connection c) {
+			long timeRead = System.nanoTime();
+			long intended = c.intended[c.first];
+			long timeWrite = c.written[c.first];
+			c.answered();
+			c.lastRead = timeRead;
+			if (ClientOptions.lines) {
+				System.out.println(JioClient.logLine(c.startTime, intended, timeWrite, timeRead,
+						c.serverTiming));
+			}
+			this.histogram.record(timeRead - intended);
+			if (this.events != null) {
+				// as the blocking engine, the body length of a framed response
+				long bytes = c.bodyRemaining >= 0 ? c.contentLength : c.bytes;
+				this.events.record(c.id, c.status, c.startTime, intended, timeWrite, timeRead,
+						bytes);
+			}
+			JioClient.RESPONSES.incrementAndGet();
+			c.reset();
+			if (c.inFlight == 0) {
+				c.state = IDLE;
+				if (c.max <= 0) {
+					close(c);
+					return;
+				}
+			}
+			next(c);
+		}
+
+		/**
+		 * @param c
+		 * @param exp
+		 */
+		private void fail(Connection c, Exception exp) {
+			exp.printStackTrace();
+			if (c.state == CONNECTING || c.state == SESSION) {
+				this.connecting--;
+				SETTLED.incrementAndGet();
+			}
+			close(c);
+		}
+
+		/**
+		 * @param c
+		 */
+		private void close(Connection c) {
+			if (c.state == CLOSED) {
+				return;
+			}
+			c.state = CLOSED;
+			this.open--;
+			if (c.channel == null) {
+				return;
+			}
+			try {
+				c.channel.close();
+			} catch (IOException ioex) {
+				// NOPE
+			}
+		}
+	}
+}
@@ -0,0 +1,225 @@
+/**
+ * JBoss, Home of Professional Open Source. Copyright 2011, Red Hat, Inc., and
+ * individual
+ * contributors as indicated by the @author tags. See the copyright.txt file in
+ * the distribution
+ * for a full listing of individual contributors.
+ * 
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation; either
+ * version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this
+ * software; if not, write to the Free Software Foundation, Inc., 51 Franklin
+ * St, Fifth Floor,
+ * Boston, MA 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.server.monitor;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * {@code JfrEvents}
+ * 
+ * The Flight Recorder events of the servers, loaded by {@link FlightEvents}
+ * if the JVM has a Flight Recorder. This source root is only compiled by the
+ * "jfr" profile, on a JDK with the {@code jdk.jfr} API, so that the servers
+ * still build on any Java 8. Each event is allocated and checked with
+ * {@link Event#isEnabled()}, which is constant while no recording enables it,
+ * so that the allocation is eliminated by the JIT.
+ * 
+ * Created on Oct 19, 2026 at 9:44:02 PM
+ */
+final class JfrEvents implements FlightEvents.Recorder {
+
+	/**
+	 * Create a new instance of {@code JfrEvents}
+	 */
+	JfrEvents() {
+		super();
+	}
+
+	@Override
+	public boolean isAvailable() {
+		return FlightRecorder.isAvailable();
+	}
+
+	@Override
+	public void accepted(String engine, String mode) {
+		ConnectionAccepted event = new ConnectionAccepted();
+		if (event.isEnabled()) {
+			event.engine = engine;
+			event.mode = mode;
+			event.commit();
+		}
+	}
+
+	@Override
+	public void handshake(String engine, String mode, String sessionId, long nanos) {
+		SessionHandshake event = new SessionHandshake();
+		if (event.isEnabled()) {
+			event.engine = engine;
+			event.mode = mode;
+			event.sessionId = sessionId;
+			event.elapsed = nanos;
+			event.commit();
+		}
+	}
+
+	@Override
+	public void parsed(String engine, String mode, String sessionId, long nanos) {
+		RequestParsed event = new RequestParsed();
+		if (event.isEnabled()) {
+			event.engine = engine;
+			event.mode = mode;
+			event.sessionId = sessionId;
+			event.elapsed = nanos;
+			event.commit();
+		}
+	}
+
+	@Override
+	public void writeStarted(String engine, String mode, String sessionId, long bytes) {
+		ResponseWriteStarted event = new ResponseWriteStarted();
+		if (event.isEnabled()) {
+			event.engine = engine;
+			event.mode = mode;
+			event.sessionId = sessionId;
+			event.bytes = bytes;
+			event.commit();
+		}
+	}
+
+	@Override
+	public void writeCompleted(String engine, String mode, String sessionId, long bytes,
+			long writeNanos, long requestNanos, boolean success) {
+		ResponseWriteCompleted event = new ResponseWriteCompleted();
+		if (event.isEnabled()) {
+			event.engine = engine;
+			event.mode = mode;
+			event.sessionId = sessionId;
+			event.bytes = bytes;
+			event.elapsed = writeNanos;
+			event.request = requestNanos;
+			event.success = success;
+			event.commit();
+		}
+	}
+
+	@Override
+	public void closed(String engine, String mode, String sessionId, long requests, long bytes) {
+		ConnectionClosed event = new ConnectionClosed();
+		if (event.isEnabled()) {
+			event.engine = engine;
+			event.mode = mode;
+			event.sessionId = sessionId;
+			event.requests = requests;
+			event.bytes = bytes;
+			event.commit();
+		}
+	}
+
+	/**
+	 * The fields shared by all the events. The stack traces are left out,
+	 * the events are emitted at known places.
+	 */
+	@Category("JBoss Server")
+	@StackTrace(false)
+	abstract static class ServerEvent extends Event {
+		@Label("Engine")
+		String engine;
+		@Label("Mode")
+		String mode;
+	}
+
+	@Name("org.jboss.server.ConnectionAccepted")
+	@Label("Connection Accepted")
+	static final class ConnectionAccepted extends ServerEvent {
+	}
+
+	@Name("org.jboss.server.SessionHandshake")
+	@Label("Session Handshake")
+	@Description("The session of a connection was initialized")
+	static final class SessionHandshake extends ServerEvent {
+		@Label("Session ID")
+		String sessionId;
+		@Label("Elapsed")
+		@Description("From the accepted connection to the written session response")
+		@Timespan(Timespan.NANOSECONDS)
+		long elapsed;
+	}
+
+	@Name("org.jboss.server.RequestParsed")
+	@Label("Request Parsed")
+	static final class RequestParsed extends ServerEvent {
+		@Label("Session ID")
+		String sessionId;
+		@Label("Elapsed")
+		@Description("From the read request bytes to the parsed request header")
+		@Timespan(Timespan.NANOSECONDS)
+		long elapsed;
+	}
+
+	@Name("org.jboss.server.ResponseWriteStarted")
+	@Label("Response Write Started")
+	static final class ResponseWriteStarted extends ServerEvent {
+		@Label("Session ID")
+		String sessionId;
+		@Label("Bytes")
+		@Description("The bytes queued by the first write of the response, the whole response on the NIO.2 and XNIO engines")
+		@DataAmount
+		long bytes;
+	}
+
+	@Name("org.jboss.server.ResponseWriteCompleted")
+	@Label("Response Write Completed")
+	static final class ResponseWriteCompleted extends ServerEvent {
+		@Label("Session ID")
+		String sessionId;
+		@Label("Bytes")
+		@DataAmount
+		long bytes;
+		@Label("Elapsed")
+		@Description("From the started write to the last bytes written")
+		@Timespan(Timespan.NANOSECONDS)
+		long elapsed;
+		@Label("Request")
+		@Description("From the read request bytes to the last bytes written")
+		@Timespan(Timespan.NANOSECONDS)
+		long request;
+		@Label("Success")
+		@Description("False if the response could not be written")
+		boolean success;
+	}
+
+	@Name("org.jboss.server.ConnectionClosed")
+	@Label("Connection Closed")
+	static final class ConnectionClosed extends ServerEvent {
+		@Label("Session ID")
+		String sessionId;
+		@Label("Requests")
+		@Description("The responses written on the connection")
+		long requests;
+		@Label("Bytes")
+		@Description("The bytes written on the connection")
+		@DataAmount
+		long bytes;
+	}
+}
@@ -30,6 +30,11 @@ import java.lang.management.ManagementFactory;
 import java.net.Inet4Address;
 import java.net.UnknownHostException;
 import org.jboss.logging.Logger;
+import org.jboss.server.monitor.ContentionProfiler;
+import org.jboss.server.monitor.FlightEvents;
+import org.jboss.server.monitor.LoopLagProbe;
+import org.jboss.server.monitor.ResourceSampler;
+import org.jboss.server.monitor.ServerStats;
 
 /**
  * {@code Server}
@@ -104,7 +109,13 @@ public abstract class Server {
                 String PID = ManagementFactory.getRuntimeMXBean().getName().split("@")[0];
                 System.out.println("PID: "+PID);
                 System.out.flush();
-                
+
+		// the server-side measures, see /stats
+		ServerStats.setEngine("netty".equals(args[0]) ? "netty async" : args[0] + " " + args[1]);
+		FlightEvents.setEngine(args[0], "netty".equals(args[0]) ? "async" : args[1]);
+		ResourceSampler.start();
+		LoopLagProbe.start();
+		ContentionProfiler.start();
 		switch (args[0]) {
 			case "nio2":
 				org.jboss.server.nio2.MainServer.run(args[1], addr, port);
@@ -31,6 +31,8 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
+import org.jboss.server.monitor.InstrumentedExecutor;
+
 /**
  * {@code AbstractServer}
  * 
@@ -49,7 +51,9 @@ public abstract class AbstractServer implements Runnable {
         protected Inet4Address addr;
 	protected int port;
 	protected boolean async = false;
-	protected ExecutorService executor = Executors.newFixedThreadPool(512);
+	// the workers of the sync servers and the thread pool of the NIO.2 channel group
+	protected ExecutorService executor = new InstrumentedExecutor("workers",
+			Executors.newFixedThreadPool(512));
 
 	/**
 	 * Create a new instance of {@code Server}
@@ -59,6 +63,30 @@ public abstract class AbstractServer implements Runnable {
 		this.port = port;
 	}
 
+	/**
+	 * Hand a connection of a sync server to a thread of the executor. The
+	 * connection is closed if too many connections are already waiting for a
+	 * thread.
+	 * 
+	 * @param manager
+	 *            the manager of the connection
+	 */
+	protected void dispatch(final ClientManager<?> manager) {
+		if (!AdmissionControl.enqueue()) {
+			manager.close();
+			return;
+		}
+		final long queued = System.nanoTime();
+		this.executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				AdmissionControl.dequeued();
+				manager.timer.queued(System.nanoTime() - queued);
+				manager.run();
+			}
+		});
+	}
+
 	/**
 	 * Generate a random and unique session Id
 	 * 
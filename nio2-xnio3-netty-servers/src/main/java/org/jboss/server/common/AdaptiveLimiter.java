@@ -0,0 +1,257 @@
+/**
+ * JBoss, Home of Professional Open Source. Copyright 2011, Red Hat, Inc., and
+ * individual
+ * contributors as indicated by the @author tags. See the copyright.txt file in
+ * the distribution
+ * for a full listing of individual contributors.
+ * 
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation; either
+ * version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this
+ * software; if not, write to the Free Software Foundation, Inc., 51 Franklin
+ * St, Fifth Floor,
+ * Boston, MA 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.server.common;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@code AdaptiveLimiter}
+ * 
+ * A concurrency limiter adjusting the number of requests allowed in flight
+ * from the measured service time, in the style of TCP Vegas: the service time
+ * without load ({@code rttNoLoad}, the smallest one observed) and the current
+ * one ({@code rtt}, the average over a window) give an estimate of the
+ * requests queued in the server,
+ * 
+ * <pre>
+ * queue = inFlight * (1 - rttNoLoad / rtt)
+ * </pre>
+ * 
+ * The limit grows while the queue is small and shrinks when it gets large, so
+ * that the server settles on the concurrency which maximizes its throughput
+ * without adding latency. The limit is only increased when it is actually
+ * used.
+ * 
+ * {@code rttNoLoad} is probed again every {@link #PROBE_WINDOWS} windows so
+ * that it follows the changes of the load (e.g., of the file size): the limit
+ * is divided by {@link #PROBE_FACTOR} until the requests in flight drain below
+ * it, then the service time measured at that limit replaces
+ * {@code rttNoLoad} and the limit is restored. The server keeps serving most
+ * of its load meanwhile. Taking the service time of a window at the full
+ * limit instead would let the limit grow without bound under overload: at the
+ * reduced limit, the queue of an overloaded server shrinks too, and the new
+ * {@code rttNoLoad} still shows the queue at the full limit.
+ * 
+ * The limit is updated, and logged on a "LIMIT" line, once per window by a
+ * scheduled thread, the request threads only record their samples.
+ * 
+ * Created on Oct 19, 2026 at 6:03:44 PM
+ */
+public class AdaptiveLimiter {
+
+	/**
+	 * The number of windows after which {@code rttNoLoad} is probed again
+	 */
+	public static final int PROBE_WINDOWS = 30;
+	/**
+	 * The factor by which the limit is divided while {@code rttNoLoad} is
+	 * probed
+	 */
+	public static final int PROBE_FACTOR = 2;
+	/**
+	 * The minimum number of samples of a window to update the limit
+	 */
+	public static final int MIN_SAMPLES = 10;
+
+	// the windows a probe may take to collect MIN_SAMPLES
+	private static final int MAX_PROBE_WINDOWS = 5;
+	private static final int RUNNING = 0;
+	private static final int DRAINING = 1;
+	private static final int PROBING = 2;
+
+	private final int minLimit;
+	private final int maxLimit;
+	private volatile int limit;
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final AtomicInteger maxInFlight = new AtomicInteger();
+	private final AtomicLong rejected = new AtomicLong();
+	// the samples of the current window
+	private final AtomicLong sum = new AtomicLong();
+	private final AtomicLong count = new AtomicLong();
+	// only used by the update thread
+	private long rttNoLoad = Long.MAX_VALUE;
+	private int windows;
+	private int state = RUNNING;
+	private int saved;
+	private long probeSum;
+	private long probeCount;
+
+	/**
+	 * Create a new instance of {@code AdaptiveLimiter} and start its updates
+	 * 
+	 * @param initialLimit
+	 * @param minLimit
+	 * @param maxLimit
+	 * @param window
+	 *            the period of the updates, in milliseconds, 0 to update the
+	 *            limit only on the calls to {@link #update()}
+	 */
+	public AdaptiveLimiter(int initialLimit, int minLimit, int maxLimit, long window) {
+		this.minLimit = minLimit;
+		this.maxLimit = maxLimit;
+		this.limit = Math.max(minLimit, Math.min(initialLimit, maxLimit));
+		if (window <= 0) {
+			return;
+		}
+		ScheduledExecutorService updater = Executors
+				.newSingleThreadScheduledExecutor(new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, "adaptive-limiter");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		updater.scheduleAtFixedRate(new Runnable() {
+			@Override
+			public void run() {
+				System.out.println(update());
+			}
+		}, window, window, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Acquire a permit for a new request. An acquired permit must be released
+	 * once with {@link #release(long)}.
+	 * 
+	 * @return {@code true} if the request is admitted
+	 */
+	public boolean tryAcquire() {
+		int n = this.inFlight.incrementAndGet();
+		if (n > this.limit) {
+			this.inFlight.decrementAndGet();
+			this.rejected.incrementAndGet();
+			return false;
+		}
+		int max;
+		while (n > (max = this.maxInFlight.get()) && !this.maxInFlight.compareAndSet(max, n)) {
+			// retry
+		}
+		return true;
+	}
+
+	/**
+	 * Release a permit
+	 * 
+	 * @param rtt
+	 *            the service time of the request, in nanoseconds
+	 */
+	public void release(long rtt) {
+		this.inFlight.decrementAndGet();
+		this.sum.addAndGet(rtt);
+		this.count.incrementAndGet();
+	}
+
+	/**
+	 * Update the limit from the samples of the window which just ended
+	 * 
+	 * @return the "LIMIT" line of the window
+	 */
+	String update() {
+		long n = this.count.getAndSet(0);
+		long total = this.sum.getAndSet(0);
+		int used = this.maxInFlight.getAndSet(this.inFlight.get());
+		long rtt = n > 0 ? Math.max(1, total / n) : 0;
+		int current = this.limit;
+		String probe = "";
+		switch (this.state) {
+		case DRAINING:
+			// the samples are those of the requests admitted before the probe
+			if (this.inFlight.get() <= current) {
+				this.state = PROBING;
+			}
+			probe = " probe=drain";
+			break;
+		case PROBING:
+			this.probeSum += total;
+			this.probeCount += n;
+			probe = " probe=measure";
+			if (this.probeCount < MIN_SAMPLES && ++this.windows < MAX_PROBE_WINDOWS) {
+				break;
+			}
+			if (this.probeCount >= MIN_SAMPLES) {
+				this.rttNoLoad = Math.max(1, this.probeSum / this.probeCount);
+			}
+			this.probeSum = this.probeCount = this.windows = 0;
+			this.limit = this.saved;
+			this.state = RUNNING;
+			break;
+		default:
+			if (n < MIN_SAMPLES) {
+				break;
+			}
+			this.rttNoLoad = Math.min(this.rttNoLoad, rtt);
+			double log = Math.max(1, Math.log10(current));
+			// the requests actually in flight, not the limit, make the queue
+			double queue = Math.ceil(Math.min(used, current) * (1 - (double) this.rttNoLoad / rtt));
+			int next = current;
+			if (queue <= log) {
+				// no queueing, grow fast but only if the limit is used
+				next = used * 2 >= current ? (int) (current + 6 * log) : current;
+			} else if (queue < 3 * log) {
+				next = used * 2 >= current ? (int) (current + log) : current;
+			} else if (queue > 6 * log) {
+				next = (int) (current - log);
+			}
+			this.limit = Math.max(this.minLimit, Math.min(next, this.maxLimit));
+			if (++this.windows >= PROBE_WINDOWS) {
+				this.windows = 0;
+				this.saved = this.limit;
+				this.limit = Math.max(this.minLimit, this.limit / PROBE_FACTOR);
+				this.state = DRAINING;
+			}
+		}
+		return "LIMIT " + System.currentTimeMillis() + " limit=" + this.limit + " inFlight=" + used
+				+ " rttNoLoad=" + (this.rttNoLoad == Long.MAX_VALUE ? 0 : this.rttNoLoad)
+				+ " rtt=" + rtt + " samples=" + n + " rejected=" + this.rejected.get() + probe;
+	}
+
+	/**
+	 * @return the current limit
+	 */
+	public int getLimit() {
+		return this.limit;
+	}
+
+	/**
+	 * @return the number of requests in flight
+	 */
+	public int getInFlight() {
+		return this.inFlight.get();
+	}
+
+	/**
+	 * @return the number of rejected requests
+	 */
+	public long getRejected() {
+		return this.rejected.get();
+	}
+}
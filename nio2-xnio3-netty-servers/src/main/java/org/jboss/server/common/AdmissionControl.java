@@ -0,0 +1,270 @@
+/**
+ * JBoss, Home of Professional Open Source. Copyright 2011, Red Hat, Inc., and
+ * individual
+ * contributors as indicated by the @author tags. See the copyright.txt file in
+ * the distribution
+ * for a full listing of individual contributors.
+ * 
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation; either
+ * version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this
+ * software; if not, write to the Free Software Foundation, Inc., 51 Franklin
+ * St, Fifth Floor,
+ * Boston, MA 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.server.common;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jboss.server.monitor.ServerStats;
+
+/**
+ * {@code AdmissionControl}
+ * 
+ * Bounds the work accepted by the servers, so that past saturation the
+ * latency of the admitted requests stays bounded and the excess is shed
+ * quickly instead of waiting in unbounded queues. Three limits are applied,
+ * each one disabled when set to 0:
+ * <ul>
+ * <li>{@link ServerConfig#MAX_CONNECTIONS}: a connection accepted past it is
+ * closed at once</li>
+ * <li>{@link ServerConfig#MAX_IN_FLIGHT}: a request received past it is
+ * answered with a pre-encoded {@code 503 Service Unavailable}. With
+ * {@link ServerConfig#ADAPTIVE_LIMIT} the in-flight limit is set by an
+ * {@link AdaptiveLimiter} from the measured service time, below this one</li>
+ * <li>{@link ServerConfig#MAX_QUEUED}: a connection of the sync servers which
+ * would wait past it for a thread is closed</li>
+ * </ul>
+ * The counters are reported periodically and at shutdown, together with the
+ * slow clients evicted by {@link WriteGuard}.
+ * 
+ * Created on Oct 19, 2026 at 4:52:30 PM
+ */
+public final class AdmissionControl {
+
+	private static final ByteBuffer SERVICE_UNAVAILABLE = HttpResponses
+			.error("503 Service Unavailable")[0].asReadOnlyBuffer();
+
+	private static final AtomicInteger connections = new AtomicInteger();
+	private static final AtomicInteger inFlight = new AtomicInteger();
+	private static final AtomicInteger queued = new AtomicInteger();
+	private static final AtomicInteger maxQueuedSeen = new AtomicInteger();
+	private static final AtomicLong connectionsRefused = new AtomicLong();
+	private static final AtomicLong requestsShed = new AtomicLong();
+	private static final AtomicLong queuedShed = new AtomicLong();
+	private static final AtomicLong requestsAdmitted = new AtomicLong();
+	private static final AdaptiveLimiter limiter = ServerConfig.ADAPTIVE_LIMIT ? new AdaptiveLimiter(
+			ServerConfig.ADAPTIVE_LIMIT_INITIAL, 1,
+			ServerConfig.MAX_IN_FLIGHT > 0 ? ServerConfig.MAX_IN_FLIGHT : Integer.MAX_VALUE,
+			ServerConfig.ADAPTIVE_LIMIT_WINDOW) : null;
+
+	static {
+		if (ServerConfig.ADMISSION_REPORT_INTERVAL > 0) {
+			ScheduledExecutorService reporter = Executors
+					.newSingleThreadScheduledExecutor(new ThreadFactory() {
+						@Override
+						public Thread newThread(Runnable r) {
+							Thread thread = new Thread(r, "admission-report");
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+			reporter.scheduleAtFixedRate(new Runnable() {
+				@Override
+				public void run() {
+					System.out.println(report());
+				}
+			}, ServerConfig.ADMISSION_REPORT_INTERVAL, ServerConfig.ADMISSION_REPORT_INTERVAL,
+					TimeUnit.MILLISECONDS);
+		}
+		try {
+			Runtime.getRuntime().addShutdownHook(new Thread("admission-report-shutdown") {
+				@Override
+				public void run() {
+					System.out.println(report());
+				}
+			});
+		} catch (IllegalStateException e) {
+			// loaded by the report of the ServerStats at shutdown, before any
+			// connection, there is nothing to report
+		}
+	}
+
+	/**
+	 * Create a new instance of {@code AdmissionControl}
+	 */
+	private AdmissionControl() {
+		super();
+	}
+
+	/**
+	 * Admit a new connection. An admitted connection must be released once
+	 * with {@link #releaseConnection()} when it is closed.
+	 * 
+	 * @return {@code true} if the connection is admitted, {@code false} if it
+	 *         must be closed
+	 */
+	public static boolean admitConnection() {
+		int n = connections.incrementAndGet();
+		if (ServerConfig.MAX_CONNECTIONS > 0 && n > ServerConfig.MAX_CONNECTIONS) {
+			connections.decrementAndGet();
+			connectionsRefused.incrementAndGet();
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Release an admitted connection
+	 */
+	public static void releaseConnection() {
+		connections.decrementAndGet();
+	}
+
+	/**
+	 * Admit a new request. An admitted request must be completed once with
+	 * {@link #completeRequest(long)} when its response is written.
+	 * 
+	 * @return the admission time ({@code System.nanoTime()}) or -1 if the
+	 *         request must be answered with {@link #serviceUnavailable()}
+	 */
+	public static long admitRequest() {
+		int n = inFlight.incrementAndGet();
+		if ((ServerConfig.MAX_IN_FLIGHT > 0 && n > ServerConfig.MAX_IN_FLIGHT)
+				|| (limiter != null && !limiter.tryAcquire())) {
+			inFlight.decrementAndGet();
+			requestsShed.incrementAndGet();
+			ServerStats.addError();
+			return -1;
+		}
+		requestsAdmitted.incrementAndGet();
+		return System.nanoTime();
+	}
+
+	/**
+	 * Complete an admitted request
+	 * 
+	 * @param start
+	 *            the admission time returned by {@link #admitRequest()}
+	 */
+	public static void completeRequest(long start) {
+		if (limiter != null) {
+			limiter.release(System.nanoTime() - start);
+		}
+		inFlight.decrementAndGet();
+	}
+
+	/**
+	 * Queue a connection waiting for a thread of a sync server. The thread
+	 * must call {@link #dequeued()} before serving it.
+	 * 
+	 * @return {@code true} if the connection is queued, {@code false} if it
+	 *         must be closed
+	 */
+	public static boolean enqueue() {
+		int n = queued.incrementAndGet();
+		if (ServerConfig.MAX_QUEUED > 0 && n > ServerConfig.MAX_QUEUED) {
+			queued.decrementAndGet();
+			queuedShed.incrementAndGet();
+			return false;
+		}
+		int max;
+		while (n > (max = maxQueuedSeen.get()) && !maxQueuedSeen.compareAndSet(max, n)) {
+			// retry
+		}
+		return true;
+	}
+
+	/**
+	 * A queued connection got its thread
+	 */
+	public static void dequeued() {
+		queued.decrementAndGet();
+	}
+
+	/**
+	 * @return the pre-encoded {@code 503 Service Unavailable} response, its
+	 *         body ends with the NUL marker
+	 */
+	public static ByteBuffer[] serviceUnavailable() {
+		return new ByteBuffer[] { SERVICE_UNAVAILABLE.duplicate() };
+	}
+
+	/**
+	 * @return the number of open connections
+	 */
+	public static int getConnections() {
+		return connections.get();
+	}
+
+	/**
+	 * @return the number of requests being served
+	 */
+	public static int getInFlight() {
+		return inFlight.get();
+	}
+
+	/**
+	 * @return the number of connections waiting for a thread
+	 */
+	public static int getQueued() {
+		return queued.get();
+	}
+
+	/**
+	 * @return the current in-flight limit, 0 if there is none
+	 */
+	public static int getInFlightLimit() {
+		return limiter != null ? limiter.getLimit() : ServerConfig.MAX_IN_FLIGHT;
+	}
+
+	/**
+	 * @return the number of connections closed by {@link #admitConnection()}
+	 */
+	public static long getConnectionsRefused() {
+		return connectionsRefused.get();
+	}
+
+	/**
+	 * @return the number of requests answered with a 503
+	 */
+	public static long getRequestsShed() {
+		return requestsShed.get();
+	}
+
+	/**
+	 * @return the number of connections closed by {@link #enqueue()}
+	 */
+	public static long getQueuedShed() {
+		return queuedShed.get();
+	}
+
+	/**
+	 * @return a one line report of the counters
+	 */
+	public static String report() {
+		return "ADMISSION " + System.currentTimeMillis() + " connections=" + connections.get()
+				+ " inFlight=" + inFlight.get() + " limit=" + getInFlightLimit() + " queued=" + queued.get() + " maxQueued="
+				+ maxQueuedSeen.get() + " admitted=" + requestsAdmitted.get() + " refused="
+				+ connectionsRefused.get() + " shed=" + requestsShed.get() + " queueShed="
+				+ queuedShed.get() + " slowEvicted=" + WriteGuard.getSlowEvictions()
+				+ " overflowEvicted=" + WriteGuard.getOverflowEvictions();
+	}
+}
@@ -0,0 +1,317 @@
+/**
+ * JBoss, Home of Professional Open Source. Copyright 2011, Red Hat, Inc., and
+ * individual
+ * contributors as indicated by the @author tags. See the copyright.txt file in
+ * the distribution
+ * for a full listing of individual contributors.
+ * 
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation; either
+ * version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this
+ * software; if not, write to the Free Software Foundation, Inc., 51 Franklin
+ * St, Fifth Floor,
+ * Boston, MA 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.server.common;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * {@code AsyncLogger}
+ * 
+ * A logging facade for the hot paths of the servers. The calling thread only
+ * checks the level, which is a constant, and puts the event in a lock-free
+ * ring buffer; the message is formatted and printed by a background thread.
+ * When the buffer is full the events are dropped, and counted, rather than
+ * blocking the caller.
+ * 
+ * The DEBUG and TRACE events, i.e., the per-request ones, are sampled: only
+ * one out of {@link ServerConfig#LOG_SAMPLING} is logged. They must be
+ * guarded so that nothing is computed when they are not logged:
+ * 
+ * <pre>
+ * if (log.shouldDebug()) {
+ * 	log.debug(&quot;Requested filename: %s&quot;, path);
+ * }
+ * </pre>
+ * 
+ * Created on Oct 19, 2026 at 7:48:20 PM
+ */
+public final class AsyncLogger {
+
+	/**
+	 * {@code Level}
+	 */
+	public enum Level {
+		TRACE, DEBUG, INFO, WARN, ERROR, OFF
+	}
+
+	private static final Level LEVEL = level(ServerConfig.LOG_LEVEL);
+	private static final boolean TRACE_ENABLED = LEVEL.compareTo(Level.TRACE) <= 0;
+	private static final boolean DEBUG_ENABLED = LEVEL.compareTo(Level.DEBUG) <= 0;
+	private static final int SAMPLING = Math.max(1, ServerConfig.LOG_SAMPLING);
+	private static final int CAPACITY = Integer.highestOneBit(Math.max(2,
+			ServerConfig.LOG_BUFFER_SIZE - 1)) << 1;
+	private static final int MASK = CAPACITY - 1;
+
+	private static final AtomicReferenceArray<Event> ring = new AtomicReferenceArray<Event>(CAPACITY);
+	// the next slot claimed by a producer
+	private static final AtomicLong head = new AtomicLong();
+	// the next slot read by the drainer, written by the drainer only
+	private static volatile long tail;
+	private static final AtomicLong dropped = new AtomicLong();
+
+	static {
+		if (LEVEL != Level.OFF) {
+			Thread drainer = new Thread("async-logger") {
+				@Override
+				public void run() {
+					long reported = 0;
+					for (;;) {
+						if (drain() == 0) {
+							LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(5));
+						}
+						long n = dropped.get();
+						if (n != reported) {
+							System.out.println("WARN: the logger dropped " + (n - reported)
+									+ " events, the buffer is full");
+							reported = n;
+						}
+					}
+				}
+			};
+			drainer.setDaemon(true);
+			drainer.start();
+			Runtime.getRuntime().addShutdownHook(new Thread("async-logger-shutdown") {
+				@Override
+				public void run() {
+					drain();
+				}
+			});
+		}
+	}
+
+	private final String name;
+
+	/**
+	 * Create a new instance of {@code AsyncLogger}
+	 * 
+	 * @param name
+	 */
+	private AsyncLogger(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * @param clazz
+	 * @return a logger named after the simple name of the class
+	 */
+	public static AsyncLogger getLogger(Class<?> clazz) {
+		return new AsyncLogger(clazz.getSimpleName());
+	}
+
+	/**
+	 * @param value
+	 * @return the level named by the value, INFO if it is unknown
+	 */
+	private static Level level(String value) {
+		try {
+			return Level.valueOf(value.trim().toUpperCase(Locale.ENGLISH));
+		} catch (IllegalArgumentException e) {
+			System.err.println("ERROR: invalid log level \"" + value + "\", using INFO");
+			return Level.INFO;
+		}
+	}
+
+	/**
+	 * @return {@code true} if the level is enabled and the event is sampled
+	 */
+	private static boolean sampled() {
+		return SAMPLING == 1 || ThreadLocalRandom.current().nextInt(SAMPLING) == 0;
+	}
+
+	/**
+	 * @return {@code true} if this TRACE event must be logged, i.e., TRACE is
+	 *         enabled and the event is sampled
+	 */
+	public boolean shouldTrace() {
+		return TRACE_ENABLED && sampled();
+	}
+
+	/**
+	 * @return {@code true} if this DEBUG event must be logged, i.e., DEBUG is
+	 *         enabled and the event is sampled
+	 */
+	public boolean shouldDebug() {
+		return DEBUG_ENABLED && sampled();
+	}
+
+	/**
+	 * @param level
+	 * @return {@code true} if the level is enabled
+	 */
+	public boolean isEnabled(Level level) {
+		return level != Level.OFF && LEVEL.compareTo(level) <= 0;
+	}
+
+	/**
+	 * Log a TRACE event, guarded by {@link #shouldTrace()}
+	 * 
+	 * @param format
+	 *            the message, a {@link String#format(String, Object...)}
+	 *            format if there are arguments
+	 * @param args
+	 */
+	public void trace(String format, Object... args) {
+		log(Level.TRACE, format, args);
+	}
+
+	/**
+	 * Log a DEBUG event, guarded by {@link #shouldDebug()}
+	 * 
+	 * @param format
+	 * @param args
+	 */
+	public void debug(String format, Object... args) {
+		log(Level.DEBUG, format, args);
+	}
+
+	/**
+	 * @param format
+	 * @param args
+	 */
+	public void info(String format, Object... args) {
+		log(Level.INFO, format, args);
+	}
+
+	/**
+	 * @param format
+	 * @param args
+	 */
+	public void warn(String format, Object... args) {
+		log(Level.WARN, format, args);
+	}
+
+	/**
+	 * @param format
+	 * @param args
+	 */
+	public void error(String format, Object... args) {
+		log(Level.ERROR, format, args);
+	}
+
+	/**
+	 * Put the event in the ring buffer, or drop it if the buffer is full
+	 * 
+	 * @param level
+	 * @param format
+	 * @param args
+	 */
+	public void log(Level level, String format, Object... args) {
+		if (!isEnabled(level)) {
+			return;
+		}
+		Event event = new Event(System.currentTimeMillis(), level, this.name, Thread
+				.currentThread().getName(), format, args);
+		long h;
+		do {
+			h = head.get();
+			if (h - tail >= CAPACITY) {
+				dropped.incrementAndGet();
+				return;
+			}
+		} while (!head.compareAndSet(h, h + 1));
+		ring.lazySet((int) h & MASK, event);
+	}
+
+	/**
+	 * Print the published events, in order. Only called by the drainer thread
+	 * and, once it is stopped, by the shutdown hook.
+	 * 
+	 * @return the number of events printed
+	 */
+	private static synchronized int drain() {
+		StringBuilder sb = null;
+		SimpleDateFormat format = null;
+		int n = 0;
+		long t = tail;
+		Event event;
+		while ((event = ring.get((int) t & MASK)) != null) {
+			ring.lazySet((int) t & MASK, null);
+			tail = ++t;
+			if (sb == null) {
+				sb = new StringBuilder(256);
+				format = new SimpleDateFormat("HH:mm:ss.SSS", Locale.ENGLISH);
+			}
+			event.appendTo(sb, format);
+			n++;
+		}
+		if (sb != null) {
+			System.out.print(sb);
+			System.out.flush();
+		}
+		return n;
+	}
+
+	/**
+	 * @return the number of events dropped because the buffer was full
+	 */
+	public static long getDropped() {
+		return dropped.get();
+	}
+
+	/**
+	 * {@code Event}
+	 * 
+	 * A logged event, formatted by the drainer thread
+	 */
+	private static final class Event {
+
+		private final long time;
+		private final Level level;
+		private final String logger;
+		private final String thread;
+		private final String format;
+		private final Object[] args;
+
+		Event(long time, Level level, String logger, String thread, String format, Object[] args) {
+			this.time = time;
+			this.level = level;
+			this.logger = logger;
+			this.thread = thread;
+			this.format = format;
+			this.args = args;
+		}
+
+		void appendTo(StringBuilder sb, SimpleDateFormat dateFormat) {
+			String message;
+			try {
+				message = this.args == null || this.args.length == 0 ? this.format : String
+						.format(this.format, this.args);
+			} catch (RuntimeException e) {
+				message = this.format + " (bad format: " + e + ")";
+			}
+			sb.append(dateFormat.format(new Date(this.time))).append(' ').append(this.level)
+					.append(" [").append(this.thread).append("] ").append(this.logger)
+					.append(": ").append(message).append('\n');
+		}
+	}
+}
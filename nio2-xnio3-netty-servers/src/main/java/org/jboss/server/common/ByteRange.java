@@ -0,0 +1,153 @@
+/**
+ * JBoss, Home of Professional Open Source. Copyright 2011, Red Hat, Inc., and
+ * individual
+ * contributors as indicated by the @author tags. See the copyright.txt file in
+ * the distribution
+ * for a full listing of individual contributors.
+ * 
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation; either
+ * version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this
+ * software; if not, write to the Free Software Foundation, Inc., 51 Franklin
+ * St, Fifth Floor,
+ * Boston, MA 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.server.common;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * {@code ByteRange}
+ * 
+ * A satisfiable byte range of a {@code Range} request header, as described in
+ * <a href="http://tools.ietf.org/html/rfc2616#section-14.35">RFC 2616</a>.
+ * 
+ * Created on Oct 19, 2026 at 10:02:47 AM
+ */
+public final class ByteRange {
+
+	/**
+	 * The maximum number of ranges served in one response. Requests asking for
+	 * more ranges get the whole content.
+	 */
+	public static final int MAX_RANGES = 16;
+
+	/**
+	 * Returned by {@link #parse(String, long)} when the header is valid but
+	 * none of its ranges can be satisfied.
+	 */
+	public static final List<ByteRange> UNSATISFIABLE = Collections.emptyList();
+
+	private final long first;
+	private final long last;
+
+	/**
+	 * Create a new instance of {@code ByteRange}
+	 * 
+	 * @param first
+	 * @param last
+	 */
+	public ByteRange(long first, long last) {
+		this.first = first;
+		this.last = last;
+	}
+
+	/**
+	 * Parse the value of a {@code Range} header
+	 * 
+	 * @param value
+	 *            the header value, e.g., "bytes=0-499,1000-"
+	 * @param size
+	 *            the size of the content
+	 * @return the list of satisfiable ranges, {@link #UNSATISFIABLE} if there is
+	 *         none, or {@code null} if the header has to be ignored
+	 */
+	public static List<ByteRange> parse(String value, long size) {
+		if (value == null || !value.startsWith("bytes=")) {
+			return null;
+		}
+		String specs[] = value.substring("bytes=".length()).split(",");
+		if (specs.length > MAX_RANGES) {
+			return null;
+		}
+
+		List<ByteRange> ranges = new ArrayList<ByteRange>(specs.length);
+		try {
+			for (String spec : specs) {
+				spec = spec.trim();
+				int dash = spec.indexOf('-');
+				if (dash < 0) {
+					return null;
+				}
+				long first, last;
+				if (dash == 0) {
+					// suffix range: the last N bytes
+					long n = Long.parseLong(spec.substring(1));
+					if (n <= 0) {
+						continue;
+					}
+					first = Math.max(0, size - n);
+					last = size - 1;
+				} else {
+					first = Long.parseLong(spec.substring(0, dash).trim());
+					String tail = spec.substring(dash + 1).trim();
+					last = tail.isEmpty() ? size - 1 : Math.min(Long.parseLong(tail), size - 1);
+					if (!tail.isEmpty() && Long.parseLong(tail) < first) {
+						// syntactically invalid, ignore the whole header
+						return null;
+					}
+				}
+				if (first < size && first <= last) {
+					ranges.add(new ByteRange(first, last));
+				}
+			}
+		} catch (NumberFormatException e) {
+			return null;
+		}
+
+		return ranges.isEmpty() ? UNSATISFIABLE : ranges;
+	}
+
+	/**
+	 * @return the offset of the first byte
+	 */
+	public long getFirst() {
+		return this.first;
+	}
+
+	/**
+	 * @return the offset of the last byte (inclusive)
+	 */
+	public long getLast() {
+		return this.last;
+	}
+
+	/**
+	 * @return the number of bytes of the range
+	 */
+	public long getLength() {
+		return this.last - this.first + 1;
+	}
+
+	/**
+	 * @param size
+	 *            the size of the content
+	 * @return the value of the {@code Content-Range} header for this range
+	 */
+	public String toContentRange(long size) {
+		return "bytes " + this.first + "-" + this.last + "/" + size;
+	}
+}
@@ -0,0 +1,302 @@
+/**
+ * JBoss, Home of Professional Open Source. Copyright 2011, Red Hat, Inc., and
+ * individual
+ * contributors as indicated by the @author tags. See the copyright.txt file in
+ * the distribution
+ * for a full listing of individual contributors.
+ * 
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation; either
+ * version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this
+ * software; if not, write to the Free Software Foundation, Inc., 51 Franklin
+ * St, Fifth Floor,
+ * Boston, MA 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.server.common;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@code CachedFile}
+ * 
+ * An immutable, in-memory copy of a file served by the servers. The content is
+ * kept in read-only direct buffers of {@code WRITE_BUFFER_SIZE} bytes and is
+ * followed by the NUL marker which the clients use to detect the end of the
+ * response. Callers never touch the buffers directly, they get duplicates or
+ * slices so that several connections may write the same content concurrently
+ * without copying it.
+ * 
+ * The compressed variants of the file (gzip, deflate) are {@code CachedFile}s
+ * too. They are built in the background by the {@link FileLoader} and attached
+ * to the identity file, which selects one of them according to the
+ * {@code Accept-Encoding} of the request.
+ * 
+ * Created on Oct 19, 2026 at 9:12:31 AM
+ */
+public final class CachedFile {
+
+	private final String path;
+	private final long size;
+	private final long lastModified;
+	private final int chunkSize;
+	private final ByteBuffer data[];
+	private final String encoding;
+	private final Map<String, CachedFile> variants = new ConcurrentHashMap<String, CachedFile>();
+	private final String etag;
+	private final String lastModifiedDate;
+	private final ByteBuffer header;
+	private final ByteBuffer notModified;
+
+	/**
+	 * Create a new instance of {@code CachedFile}
+	 * 
+	 * @param path
+	 *            the path of the file
+	 * @param size
+	 *            the size of the file content (without the NUL marker)
+	 * @param lastModified
+	 *            the last modification time of the file
+	 * @param chunkSize
+	 *            the size of every buffer, but the last one
+	 * @param data
+	 *            the file content followed by the NUL marker
+	 * @param hash
+	 *            the 64-bit hash of the content, used as strong entity tag
+	 * @param encoding
+	 *            the content coding of the data, {@code null} for identity
+	 */
+	CachedFile(String path, long size, long lastModified, int chunkSize, ByteBuffer[] data,
+			long hash, String encoding) {
+		this.path = path;
+		this.size = size;
+		this.lastModified = lastModified;
+		this.chunkSize = chunkSize;
+		this.data = data;
+		this.encoding = encoding;
+		this.etag = "\"" + Long.toHexString(hash) + "\"";
+		this.lastModifiedDate = HttpResponses.formatDate(lastModified);
+		this.header = HttpResponses.okHeader(getLength(), this.etag, this.lastModifiedDate,
+				encoding);
+		this.notModified = HttpResponses.notModifiedHeader(this.etag, this.lastModifiedDate);
+	}
+
+	/**
+	 * Select the variant to send for the {@code Accept-Encoding} of a request.
+	 * The coding with the highest quality wins, the first listed one on a tie.
+	 * 
+	 * @param acceptEncoding
+	 *            the value of the {@code Accept-Encoding} header or {@code null}
+	 * @return the selected variant, this file if none is acceptable
+	 */
+	public CachedFile select(String acceptEncoding) {
+		if (acceptEncoding == null || this.variants.isEmpty()) {
+			return this;
+		}
+		CachedFile best = this;
+		float bestQuality = 0;
+		for (String coding : acceptEncoding.split(",")) {
+			float quality = 1;
+			int semicolon = coding.indexOf(';');
+			if (semicolon >= 0) {
+				int q = coding.indexOf("q=", semicolon);
+				if (q >= 0) {
+					try {
+						quality = Float.parseFloat(coding.substring(q + 2).trim());
+					} catch (NumberFormatException e) {
+						quality = 0;
+					}
+				}
+				coding = coding.substring(0, semicolon);
+			}
+			coding = coding.trim().toLowerCase();
+			CachedFile variant = this.variants.get(coding.equals("*") ? "gzip" : coding);
+			if (variant != null && quality > bestQuality) {
+				best = variant;
+				bestQuality = quality;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Attach a compressed variant to this file
+	 * 
+	 * @param variant
+	 */
+	void addVariant(CachedFile variant) {
+		this.variants.put(variant.getEncoding(), variant);
+	}
+
+	/**
+	 * @return the variants attached so far, keyed by content coding
+	 */
+	public Map<String, CachedFile> getVariants() {
+		return this.variants;
+	}
+
+	/**
+	 * @return the number of bytes of direct memory held by the content
+	 */
+	public long getMemory() {
+		long memory = 0;
+		for (ByteBuffer buffer : this.data) {
+			memory += buffer.capacity();
+		}
+		return memory;
+	}
+	/**
+	 * @return a new array of buffers, positioned at zero, holding the whole
+	 *         content and the NUL marker
+	 */
+	public ByteBuffer[] body() {
+		ByteBuffer buffers[] = new ByteBuffer[data.length];
+		for (int i = 0; i < data.length; i++) {
+			buffers[i] = data[i].duplicate();
+		}
+		return buffers;
+	}
+
+	/**
+	 * @return a duplicate of the pre-encoded {@code 200 OK} response header
+	 */
+	public ByteBuffer header() {
+		return this.header.duplicate();
+	}
+
+	/**
+	 * @return a duplicate of the pre-encoded {@code 304 Not Modified} response
+	 */
+	public ByteBuffer notModified() {
+		return this.notModified.duplicate();
+	}
+
+	/**
+	 * Check the validators of a conditional request against the file. As
+	 * required by RFC 2616, {@code If-Modified-Since} is ignored when
+	 * {@code If-None-Match} is present.
+	 * 
+	 * @param ifNoneMatch
+	 *            the value of the {@code If-None-Match} header or {@code null}
+	 * @param ifModifiedSince
+	 *            the value of the {@code If-Modified-Since} header or
+	 *            {@code null}
+	 * @return {@code true} if the client copy is up to date
+	 */
+	public boolean isNotModified(String ifNoneMatch, String ifModifiedSince) {
+		if (ifNoneMatch != null) {
+			if (ifNoneMatch.equals(this.etag) || ifNoneMatch.equals("*")) {
+				return true;
+			}
+			for (String tag : ifNoneMatch.split(",")) {
+				tag = tag.trim();
+				if (tag.startsWith("W/")) {
+					tag = tag.substring(2);
+				}
+				if (tag.equals(this.etag)) {
+					return true;
+				}
+			}
+			return false;
+		}
+		if (ifModifiedSince != null) {
+			if (ifModifiedSince.equals(this.lastModifiedDate)) {
+				return true;
+			}
+			long since = HttpResponses.parseDate(ifModifiedSince);
+			// the dates sent to the clients have no milliseconds
+			return since >= 0 && this.lastModified / 1000 <= since / 1000;
+		}
+		return false;
+	}
+
+	/**
+	 * Add to the list the slices of the cached buffers covering the bytes
+	 * between {@code first} and {@code last} (both inclusive). No data is
+	 * copied.
+	 * 
+	 * @param first
+	 *            the offset of the first byte
+	 * @param last
+	 *            the offset of the last byte
+	 * @param out
+	 *            the list to which the slices are added
+	 */
+	public void slice(long first, long last, List<ByteBuffer> out) {
+		long offset = first;
+		while (offset <= last) {
+			int index = (int) (offset / chunkSize);
+			int start = (int) (offset % chunkSize);
+			ByteBuffer chunk = data[index].duplicate();
+			int end = (int) Math.min(chunk.limit(), start + (last - offset) + 1);
+			chunk.limit(end).position(start);
+			out.add(chunk.slice());
+			offset += end - start;
+		}
+	}
+
+	/**
+	 * @return the path of the file
+	 */
+	public String getPath() {
+		return this.path;
+	}
+
+	/**
+	 * @return the size of the file content, i.e., the size of the
+	 *         representation addressed by byte ranges
+	 */
+	public long getSize() {
+		return this.size;
+	}
+
+	/**
+	 * @return the number of bytes of a full response body, i.e., the content
+	 *         followed by the NUL marker
+	 */
+	public long getLength() {
+		return this.size + 1;
+	}
+
+	/**
+	 * @return the content coding of the data, {@code null} for identity
+	 */
+	public String getEncoding() {
+		return this.encoding;
+	}
+
+	/**
+	 * @return the strong entity tag of the file, with its quotes
+	 */
+	public String getETag() {
+		return this.etag;
+	}
+
+	/**
+	 * @return the last modification time of the file, formatted as an HTTP
+	 *         date
+	 */
+	public String getLastModifiedDate() {
+		return this.lastModifiedDate;
+	}
+
+	/**
+	 * @return the last modification time of the file
+	 */
+	public long getLastModified() {
+		return this.lastModified;
+	}
+}
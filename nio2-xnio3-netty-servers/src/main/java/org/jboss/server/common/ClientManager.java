@@ -29,7 +29,9 @@ package org.jboss.server.common;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.Channel;
-import org.jboss.server.nio2.common.Nio2Utils;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.jboss.server.monitor.RequestTimer;
 
 /**
  * {@code ClientManager}
@@ -41,36 +43,35 @@ import org.jboss.server.nio2.common.Nio2Utils;
 public abstract class ClientManager<T extends Channel> implements Runnable {
 
 	protected String sessionId;
-	protected long fileLength;
 	protected ByteBuffer readBuffer;
-	protected ByteBuffer writeBuffers[];
-        protected ByteBuffer headerBuffer;
 	protected T channel;
-	protected boolean intialized;
+	// closes the channel when the client stops reading
+	protected final WriteGuard guard;
+	// times the requests, the subclasses report the reads and the writes
+	protected final RequestTimer timer = new RequestTimer();
+	// splits the bytes read into requests, a client may pipeline them
+	protected final RequestFramer framer = new RequestFramer();
+	private final AtomicBoolean closed = new AtomicBoolean();
 
 	/**
 	 * Create a new instance of {@code ClientManager}
 	 */
 	public ClientManager(T channel) {
 		this.channel = channel;
+		this.guard = new WriteGuard(channel);
                 this.readBuffer = ByteBuffer.allocateDirect(512);
 	}
 
 	/**
-	 * Initialize the client manager
-	 */
-	public void init(String filename) {
-                // here read the data into buffer
-		this.writeBuffers = FileLoader.cloneData(filename);
-		this.fileLength = FileLoader.getFileLength();
-                initHeaderBuffer();
-		this.intialized = true;
-	}
-
-	/**
-	 * Close the channel
+	 * Close the channel and release the connection, only the first call has
+	 * an effect
 	 */
 	public void close() {
+		if (!this.closed.compareAndSet(false, true)) {
+			return;
+		}
+		AdmissionControl.releaseConnection();
+		this.timer.closed();
 		try {
 			this.channel.close();
 		} catch (IOException e) {
@@ -89,36 +90,38 @@ public abstract class ClientManager<T extends Channel> implements Runnable {
 		}
 	}
 
-        /**
-	 * Initialize the buffer containing the HTTP response header
-	 * 
-	 */
-        protected void initHeaderBuffer() {
-            StringBuffer tmp = new StringBuffer();
-            tmp.append("HTTP/1.1 200 OK\n");
-            // this is important as based on the content-length the client knows how much to read
-            tmp.append("Content-Length: "+this.fileLength+"\n");
-            // an empty line separes the header to the content
-            tmp.append("Content-Type: application/octet-stream\n");
-            tmp.append(Nio2Utils.CRLF);
-            this.headerBuffer = ByteBuffer.allocate(tmp.toString().getBytes().length);
-            this.headerBuffer.put(tmp.toString().getBytes());
-        }
-        
 	/**
 	 * 
 	 * @param channel
+	 * @param request
+	 *            the parsed request header
 	 * @throws Exception
 	 *             void
 	 */
-	protected void writeResponse(T channel) throws Exception {
+	protected void writeResponse(T channel, HttpRequestHeader request) throws Exception {
+		long start = AdmissionControl.admitRequest();
 		try {
-                        // Write the HTTP header
-                        write(channel, headerBuffer);
-			// Write the file content to the channel
-			write(channel, writeBuffers, fileLength);
+			// on the fast reject path nothing is looked up
+			ByteBuffer buffers[] = start < 0 ? AdmissionControl.serviceUnavailable()
+					: HttpResponses.respond(request, this.timer);
+			long total = HttpResponses.remaining(buffers);
+			// Write the header and the content to the channel, the written
+			// bytes are reported to the guard
+			if (this.guard.queued(total)) {
+				this.timer.writing(total);
+				write(channel, buffers, total);
+				this.timer.handled();
+				this.timer.completed();
+			} else {
+				this.timer.failed();
+			}
 		} catch (Exception exp) {
+			this.timer.failed();
 			exp.printStackTrace();
+		} finally {
+			if (start >= 0) {
+				AdmissionControl.completeRequest(start);
+			}
 		}
 	}
 
@@ -158,6 +161,7 @@ public abstract class ClientManager<T extends Channel> implements Runnable {
 	 */
 	public void setSessionId(String sessionId) {
 		this.sessionId = sessionId;
+		this.timer.setSessionId(sessionId);
 	}
 
 }
@@ -0,0 +1,274 @@
+/**
+ * JBoss, Home of Professional Open Source. Copyright 2011, Red Hat, Inc., and
+ * individual
+ * contributors as indicated by the @author tags. See the copyright.txt file in
+ * the distribution
+ * for a full listing of individual contributors.
+ * 
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation; either
+ * version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this
+ * software; if not, write to the Free Software Foundation, Inc., 51 Franklin
+ * St, Fifth Floor,
+ * Boston, MA 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.server.common;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@code FileChannelCache}
+ * 
+ * A cache of open, read-only {@code FileChannel}s used by the zero-copy write
+ * paths, so that a response costs a single {@code sendfile} instead of an
+ * {@code open}, a {@code sendfile} and a {@code close}. The channels are
+ * reference counted: a channel is only closed once it is released by all the
+ * responses using it and it has been idle for
+ * {@link ServerConfig#FILE_CHANNEL_IDLE_TIMEOUT} milliseconds, or when the
+ * number of open channels exceeds {@link ServerConfig#MAX_OPEN_FILES}. When all
+ * the cached channels are in use, an uncached one is opened and closed on
+ * release.
+ * 
+ * The users must only use positional operations (e.g.,
+ * {@code transferTo(position, count, target)}) since the channels are shared.
+ * 
+ * Created on Oct 19, 2026 at 2:11:20 PM
+ */
+public final class FileChannelCache {
+
+	private static final ConcurrentMap<String, Handle> channels = new ConcurrentHashMap<String, Handle>();
+	private static final AtomicInteger open = new AtomicInteger();
+	private static final ScheduledExecutorService cleaner = Executors
+			.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "file-channel-cleaner");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+
+	static {
+		long period = Math.max(ServerConfig.FILE_CHANNEL_IDLE_TIMEOUT / 2, 10);
+		cleaner.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				evictIdle(System.nanoTime()
+						- TimeUnit.MILLISECONDS.toNanos(ServerConfig.FILE_CHANNEL_IDLE_TIMEOUT));
+			}
+		}, period, period, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Create a new instance of {@code FileChannelCache}
+	 */
+	private FileChannelCache() {
+		super();
+	}
+
+	/**
+	 * Get an open channel on the file. The returned handle must be released
+	 * exactly once, when the response is completely written.
+	 * 
+	 * @param path
+	 *            the path of the file
+	 * @return a retained handle on the channel
+	 * @throws IOException
+	 *             if the file cannot be opened
+	 */
+	public static Handle acquire(String path) throws IOException {
+		Handle handle = channels.get(path);
+		if (handle != null && handle.retain()) {
+			return handle;
+		}
+		if (open.get() >= ServerConfig.MAX_OPEN_FILES && !evictLeastRecentlyUsed()) {
+			// the budget is exhausted by busy channels
+			return new Handle(path, false);
+		}
+		Handle created = new Handle(path, true);
+		for (;;) {
+			handle = channels.putIfAbsent(path, created);
+			if (handle == null) {
+				open.incrementAndGet();
+				return created;
+			}
+			if (handle.retain()) {
+				// another thread opened it first
+				created.close();
+				return handle;
+			}
+			// the existing one is being closed
+			channels.remove(path, handle);
+		}
+	}
+
+	/**
+	 * Close the channels which were not used since the given time
+	 * 
+	 * @param deadline
+	 *            the {@code System.nanoTime()} of the last allowed use
+	 */
+	private static void evictIdle(long deadline) {
+		for (Handle handle : channels.values()) {
+			if (handle.lastUsed - deadline < 0) {
+				evict(handle);
+			}
+		}
+	}
+
+	/**
+	 * Close the unused channel which has been idle for the longest time
+	 * 
+	 * @return {@code true} if a channel was closed
+	 */
+	private static boolean evictLeastRecentlyUsed() {
+		for (;;) {
+			Handle oldest = null;
+			for (Handle handle : channels.values()) {
+				if (handle.references.get() == 0
+						&& (oldest == null || handle.lastUsed - oldest.lastUsed < 0)) {
+					oldest = handle;
+				}
+			}
+			if (oldest == null) {
+				return false;
+			}
+			if (evict(oldest)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * @param handle
+	 * @return {@code true} if the channel was unused and is now closed
+	 */
+	private static boolean evict(Handle handle) {
+		if (!handle.references.compareAndSet(0, -1)) {
+			return false;
+		}
+		channels.remove(handle.path, handle);
+		open.decrementAndGet();
+		handle.close();
+		return true;
+	}
+
+	/**
+	 * @return the number of channels held by the cache
+	 */
+	public static int getOpenCount() {
+		return open.get();
+	}
+
+	/**
+	 * {@code Handle}
+	 * 
+	 * A reference on an open file channel. The reference count is -1 once the
+	 * channel is closed.
+	 */
+	public static final class Handle {
+
+		private final String path;
+		private final boolean cached;
+		private final FileChannel channel;
+		private final long size;
+		private final AtomicInteger references = new AtomicInteger(1);
+		private volatile long lastUsed = System.nanoTime();
+
+		/**
+		 * Create a new instance of {@code Handle}, retained once
+		 * 
+		 * @param path
+		 * @param cached
+		 *            {@code false} if the channel is to be closed on release
+		 * @throws IOException
+		 */
+		private Handle(String path, boolean cached) throws IOException {
+			this.path = path;
+			this.cached = cached;
+			this.channel = new RandomAccessFile(path, "r").getChannel();
+			this.size = this.channel.size();
+		}
+
+		/**
+		 * @return {@code true} if the handle was retained, {@code false} if it
+		 *         is closed
+		 */
+		private boolean retain() {
+			for (;;) {
+				int n = this.references.get();
+				if (n < 0) {
+					return false;
+				}
+				if (this.references.compareAndSet(n, n + 1)) {
+					return true;
+				}
+			}
+		}
+
+		/**
+		 * Release the handle. The channel must not be used anymore by the
+		 * caller.
+		 */
+		public void release() {
+			this.lastUsed = System.nanoTime();
+			if (this.references.decrementAndGet() == 0 && !this.cached) {
+				if (this.references.compareAndSet(0, -1)) {
+					close();
+				}
+			}
+		}
+
+		/**
+		 * 
+		 */
+		private void close() {
+			try {
+				this.channel.close();
+			} catch (IOException e) {
+				// nothing to do
+			}
+		}
+
+		/**
+		 * @return the path of the file
+		 */
+		public String getPath() {
+			return this.path;
+		}
+
+		/**
+		 * @return the open channel, only positional operations may be used
+		 */
+		public FileChannel getChannel() {
+			return this.channel;
+		}
+
+		/**
+		 * @return the size of the file when it was opened
+		 */
+		public long size() {
+			return this.size;
+		}
+	}
+}
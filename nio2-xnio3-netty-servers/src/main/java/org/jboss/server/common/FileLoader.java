@@ -25,26 +25,65 @@
  */
 package org.jboss.server.common;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
 
-import org.jboss.server.nio2.common.Nio2Utils;
+import org.jboss.server.Server;
 import org.jboss.server.xnio3.common.XnioUtils;
 
 /**
  * {@code FileLoader}
  * 
+ * Loads the requested files once and keeps them in memory, so that the
+ * servers never touch the disk when serving a request. The gzip and deflate
+ * variants of every compressible file are then built once, by a background
+ * thread, so that no request ever pays for the compression. The callers which
+ * must not block on the load, e.g., the I/O threads of Netty, get the files
+ * already cached only, and have the others loaded by a background thread.
+ * 
  * Created on Oct 26, 2012 at 2:39:38 PM
  * 
  * @author <a href="mailto:nbenothm@redhat.com">Nabil Benothman</a>
  */
 public final class FileLoader {
 
-	private static long fileLength;
-	private static ByteBuffer data[];
+	/**
+	 * The content codings of the precompressed variants
+	 */
+	public static final String ENCODINGS[] = { "gzip", "deflate" };
+	/**
+	 * Files smaller than this are not worth compressing
+	 */
+	public static final int MIN_COMPRESS_SIZE = 256;
+	/**
+	 * A variant is kept only if it is smaller than this ratio of the file size
+	 */
+	public static final double MAX_COMPRESS_RATIO = 0.9;
+
+	private static final ConcurrentMap<String, CachedFile> files = new ConcurrentHashMap<String, CachedFile>();
+	// the files being loaded by the loader thread, see preload()
+	private static final Set<String> loading = Collections
+			.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	private static final ExecutorService compressor = newDaemonExecutor("file-compressor",
+			Thread.MIN_PRIORITY);
+	private static final ExecutorService loader = newDaemonExecutor("file-loader",
+			Thread.NORM_PRIORITY);
 
 	/**
 	 * Create a new instance of {@code FileLoader}
@@ -54,62 +93,262 @@ public final class FileLoader {
 	}
 
 	/**
+	 * Map the path of a request URI to the file name on disk. The leading
+	 * character of the working directory is dropped, as the servers always did.
 	 * 
-	 * @return
-	 */
-	public static ByteBuffer[] cloneData(String filename) {
-		if (data == null) {
-			try {
-				init(filename);
-			} catch (IOException e) {
-				e.printStackTrace();
-			}
+	 * @param uriPath
+	 *            the path of the request URI, e.g., "/data/file.txt"
+	 * @return the name of the file to load
+	 */
+	public static String resolve(String uriPath) {
+		return (Server.workingDirectory + "/" + uriPath).substring(1);
+	}
+
+	/**
+	 * 
+	 * @param filename
+	 * @return the cached file, loading it if it is requested for the first time
+	 * @throws IOException
+	 *             if the file cannot be read
+	 */
+	public static CachedFile get(String filename) throws IOException {
+		CachedFile file = files.get(filename);
+		if (file == null) {
+			file = load(filename);
 		}
-		ByteBuffer[] buffers = new ByteBuffer[data.length];
-		synchronized (data) {
-			for (int i = 0; i < data.length; i++) {
-				buffers[i] = ByteBuffer.allocateDirect(data[i].capacity());
-				data[i].flip();
-				buffers[i].put(data[i]);
-			}
+		return file;
+	}
+
+	/**
+	 * @param filename
+	 * @return the cached file, {@code null} if it is not loaded yet
+	 */
+	public static CachedFile peek(String filename) {
+		return files.get(filename);
+	}
+
+	/**
+	 * Load the file by the loader thread, unless it is cached or being loaded
+	 * already. A file which cannot be read is tried again on the next call.
+	 * 
+	 * @param filename
+	 */
+	public static void preload(final String filename) {
+		if (files.containsKey(filename) || !loading.add(filename)) {
+			return;
 		}
-		return buffers;
+		loader.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					load(filename);
+				} catch (IOException e) {
+					// the requests report the missing files
+				} finally {
+					loading.remove(filename);
+				}
+			}
+		});
 	}
 
 	/**
 	 * 
 	 * @throws IOException
 	 */
-	private static synchronized void init(String filename) throws IOException {
-		File file = new File(filename);
-		try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+	private static synchronized CachedFile load(String filename) throws IOException {
+		CachedFile file = files.get(filename);
+		if (file != null) {
+			return file;
+		}
+		File f = new File(filename);
+		ByteBuffer data[];
+		long size;
+		try (RandomAccessFile raf = new RandomAccessFile(f, "r")) {
 			FileChannel fileChannel = raf.getChannel();
 
-                        // OBS: if you revert back to CRLF, change here also !!
-			fileLength = fileChannel.size() + "\0".getBytes().length;
-			double tmp = (double) fileLength / XnioUtils.WRITE_BUFFER_SIZE;
-			int length = (int) Math.ceil(tmp);
-			data = new ByteBuffer[length];
+			size = fileChannel.size();
+			data = allocate(size);
+			// Read the whole file in one pass
+			while (fileChannel.position() < size) {
+				if (fileChannel.read(data) < 0) {
+					break;
+				}
+			}
+		}
+		seal(data);
+
+		file = new CachedFile(filename, size, f.lastModified(), XnioUtils.WRITE_BUFFER_SIZE, data,
+				hash(data, size), null);
+		files.put(filename, file);
+		if (size >= MIN_COMPRESS_SIZE) {
+			compress(file);
+		}
+		return file;
+	}
 
-			for (int i = 0; i < data.length - 1; i++) {
-				data[i] = ByteBuffer.allocateDirect(XnioUtils.WRITE_BUFFER_SIZE);
+	/**
+	 * @param name
+	 *            the name of the thread
+	 * @param priority
+	 * @return a single daemon thread executor
+	 */
+	private static ExecutorService newDaemonExecutor(final String name, final int priority) {
+		return Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, name);
+				thread.setDaemon(true);
+				thread.setPriority(priority);
+				return thread;
 			}
+		});
+	}
 
-			int size = (int) (fileLength % XnioUtils.WRITE_BUFFER_SIZE);
-			data[data.length - 1] = ByteBuffer.allocateDirect(size);
-			// Read the whole file in one pass
-			fileChannel.read(data);
+	/**
+	 * Allocate the direct buffers holding the content and the NUL marker
+	 * 
+	 * @param size
+	 *            the size of the content
+	 * @return the buffers, ready to be filled
+	 */
+	private static ByteBuffer[] allocate(long size) {
+		// OBS: if you revert back to CRLF, change here also !!
+		long fileLength = size + "\0".getBytes().length;
+		int length = (int) ((fileLength + XnioUtils.WRITE_BUFFER_SIZE - 1) / XnioUtils.WRITE_BUFFER_SIZE);
+		ByteBuffer data[] = new ByteBuffer[length];
+
+		for (int i = 0; i < data.length - 1; i++) {
+			data[i] = ByteBuffer.allocateDirect(XnioUtils.WRITE_BUFFER_SIZE);
 		}
-                // IMPORTANT !!! CRLF is buggy as the content can have CRLF
-                // put NUL to mark the end of data
+
+		int last = (int) (fileLength - (long) (length - 1) * XnioUtils.WRITE_BUFFER_SIZE);
+		data[data.length - 1] = ByteBuffer.allocateDirect(last);
+		return data;
+	}
+
+	/**
+	 * Append the NUL marker and make the filled buffers read-only
+	 * 
+	 * @param data
+	 */
+	private static void seal(ByteBuffer[] data) {
+		// IMPORTANT !!! CRLF is buggy as the content can have CRLF
+		// put NUL to mark the end of data
 		data[data.length - 1].put("\0".getBytes());
+		for (int i = 0; i < data.length; i++) {
+			data[i].flip();
+			data[i] = data[i].asReadOnlyBuffer();
+		}
+	}
+
+	/**
+	 * Build the compressed variants of the file in the background. A variant
+	 * is attached to the file only when it saves enough bytes, until then the
+	 * identity content is served.
+	 * 
+	 * @param file
+	 */
+	private static void compress(final CachedFile file) {
+		compressor.execute(new Runnable() {
+			@Override
+			public void run() {
+				for (String encoding : ENCODINGS) {
+					try {
+						CachedFile variant = compress(file, encoding);
+						if (variant.getSize() < file.getSize() * MAX_COMPRESS_RATIO) {
+							file.addVariant(variant);
+							System.out.println("Cached " + file.getPath() + " [" + encoding
+									+ "]: " + variant.getMemory() + " bytes (identity: "
+									+ file.getMemory() + " bytes)");
+						}
+					} catch (IOException e) {
+						System.err.println("ERROR: cannot compress " + file.getPath() + " ["
+								+ encoding + "]: " + e.getMessage());
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * 
+	 * @param file
+	 * @param encoding
+	 *            "gzip" or "deflate"
+	 * @return the variant of the file compressed with the given coding
+	 * @throws IOException
+	 */
+	private static CachedFile compress(CachedFile file, String encoding) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream((int) (file.getSize() / 2));
+		byte chunk[] = new byte[XnioUtils.WRITE_BUFFER_SIZE];
+		try (OutputStream out = encoding.equals("gzip") ? new GZIPOutputStream(bytes)
+				: new DeflaterOutputStream(bytes)) {
+			long remaining = file.getSize();
+			for (ByteBuffer buffer : file.body()) {
+				while (buffer.hasRemaining() && remaining > 0) {
+					int n = (int) Math.min(Math.min(chunk.length, buffer.remaining()), remaining);
+					buffer.get(chunk, 0, n);
+					out.write(chunk, 0, n);
+					remaining -= n;
+				}
+			}
+		}
+		byte compressed[] = bytes.toByteArray();
+		ByteBuffer data[] = allocate(compressed.length);
+		int offset = 0;
+		for (ByteBuffer buffer : data) {
+			int n = Math.min(buffer.remaining(), compressed.length - offset);
+			buffer.put(compressed, offset, n);
+			offset += n;
+		}
+		seal(data);
+		return new CachedFile(file.getPath(), compressed.length, file.getLastModified(),
+				XnioUtils.WRITE_BUFFER_SIZE, data, hash(data, compressed.length), encoding);
 	}
 
 	/**
-	 * @return the fileLength
+	 * @return the direct memory held by the cache, per content coding
 	 */
-	public static long getFileLength() {
-		return fileLength;
+	public static Map<String, Long> getMemoryUsage() {
+		Map<String, Long> usage = new TreeMap<String, Long>();
+		for (CachedFile file : files.values()) {
+			add(usage, "identity", file.getMemory());
+			for (CachedFile variant : file.getVariants().values()) {
+				add(usage, variant.getEncoding(), variant.getMemory());
+			}
+		}
+		return usage;
 	}
 
+	/**
+	 * @param usage
+	 * @param encoding
+	 * @param memory
+	 */
+	private static void add(Map<String, Long> usage, String encoding, long memory) {
+		Long total = usage.get(encoding);
+		usage.put(encoding, total == null ? memory : total + memory);
+	}
+
+	/**
+	 * Compute the 64-bit FNV-1a hash of the content. It is computed once, when
+	 * the file is loaded, and used as entity tag.
+	 * 
+	 * @param data
+	 *            the buffers, positioned at zero
+	 * @param size
+	 *            the number of bytes to hash
+	 * @return the hash of the first {@code size} bytes
+	 */
+	private static long hash(ByteBuffer[] data, long size) {
+		long hash = 0xcbf29ce484222325L;
+		long n = 0;
+		for (ByteBuffer buffer : data) {
+			for (int i = 0; i < buffer.limit() && n < size; i++, n++) {
+				hash ^= buffer.get(i) & 0xff;
+				hash *= 0x100000001b3L;
+			}
+		}
+		return hash;
+	}
 }
@@ -0,0 +1,117 @@
+/**
+ * JBoss, Home of Professional Open Source. Copyright 2011, Red Hat, Inc., and
+ * individual
+ * contributors as indicated by the @author tags. See the copyright.txt file in
+ * the distribution
+ * for a full listing of individual contributors.
+ * 
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation; either
+ * version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this
+ * software; if not, write to the Free Software Foundation, Inc., 51 Franklin
+ * St, Fifth Floor,
+ * Boston, MA 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.server.common;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * {@code HttpRequestHeader}
+ * 
+ * A minimal parser for the request header sent by the clients, e.g.:
+ * 
+ * <pre>
+ * GET /data/file.txt?jSessionId=d85381bc-da9e-4cee-878f-6f486bb1ecec HTTP/1.1
+ * Connection: keep-alive
+ * Range: bytes=0-1023
+ * </pre>
+ * 
+ * The clients end the header lines either with CRLF or with a single LF, so
+ * both are accepted.
+ * 
+ * Created on Oct 19, 2026 at 9:40:05 AM
+ */
+public final class HttpRequestHeader {
+
+	private String method;
+	private String path;
+	private Map<String, String> headers = new HashMap<String, String>();
+
+	/**
+	 * Create a new instance of {@code HttpRequestHeader}
+	 */
+	private HttpRequestHeader() {
+		super();
+	}
+
+	/**
+	 * Parse the request header
+	 * 
+	 * @param bytes
+	 *            the bytes read from the channel
+	 * @param offset
+	 * @param length
+	 * @return the parsed request header
+	 */
+	public static HttpRequestHeader parse(byte[] bytes, int offset, int length) {
+		HttpRequestHeader request = new HttpRequestHeader();
+		String lines[] = new String(bytes, offset, length).split("\n");
+		String requestLine = lines[0].trim();
+
+		int sp1 = requestLine.indexOf(' ');
+		int sp2 = requestLine.indexOf(' ', sp1 + 1);
+		request.method = sp1 < 0 ? requestLine : requestLine.substring(0, sp1);
+		String uri = sp1 < 0 ? "" : requestLine.substring(sp1 + 1, sp2 < 0 ? requestLine.length()
+				: sp2);
+		// get rid of the query string (?jSessionId=...)
+		int query = uri.indexOf('?');
+		request.path = query < 0 ? uri : uri.substring(0, query);
+
+		for (int i = 1; i < lines.length; i++) {
+			int colon = lines[i].indexOf(':');
+			if (colon > 0) {
+				String name = lines[i].substring(0, colon).trim().toLowerCase(Locale.ENGLISH);
+				request.headers.put(name, lines[i].substring(colon + 1).trim());
+			}
+		}
+
+		return request;
+	}
+
+	/**
+	 * @param name
+	 *            the header name (case insensitive)
+	 * @return the value of the header or {@code null} if it is not present
+	 */
+	public String getHeader(String name) {
+		return this.headers.get(name.toLowerCase(Locale.ENGLISH));
+	}
+
+	/**
+	 * @return the request method
+	 */
+	public String getMethod() {
+		return this.method;
+	}
+
+	/**
+	 * @return the path of the request URI, without the query string
+	 */
+	public String getPath() {
+		return this.path;
+	}
+}
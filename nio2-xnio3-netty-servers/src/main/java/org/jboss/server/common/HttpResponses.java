@@ -0,0 +1,365 @@
+/**
+ * JBoss, Home of Professional Open Source. Copyright 2011, Red Hat, Inc., and
+ * individual
+ * contributors as indicated by the @author tags. See the copyright.txt file in
+ * the distribution
+ * for a full listing of individual contributors.
+ * 
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation; either
+ * version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this
+ * software; if not, write to the Free Software Foundation, Inc., 51 Franklin
+ * St, Fifth Floor,
+ * Boston, MA 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.server.common;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import org.jboss.server.monitor.RequestTimer;
+import org.jboss.server.monitor.ServerStats;
+
+/**
+ * {@code HttpResponses}
+ * 
+ * Builds the responses of the NIO.2 and XNIO3 servers as arrays of byte
+ * buffers ready to be written with a gathering write. The content is never
+ * copied: the buffers are duplicates or slices of the {@link CachedFile}
+ * buffers.
+ * 
+ * Created on Oct 19, 2026 at 10:31:12 AM
+ */
+public final class HttpResponses {
+
+	/**
+	 * The boundary separating the parts of a {@code multipart/byteranges}
+	 * response
+	 */
+	public static final String BOUNDARY = "NIO2_XNIO3_NETTY_BYTERANGES";
+	/**
+	 * 
+	 */
+	public static final String CONTENT_TYPE = "application/octet-stream";
+	/**
+	 * The format of the {@code Last-Modified} and {@code If-Modified-Since}
+	 * dates
+	 */
+	public static final String HTTP_DATE_FORMAT = "EEE, dd MMM yyyy HH:mm:ss zzz";
+	private static final String CRLF = AbstractServer.CRLF;
+	/**
+	 * The path of the report of the {@link ServerStats}, on all the engines
+	 */
+	public static final String STATS_PATH = "/stats";
+
+	/**
+	 * Create a new instance of {@code HttpResponses}
+	 */
+	private HttpResponses() {
+		super();
+	}
+
+	/**
+	 * Build the response to the request
+	 * 
+	 * @param request
+	 *            the parsed request header
+	 * @param timer
+	 *            the timer of the request
+	 * @return the buffers of the response
+	 */
+	public static ByteBuffer[] respond(HttpRequestHeader request, RequestTimer timer) {
+		ByteBuffer buffers[] = build(request, timer);
+		if (ServerConfig.SERVER_TIMING) {
+			buffers[0] = withHeader(buffers[0], "Server-Timing: " + timer.getServerTiming());
+		}
+		return buffers;
+	}
+
+	/**
+	 * @param request
+	 * @param timer
+	 * @return the buffers of the response to the request
+	 */
+	private static ByteBuffer[] build(HttpRequestHeader request, RequestTimer timer) {
+		if (!"GET".equals(request.getMethod())) {
+			ServerStats.addError();
+			return error("405 Method Not Allowed");
+		}
+		if (STATS_PATH.equals(request.getPath())) {
+			return stats();
+		}
+		long start = System.nanoTime();
+		CachedFile file;
+		try {
+			file = FileLoader.get(FileLoader.resolve(request.getPath()));
+		} catch (IOException e) {
+			ServerStats.addError();
+			return error("404 Not Found");
+		}
+
+		// the precompressed variants are built in the background, if any. The
+		// ranges are always taken from the identity content, as by the Netty
+		// server
+		if (request.getHeader("Range") == null) {
+			file = file.select(request.getHeader("Accept-Encoding"));
+		}
+		timer.lookedUp(System.nanoTime() - start);
+
+		// validators are checked first, a 304 has no body to look at
+		if (file.isNotModified(request.getHeader("If-None-Match"),
+				request.getHeader("If-Modified-Since"))) {
+			return new ByteBuffer[] { file.notModified() };
+		}
+
+		List<ByteRange> ranges = ByteRange.parse(request.getHeader("Range"), file.getSize());
+		if (ranges == null) {
+			return ok(file);
+		}
+		if (ranges.isEmpty()) {
+			return rangeNotSatisfiable(file);
+		}
+		return partial(file, ranges);
+	}
+
+	/**
+	 * The {@code /stats} response is built at each request, it is not cached
+	 * by the clients either. Its body ends with the NUL marker.
+	 * 
+	 * @return the buffers of the {@link ServerStats} report
+	 */
+	public static ByteBuffer[] stats() {
+		String body = ServerStats.report() + "\0";
+		return new ByteBuffer[] { encode("HTTP/1.1 200 OK" + CRLF + "Content-Length: "
+				+ body.length() + CRLF + "Content-Type: text/plain; charset=UTF-8" + CRLF
+				+ "Cache-Control: no-store" + CRLF + CRLF + body) };
+	}
+
+	/**
+	 * @param file
+	 * @return the header and the whole content of the file
+	 */
+	public static ByteBuffer[] ok(CachedFile file) {
+		ByteBuffer body[] = file.body();
+		ByteBuffer buffers[] = new ByteBuffer[body.length + 1];
+		buffers[0] = file.header();
+		System.arraycopy(body, 0, buffers, 1, body.length);
+		return buffers;
+	}
+
+	/**
+	 * A single range is sent as is, several ranges are sent as a
+	 * {@code multipart/byteranges} body.
+	 * 
+	 * @param file
+	 * @param ranges
+	 *            the satisfiable ranges
+	 * @return the buffers of the {@code 206 Partial Content} response
+	 */
+	public static ByteBuffer[] partial(CachedFile file, List<ByteRange> ranges) {
+		List<ByteBuffer> buffers = new ArrayList<ByteBuffer>();
+		StringBuilder header = new StringBuilder("HTTP/1.1 206 Partial Content").append(CRLF);
+		buffers.add(null);
+
+		if (ranges.size() == 1) {
+			ByteRange range = ranges.get(0);
+			header.append("Content-Length: ").append(range.getLength()).append(CRLF);
+			header.append("Content-Type: ").append(CONTENT_TYPE).append(CRLF);
+			appendEncoding(header, file);
+			header.append("Content-Range: ").append(range.toContentRange(file.getSize())).append(CRLF);
+			file.slice(range.getFirst(), range.getLast(), buffers);
+		} else {
+			long length = 0;
+			for (ByteRange range : ranges) {
+				ByteBuffer part = encode(CRLF + "--" + BOUNDARY + CRLF + "Content-Type: " + CONTENT_TYPE
+						+ CRLF + "Content-Range: " + range.toContentRange(file.getSize()) + CRLF + CRLF);
+				buffers.add(part);
+				length += part.remaining() + range.getLength();
+				file.slice(range.getFirst(), range.getLast(), buffers);
+			}
+			ByteBuffer end = encode(CRLF + "--" + BOUNDARY + "--" + CRLF);
+			buffers.add(end);
+			length += end.remaining();
+			header.append("Content-Length: ").append(length).append(CRLF);
+			header.append("Content-Type: multipart/byteranges; boundary=").append(BOUNDARY)
+					.append(CRLF);
+			appendEncoding(header, file);
+		}
+		header.append(CRLF);
+		buffers.set(0, encode(header.toString()));
+
+		return buffers.toArray(new ByteBuffer[buffers.size()]);
+	}
+
+	/**
+	 * @param file
+	 * @return the buffers of the {@code 416 Requested Range Not Satisfiable}
+	 *         response
+	 */
+	public static ByteBuffer[] rangeNotSatisfiable(CachedFile file) {
+		return new ByteBuffer[] { encode("HTTP/1.1 416 Requested Range Not Satisfiable" + CRLF
+				+ "Content-Length: 0" + CRLF + "Content-Range: bytes */" + file.getSize() + CRLF
+				+ CRLF) };
+	}
+
+	/**
+	 * The body of the error responses ends with the NUL marker, like a full
+	 * content, so that the clients do not wait for it.
+	 * 
+	 * @param status
+	 *            the status code and reason phrase, e.g., "404 Not Found"
+	 * @return the buffers of the error response
+	 */
+	public static ByteBuffer[] error(String status) {
+		String body = "Failure: " + status + CRLF + "\0";
+		return new ByteBuffer[] { encode("HTTP/1.1 " + status + CRLF + "Content-Length: "
+				+ body.length() + CRLF + "Content-Type: text/plain; charset=UTF-8" + CRLF + CRLF
+				+ body) };
+	}
+
+	/**
+	 * @param length
+	 *            the length of the content
+	 * @param etag
+	 *            the entity tag of the content
+	 * @param lastModified
+	 *            the last modification date of the content
+	 * @param encoding
+	 *            the content coding, {@code null} for identity
+	 * @return a read-only buffer holding the {@code 200 OK} response header
+	 */
+	static ByteBuffer okHeader(long length, String etag, String lastModified, String encoding) {
+		return encode(
+				"HTTP/1.1 200 OK" + CRLF + "Content-Length: " + length + CRLF + "Content-Type: "
+						+ CONTENT_TYPE + CRLF
+						+ (encoding == null ? "" : "Content-Encoding: " + encoding + CRLF)
+						+ "Vary: Accept-Encoding" + CRLF + "Accept-Ranges: bytes" + CRLF + "ETag: "
+						+ etag + CRLF + "Last-Modified: " + lastModified + CRLF + CRLF)
+				.asReadOnlyBuffer();
+	}
+
+	/**
+	 * Add the content coding of the file, if any, to a response header
+	 * 
+	 * @param header
+	 * @param file
+	 */
+	private static void appendEncoding(StringBuilder header, CachedFile file) {
+		if (file.getEncoding() != null) {
+			header.append("Content-Encoding: ").append(file.getEncoding()).append(CRLF);
+		}
+		header.append("Vary: Accept-Encoding").append(CRLF);
+	}
+
+	/**
+	 * @param etag
+	 *            the entity tag of the content
+	 * @param lastModified
+	 *            the last modification date of the content
+	 * @return a read-only buffer holding the {@code 304 Not Modified} response
+	 */
+	static ByteBuffer notModifiedHeader(String etag, String lastModified) {
+		return encode(
+				"HTTP/1.1 304 Not Modified" + CRLF + "ETag: " + etag + CRLF + "Last-Modified: "
+						+ lastModified + CRLF + "Vary: Accept-Encoding" + CRLF + CRLF)
+				.asReadOnlyBuffer();
+	}
+
+	/**
+	 * @param time
+	 *            the time in milliseconds
+	 * @return the time formatted as an HTTP date
+	 */
+	public static String formatDate(long time) {
+		SimpleDateFormat dateFormatter = new SimpleDateFormat(HTTP_DATE_FORMAT, Locale.US);
+		dateFormatter.setTimeZone(TimeZone.getTimeZone("GMT"));
+		return dateFormatter.format(new Date(time));
+	}
+
+	/**
+	 * @param date
+	 *            an HTTP date
+	 * @return the time in milliseconds or -1 if the date cannot be parsed
+	 */
+	public static long parseDate(String date) {
+		SimpleDateFormat dateFormatter = new SimpleDateFormat(HTTP_DATE_FORMAT, Locale.US);
+		dateFormatter.setTimeZone(TimeZone.getTimeZone("GMT"));
+		try {
+			return dateFormatter.parse(date).getTime();
+		} catch (ParseException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Add a header field to a response, the cached headers are left as is
+	 * 
+	 * @param head
+	 *            the first buffer of the response, holding the whole header
+	 * @param field
+	 *            the header field, without line terminator
+	 * @return a copy of the buffer with the field at the end of the header
+	 */
+	static ByteBuffer withHeader(ByteBuffer head, String field) {
+		int start = head.position();
+		int end = start;
+		// the header ends with the first empty line
+		while (end + 3 < head.limit()
+				&& !(head.get(end) == '\r' && head.get(end + 1) == '\n'
+						&& head.get(end + 2) == '\r' && head.get(end + 3) == '\n')) {
+			end++;
+		}
+		if (end + 3 >= head.limit()) {
+			return head;
+		}
+		byte bytes[] = (CRLF + field).getBytes(StandardCharsets.US_ASCII);
+		ByteBuffer copy = ByteBuffer.allocate(head.remaining() + bytes.length);
+		ByteBuffer src = head.duplicate();
+		src.limit(end);
+		copy.put(src).put(bytes);
+		src.limit(head.limit()).position(end);
+		copy.put(src);
+		copy.flip();
+		return copy;
+	}
+
+	/**
+	 * @param buffers
+	 * @return the total number of bytes remaining in the buffers
+	 */
+	public static long remaining(ByteBuffer[] buffers) {
+		long total = 0;
+		for (ByteBuffer buffer : buffers) {
+			total += buffer.remaining();
+		}
+		return total;
+	}
+
+	/**
+	 * @param s
+	 * @return a buffer, ready to be written, holding the ASCII bytes of the
+	 *         string
+	 */
+	private static ByteBuffer encode(String s) {
+		return ByteBuffer.wrap(s.getBytes(StandardCharsets.US_ASCII));
+	}
+}
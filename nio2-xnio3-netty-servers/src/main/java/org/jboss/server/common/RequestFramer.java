@@ -0,0 +1,143 @@
+/**
+ * JBoss, Home of Professional Open Source. Copyright 2011, Red Hat, Inc., and
+ * individual
+ * contributors as indicated by the @author tags. See the copyright.txt file in
+ * the distribution
+ * for a full listing of individual contributors.
+ * 
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation; either
+ * version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this
+ * software; if not, write to the Free Software Foundation, Inc., 51 Franklin
+ * St, Fifth Floor,
+ * Boston, MA 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.server.common;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * {@code RequestFramer}
+ * 
+ * Splits the bytes read from a connection into request headers. A read may
+ * carry a part of a request only, or several requests when the client
+ * pipelines them, so the bytes are kept until the empty line ending a header
+ * arrives, and what follows it is kept for the next request. The requests
+ * have no body.
+ * 
+ * The empty lines before a request are ignored. A header which does not end
+ * within {@link #MAX_HEADER_SIZE} bytes is rejected, the engines close the
+ * connection.
+ * 
+ * It is not thread-safe, a connection reads one buffer at a time.
+ * 
+ * Created on Oct 19, 2026 at 11:12:40 AM
+ */
+public final class RequestFramer {
+
+	/**
+	 * The maximum size of a request header
+	 */
+	public static final int MAX_HEADER_SIZE = 8192;
+
+	private byte buffer[] = new byte[512];
+	// the first byte of the next request
+	private int start;
+	// the end of the bytes read
+	private int end;
+	// where the search of the end of the header resumes
+	private int scanned;
+
+	/**
+	 * Append the bytes read from the channel
+	 * 
+	 * @param bytes
+	 *            the buffer, flipped, its remaining bytes are consumed
+	 */
+	public void append(ByteBuffer bytes) {
+		int n = bytes.remaining();
+		if (this.end + n > this.buffer.length) {
+			int pending = this.end - this.start;
+			byte target[] = this.buffer;
+			if (pending + n > target.length) {
+				target = new byte[Math.max(2 * target.length, pending + n)];
+			}
+			System.arraycopy(this.buffer, this.start, target, 0, pending);
+			this.buffer = target;
+			this.scanned -= this.start;
+			this.end = pending;
+			this.start = 0;
+		}
+		bytes.get(this.buffer, this.end, n);
+		this.end += n;
+	}
+
+	/**
+	 * @return the next complete request, or {@code null} if its header is
+	 *         not read entirely yet
+	 * @throws IOException
+	 *             if the header does not end within {@link #MAX_HEADER_SIZE}
+	 *             bytes
+	 */
+	public HttpRequestHeader next() throws IOException {
+		while (this.start < this.end
+				&& (this.buffer[this.start] == '\r' || this.buffer[this.start] == '\n')) {
+			this.start++;
+		}
+		for (int i = Math.max(this.scanned, this.start); i < this.end; i++) {
+			if (this.buffer[i] == '\n' && i > this.start
+					&& (this.buffer[i - 1] == '\n' || (this.buffer[i - 1] == '\r'
+							&& i - 1 > this.start && this.buffer[i - 2] == '\n'))) {
+				return take(i + 1);
+			}
+		}
+		if (this.end - this.start >= MAX_HEADER_SIZE) {
+			clear();
+			throw new IOException("Request header larger than " + MAX_HEADER_SIZE + " bytes");
+		}
+		this.scanned = this.end;
+		if (this.start == this.end) {
+			clear();
+		}
+		return null;
+	}
+
+	/**
+	 * Drop the bytes read
+	 */
+	public void clear() {
+		this.start = 0;
+		this.end = 0;
+		this.scanned = 0;
+	}
+
+	/**
+	 * Parse the request ending at the given offset and consume its bytes
+	 * 
+	 * @param to
+	 *            the offset following the header
+	 * @return the parsed request header
+	 */
+	private HttpRequestHeader take(int to) {
+		HttpRequestHeader request = HttpRequestHeader.parse(this.buffer, this.start, to
+				- this.start);
+		this.start = to;
+		this.scanned = to;
+		if (this.start == this.end) {
+			clear();
+		}
+		return request;
+	}
+}
@@ -0,0 +1,273 @@
+/**
+ * JBoss, Home of Professional Open Source. Copyright 2011, Red Hat, Inc., and
+ * individual
+ * contributors as indicated by the @author tags. See the copyright.txt file in
+ * the distribution
+ * for a full listing of individual contributors.
+ * 
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation; either
+ * version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this
+ * software; if not, write to the Free Software Foundation, Inc., 51 Franklin
+ * St, Fifth Floor,
+ * Boston, MA 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.server.common;
+
+/**
+ * {@code ServerConfig}
+ * 
+ * The optional settings of the servers. They are given as system properties
+ * prefixed with {@code org.jboss.server.}, e.g.,
+ * {@code -Dorg.jboss.server.maxOpenFiles=512}, so that the command line of the
+ * servers (and of the testing tool) is left unchanged.
+ * 
+ * Created on Oct 19, 2026 at 2:05:47 PM
+ */
+public final class ServerConfig {
+
+	/**
+	 * The prefix of the system properties
+	 */
+	public static final String PREFIX = "org.jboss.server.";
+
+	/**
+	 * The maximum number of file channels kept open by the
+	 * {@link FileChannelCache}
+	 */
+	public static final int MAX_OPEN_FILES = getInt("maxOpenFiles", 256);
+
+	/**
+	 * The time (in milliseconds) after which an unused file channel is closed
+	 */
+	public static final long FILE_CHANNEL_IDLE_TIMEOUT = getLong("fileChannelIdleTimeout", 30000);
+
+	/**
+	 * The maximum number of open connections, the connections accepted past
+	 * it are closed at once (0 means no limit)
+	 */
+	public static final int MAX_CONNECTIONS = getInt("maxConnections", 0);
+
+	/**
+	 * The maximum number of requests being served, the requests received past
+	 * it are answered with a {@code 503 Service Unavailable} (0 means no limit)
+	 */
+	public static final int MAX_IN_FLIGHT = getInt("maxInFlight", 0);
+
+	/**
+	 * The maximum number of connections of the sync servers waiting for a
+	 * thread, the connections queued past it are closed (0 means no limit)
+	 */
+	public static final int MAX_QUEUED = getInt("maxQueued", 0);
+
+	/**
+	 * Let an {@link AdaptiveLimiter} set the in-flight request limit from the
+	 * measured service time, {@link #MAX_IN_FLIGHT} is then its upper bound
+	 */
+	public static final boolean ADAPTIVE_LIMIT = getBoolean("adaptiveLimit", false);
+
+	/**
+	 * The in-flight limit the {@link AdaptiveLimiter} starts from
+	 */
+	public static final int ADAPTIVE_LIMIT_INITIAL = getInt("adaptiveLimitInitial", 20);
+
+	/**
+	 * The period (in milliseconds) at which the {@link AdaptiveLimiter} updates
+	 * and logs its limit
+	 */
+	public static final long ADAPTIVE_LIMIT_WINDOW = getLong("adaptiveLimitWindow", 1000);
+
+	/**
+	 * The period (in milliseconds) of the admission control report, 0 to
+	 * report only at shutdown
+	 */
+	public static final long ADMISSION_REPORT_INTERVAL = getLong("admissionReportInterval", 10000);
+
+	/**
+	 * The maximum number of bytes a connection may have queued behind the
+	 * response being written before it is closed (0 means no limit)
+	 */
+	public static final long MAX_PENDING_WRITE_BYTES = getLong("maxPendingWriteBytes", 4 * 1024 * 1024);
+
+	/**
+	 * The time (in milliseconds) a connection with pending writes may go
+	 * without any write progress before it is closed (0 means no deadline)
+	 */
+	public static final long WRITE_TIMEOUT = getLong("writeTimeout", 30000);
+
+	/**
+	 * Serve the clients over TLS, on all the engines
+	 */
+	public static final boolean TLS = getBoolean("tls", false);
+
+	/**
+	 * The key store holding the private key and the certificate of the server
+	 */
+	public static final String TLS_KEY_STORE = getString("tlsKeyStore", "conf/server.keystore");
+
+	/**
+	 * The password of the key store and of the key
+	 */
+	public static final String TLS_KEY_STORE_PASSWORD = getString("tlsKeyStorePassword", "changeit");
+
+	/**
+	 * The type of the key store, e.g., "JKS" or "PKCS12"
+	 */
+	public static final String TLS_KEY_STORE_TYPE = getString("tlsKeyStoreType", "JKS");
+
+	/**
+	 * The maximum number of TLS sessions cached by the server for resumption
+	 * (0 means no limit)
+	 */
+	public static final int TLS_SESSION_CACHE_SIZE = getInt("tlsSessionCacheSize", 20480);
+
+	/**
+	 * The time (in seconds) during which a cached TLS session may be resumed
+	 */
+	public static final int TLS_SESSION_TIMEOUT = getInt("tlsSessionTimeout", 86400);
+
+	/**
+	 * The level of the {@link AsyncLogger}: TRACE, DEBUG, INFO, WARN, ERROR or
+	 * OFF. The per-request events are logged at DEBUG and TRACE.
+	 */
+	public static final String LOG_LEVEL = getString("logLevel", "INFO");
+
+	/**
+	 * Log one DEBUG or TRACE event out of N, chosen at random
+	 */
+	public static final int LOG_SAMPLING = getInt("logSampling", 1);
+
+	/**
+	 * The number of events the {@link AsyncLogger} buffers before dropping
+	 * them, rounded up to a power of 2
+	 */
+	public static final int LOG_BUFFER_SIZE = getInt("logBufferSize", 8192);
+
+	/**
+	 * Add a {@code Server-Timing} header to the responses, with the queue,
+	 * parse, lookup and write start durations of the request
+	 */
+	public static final boolean SERVER_TIMING = getBoolean("serverTiming", false);
+
+	/**
+	 * Measure the bytes allocated by the handling thread of each request, see
+	 * {@code RequestTimer}
+	 */
+	public static final boolean ALLOCATION_ACCOUNTING = getBoolean("allocationAccounting", false);
+
+	/**
+	 * The file to which the {@code ResourceSampler} writes the samples of the
+	 * CPU, memory, GC and threads of the server, {@code null} to disable it
+	 */
+	public static final String RESOURCE_SAMPLE_FILE = getString("resourceSampleFile", null);
+	/**
+	 * The period (in milliseconds) of the resource samples
+	 */
+	public static final long RESOURCE_SAMPLE_INTERVAL = getLong("resourceSampleInterval", 100);
+	/**
+	 * Sample the CPU time of each thread too
+	 */
+	public static final boolean RESOURCE_SAMPLE_THREADS = getBoolean("resourceSampleThreads", true);
+
+	/**
+	 * The period (in milliseconds) of the probes of the I/O loops by the
+	 * {@code LoopLagProbe}, 0 (default) to disable them
+	 */
+	public static final long LOOP_LAG_INTERVAL = getLong("loopLagInterval", 0);
+	/**
+	 * The lag (in milliseconds) from which an I/O loop is logged with a stack
+	 * sample of its thread
+	 */
+	public static final long LOOP_LAG_THRESHOLD = getLong("loopLagThreshold", 100);
+
+	/**
+	 * The file to which the {@code ContentionProfiler} writes the blocked and
+	 * waited times of the threads and the contended locks at shutdown,
+	 * {@code null} to disable the contention monitoring
+	 */
+	public static final String CONTENTION_FILE = getString("contentionFile", null);
+	/**
+	 * The period (in milliseconds) of the samples of the contended locks
+	 */
+	public static final long CONTENTION_SAMPLE_INTERVAL = getLong("contentionSampleInterval", 20);
+
+	/**
+	 * The duration (in milliseconds) from which a request is kept in the
+	 * {@code SlowRequestLog}, from its read to its last byte written
+	 */
+	public static final long SLOW_REQUEST_THRESHOLD = getLong("slowRequestThreshold", 100);
+	/**
+	 * The number of slow requests kept, the oldest are overwritten, 0 to
+	 * disable the capture
+	 */
+	public static final int SLOW_REQUEST_BUFFER = getInt("slowRequestBuffer", 128);
+
+	/**
+	 * Create a new instance of {@code ServerConfig}
+	 */
+	private ServerConfig() {
+		super();
+	}
+
+	/**
+	 * @param name
+	 *            the name of the property, without prefix
+	 * @param defaultValue
+	 * @return the value of the property or the default value if not set
+	 */
+	public static int getInt(String name, int defaultValue) {
+		return (int) getLong(name, defaultValue);
+	}
+
+	/**
+	 * @param name
+	 *            the name of the property, without prefix
+	 * @param defaultValue
+	 * @return the value of the property or the default value if not set
+	 */
+	public static long getLong(String name, long defaultValue) {
+		String value = System.getProperty(PREFIX + name);
+		if (value == null) {
+			return defaultValue;
+		}
+		try {
+			return Long.parseLong(value.trim());
+		} catch (NumberFormatException e) {
+			System.err.println("ERROR: invalid value \"" + value + "\" for " + PREFIX + name
+					+ ", using " + defaultValue);
+			return defaultValue;
+		}
+	}
+
+	/**
+	 * @param name
+	 *            the name of the property, without prefix
+	 * @param defaultValue
+	 * @return the value of the property or the default value if not set
+	 */
+	public static boolean getBoolean(String name, boolean defaultValue) {
+		String value = System.getProperty(PREFIX + name);
+		return value == null ? defaultValue : Boolean.parseBoolean(value.trim());
+	}
+
+	/**
+	 * @param name
+	 *            the name of the property, without prefix
+	 * @param defaultValue
+	 * @return the value of the property or the default value if not set
+	 */
+	public static String getString(String name, String defaultValue) {
+		return System.getProperty(PREFIX + name, defaultValue);
+	}
+}
@@ -0,0 +1,100 @@
+/**
+ * JBoss, Home of Professional Open Source. Copyright 2011, Red Hat, Inc., and
+ * individual
+ * contributors as indicated by the @author tags. See the copyright.txt file in
+ * the distribution
+ * for a full listing of individual contributors.
+ * 
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation; either
+ * version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this
+ * software; if not, write to the Free Software Foundation, Inc., 51 Franklin
+ * St, Fifth Floor,
+ * Boston, MA 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.server.common;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLSessionContext;
+
+/**
+ * {@code TlsContextFactory}
+ * 
+ * Creates the JDK {@code SSLContext} shared by all the connections of a server
+ * when TLS is enabled (see {@link ServerConfig#TLS}). Sharing the context is
+ * what makes the session resumption work: the server session cache belongs to
+ * the context and is sized by {@link ServerConfig#TLS_SESSION_CACHE_SIZE} and
+ * {@link ServerConfig#TLS_SESSION_TIMEOUT}.
+ * 
+ * Created on Oct 19, 2026 at 3:26:12 PM
+ */
+public final class TlsContextFactory {
+
+	private static SSLContext serverContext;
+
+	/**
+	 * Create a new instance of {@code TlsContextFactory}
+	 */
+	private TlsContextFactory() {
+		super();
+	}
+
+	/**
+	 * @return the server context, created from the configured key store on
+	 *         first use, i.e., by the servers before they bind
+	 * @throws GeneralSecurityException
+	 * @throws IOException
+	 *             if the key store cannot be read
+	 */
+	public static synchronized SSLContext getServerContext() throws GeneralSecurityException,
+			IOException {
+		if (serverContext == null) {
+			KeyStore keyStore = KeyStore.getInstance(ServerConfig.TLS_KEY_STORE_TYPE);
+			char password[] = ServerConfig.TLS_KEY_STORE_PASSWORD.toCharArray();
+			try (InputStream in = new FileInputStream(ServerConfig.TLS_KEY_STORE)) {
+				keyStore.load(in, password);
+			}
+			KeyManagerFactory kmf = KeyManagerFactory.getInstance(KeyManagerFactory
+					.getDefaultAlgorithm());
+			kmf.init(keyStore, password);
+
+			SSLContext context = SSLContext.getInstance("TLS");
+			context.init(kmf.getKeyManagers(), null, null);
+			SSLSessionContext sessions = context.getServerSessionContext();
+			sessions.setSessionCacheSize(ServerConfig.TLS_SESSION_CACHE_SIZE);
+			sessions.setSessionTimeout(ServerConfig.TLS_SESSION_TIMEOUT);
+			serverContext = context;
+		}
+		return serverContext;
+	}
+
+	/**
+	 * @return a new engine in server mode
+	 * @throws GeneralSecurityException
+	 * @throws IOException
+	 */
+	public static SSLEngine createServerEngine() throws GeneralSecurityException, IOException {
+		SSLEngine engine = getServerContext().createSSLEngine();
+		engine.setUseClientMode(false);
+		return engine;
+	}
+}
@@ -0,0 +1,202 @@
+/**
+ * JBoss, Home of Professional Open Source. Copyright 2011, Red Hat, Inc., and
+ * individual
+ * contributors as indicated by the @author tags. See the copyright.txt file in
+ * the distribution
+ * for a full listing of individual contributors.
+ * 
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation; either
+ * version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this
+ * software; if not, write to the Free Software Foundation, Inc., 51 Franklin
+ * St, Fifth Floor,
+ * Boston, MA 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.server.common;
+
+import java.io.IOException;
+import java.nio.channels.Channel;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@code WriteGuard}
+ * 
+ * Protects the server from the clients which stop reading. A guard is
+ * attached to a connection, which reports the bytes it is about to write with
+ * {@link #queued(long)} and the bytes actually written with
+ * {@link #written(long)}. The connection is closed (evicted) when:
+ * <ul>
+ * <li>more than {@link ServerConfig#MAX_PENDING_WRITE_BYTES} are queued
+ * behind the response being written, a single response may be of any size</li>
+ * <li>it has pending writes and makes no progress during
+ * {@link ServerConfig#WRITE_TIMEOUT}</li>
+ * </ul>
+ * The deadlines of all the connections are checked by a single shared timer,
+ * which only looks at the connections with pending writes. Closing the
+ * connection also releases a thread blocked writing to it.
+ * 
+ * Created on Oct 19, 2026 at 6:41:12 PM
+ */
+public final class WriteGuard {
+
+	private static final Set<WriteGuard> pendingGuards = Collections
+			.newSetFromMap(new ConcurrentHashMap<WriteGuard, Boolean>());
+	private static final AtomicLong slowEvictions = new AtomicLong();
+	private static final AtomicLong overflowEvictions = new AtomicLong();
+
+	static {
+		if (ServerConfig.WRITE_TIMEOUT > 0) {
+			long period = Math.max(50, Math.min(1000, ServerConfig.WRITE_TIMEOUT / 4));
+			ScheduledExecutorService timer = Executors
+					.newSingleThreadScheduledExecutor(new ThreadFactory() {
+						@Override
+						public Thread newThread(Runnable r) {
+							Thread thread = new Thread(r, "write-deadline");
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+			timer.scheduleAtFixedRate(new Runnable() {
+				@Override
+				public void run() {
+					checkDeadlines();
+				}
+			}, period, period, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	private final Channel connection;
+	private final AtomicLong pending = new AtomicLong();
+	private final AtomicBoolean evicted = new AtomicBoolean();
+	private volatile long lastProgress;
+
+	/**
+	 * Create a new instance of {@code WriteGuard}
+	 * 
+	 * @param connection
+	 *            the connection to close on eviction
+	 */
+	public WriteGuard(Channel connection) {
+		this.connection = connection;
+	}
+
+	/**
+	 * Close the connections of which the deadline expired
+	 */
+	private static void checkDeadlines() {
+		long deadline = System.nanoTime()
+				- TimeUnit.MILLISECONDS.toNanos(ServerConfig.WRITE_TIMEOUT);
+		for (WriteGuard guard : pendingGuards) {
+			if (guard.pending.get() <= 0 || !guard.connection.isOpen()) {
+				pendingGuards.remove(guard);
+			} else if (guard.lastProgress - deadline < 0) {
+				guard.evict(slowEvictions);
+			}
+		}
+	}
+
+	/**
+	 * Report bytes about to be written
+	 * 
+	 * @param bytes
+	 * @return {@code false} if the connection was evicted, the bytes must not
+	 *         be written then
+	 */
+	public boolean queued(long bytes) {
+		long previous = this.pending.getAndAdd(bytes);
+		if (previous <= 0) {
+			this.lastProgress = System.nanoTime();
+			pendingGuards.add(this);
+		} else if (ServerConfig.MAX_PENDING_WRITE_BYTES > 0
+				&& previous + bytes > ServerConfig.MAX_PENDING_WRITE_BYTES) {
+			this.pending.addAndGet(-bytes);
+			evict(overflowEvictions);
+			return false;
+		}
+		return !this.evicted.get();
+	}
+
+	/**
+	 * Report bytes written, or dropped because the write failed
+	 * 
+	 * @param bytes
+	 */
+	public void written(long bytes) {
+		if (bytes <= 0) {
+			return;
+		}
+		this.lastProgress = System.nanoTime();
+		if (this.pending.addAndGet(-bytes) <= 0) {
+			pendingGuards.remove(this);
+			if (this.pending.get() > 0) {
+				// raced with queued()
+				pendingGuards.add(this);
+			}
+		}
+	}
+
+	/**
+	 * Close the connection, only once
+	 * 
+	 * @param counter
+	 */
+	private void evict(AtomicLong counter) {
+		pendingGuards.remove(this);
+		if (!this.evicted.compareAndSet(false, true)) {
+			return;
+		}
+		counter.incrementAndGet();
+		try {
+			this.connection.close();
+		} catch (IOException e) {
+			// nothing to do, the connection is gone anyway
+		}
+	}
+
+	/**
+	 * @return {@code true} if the connection was evicted
+	 */
+	public boolean isEvicted() {
+		return this.evicted.get();
+	}
+
+	/**
+	 * @return the number of bytes queued and not written yet
+	 */
+	public long getPending() {
+		return this.pending.get();
+	}
+
+	/**
+	 * @return the number of connections closed for lack of write progress
+	 */
+	public static long getSlowEvictions() {
+		return slowEvictions.get();
+	}
+
+	/**
+	 * @return the number of connections closed for queuing too many bytes
+	 */
+	public static long getOverflowEvictions() {
+		return overflowEvictions.get();
+	}
+}
@@ -0,0 +1,300 @@
+/**
+ * JBoss, Home of Professional Open Source. Copyright 2011, Red Hat, Inc., and
+ * individual
+ * contributors as indicated by the @author tags. See the copyright.txt file in
+ * the distribution
+ * for a full listing of individual contributors.
+ * 
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation; either
+ * version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this
+ * software; if not, write to the Free Software Foundation, Inc., 51 Franklin
+ * St, Fifth Floor,
+ * Boston, MA 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.server.monitor;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.server.common.ServerConfig;
+
+/**
+ * {@code ContentionProfiler}
+ * 
+ * Enables the thread contention monitoring of the JVM and reports, for the
+ * measurement window, the time and the number of times each thread was
+ * blocked on a monitor or waited, and the locks the threads were blocked on
+ * along with their owners. The window opens at the start of the server or at
+ * the last reset of the {@link ServerStats}, e.g., after the warm-up, and
+ * closes at shutdown, when the report is written to
+ * {@link ServerConfig#CONTENTION_FILE}:
+ * 
+ * <pre>
+ * # contention pid=&lt;pid&gt; window_ms=&lt;ms&gt; interval=&lt;ms&gt;
+ * # T blocked_count blocked_ms waited_count waited_ms name
+ * # L state samples est_ms lock site owner
+ * </pre>
+ * 
+ * The {@code T} lines come from the counters of the JVM, the threads which
+ * neither blocked nor waited are left out. The {@code L} lines are sampled
+ * every {@link ServerConfig#CONTENTION_SAMPLE_INTERVAL} milliseconds: a
+ * sample is a thread blocked on a monitor, or parked on a lock held by
+ * another thread, so the time is an estimate. The site is the method which
+ * waits for the lock. The idle waits, e.g., of the
+ * threads of a pool for a task, have no owner and are not counted.
+ * 
+ * Created on Oct 20, 2026 at 12:31:52 AM
+ */
+public final class ContentionProfiler {
+
+	private static ContentionProfiler profiler;
+
+	private final String file;
+	private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+	private long windowStart;
+	// the counters of the threads seen during the window, by ID
+	private final Map<Long, Counters> counters = new HashMap<Long, Counters>();
+	// the samples of the contended locks, by state, lock and owner
+	private final Map<String, long[]> locks = new HashMap<String, long[]>();
+
+	/**
+	 * Create a new instance of {@code ContentionProfiler}
+	 * 
+	 * @param file
+	 */
+	private ContentionProfiler(String file) {
+		this.file = file;
+		if (!this.threads.isThreadContentionMonitoringEnabled()) {
+			this.threads.setThreadContentionMonitoringEnabled(true);
+		}
+		window();
+	}
+
+	/**
+	 * Start profiling, if a file is configured and the JVM supports it. Only
+	 * the first call has an effect.
+	 */
+	public static synchronized void start() {
+		if (profiler != null || ServerConfig.CONTENTION_FILE == null) {
+			return;
+		}
+		if (!ManagementFactory.getThreadMXBean().isThreadContentionMonitoringSupported()) {
+			System.err.println("ERROR: the thread contention monitoring is not supported");
+			return;
+		}
+		profiler = new ContentionProfiler(ServerConfig.CONTENTION_FILE);
+		ScheduledExecutorService executor = Executors
+				.newSingleThreadScheduledExecutor(new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, "contention-profiler");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		if (ServerConfig.CONTENTION_SAMPLE_INTERVAL > 0) {
+			executor.scheduleAtFixedRate(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						profiler.sample();
+					} catch (Throwable th) {
+						// never let the executor cancel the sampling
+						th.printStackTrace();
+					}
+				}
+			}, ServerConfig.CONTENTION_SAMPLE_INTERVAL,
+					ServerConfig.CONTENTION_SAMPLE_INTERVAL, TimeUnit.MILLISECONDS);
+		}
+		Runtime.getRuntime().addShutdownHook(new Thread("contention-profiler-shutdown") {
+			@Override
+			public void run() {
+				profiler.close();
+			}
+		});
+	}
+
+	/**
+	 * Open a new measurement window, if profiling
+	 */
+	public static void reset() {
+		ContentionProfiler profiler;
+		synchronized (ContentionProfiler.class) {
+			profiler = ContentionProfiler.profiler;
+		}
+		if (profiler != null) {
+			profiler.window();
+		}
+	}
+
+	/**
+	 * Open a new measurement window: the counters of the live threads are
+	 * taken as their base, the threads started later count from 0
+	 */
+	private synchronized void window() {
+		this.counters.clear();
+		this.locks.clear();
+		this.windowStart = System.nanoTime();
+		for (ThreadInfo info : this.threads.getThreadInfo(this.threads.getAllThreadIds(), 0)) {
+			if (info != null) {
+				Counters c = new Counters(info.getThreadName());
+				c.update(info);
+				c.base();
+				this.counters.put(info.getThreadId(), c);
+			}
+		}
+	}
+
+	/**
+	 * Update the counters of the threads and sample the contended locks
+	 */
+	private synchronized void sample() {
+		// the top frame gives the site of the contention
+		for (ThreadInfo info : this.threads.getThreadInfo(this.threads.getAllThreadIds(), 1)) {
+			if (info == null) {
+				// the thread has terminated meanwhile
+				continue;
+			}
+			Long id = info.getThreadId();
+			Counters c = this.counters.get(id);
+			if (c == null) {
+				c = new Counters(info.getThreadName());
+				this.counters.put(id, c);
+			}
+			c.update(info);
+			Thread.State state = info.getThreadState();
+			if (info.getLockName() == null
+					|| (state != Thread.State.BLOCKED && info.getLockOwnerName() == null)) {
+				continue;
+			}
+			StackTraceElement stack[] = info.getStackTrace();
+			String site = stack.length == 0 ? "?" : stack[0].getClassName() + "."
+					+ stack[0].getMethodName();
+			String key = state + " " + info.getLockName() + " " + site + " "
+					+ info.getLockOwnerName();
+			long samples[] = this.locks.get(key);
+			if (samples == null) {
+				samples = new long[1];
+				this.locks.put(key, samples);
+			}
+			samples[0]++;
+		}
+	}
+
+	/**
+	 * Write the report of the window
+	 */
+	private synchronized void close() {
+		sample();
+		long window = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - this.windowStart);
+		List<Counters> threads = new ArrayList<Counters>();
+		for (Counters c : this.counters.values()) {
+			if (c.blockedCount > 0 || c.waitedCount > 0) {
+				threads.add(c);
+			}
+		}
+		Collections.sort(threads, new Comparator<Counters>() {
+			@Override
+			public int compare(Counters c1, Counters c2) {
+				// the contention first, then the waits
+				int cmp = Long.compare(c2.blockedTime, c1.blockedTime);
+				return cmp != 0 ? cmp : Long.compare(c2.waitedTime, c1.waitedTime);
+			}
+		});
+		List<Map.Entry<String, long[]>> locks = new ArrayList<Map.Entry<String, long[]>>(
+				this.locks.entrySet());
+		Collections.sort(locks, new Comparator<Map.Entry<String, long[]>>() {
+			@Override
+			public int compare(Map.Entry<String, long[]> e1, Map.Entry<String, long[]> e2) {
+				return Long.compare(e2.getValue()[0], e1.getValue()[0]);
+			}
+		});
+		try (BufferedWriter out = new BufferedWriter(new FileWriter(this.file))) {
+			out.write("# contention pid="
+					+ ManagementFactory.getRuntimeMXBean().getName().split("@")[0]
+					+ " window_ms=" + window + " interval="
+					+ ServerConfig.CONTENTION_SAMPLE_INTERVAL + "\n");
+			out.write("# T blocked_count blocked_ms waited_count waited_ms name\n");
+			for (Counters c : threads) {
+				out.write("T " + c.blockedCount + " " + c.blockedTime + " " + c.waitedCount + " "
+						+ c.waitedTime + " " + c.name + "\n");
+			}
+			out.write("# L state samples est_ms lock site owner\n");
+			for (Map.Entry<String, long[]> entry : locks) {
+				String key[] = entry.getKey().split(" ", 4);
+				long samples = entry.getValue()[0];
+				out.write("L " + key[0] + " " + samples + " " + samples
+						* ServerConfig.CONTENTION_SAMPLE_INTERVAL + " " + key[1] + " " + key[2]
+						+ " " + key[3] + "\n");
+			}
+		} catch (IOException e) {
+			System.err.println("ERROR: cannot write the contention report to " + this.file
+					+ ": " + e);
+		}
+	}
+
+	/**
+	 * {@code Counters}
+	 * 
+	 * The contention counters of a thread in the window, the times in
+	 * milliseconds
+	 */
+	private static final class Counters {
+
+		private final String name;
+		private long blockedCount, blockedTime, waitedCount, waitedTime;
+		private long baseBlockedCount, baseBlockedTime, baseWaitedCount, baseWaitedTime;
+
+		Counters(String name) {
+			this.name = name;
+		}
+
+		/**
+		 * @param info
+		 *            the current counters of the thread
+		 */
+		void update(ThreadInfo info) {
+			this.blockedCount = info.getBlockedCount() - this.baseBlockedCount;
+			this.blockedTime = Math.max(0, info.getBlockedTime()) - this.baseBlockedTime;
+			this.waitedCount = info.getWaitedCount() - this.baseWaitedCount;
+			this.waitedTime = Math.max(0, info.getWaitedTime()) - this.baseWaitedTime;
+		}
+
+		/**
+		 * Take the current counters as the base of the window
+		 */
+		void base() {
+			this.baseBlockedCount = this.blockedCount;
+			this.baseBlockedTime = this.blockedTime;
+			this.baseWaitedCount = this.waitedCount;
+			this.baseWaitedTime = this.waitedTime;
+			this.blockedCount = this.blockedTime = this.waitedCount = this.waitedTime = 0;
+		}
+	}
+}
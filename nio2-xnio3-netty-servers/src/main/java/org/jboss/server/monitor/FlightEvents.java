@@ -0,0 +1,192 @@
+/**
+ * JBoss, Home of Professional Open Source. Copyright 2011, Red Hat, Inc., and
+ * individual
+ * contributors as indicated by the @author tags. See the copyright.txt file in
+ * the distribution
+ * for a full listing of individual contributors.
+ * 
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation; either
+ * version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this
+ * software; if not, write to the Free Software Foundation, Inc., 51 Franklin
+ * St, Fifth Floor,
+ * Boston, MA 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.server.monitor;
+
+/**
+ * {@code FlightEvents}
+ * 
+ * Emits the Flight Recorder events of the connections and of the requests,
+ * through the {@link Recorder} of the "jfr" source root, {@code JfrEvents}.
+ * Each event carries the session ID, the engine and the mode, so that a
+ * single recording shows the lifecycle of the requests next to the GC,
+ * safepoint and socket events of the JVM. The events are only built while a
+ * recording enables them, and nothing is done at all on a JVM without Flight
+ * Recorder or in a build without the "jfr" profile.
+ * 
+ * Created on Oct 19, 2026 at 9:41:27 PM
+ */
+public final class FlightEvents {
+
+	private static final Recorder RECORDER = recorder();
+	private static volatile String engine = "unknown";
+	private static volatile String mode = "unknown";
+
+	/**
+	 * Create a new instance of {@code FlightEvents}
+	 */
+	private FlightEvents() {
+		super();
+	}
+
+	/**
+	 * The event classes are only loaded if the JVM has a Flight Recorder
+	 * 
+	 * @return the recorder of the events, {@code null} if they cannot be
+	 *         recorded
+	 */
+	private static Recorder recorder() {
+		try {
+			ClassLoader loader = FlightEvents.class.getClassLoader();
+			Class.forName("jdk.jfr.Event", false, loader);
+			Recorder recorder = (Recorder) Class.forName("org.jboss.server.monitor.JfrEvents",
+					true, loader).getDeclaredConstructor().newInstance();
+			return recorder.isAvailable() ? recorder : null;
+		} catch (Throwable t) {
+			return null;
+		}
+	}
+
+	/**
+	 * @param type
+	 *            the engine of the server, e.g., "nio2"
+	 * @param async
+	 *            the mode of the server, "sync" or "async"
+	 */
+	public static void setEngine(String type, String async) {
+		engine = type;
+		mode = async;
+	}
+
+	/**
+	 * A connection was accepted
+	 */
+	public static void accepted() {
+		if (RECORDER != null) {
+			RECORDER.accepted(engine, mode);
+		}
+	}
+
+	/**
+	 * The session of a connection was initialized
+	 * 
+	 * @param sessionId
+	 * @param nanos
+	 *            the time since the connection was accepted
+	 */
+	public static void handshake(String sessionId, long nanos) {
+		if (RECORDER != null) {
+			RECORDER.handshake(engine, mode, sessionId, nanos);
+		}
+	}
+
+	/**
+	 * A request header was parsed
+	 * 
+	 * @param sessionId
+	 * @param nanos
+	 *            the time since the request bytes were read
+	 */
+	static void parsed(String sessionId, long nanos) {
+		if (RECORDER != null) {
+			RECORDER.parsed(engine, mode, sessionId, nanos);
+		}
+	}
+
+	/**
+	 * The write of a response started
+	 * 
+	 * @param sessionId
+	 * @param bytes
+	 *            the bytes queued by the first write of the response
+	 */
+	static void writeStarted(String sessionId, long bytes) {
+		if (RECORDER != null) {
+			RECORDER.writeStarted(engine, mode, sessionId, bytes);
+		}
+	}
+
+	/**
+	 * The write of a response completed, or failed
+	 * 
+	 * @param sessionId
+	 * @param bytes
+	 *            the bytes of the response written
+	 * @param writeNanos
+	 *            the time since the write started
+	 * @param requestNanos
+	 *            the time since the request bytes were read
+	 * @param success
+	 *            {@code false} if the response could not be written
+	 */
+	static void writeCompleted(String sessionId, long bytes, long writeNanos,
+			long requestNanos, boolean success) {
+		if (RECORDER != null) {
+			RECORDER.writeCompleted(engine, mode, sessionId, bytes, writeNanos, requestNanos,
+					success);
+		}
+	}
+
+	/**
+	 * A connection was closed
+	 * 
+	 * @param sessionId
+	 * @param requests
+	 *            the number of responses written on the connection
+	 * @param bytes
+	 *            the number of bytes written on the connection
+	 */
+	static void closed(String sessionId, long requests, long bytes) {
+		if (RECORDER != null) {
+			RECORDER.closed(engine, mode, sessionId, requests, bytes);
+		}
+	}
+
+	/**
+	 * {@code Recorder}
+	 * 
+	 * The events, recorded by {@code JfrEvents}
+	 */
+	interface Recorder {
+
+		/**
+		 * @return {@code true} if the JVM can record events
+		 */
+		boolean isAvailable();
+
+		void accepted(String engine, String mode);
+
+		void handshake(String engine, String mode, String sessionId, long nanos);
+
+		void parsed(String engine, String mode, String sessionId, long nanos);
+
+		void writeStarted(String engine, String mode, String sessionId, long bytes);
+
+		void writeCompleted(String engine, String mode, String sessionId, long bytes,
+				long writeNanos, long requestNanos, boolean success);
+
+		void closed(String engine, String mode, String sessionId, long requests, long bytes);
+	}
+}
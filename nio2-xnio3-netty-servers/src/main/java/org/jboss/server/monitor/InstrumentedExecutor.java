@@ -0,0 +1,241 @@
+/**
+ * JBoss, Home of Professional Open Source. Copyright 2011, Red Hat, Inc., and
+ * individual
+ * contributors as indicated by the @author tags. See the copyright.txt file in
+ * the distribution
+ * for a full listing of individual contributors.
+ * 
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation; either
+ * version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this
+ * software; if not, write to the Free Software Foundation, Inc., 51 Franklin
+ * St, Fifth Floor,
+ * Boston, MA 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.server.monitor;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@code InstrumentedExecutor}
+ * 
+ * An {@link ExecutorService} decorating the thread pool of an engine, which
+ * hides its queue otherwise: it records the time each task waits for a
+ * thread in a {@link LatencyHistogram}, and counts the queued tasks, the
+ * busy workers, the completed and the rejected tasks. The peaks are kept
+ * since the last reset. All the executors are reported by the
+ * {@link ServerStats}, and their queue depth is sampled over time by the
+ * {@link ResourceSampler}, so that the latency at high load can be told
+ * apart between the queueing and the I/O.
+ * 
+ * Created on Oct 19, 2026 at 11:12:37 PM
+ */
+public final class InstrumentedExecutor extends AbstractExecutorService {
+
+	private static final List<InstrumentedExecutor> executors = new CopyOnWriteArrayList<InstrumentedExecutor>();
+
+	private final String name;
+	private final ExecutorService delegate;
+	private final LatencyHistogram waits = new LatencyHistogram();
+	private final AtomicInteger queued = new AtomicInteger();
+	private final AtomicInteger active = new AtomicInteger();
+	private final AtomicInteger peakQueued = new AtomicInteger();
+	private final AtomicInteger peakActive = new AtomicInteger();
+	private final LongAdder completed = new LongAdder();
+	private final LongAdder rejected = new LongAdder();
+
+	/**
+	 * Create a new instance of {@code InstrumentedExecutor}, reported from now
+	 * on
+	 * 
+	 * @param name
+	 *            the name of the executor in the reports, without spaces
+	 * @param delegate
+	 *            the thread pool running the tasks
+	 */
+	public InstrumentedExecutor(String name, ExecutorService delegate) {
+		this.name = name;
+		this.delegate = delegate;
+		executors.add(this);
+	}
+
+	/**
+	 * @return the executors created so far
+	 */
+	public static List<InstrumentedExecutor> executors() {
+		return executors;
+	}
+
+	/**
+	 * @param name
+	 * @return the executor of the name
+	 * @throws IllegalArgumentException
+	 *             if there is no such executor
+	 */
+	public static InstrumentedExecutor executor(String name) {
+		for (InstrumentedExecutor executor : executors) {
+			if (executor.name.equals(name)) {
+				return executor;
+			}
+		}
+		throw new IllegalArgumentException("Unknown executor: " + name);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.util.concurrent.Executor#execute(java.lang.Runnable)
+	 */
+	@Override
+	public void execute(final Runnable command) {
+		final long enqueued = System.nanoTime();
+		peak(this.peakQueued, this.queued.incrementAndGet());
+		try {
+			this.delegate.execute(new Runnable() {
+				@Override
+				public void run() {
+					queued.decrementAndGet();
+					waits.record(System.nanoTime() - enqueued);
+					peak(peakActive, active.incrementAndGet());
+					try {
+						command.run();
+					} finally {
+						active.decrementAndGet();
+						completed.increment();
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			this.queued.decrementAndGet();
+			this.rejected.increment();
+			throw e;
+		}
+	}
+
+	/**
+	 * Raise the peak to the value, if higher
+	 * 
+	 * @param peak
+	 * @param value
+	 */
+	private static void peak(AtomicInteger peak, int value) {
+		int current;
+		while (value > (current = peak.get()) && !peak.compareAndSet(current, value)) {
+			// retry
+		}
+	}
+
+	/**
+	 * @return the name of the executor in the reports
+	 */
+	public String getName() {
+		return this.name;
+	}
+
+	/**
+	 * @return the histogram of the waits for a thread, in nanoseconds
+	 */
+	public LatencyHistogram getWaits() {
+		return this.waits;
+	}
+
+	/**
+	 * @return the number of tasks waiting for a thread
+	 */
+	public int getQueued() {
+		return this.queued.get();
+	}
+
+	/**
+	 * @return the number of workers running a task
+	 */
+	public int getActive() {
+		return this.active.get();
+	}
+
+	/**
+	 * @return the highest number of tasks waiting for a thread since the
+	 *         last reset
+	 */
+	public int getPeakQueued() {
+		return this.peakQueued.get();
+	}
+
+	/**
+	 * @return the highest number of workers running a task since the last
+	 *         reset
+	 */
+	public int getPeakActive() {
+		return this.peakActive.get();
+	}
+
+	/**
+	 * @return the number of tasks run since the last reset
+	 */
+	public long getCompleted() {
+		return this.completed.sum();
+	}
+
+	/**
+	 * @return the number of tasks refused by the thread pool since the last
+	 *         reset
+	 */
+	public long getRejected() {
+		return this.rejected.sum();
+	}
+
+	/**
+	 * Clear the waits, the peaks and the counters (the current queue and
+	 * workers are kept)
+	 */
+	public void reset() {
+		this.waits.reset();
+		this.peakQueued.set(this.queued.get());
+		this.peakActive.set(this.active.get());
+		this.completed.reset();
+		this.rejected.reset();
+	}
+
+	@Override
+	public void shutdown() {
+		this.delegate.shutdown();
+	}
+
+	@Override
+	public List<Runnable> shutdownNow() {
+		return this.delegate.shutdownNow();
+	}
+
+	@Override
+	public boolean isShutdown() {
+		return this.delegate.isShutdown();
+	}
+
+	@Override
+	public boolean isTerminated() {
+		return this.delegate.isTerminated();
+	}
+
+	@Override
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		return this.delegate.awaitTermination(timeout, unit);
+	}
+}
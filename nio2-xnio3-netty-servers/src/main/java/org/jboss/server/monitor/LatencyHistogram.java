@@ -0,0 +1,169 @@
+/**
+ * JBoss, Home of Professional Open Source. Copyright 2011, Red Hat, Inc., and
+ * individual
+ * contributors as indicated by the @author tags. See the copyright.txt file in
+ * the distribution
+ * for a full listing of individual contributors.
+ * 
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation; either
+ * version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this
+ * software; if not, write to the Free Software Foundation, Inc., 51 Franklin
+ * St, Fifth Floor,
+ * Boston, MA 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.server.monitor;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@code LatencyHistogram}
+ * 
+ * A lock-free log-linear histogram of durations in nanoseconds: every power
+ * of two is split into {@value #SUB_BUCKETS} linear buckets, so a recorded
+ * value is known within 1/{@value #SUB_BUCKETS} of its magnitude over the
+ * whole range of {@code long}. Recording is a few atomic increments and
+ * allocates nothing, the snapshots and percentiles are computed by the
+ * readers.
+ * 
+ * Created on Oct 19, 2026 at 8:21:37 PM
+ */
+public final class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 4;
+	/**
+	 * The number of linear buckets per power of two
+	 */
+	public static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Record a duration
+	 * 
+	 * @param nanos
+	 *            the duration in nanoseconds, a negative one counts as 0
+	 */
+	public void record(long nanos) {
+		long value = Math.max(0, nanos);
+		this.counts.incrementAndGet(index(value));
+		this.count.increment();
+		this.sum.add(value);
+		long m;
+		while (value > (m = this.max.get()) && !this.max.compareAndSet(m, value)) {
+			// retry
+		}
+	}
+
+	/**
+	 * @param value
+	 * @return the index of the bucket of the value
+	 */
+	static int index(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int magnitude = 63 - Long.numberOfLeadingZeros(value);
+		int shift = magnitude - SUB_BUCKET_BITS;
+		return ((shift + 1) << SUB_BUCKET_BITS) + (int) ((value >>> shift) - SUB_BUCKETS);
+	}
+
+	/**
+	 * @param index
+	 * @return the highest value of the bucket
+	 */
+	static long highestValue(int index) {
+		if (index < SUB_BUCKETS) {
+			return index;
+		}
+		int shift = (index >>> SUB_BUCKET_BITS) - 1;
+		long lowest = (long) (SUB_BUCKETS + (index & (SUB_BUCKETS - 1))) << shift;
+		return lowest + (1L << shift) - 1;
+	}
+
+	/**
+	 * @return the number of recorded values
+	 */
+	public long getCount() {
+		return this.count.sum();
+	}
+
+	/**
+	 * @return the mean of the recorded values in nanoseconds, 0 if there is
+	 *         none
+	 */
+	public long getMean() {
+		long n = this.count.sum();
+		return n == 0 ? 0 : this.sum.sum() / n;
+	}
+
+	/**
+	 * @return the highest recorded value in nanoseconds
+	 */
+	public long getMax() {
+		return this.max.get();
+	}
+
+	/**
+	 * @param percentiles
+	 *            the percentiles, in [0, 100] and in increasing order
+	 * @return the values of the percentiles in nanoseconds, each one is the
+	 *         highest value of its bucket (bounded by the maximum)
+	 */
+	public long[] getPercentiles(double... percentiles) {
+		long snapshot[] = new long[BUCKETS];
+		long total = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			snapshot[i] = this.counts.get(i);
+			total += snapshot[i];
+		}
+		long values[] = new long[percentiles.length];
+		if (total == 0) {
+			return values;
+		}
+		long max = this.max.get();
+		long seen = 0;
+		int p = 0;
+		for (int i = 0; i < BUCKETS && p < percentiles.length; i++) {
+			seen += snapshot[i];
+			while (p < percentiles.length && seen > 0
+					&& seen >= Math.ceil(percentiles[p] / 100 * total)) {
+				values[p++] = Math.min(highestValue(i), max);
+			}
+		}
+		while (p < percentiles.length) {
+			values[p++] = max;
+		}
+		return values;
+	}
+
+	/**
+	 * Clear the recorded values. The values recorded meanwhile may be
+	 * partially cleared.
+	 */
+	public void reset() {
+		for (int i = 0; i < BUCKETS; i++) {
+			this.counts.set(i, 0);
+		}
+		this.count.reset();
+		this.sum.reset();
+		this.max.set(0);
+	}
+}
@@ -0,0 +1,355 @@
+/**
+ * JBoss, Home of Professional Open Source. Copyright 2011, Red Hat, Inc., and
+ * individual
+ * contributors as indicated by the @author tags. See the copyright.txt file in
+ * the distribution
+ * for a full listing of individual contributors.
+ * 
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation; either
+ * version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this
+ * software; if not, write to the Free Software Foundation, Inc., 51 Franklin
+ * St, Fifth Floor,
+ * Boston, MA 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.server.monitor;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.server.common.AsyncLogger;
+import org.jboss.server.common.ServerConfig;
+
+/**
+ * {@code LoopLagProbe}
+ * 
+ * Measures how late the I/O threads of the engines run, which a blocking
+ * call on one of them (e.g., an {@code awaitWritable()} or a
+ * {@code Future.get()}) turns into client tail latency. Every
+ * {@link ServerConfig#LOOP_LAG_INTERVAL} milliseconds, the probe schedules a
+ * no-op onto each watched executor and records, once it runs, how long it
+ * waited, in a {@link LatencyHistogram} per loop. A probe still pending after
+ * {@link ServerConfig#LOOP_LAG_THRESHOLD} milliseconds is logged on a
+ * {@code LAG} line, along with a stack sample of the thread of the loop, by
+ * the {@link AsyncLogger} so that a late loop does not also wait for the
+ * console. The probes are off unless the interval is set, as sampling the
+ * stacks of the Netty threads has a cost of its own.
+ * 
+ * The I/O threads of Netty 3.2 do not run foreign tasks, so they are watched
+ * by their stack instead: the lag of such a loop is the time the thread was
+ * seen out of its selector, sampled at the same period.
+ * 
+ * Created on Oct 19, 2026 at 11:48:05 PM
+ */
+public final class LoopLagProbe {
+
+	private static final AsyncLogger log = AsyncLogger.getLogger(LoopLagProbe.class);
+	private static final long THRESHOLD = TimeUnit.MILLISECONDS
+			.toNanos(ServerConfig.LOOP_LAG_THRESHOLD);
+	private static final int MAX_FRAMES = 32;
+	private static final List<Loop> loops = new CopyOnWriteArrayList<Loop>();
+	// the executors and the threads already watched
+	private static final ConcurrentMap<Object, Boolean> watched = new ConcurrentHashMap<Object, Boolean>();
+	private static ScheduledExecutorService prober;
+
+	/**
+	 * Create a new instance of {@code LoopLagProbe}
+	 */
+	private LoopLagProbe() {
+		super();
+	}
+
+	/**
+	 * Start probing the watched loops, unless disabled. Only the first call
+	 * has an effect.
+	 */
+	public static synchronized void start() {
+		if (prober != null || ServerConfig.LOOP_LAG_INTERVAL <= 0) {
+			return;
+		}
+		prober = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "loop-lag-probe");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		prober.scheduleAtFixedRate(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					probe();
+				} catch (Throwable th) {
+					// never let the executor cancel the probes
+					th.printStackTrace();
+				}
+			}
+		}, ServerConfig.LOOP_LAG_INTERVAL, ServerConfig.LOOP_LAG_INTERVAL,
+				TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Watch the loop behind an executor, e.g., the read thread of a channel.
+	 * Watching the same executor again has no effect.
+	 * 
+	 * @param name
+	 *            the name of the loop in the reports, replaced by the name of
+	 *            its thread once known, unless it is a pool
+	 * @param executor
+	 *            the executor of the loop
+	 * @param pool
+	 *            whether the executor runs its tasks on several threads
+	 */
+	public static void watch(String name, Executor executor, boolean pool) {
+		if (ServerConfig.LOOP_LAG_INTERVAL > 0 && watched.putIfAbsent(executor, Boolean.TRUE) == null) {
+			loops.add(new ExecutorLoop(name, executor, pool));
+		}
+	}
+
+	/**
+	 * Watch the current thread, which must be a selector loop. Watching the
+	 * same thread again has no effect.
+	 */
+	public static void watchCurrentThread() {
+		Thread thread = Thread.currentThread();
+		if (ServerConfig.LOOP_LAG_INTERVAL > 0 && watched.putIfAbsent(thread, Boolean.TRUE) == null) {
+			loops.add(new ThreadLoop(thread));
+		}
+	}
+
+	/**
+	 * @return the histograms of the lags of the loops, by name
+	 */
+	public static Map<String, LatencyHistogram> lags() {
+		Map<String, LatencyHistogram> lags = new LinkedHashMap<String, LatencyHistogram>();
+		for (Loop loop : loops) {
+			lags.put(loop.getName(), loop.lags);
+		}
+		return lags;
+	}
+
+	/**
+	 * Clear the histograms of the lags
+	 */
+	public static void reset() {
+		for (Loop loop : loops) {
+			loop.lags.reset();
+		}
+	}
+
+	/**
+	 * Probe every loop once
+	 */
+	private static void probe() {
+		long now = System.nanoTime();
+		for (Loop loop : loops) {
+			loop.probe(now);
+		}
+	}
+
+	/**
+	 * Log a lag spike
+	 * 
+	 * @param loop
+	 * @param nanos
+	 *            the lag so far
+	 * @param thread
+	 *            the thread of the loop, {@code null} if unknown
+	 * @param stack
+	 *            the stack sample of the thread, {@code null} if none
+	 */
+	private static void spike(Loop loop, long nanos, Thread thread, StackTraceElement stack[]) {
+		StringBuilder sb = new StringBuilder(256);
+		if (thread != null) {
+			sb.append(" state=").append(thread.getState());
+		}
+		if (stack != null) {
+			for (int i = 0; i < stack.length && i < MAX_FRAMES; i++) {
+				sb.append("\n\tat ").append(stack[i]);
+			}
+		}
+		log.warn("LAG %d loop=%s lagMs=%d%s", System.currentTimeMillis(), loop.getName(),
+				TimeUnit.NANOSECONDS.toMillis(nanos), sb);
+	}
+
+	/**
+	 * @param name
+	 * @return the name without spaces, for the reports
+	 */
+	private static String label(String name) {
+		return name.replace(' ', '_');
+	}
+
+	/**
+	 * {@code Loop}
+	 * 
+	 * A watched loop and the histogram of its lags
+	 */
+	private static abstract class Loop {
+
+		protected final LatencyHistogram lags = new LatencyHistogram();
+
+		/**
+		 * @return the name of the loop in the reports
+		 */
+		abstract String getName();
+
+		/**
+		 * Probe the loop
+		 * 
+		 * @param now
+		 *            the time of the probe
+		 */
+		abstract void probe(long now);
+	}
+
+	/**
+	 * {@code ExecutorLoop}
+	 * 
+	 * A loop probed by a no-op, at most one pending at a time
+	 */
+	private static final class ExecutorLoop extends Loop implements Runnable {
+
+		private final String name;
+		private final Executor executor;
+		private final boolean pool;
+		// the time the pending probe was scheduled, 0 if none
+		private volatile long pending;
+		private volatile boolean logged;
+		private volatile Thread thread;
+
+		ExecutorLoop(String name, Executor executor, boolean pool) {
+			this.name = name;
+			this.executor = executor;
+			this.pool = pool;
+		}
+
+		@Override
+		String getName() {
+			Thread thread = this.thread;
+			return this.pool || thread == null ? this.name : label(thread.getName());
+		}
+
+		@Override
+		void probe(long now) {
+			long pending = this.pending;
+			if (pending != 0) {
+				// still blocked, sample the thread once
+				if (!this.logged && now - pending > THRESHOLD) {
+					this.logged = true;
+					Thread thread = this.pool ? null : this.thread;
+					spike(this, now - pending, thread,
+							thread == null ? null : thread.getStackTrace());
+				}
+				return;
+			}
+			this.logged = false;
+			this.pending = now;
+			this.executor.execute(this);
+		}
+
+		@Override
+		public void run() {
+			long lag = System.nanoTime() - this.pending;
+			this.thread = Thread.currentThread();
+			this.lags.record(lag);
+			if (!this.logged && lag > THRESHOLD) {
+				// late, but not seen by a probe
+				this.logged = true;
+				spike(this, lag, null, null);
+			}
+			this.pending = 0;
+		}
+	}
+
+	/**
+	 * {@code ThreadLoop}
+	 * 
+	 * A selector loop watched by its stack
+	 */
+	private static final class ThreadLoop extends Loop {
+
+		private final Thread thread;
+		private final String name;
+		// the first and the last probes which saw the thread out of its
+		// selector, 0 if none
+		private long busySince;
+		private long busyUntil;
+		private boolean logged;
+
+		ThreadLoop(Thread thread) {
+			this.thread = thread;
+			// the name of an idle thread may change, e.g., back in its pool
+			this.name = label(thread.getName());
+		}
+
+		@Override
+		String getName() {
+			return this.name;
+		}
+
+		@Override
+		void probe(long now) {
+			if (!this.thread.isAlive()) {
+				loops.remove(this);
+				watched.remove(this.thread);
+				return;
+			}
+			StackTraceElement stack[] = this.thread.getStackTrace();
+			if (idle(stack)) {
+				this.lags.record(this.busySince == 0 ? 0 : this.busyUntil - this.busySince);
+				this.busySince = 0;
+				return;
+			}
+			if (this.busySince == 0) {
+				this.busySince = now;
+				this.logged = false;
+			}
+			this.busyUntil = now;
+			if (!this.logged && now - this.busySince > THRESHOLD) {
+				this.logged = true;
+				spike(this, now - this.busySince, this.thread, stack);
+			}
+		}
+
+		/**
+		 * @param stack
+		 * @return whether the thread waits in a selector, or for a task once
+		 *         back in its pool
+		 */
+		private static boolean idle(StackTraceElement stack[]) {
+			for (StackTraceElement frame : stack) {
+				String className = frame.getClassName();
+				if (className.startsWith("sun.nio.ch.") && className.endsWith("SelectorImpl")) {
+					return true;
+				}
+				if (className.equals("java.util.concurrent.ThreadPoolExecutor")
+						&& frame.getMethodName().equals("getTask")) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+}
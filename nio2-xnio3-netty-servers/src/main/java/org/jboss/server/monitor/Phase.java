@@ -0,0 +1,77 @@
+/**
+ * JBoss, Home of Professional Open Source. Copyright 2011, Red Hat, Inc., and
+ * individual
+ * contributors as indicated by the @author tags. See the copyright.txt file in
+ * the distribution
+ * for a full listing of individual contributors.
+ * 
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation; either
+ * version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this
+ * software; if not, write to the Free Software Foundation, Inc., 51 Franklin
+ * St, Fifth Floor,
+ * Boston, MA 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.server.monitor;
+
+/**
+ * {@code Phase}
+ * 
+ * The phases of the connections and of the requests timed by the servers.
+ * The request phases are measured from the time the request bytes are read.
+ * 
+ * Created on Oct 19, 2026 at 8:24:03 PM
+ */
+public enum Phase {
+
+	/**
+	 * From the accepted connection to the session ready for the requests, the
+	 * session initialization included
+	 */
+	ACCEPT("accept"),
+	/**
+	 * Parsing the request header
+	 */
+	PARSE("parse"),
+	/**
+	 * Looking up the content, the file cache, the variants and the validators
+	 */
+	LOOKUP("lookup"),
+	/**
+	 * Until the first bytes of the response are written
+	 */
+	FIRST_BYTE("firstByte"),
+	/**
+	 * Until the last bytes of the response are written and flushed
+	 */
+	LAST_BYTE("lastByte");
+
+	private final String label;
+
+	/**
+	 * Create a new instance of {@code Phase}
+	 * 
+	 * @param label
+	 */
+	private Phase(String label) {
+		this.label = label;
+	}
+
+	/**
+	 * @return the label of the phase in the reports
+	 */
+	public String getLabel() {
+		return this.label;
+	}
+}
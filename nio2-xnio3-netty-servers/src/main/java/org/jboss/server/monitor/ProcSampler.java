@@ -0,0 +1,281 @@
+/**
+ * JBoss, Home of Professional Open Source. Copyright 2011, Red Hat, Inc., and
+ * individual
+ * contributors as indicated by the @author tags. See the copyright.txt file in
+ * the distribution
+ * for a full listing of individual contributors.
+ * 
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation; either
+ * version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this
+ * software; if not, write to the Free Software Foundation, Inc., 51 Franklin
+ * St, Fifth Floor,
+ * Boston, MA 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.server.monitor;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * {@code ProcSampler}
+ * 
+ * Reads the counters of the OS for the process from {@code /proc} (Linux
+ * only): the voluntary and involuntary context switches and the CPU ticks of
+ * each thread ({@code /proc/self/task/*}), the resident memory
+ * ({@code /proc/self/status}), the bytes and packets of each network
+ * interface ({@code /proc/net/dev}) and the TCP segments sent and
+ * retransmitted ({@code /proc/net/snmp}). Every sample appends the changes
+ * since the previous one to the lines of the {@link ResourceSampler}:
+ * 
+ * <pre>
+ * # P t_ms vol_cs invol_cs requests cs_per_request rss_kb tcp_out_segs tcp_retrans_segs
+ * # N t_ms iface rx_kb rx_packets tx_kb tx_packets
+ * # C t_ms tid vol_cs invol_cs cpu_pct name
+ * </pre>
+ * 
+ * The {@code P} line sums the context switches of all the threads and
+ * divides them by the requests served meanwhile. The {@code N} lines are the
+ * interfaces with some traffic, the {@code C} lines the threads with some
+ * context switches, their CPU in percent of one core (at 100 ticks per
+ * second) and their native name, as truncated by the kernel.
+ * 
+ * Created on Oct 20, 2026 at 1:14:26 AM
+ */
+final class ProcSampler {
+
+	/**
+	 * The header of the lines
+	 */
+	static final String HEADER = "# P t_ms vol_cs invol_cs requests cs_per_request rss_kb"
+			+ " tcp_out_segs tcp_retrans_segs\n# N t_ms iface rx_kb rx_packets tx_kb tx_packets\n"
+			+ "# C t_ms tid vol_cs invol_cs cpu_pct name\n";
+	private static final File TASKS = new File("/proc/self/task");
+	private static final long TICKS_PER_SECOND = 100;
+
+	// the voluntary and involuntary switches and the CPU ticks of the
+	// threads, by native ID
+	private Map<String, long[]> tasks = new HashMap<String, long[]>();
+	// the received and sent bytes and packets of the interfaces
+	private Map<String, long[]> interfaces = new HashMap<String, long[]>();
+	private long tcp[] = new long[2];
+	private long requests;
+
+	/**
+	 * Create a new instance of {@code ProcSampler}, the first sample counts
+	 * from now
+	 * 
+	 * @param requests
+	 *            the requests served so far
+	 */
+	ProcSampler(long requests) {
+		sample(null, 0, 1, requests, false);
+	}
+
+	/**
+	 * @return whether the counters can be read, i.e., on Linux
+	 */
+	static boolean isAvailable() {
+		return TASKS.isDirectory() && new File("/proc/net/dev").canRead();
+	}
+
+	/**
+	 * Append the changes of the counters since the last sample
+	 * 
+	 * @param sb
+	 *            the lines of the sample, {@code null} to take the baselines
+	 *            only
+	 * @param t
+	 *            the time of the sample in milliseconds
+	 * @param wall
+	 *            the nanoseconds since the last sample
+	 * @param requests
+	 *            the requests served so far
+	 * @param threads
+	 *            append the {@code C} lines of the threads
+	 */
+	void sample(StringBuilder sb, long t, long wall, long requests, boolean threads) {
+		long switches[] = new long[2];
+		StringBuilder lines = sb == null || !threads ? null : new StringBuilder();
+		Map<String, long[]> tasks = new HashMap<String, long[]>(this.tasks.size() * 2 + 16);
+		String ids[] = TASKS.list();
+		for (int i = 0; ids != null && i < ids.length; i++) {
+			String stat, status;
+			try {
+				stat = read("/proc/self/task/" + ids[i] + "/stat");
+				status = read("/proc/self/task/" + ids[i] + "/status");
+			} catch (IOException e) {
+				// the thread has terminated meanwhile
+				continue;
+			}
+			// the name may contain spaces and parentheses
+			int end = stat.lastIndexOf(')');
+			String fields[] = stat.substring(end + 2).split(" ");
+			long counters[] = { field(status, "voluntary_ctxt_switches:"),
+					field(status, "nonvoluntary_ctxt_switches:"),
+					Long.parseLong(fields[11]) + Long.parseLong(fields[12]) };
+			tasks.put(ids[i], counters);
+			long last[] = this.tasks.get(ids[i]);
+			long vol = counters[0] - (last == null ? 0 : last[0]);
+			long invol = counters[1] - (last == null ? 0 : last[1]);
+			long ticks = counters[2] - (last == null ? 0 : last[2]);
+			switches[0] += vol;
+			switches[1] += invol;
+			if (lines != null && vol + invol > 0) {
+				lines.append("C ").append(t).append(' ').append(ids[i]).append(' ').append(vol)
+						.append(' ').append(invol).append(' ')
+						.append(percent(ticks * 1000000000L / TICKS_PER_SECOND, wall))
+						.append(' ').append(stat.substring(stat.indexOf('(') + 1, end))
+						.append('\n');
+			}
+		}
+		this.tasks = tasks;
+		long rss = 0, tcp[] = this.tcp;
+		Map<String, long[]> interfaces = this.interfaces;
+		try {
+			rss = field(read("/proc/self/status"), "VmRSS:");
+			tcp = tcp(read("/proc/net/snmp"));
+			interfaces = interfaces(read("/proc/net/dev"));
+		} catch (IOException e) {
+			// keep the last counters
+		}
+		if (sb != null) {
+			long served = requests - this.requests;
+			sb.append("P ").append(t).append(' ').append(switches[0]).append(' ')
+					.append(switches[1]).append(' ').append(served).append(' ');
+			sb.append(served == 0 ? "-" : String.format(Locale.ROOT, "%.2f",
+					(switches[0] + switches[1]) / (double) served));
+			sb.append(' ').append(rss).append(' ').append(tcp[0] - this.tcp[0]).append(' ')
+					.append(tcp[1] - this.tcp[1]).append('\n');
+			for (Map.Entry<String, long[]> entry : interfaces.entrySet()) {
+				long counters[] = entry.getValue();
+				long last[] = this.interfaces.get(entry.getKey());
+				if (last == null) {
+					last = new long[counters.length];
+				}
+				if (counters[1] == last[1] && counters[3] == last[3]) {
+					continue;
+				}
+				sb.append("N ").append(t).append(' ').append(entry.getKey()).append(' ')
+						.append((counters[0] - last[0]) >> 10).append(' ')
+						.append(counters[1] - last[1]).append(' ')
+						.append((counters[2] - last[2]) >> 10).append(' ')
+						.append(counters[3] - last[3]).append('\n');
+			}
+			if (lines != null) {
+				sb.append(lines);
+			}
+		}
+		this.requests = requests;
+		this.tcp = tcp;
+		this.interfaces = interfaces;
+	}
+
+	/**
+	 * @param file
+	 * @return the content of the file
+	 * @throws IOException
+	 */
+	private static String read(String file) throws IOException {
+		return new String(Files.readAllBytes(Paths.get(file)), StandardCharsets.US_ASCII);
+	}
+
+	/**
+	 * @param status
+	 *            the content of a {@code status} file
+	 * @param name
+	 *            the name of the field, with its colon
+	 * @return the (first) number of the field, 0 if none
+	 */
+	private static long field(String status, String name) {
+		int i = status.indexOf(name);
+		if (i < 0) {
+			return 0;
+		}
+		int end = status.indexOf('\n', i);
+		String value = status.substring(i + name.length(), end < 0 ? status.length() : end)
+				.trim();
+		int space = value.indexOf(' ');
+		return Long.parseLong(space < 0 ? value : value.substring(0, space));
+	}
+
+	/**
+	 * @param snmp
+	 *            the content of {@code /proc/net/snmp}
+	 * @return the TCP segments sent and retransmitted since the boot
+	 */
+	private static long[] tcp(String snmp) {
+		String names[] = null;
+		for (String line : snmp.split("\n")) {
+			if (!line.startsWith("Tcp:")) {
+				continue;
+			}
+			if (names == null) {
+				names = line.split(" ");
+				continue;
+			}
+			String values[] = line.split(" ");
+			long tcp[] = new long[2];
+			for (int i = 1; i < names.length && i < values.length; i++) {
+				if (names[i].equals("OutSegs")) {
+					tcp[0] = Long.parseLong(values[i]);
+				} else if (names[i].equals("RetransSegs")) {
+					tcp[1] = Long.parseLong(values[i]);
+				}
+			}
+			return tcp;
+		}
+		return new long[2];
+	}
+
+	/**
+	 * @param dev
+	 *            the content of {@code /proc/net/dev}
+	 * @return the received bytes and packets, and the sent bytes and packets,
+	 *         of the interfaces
+	 */
+	private static Map<String, long[]> interfaces(String dev) {
+		Map<String, long[]> interfaces = new HashMap<String, long[]>();
+		for (String line : dev.split("\n")) {
+			int colon = line.indexOf(':');
+			if (colon < 0) {
+				// the headers
+				continue;
+			}
+			String fields[] = line.substring(colon + 1).trim().split(" +");
+			if (fields.length < 10) {
+				continue;
+			}
+			interfaces.put(line.substring(0, colon).trim(), new long[] {
+					Long.parseLong(fields[0]), Long.parseLong(fields[1]),
+					Long.parseLong(fields[8]), Long.parseLong(fields[9]) });
+		}
+		return interfaces;
+	}
+
+	/**
+	 * @param value
+	 * @param total
+	 * @return the value in percent of the total, with one decimal
+	 */
+	private static String percent(double value, double total) {
+		return String.format(Locale.ROOT, "%.1f", total <= 0 ? 0 : 100 * value / total);
+	}
+}
@@ -0,0 +1,375 @@
+/**
+ * JBoss, Home of Professional Open Source. Copyright 2011, Red Hat, Inc., and
+ * individual
+ * contributors as indicated by the @author tags. See the copyright.txt file in
+ * the distribution
+ * for a full listing of individual contributors.
+ * 
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation; either
+ * version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this
+ * software; if not, write to the Free Software Foundation, Inc., 51 Franklin
+ * St, Fifth Floor,
+ * Boston, MA 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.server.monitor;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Locale;
+
+import org.jboss.server.common.ServerConfig;
+
+/**
+ * {@code RequestTimer}
+ * 
+ * Times the requests of a connection into the {@link ServerStats}, and
+ * emits their {@link FlightEvents}. The requests of a connection are served
+ * one after the other, so a single timer is reused and recording allocates
+ * nothing. It is not thread-safe: the engines hand a connection from a
+ * thread to another through its channel operations, which orders the calls.
+ * 
+ * With {@link ServerConfig#ALLOCATION_ACCOUNTING}, the bytes allocated by
+ * the thread handling a request are measured from the read of the request
+ * to {@link #handled()}, i.e., until the response is handed to the channel.
+ * The allocations of the write completions running later, or on another
+ * thread, are not measured.
+ * 
+ * The requests slower than {@link ServerConfig#SLOW_REQUEST_THRESHOLD} are
+ * described in the {@link SlowRequestLog}.
+ * 
+ * Created on Oct 19, 2026 at 8:33:52 PM
+ */
+public final class RequestTimer {
+
+	private static final com.sun.management.ThreadMXBean THREADS = allocationMXBean();
+
+	private final long created = System.nanoTime();
+	// the time the request bytes were read, -1 between the requests
+	private long received = -1;
+	// the time of the last read, the pipelined requests are timed from it
+	private long lastRead;
+	private boolean firstByte;
+	private long firstByteAt;
+	// the thread which read the request and the number of writes of the
+	// response, for the slow requests
+	private Thread reader;
+	private int writes;
+	// the time the write of the response started, -1 before
+	private long writing = -1;
+	private long responseBytes;
+	// the durations reported by the Server-Timing header
+	private long queue;
+	private long parse;
+	private long lookup;
+	private String sessionId;
+	// the totals of the connection
+	private long requests;
+	private long bytes;
+	private boolean closed;
+	// the allocation accounting, see handled()
+	private Thread handler;
+	private long allocationStart = -1;
+	private long allocated = -1;
+	private boolean succeeded;
+
+	/**
+	 * @return the thread bean measuring the allocations, {@code null} if the
+	 *         accounting is disabled or not supported
+	 */
+	private static com.sun.management.ThreadMXBean allocationMXBean() {
+		if (!ServerConfig.ALLOCATION_ACCOUNTING) {
+			return null;
+		}
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (threads instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threads;
+			if (bean.isThreadAllocatedMemorySupported()) {
+				bean.setThreadAllocatedMemoryEnabled(true);
+				return bean;
+			}
+		}
+		System.err.println("ERROR: the allocation accounting is not supported by this JVM");
+		return null;
+	}
+
+	/**
+	 * @param sessionId
+	 *            the session ID of the connection, carried by the events
+	 */
+	public void setSessionId(String sessionId) {
+		this.sessionId = sessionId;
+	}
+
+	/**
+	 * The bytes of a request were read. The time of the first read is kept
+	 * until the response is completed.
+	 */
+	public void received() {
+		this.lastRead = System.nanoTime();
+		received(this.lastRead);
+	}
+
+	/**
+	 * Another request was parsed out of the bytes already read, i.e., the
+	 * client pipelines its requests. It waited in the buffer since the last
+	 * read, so it is timed from there. Nothing changes while the previous
+	 * request is not completed.
+	 */
+	public void pipelined() {
+		received(this.lastRead);
+	}
+
+	/**
+	 * @param at
+	 *            the time the bytes of the request were read
+	 */
+	private void received(long at) {
+		if (this.received < 0) {
+			this.received = at;
+			this.firstByte = false;
+			this.writing = -1;
+			this.responseBytes = 0;
+			this.writes = 0;
+			this.reader = Thread.currentThread();
+			this.parse = 0;
+			this.lookup = 0;
+			if (THREADS != null) {
+				this.handler = Thread.currentThread();
+				this.allocationStart = THREADS.getThreadAllocatedBytes(this.handler.getId());
+				this.allocated = -1;
+			}
+		}
+	}
+
+	/**
+	 * The thread which read the request is done with it: the response is
+	 * written, or handed to the channel. Only used by the allocation
+	 * accounting, either before or after {@link #completed()}.
+	 */
+	public void handled() {
+		if (this.allocationStart < 0) {
+			return;
+		}
+		Thread thread = Thread.currentThread();
+		if (thread == this.handler) {
+			this.allocated = THREADS.getThreadAllocatedBytes(thread.getId())
+					- this.allocationStart;
+		}
+		this.allocationStart = -1;
+		if (this.received < 0) {
+			// the response was already written
+			recordAllocation();
+		}
+	}
+
+	/**
+	 * The request header was parsed
+	 */
+	public void parsed() {
+		if (this.received >= 0) {
+			long nanos = System.nanoTime() - this.received;
+			this.parse = nanos;
+			ServerStats.record(Phase.PARSE, nanos);
+			FlightEvents.parsed(this.sessionId, nanos);
+		}
+	}
+
+	/**
+	 * The connection waited for a thread before its first request was read,
+	 * on the sync engines
+	 * 
+	 * @param nanos
+	 */
+	public void queued(long nanos) {
+		this.queue = nanos;
+	}
+
+	/**
+	 * The content of the request was looked up
+	 * 
+	 * @param nanos
+	 */
+	public void lookedUp(long nanos) {
+		this.lookup = nanos;
+		ServerStats.record(Phase.LOOKUP, nanos);
+	}
+
+	/**
+	 * The queue wait is only reported with the first request of the
+	 * connection (see {@link #queued(long)}), the write start is the time elapsed since the request was
+	 * read, the response being ready to be written.
+	 * 
+	 * @return the value of the {@code Server-Timing} header of the response,
+	 *         the durations in milliseconds
+	 */
+	public String getServerTiming() {
+		long write = this.received < 0 ? 0 : System.nanoTime() - this.received;
+		String timing = String.format(Locale.ROOT,
+				"queue;dur=%.3f, parse;dur=%.3f, lookup;dur=%.3f, write;dur=%.3f",
+				this.queue / 1e6, this.parse / 1e6, this.lookup / 1e6, write / 1e6);
+		return timing;
+	}
+
+	/**
+	 * The response is queued for writing, only the first write of a response
+	 * is reported
+	 * 
+	 * @param bytes
+	 *            the bytes queued
+	 */
+	public void writing(long bytes) {
+		if (this.received >= 0 && this.writing < 0) {
+			this.writing = System.nanoTime();
+			FlightEvents.writeStarted(this.sessionId, bytes);
+		}
+	}
+
+	/**
+	 * Bytes of the response were written
+	 * 
+	 * @param bytes
+	 */
+	public void written(long bytes) {
+		if (bytes <= 0) {
+			return;
+		}
+		ServerStats.addBytes(bytes);
+		this.bytes += bytes;
+		this.responseBytes += bytes;
+		this.writes++;
+		if (!this.firstByte && this.received >= 0) {
+			this.firstByte = true;
+			this.firstByteAt = System.nanoTime();
+			ServerStats.record(Phase.FIRST_BYTE, this.firstByteAt - this.received);
+		}
+	}
+
+	/**
+	 * The whole response was written and flushed
+	 */
+	public void completed() {
+		if (this.received >= 0) {
+			long now = System.nanoTime();
+			ServerStats.record(Phase.LAST_BYTE, now - this.received);
+			ServerStats.addRequest();
+			this.requests++;
+			writeCompleted(now, true);
+			slow(now, true);
+			this.received = -1;
+			this.queue = 0;
+			this.succeeded = true;
+			recordAllocation();
+		}
+	}
+
+	/**
+	 * The bytes read were not a request, e.g., a session initialization
+	 */
+	public void cancel() {
+		this.received = -1;
+		this.allocationStart = -1;
+	}
+
+	/**
+	 * The response could not be written
+	 */
+	public void failed() {
+		if (this.received >= 0) {
+			ServerStats.addError();
+			long now = System.nanoTime();
+			writeCompleted(now, false);
+			slow(now, false);
+			this.received = -1;
+			this.queue = 0;
+			this.succeeded = false;
+		}
+	}
+
+	/**
+	 * The connection was closed, only the first call is reported
+	 */
+	public void closed() {
+		if (!this.closed) {
+			this.closed = true;
+			FlightEvents.closed(this.sessionId, this.requests, this.bytes);
+		}
+	}
+
+	/**
+	 * Record the allocations of a request once it is both handled and
+	 * successfully completed
+	 */
+	private void recordAllocation() {
+		if (this.allocated >= 0 && this.succeeded) {
+			ServerStats.recordAllocation(this.allocated, this.responseBytes);
+		}
+		this.allocated = -1;
+	}
+
+	/**
+	 * Describe the request in the {@link SlowRequestLog} if it is slow. The
+	 * durations are in microseconds, the first and last bytes and the write
+	 * start are counted from the read of the request.
+	 * 
+	 * @param now
+	 * @param success
+	 */
+	private void slow(long now, boolean success) {
+		long total = now - this.received;
+		if (SlowRequestLog.THRESHOLD <= 0 || total < SlowRequestLog.THRESHOLD) {
+			return;
+		}
+		StringBuilder sb = new StringBuilder(256);
+		sb.append("SLOW ").append(System.currentTimeMillis());
+		sb.append(" session=").append(this.sessionId);
+		sb.append(" request=").append(this.requests + (success ? 0 : 1));
+		sb.append(" ageMs=").append((this.received - this.created) / 1000000);
+		sb.append(" totalUs=").append(total / 1000);
+		sb.append(" queueUs=").append(this.queue / 1000);
+		sb.append(" parseUs=").append(this.parse / 1000);
+		sb.append(" lookupUs=").append(this.lookup / 1000);
+		sb.append(" writeStartUs=").append(
+				this.writing < 0 ? -1 : (this.writing - this.received) / 1000);
+		sb.append(" firstByteUs=").append(
+				this.firstByte ? (this.firstByteAt - this.received) / 1000 : -1);
+		sb.append(" bytes=").append(this.responseBytes);
+		sb.append(" writes=").append(this.writes);
+		sb.append(" reader=").append(name(this.reader));
+		sb.append(" completer=").append(name(Thread.currentThread()));
+		sb.append(" ok=").append(success);
+		SlowRequestLog.record(sb.toString());
+	}
+
+	/**
+	 * @param thread
+	 * @return the name of the thread without spaces
+	 */
+	private static String name(Thread thread) {
+		return thread == null ? "-" : thread.getName().replace(' ', '_');
+	}
+
+	/**
+	 * Report the end of the write of the response, if it was started
+	 * 
+	 * @param now
+	 * @param success
+	 */
+	private void writeCompleted(long now, boolean success) {
+		if (this.writing >= 0) {
+			FlightEvents.writeCompleted(this.sessionId, this.responseBytes, now - this.writing,
+					now - this.received, success);
+		}
+	}
+}
@@ -0,0 +1,349 @@
+/**
+ * JBoss, Home of Professional Open Source. Copyright 2011, Red Hat, Inc., and
+ * individual
+ * contributors as indicated by the @author tags. See the copyright.txt file in
+ * the distribution
+ * for a full listing of individual contributors.
+ * 
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation; either
+ * version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this
+ * software; if not, write to the Free Software Foundation, Inc., 51 Franklin
+ * St, Fifth Floor,
+ * Boston, MA 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.server.monitor;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryUsage;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.server.common.ServerConfig;
+
+/**
+ * {@code ResourceSampler}
+ * 
+ * Samples the resources of the server from within the JVM, in place of a
+ * {@code top} running next to it: the CPU of the process and of each thread,
+ * the heap, the direct and mapped buffer pools, the GC counts and times and
+ * the thread counts, and the queues of the {@link InstrumentedExecutor}s. The
+ * samples are written every
+ * {@link ServerConfig#RESOURCE_SAMPLE_INTERVAL} milliseconds to
+ * {@link ServerConfig#RESOURCE_SAMPLE_FILE}, one line each:
+ * 
+ * <pre>
+ * # resources pid=&lt;pid&gt; cpus=&lt;n&gt; start=&lt;epoch ms&gt; interval=&lt;ms&gt;
+ * # S t_ms cpu_pct sys_cpu_pct heap_used_kb heap_committed_kb nonheap_used_kb direct_kb direct_count mapped_kb gc_count gc_ms threads daemons
+ * # T t_ms tid cpu_pct name
+ * # E t_ms name queued active completed rejected
+ * </pre>
+ * 
+ * The {@code S} lines are the samples of the process, the CPU in percent of
+ * the whole machine (as the load of the {@code Cpu} line of {@code top}) and
+ * the GC counters since the start. The {@code T} lines follow their sample,
+ * one per thread which used CPU during the interval, in percent of one core.
+ * The {@code E} lines follow them, one per executor, with its queue depth and
+ * busy workers at the time of the sample and its counters since the start (or
+ * the last reset of the {@link ServerStats}). On Linux, the counters of the
+ * OS follow, see {@link ProcSampler}: the context switches (per request too),
+ * the network interfaces and the TCP retransmissions.
+ * 
+ * Created on Oct 19, 2026 at 10:06:44 PM
+ */
+public final class ResourceSampler {
+
+	// the replacement of getSystemCpuLoad() since Java 14, null before
+	private static final Method CPU_LOAD = cpuLoadMethod();
+	private static ResourceSampler sampler;
+
+	private final BufferedWriter out;
+	private final long start = System.nanoTime();
+	private final int cpus = Runtime.getRuntime().availableProcessors();
+	private final OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+	private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+	private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+	private final List<GarbageCollectorMXBean> collectors = ManagementFactory
+			.getGarbageCollectorMXBeans();
+	private final List<BufferPoolMXBean> pools = ManagementFactory
+			.getPlatformMXBeans(BufferPoolMXBean.class);
+	private final boolean threadCpu;
+	private long lastTime = this.start;
+	private long lastCpu = processCpuTime();
+	// the CPU time and the name of the threads seen by the last sample
+	private Map<Long, Long> threadTimes = new HashMap<Long, Long>();
+	private final Map<Long, String> threadNames = new HashMap<Long, String>();
+	// the counters of the OS, null unless on Linux
+	private final ProcSampler proc;
+
+	/**
+	 * Create a new instance of {@code ResourceSampler}
+	 * 
+	 * @param file
+	 * @throws IOException
+	 */
+	private ResourceSampler(String file) throws IOException {
+		this.out = new BufferedWriter(new FileWriter(file));
+		this.threadCpu = ServerConfig.RESOURCE_SAMPLE_THREADS
+				&& this.threads.isThreadCpuTimeSupported();
+		if (this.threadCpu && !this.threads.isThreadCpuTimeEnabled()) {
+			this.threads.setThreadCpuTimeEnabled(true);
+		}
+		if (this.threadCpu) {
+			// the first sample reports the CPU used since now
+			sampleThreads(new StringBuilder(), 0, 1);
+		}
+		this.proc = ProcSampler.isAvailable() ? new ProcSampler(ServerStats.requestCount())
+				: null;
+		this.out.write("# resources pid="
+				+ ManagementFactory.getRuntimeMXBean().getName().split("@")[0] + " cpus="
+				+ this.cpus + " start=" + System.currentTimeMillis() + " interval="
+				+ ServerConfig.RESOURCE_SAMPLE_INTERVAL + "\n");
+		this.out.write("# S t_ms cpu_pct sys_cpu_pct heap_used_kb heap_committed_kb"
+				+ " nonheap_used_kb direct_kb direct_count mapped_kb gc_count gc_ms threads"
+				+ " daemons\n");
+		this.out.write("# T t_ms tid cpu_pct name\n");
+		this.out.write("# E t_ms name queued active completed rejected\n");
+		if (this.proc != null) {
+			this.out.write(ProcSampler.HEADER);
+		}
+		this.out.flush();
+	}
+
+	/**
+	 * Start sampling, if a file is configured. Only the first call has an
+	 * effect.
+	 */
+	public static synchronized void start() {
+		if (sampler != null || ServerConfig.RESOURCE_SAMPLE_FILE == null
+				|| ServerConfig.RESOURCE_SAMPLE_INTERVAL <= 0) {
+			return;
+		}
+		try {
+			sampler = new ResourceSampler(ServerConfig.RESOURCE_SAMPLE_FILE);
+		} catch (IOException e) {
+			System.err.println("ERROR: cannot write the resource samples to "
+					+ ServerConfig.RESOURCE_SAMPLE_FILE + ": " + e);
+			return;
+		}
+		ScheduledExecutorService executor = Executors
+				.newSingleThreadScheduledExecutor(new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, "resource-sampler");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		executor.scheduleAtFixedRate(new Runnable() {
+			@Override
+			public void run() {
+				sampler.sample();
+			}
+		}, ServerConfig.RESOURCE_SAMPLE_INTERVAL, ServerConfig.RESOURCE_SAMPLE_INTERVAL,
+				TimeUnit.MILLISECONDS);
+		Runtime.getRuntime().addShutdownHook(new Thread("resource-sampler-shutdown") {
+			@Override
+			public void run() {
+				sampler.close();
+			}
+		});
+	}
+
+	/**
+	 * Write a sample, and the CPU of the threads
+	 */
+	private synchronized void sample() {
+		try {
+			long now = System.nanoTime();
+			long wall = Math.max(1, now - this.lastTime);
+			long t = TimeUnit.NANOSECONDS.toMillis(now - this.start);
+			long cpu = processCpuTime();
+			MemoryUsage heap = this.memory.getHeapMemoryUsage();
+			MemoryUsage nonHeap = this.memory.getNonHeapMemoryUsage();
+			long direct = 0, directCount = 0, mapped = 0;
+			for (BufferPoolMXBean pool : this.pools) {
+				if ("direct".equals(pool.getName())) {
+					direct = pool.getMemoryUsed();
+					directCount = pool.getCount();
+				} else if ("mapped".equals(pool.getName())) {
+					mapped = pool.getMemoryUsed();
+				}
+			}
+			long gcCount = 0, gcTime = 0;
+			for (GarbageCollectorMXBean collector : this.collectors) {
+				gcCount += Math.max(0, collector.getCollectionCount());
+				gcTime += Math.max(0, collector.getCollectionTime());
+			}
+			StringBuilder sb = new StringBuilder(256);
+			sb.append("S ").append(t).append(' ');
+			sb.append(percent(cpu - this.lastCpu, wall * this.cpus)).append(' ');
+			sb.append(percent(systemCpuLoad(), 1)).append(' ');
+			sb.append(heap.getUsed() >> 10).append(' ');
+			sb.append(heap.getCommitted() >> 10).append(' ');
+			sb.append(nonHeap.getUsed() >> 10).append(' ');
+			sb.append(direct >> 10).append(' ').append(directCount).append(' ');
+			sb.append(mapped >> 10).append(' ');
+			sb.append(gcCount).append(' ').append(gcTime).append(' ');
+			sb.append(this.threads.getThreadCount()).append(' ');
+			sb.append(this.threads.getDaemonThreadCount()).append('\n');
+			if (this.threadCpu) {
+				sampleThreads(sb, t, wall);
+			}
+			for (InstrumentedExecutor executor : InstrumentedExecutor.executors()) {
+				sb.append("E ").append(t).append(' ').append(executor.getName()).append(' ');
+				sb.append(executor.getQueued()).append(' ').append(executor.getActive())
+						.append(' ');
+				sb.append(executor.getCompleted()).append(' ').append(executor.getRejected())
+						.append('\n');
+			}
+			if (this.proc != null) {
+				this.proc.sample(sb, t, wall, ServerStats.requestCount(), this.threadCpu);
+			}
+			this.out.write(sb.toString());
+			this.out.flush();
+			this.lastTime = now;
+			this.lastCpu = cpu;
+		} catch (Exception e) {
+			// never let the executor cancel the sampling
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Append the CPU used by each thread since the last sample
+	 * 
+	 * @param sb
+	 * @param t
+	 * @param wall
+	 */
+	private void sampleThreads(StringBuilder sb, long t, long wall) {
+		long ids[] = this.threads.getAllThreadIds();
+		Map<Long, Long> times = new HashMap<Long, Long>(ids.length * 2);
+		for (long id : ids) {
+			long time = this.threads.getThreadCpuTime(id);
+			if (time < 0) {
+				// the thread has terminated meanwhile
+				continue;
+			}
+			Long key = id;
+			times.put(key, time);
+			Long last = this.threadTimes.get(key);
+			if (last == null) {
+				ThreadInfo info = this.threads.getThreadInfo(id);
+				this.threadNames.put(key, info == null ? "?" : info.getThreadName());
+			}
+			long used = time - (last == null ? 0 : last);
+			if (used > 0) {
+				sb.append("T ").append(t).append(' ').append(id).append(' ');
+				sb.append(percent(used, wall)).append(' ');
+				sb.append(this.threadNames.get(key)).append('\n');
+			}
+		}
+		this.threadNames.keySet().retainAll(times.keySet());
+		this.threadTimes = times;
+	}
+
+	/**
+	 * Write a last sample and close the file
+	 */
+	private synchronized void close() {
+		sample();
+		try {
+			this.out.close();
+		} catch (IOException e) {
+			// NOPE
+		}
+	}
+
+	/**
+	 * @param value
+	 * @param total
+	 * @return the value in percent of the total, with one decimal
+	 */
+	private static String percent(double value, double total) {
+		if (value < 0 || total <= 0) {
+			return "-1";
+		}
+		return String.format(Locale.ROOT, "%.1f", 100 * value / total);
+	}
+
+	/**
+	 * @return the CPU time of the process in nanoseconds, -1 if unknown
+	 */
+	private long processCpuTime() {
+		if (this.os instanceof com.sun.management.OperatingSystemMXBean) {
+			return ((com.sun.management.OperatingSystemMXBean) this.os).getProcessCpuTime();
+		}
+		return -1;
+	}
+
+	/**
+	 * @return the recent CPU load of the whole machine, between 0 and 1, or a
+	 *         negative value if unknown
+	 */
+	private double systemCpuLoad() {
+		if (!(this.os instanceof com.sun.management.OperatingSystemMXBean)) {
+			return -1;
+		}
+		if (CPU_LOAD != null) {
+			try {
+				return (Double) CPU_LOAD.invoke(this.os);
+			} catch (Exception e) {
+				return -1;
+			}
+		}
+		return legacySystemCpuLoad((com.sun.management.OperatingSystemMXBean) this.os);
+	}
+
+	/**
+	 * {@code getSystemCpuLoad()} is deprecated since Java 14 for
+	 * {@code getCpuLoad()}, which Java 8 does not have, so it is only called
+	 * when the latter is missing
+	 * 
+	 * @param os
+	 * @return the recent CPU load of the whole machine
+	 */
+	@SuppressWarnings("deprecation")
+	private static double legacySystemCpuLoad(com.sun.management.OperatingSystemMXBean os) {
+		return os.getSystemCpuLoad();
+	}
+
+	/**
+	 * @return {@code getCpuLoad()} of the JVM, {@code null} before Java 14
+	 */
+	private static Method cpuLoadMethod() {
+		try {
+			return com.sun.management.OperatingSystemMXBean.class.getMethod("getCpuLoad");
+		} catch (Exception e) {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,455 @@
+/**
+ * JBoss, Home of Professional Open Source. Copyright 2011, Red Hat, Inc., and
+ * individual
+ * contributors as indicated by the @author tags. See the copyright.txt file in
+ * the distribution
+ * for a full listing of individual contributors.
+ * 
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation; either
+ * version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this
+ * software; if not, write to the Free Software Foundation, Inc., 51 Franklin
+ * St, Fifth Floor,
+ * Boston, MA 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.server.monitor;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.ObjectName;
+
+import org.jboss.server.common.AdmissionControl;
+import org.jboss.server.common.FileLoader;
+
+/**
+ * {@code ServerStats}
+ * 
+ * The measures of the server itself: a {@link LatencyHistogram} per
+ * {@link Phase}, the request, byte and error counters, the counters of the
+ * {@link AdmissionControl} and, if
+ * {@link org.jboss.server.common.ServerConfig#ALLOCATION_ACCOUNTING} is set,
+ * the bytes allocated per request and per response byte, and the queues of
+ * the {@link InstrumentedExecutor}s and the lags of the I/O loops measured by
+ * the {@link LoopLagProbe}. There is one
+ * engine per process, so they are static. They are exposed through the
+ * {@link ServerStatsMBean} and the {@code /stats} endpoint of each server,
+ * so that the server-side percentiles can be set against the client-side
+ * ones.
+ * 
+ * Created on Oct 19, 2026 at 8:29:10 PM
+ */
+public final class ServerStats implements ServerStatsMBean {
+
+	/**
+	 * The object name of the MBean
+	 */
+	public static final String OBJECT_NAME = "org.jboss.server:type=ServerStats";
+	/**
+	 * The percentiles of the reports
+	 */
+	private static final double PERCENTILES[] = { 50, 90, 99, 99.9 };
+
+	private static final LatencyHistogram histograms[] = new LatencyHistogram[Phase.values().length];
+	private static final LongAdder requests = new LongAdder();
+	private static final LongAdder bytesWritten = new LongAdder();
+	private static final LongAdder errors = new LongAdder();
+	// the same histograms hold the allocated bytes per request and, in
+	// thousandths, per response byte
+	private static final LatencyHistogram allocations = new LatencyHistogram();
+	private static final LatencyHistogram allocationsPerByte = new LatencyHistogram();
+	private static volatile String engine = "unknown";
+	private static volatile long since = System.currentTimeMillis();
+
+	static {
+		for (int i = 0; i < histograms.length; i++) {
+			histograms[i] = new LatencyHistogram();
+		}
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(new ServerStats(),
+					new ObjectName(OBJECT_NAME));
+		} catch (Exception e) {
+			System.err.println("ERROR: cannot register " + OBJECT_NAME + ": " + e);
+		}
+		// the server log is part of the results of the testing tool
+		Runtime.getRuntime().addShutdownHook(new Thread("server-stats-shutdown") {
+			@Override
+			public void run() {
+				System.out.print(report());
+			}
+		});
+	}
+
+	/**
+	 * Create a new instance of {@code ServerStats}
+	 */
+	private ServerStats() {
+		super();
+	}
+
+	/**
+	 * @param name
+	 *            the engine of the server, e.g., "nio2 async"
+	 */
+	public static void setEngine(String name) {
+		engine = name;
+	}
+
+	/**
+	 * Record the duration of a phase
+	 * 
+	 * @param phase
+	 * @param nanos
+	 */
+	public static void record(Phase phase, long nanos) {
+		histograms[phase.ordinal()].record(nanos);
+	}
+
+	/**
+	 * @param phase
+	 * @return the histogram of the phase
+	 */
+	public static LatencyHistogram histogram(Phase phase) {
+		return histograms[phase.ordinal()];
+	}
+
+	/**
+	 * Count a response written
+	 */
+	public static void addRequest() {
+		requests.increment();
+	}
+
+	/**
+	 * @return the number of responses written so far
+	 */
+	public static long requestCount() {
+		return requests.sum();
+	}
+
+	/**
+	 * @param n
+	 *            the number of bytes written
+	 */
+	public static void addBytes(long n) {
+		bytesWritten.add(n);
+	}
+
+	/**
+	 * Count an error response or a failed write
+	 */
+	public static void addError() {
+		errors.increment();
+	}
+
+	/**
+	 * Record the bytes allocated by the handling thread of a request
+	 * 
+	 * @param bytes
+	 *            the bytes allocated
+	 * @param responseBytes
+	 *            the bytes of the response written
+	 */
+	public static void recordAllocation(long bytes, long responseBytes) {
+		allocations.record(bytes);
+		if (responseBytes > 0) {
+			allocationsPerByte.record(bytes * 1000 / responseBytes);
+		}
+	}
+
+	/**
+	 * @return the report of the counters, of the phases, of the allocations,
+	 *         of the executors and of the I/O loops, one line each
+	 */
+	public static String report() {
+		StringBuilder sb = new StringBuilder(512);
+		sb.append("engine: ").append(engine).append('\n');
+		sb.append("since: ").append(since).append('\n');
+		sb.append("requests: ").append(requests.sum()).append('\n');
+		sb.append("bytes: ").append(bytesWritten.sum()).append('\n');
+		sb.append("errors: ").append(errors.sum()).append('\n');
+		sb.append("connections: ").append(AdmissionControl.getConnections()).append('\n');
+		sb.append("inFlight: ").append(AdmissionControl.getInFlight()).append('\n');
+		sb.append("limit: ").append(AdmissionControl.getInFlightLimit()).append('\n');
+		sb.append("queued: ").append(AdmissionControl.getQueued()).append('\n');
+		sb.append("refused: ").append(AdmissionControl.getConnectionsRefused()).append('\n');
+		sb.append("shed: ").append(AdmissionControl.getRequestsShed()).append('\n');
+		sb.append("queueShed: ").append(AdmissionControl.getQueuedShed()).append('\n');
+		Map<String, Long> memory = FileLoader.getMemoryUsage();
+		sb.append("cacheBytes: identity=").append(bytes(memory, "identity"));
+		for (String encoding : FileLoader.ENCODINGS) {
+			sb.append(' ').append(encoding).append('=').append(bytes(memory, encoding));
+		}
+		sb.append('\n');
+		sb.append("phase count mean_us");
+		for (double p : PERCENTILES) {
+			sb.append(" p").append(label(p)).append("_us");
+		}
+		sb.append(" max_us\n");
+		for (Phase phase : Phase.values()) {
+			LatencyHistogram h = histogram(phase);
+			sb.append(phase.getLabel()).append(' ').append(h.getCount()).append(' ')
+					.append(micros(h.getMean()));
+			for (long v : h.getPercentiles(PERCENTILES)) {
+				sb.append(' ').append(micros(v));
+			}
+			sb.append(' ').append(micros(h.getMax())).append('\n');
+		}
+		if (allocations.getCount() > 0) {
+			sb.append("allocation count mean");
+			for (double p : PERCENTILES) {
+				sb.append(" p").append(label(p));
+			}
+			sb.append(" max\n");
+			sb.append("bytes/request ").append(allocations.getCount()).append(' ')
+					.append(allocations.getMean());
+			for (long v : allocations.getPercentiles(PERCENTILES)) {
+				sb.append(' ').append(v);
+			}
+			sb.append(' ').append(allocations.getMax()).append('\n');
+			sb.append("bytes/byte ").append(allocationsPerByte.getCount()).append(' ')
+					.append(thousandths(allocationsPerByte.getMean()));
+			for (long v : allocationsPerByte.getPercentiles(PERCENTILES)) {
+				sb.append(' ').append(thousandths(v));
+			}
+			sb.append(' ').append(thousandths(allocationsPerByte.getMax())).append('\n');
+		}
+		if (!InstrumentedExecutor.executors().isEmpty()) {
+			sb.append("executor completed rejected queued active peakQueued peakActive wait_mean_us");
+			for (double p : PERCENTILES) {
+				sb.append(" wait_p").append(label(p)).append("_us");
+			}
+			sb.append(" wait_max_us\n");
+			for (InstrumentedExecutor executor : InstrumentedExecutor.executors()) {
+				LatencyHistogram h = executor.getWaits();
+				sb.append(executor.getName()).append(' ').append(executor.getCompleted())
+						.append(' ').append(executor.getRejected()).append(' ')
+						.append(executor.getQueued()).append(' ').append(executor.getActive())
+						.append(' ').append(executor.getPeakQueued()).append(' ')
+						.append(executor.getPeakActive()).append(' ').append(micros(h.getMean()));
+				for (long v : h.getPercentiles(PERCENTILES)) {
+					sb.append(' ').append(micros(v));
+				}
+				sb.append(' ').append(micros(h.getMax())).append('\n');
+			}
+		}
+		Map<String, LatencyHistogram> lags = LoopLagProbe.lags();
+		if (!lags.isEmpty()) {
+			sb.append("loop count lag_mean_us");
+			for (double p : PERCENTILES) {
+				sb.append(" lag_p").append(label(p)).append("_us");
+			}
+			sb.append(" lag_max_us\n");
+			for (Map.Entry<String, LatencyHistogram> entry : lags.entrySet()) {
+				LatencyHistogram h = entry.getValue();
+				sb.append(entry.getKey()).append(' ').append(h.getCount()).append(' ')
+						.append(micros(h.getMean()));
+				for (long v : h.getPercentiles(PERCENTILES)) {
+					sb.append(' ').append(micros(v));
+				}
+				sb.append(' ').append(micros(h.getMax())).append('\n');
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * @param memory
+	 *            the memory of the file cache per content coding
+	 * @param encoding
+	 * @return the bytes held for the content coding, 0 if none
+	 */
+	private static long bytes(Map<String, Long> memory, String encoding) {
+		Long bytes = memory.get(encoding);
+		return bytes == null ? 0 : bytes;
+	}
+
+	/**
+	 * @param percentile
+	 * @return the percentile in the column names, e.g., "99" or "99.9"
+	 */
+	private static String label(double percentile) {
+		return percentile == (long) percentile ? String.valueOf((long) percentile) : String
+				.valueOf(percentile);
+	}
+
+	/**
+	 * @param value
+	 *            in thousandths
+	 * @return the value with three decimals
+	 */
+	private static String thousandths(long value) {
+		return String.format(Locale.ROOT, "%.3f", value / 1000.0);
+	}
+
+	/**
+	 * @param nanos
+	 * @return the duration in microseconds
+	 */
+	private static long micros(long nanos) {
+		return TimeUnit.NANOSECONDS.toMicros(nanos);
+	}
+
+	/**
+	 * @param label
+	 * @return the phase of the label
+	 * @throws IllegalArgumentException
+	 *             if there is no such phase
+	 */
+	private static Phase phase(String label) {
+		for (Phase phase : Phase.values()) {
+			if (phase.getLabel().equals(label)) {
+				return phase;
+			}
+		}
+		throw new IllegalArgumentException("Unknown phase: " + label);
+	}
+
+	@Override
+	public String getEngine() {
+		return engine;
+	}
+
+	@Override
+	public long getRequests() {
+		return requests.sum();
+	}
+
+	@Override
+	public long getBytesWritten() {
+		return bytesWritten.sum();
+	}
+
+	@Override
+	public long getErrors() {
+		return errors.sum();
+	}
+
+	@Override
+	public int getConnections() {
+		return AdmissionControl.getConnections();
+	}
+
+	@Override
+	public int getInFlight() {
+		return AdmissionControl.getInFlight();
+	}
+
+	@Override
+	public int getInFlightLimit() {
+		return AdmissionControl.getInFlightLimit();
+	}
+
+	@Override
+	public int getQueued() {
+		return AdmissionControl.getQueued();
+	}
+
+	@Override
+	public long getConnectionsRefused() {
+		return AdmissionControl.getConnectionsRefused();
+	}
+
+	@Override
+	public long getRequestsShed() {
+		return AdmissionControl.getRequestsShed();
+	}
+
+	@Override
+	public long getQueuedShed() {
+		return AdmissionControl.getQueuedShed();
+	}
+
+	@Override
+	public String getReport() {
+		return report();
+	}
+
+	@Override
+	public long cacheMemory(String encoding) {
+		return bytes(FileLoader.getMemoryUsage(), encoding);
+	}
+
+	@Override
+	public long count(String phase) {
+		return histogram(phase(phase)).getCount();
+	}
+
+	@Override
+	public long percentile(String phase, double percentile) {
+		return micros(histogram(phase(phase)).getPercentiles(percentile)[0]);
+	}
+
+	@Override
+	public long allocationPercentile(double percentile) {
+		return allocations.getPercentiles(percentile)[0];
+	}
+
+	@Override
+	public double allocationPerBytePercentile(double percentile) {
+		return allocationsPerByte.getPercentiles(percentile)[0] / 1000.0;
+	}
+
+	@Override
+	public long executorWaitPercentile(String executor, double percentile) {
+		return micros(InstrumentedExecutor.executor(executor).getWaits()
+				.getPercentiles(percentile)[0]);
+	}
+
+	@Override
+	public int executorQueued(String executor) {
+		return InstrumentedExecutor.executor(executor).getQueued();
+	}
+
+	@Override
+	public int executorActive(String executor) {
+		return InstrumentedExecutor.executor(executor).getActive();
+	}
+
+	@Override
+	public long loopLagPercentile(String loop, double percentile) {
+		LatencyHistogram h = LoopLagProbe.lags().get(loop);
+		if (h == null) {
+			throw new IllegalArgumentException("Unknown loop: " + loop);
+		}
+		return micros(h.getPercentiles(percentile)[0]);
+	}
+
+	@Override
+	public String dumpSlowRequests() {
+		return SlowRequestLog.dump();
+	}
+
+	@Override
+	public void reset() {
+		for (LatencyHistogram h : histograms) {
+			h.reset();
+		}
+		allocations.reset();
+		allocationsPerByte.reset();
+		requests.reset();
+		bytesWritten.reset();
+		errors.reset();
+		for (InstrumentedExecutor executor : InstrumentedExecutor.executors()) {
+			executor.reset();
+		}
+		LoopLagProbe.reset();
+		ContentionProfiler.reset();
+		SlowRequestLog.reset();
+		since = System.currentTimeMillis();
+	}
+}
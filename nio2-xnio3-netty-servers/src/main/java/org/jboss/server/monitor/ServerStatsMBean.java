@@ -0,0 +1,186 @@
+/**
+ * JBoss, Home of Professional Open Source. Copyright 2011, Red Hat, Inc., and
+ * individual
+ * contributors as indicated by the @author tags. See the copyright.txt file in
+ * the distribution
+ * for a full listing of individual contributors.
+ * 
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation; either
+ * version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this
+ * software; if not, write to the Free Software Foundation, Inc., 51 Franklin
+ * St, Fifth Floor,
+ * Boston, MA 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.server.monitor;
+
+/**
+ * {@code ServerStatsMBean}
+ * 
+ * The management interface of the {@link ServerStats}, registered as
+ * {@value ServerStats#OBJECT_NAME}. The durations are in microseconds.
+ * 
+ * Created on Oct 19, 2026 at 8:26:45 PM
+ */
+public interface ServerStatsMBean {
+
+	/**
+	 * @return the engine of the server, e.g., "nio2 async"
+	 */
+	String getEngine();
+
+	/**
+	 * @return the number of responses written
+	 */
+	long getRequests();
+
+	/**
+	 * @return the number of bytes written
+	 */
+	long getBytesWritten();
+
+	/**
+	 * @return the number of error responses and of failed writes
+	 */
+	long getErrors();
+
+	/**
+	 * @return the number of open connections
+	 */
+	int getConnections();
+
+	/**
+	 * @return the number of requests being served
+	 */
+	int getInFlight();
+
+	/**
+	 * @return the current in-flight limit, the adaptive one if it is
+	 *         enabled, 0 if there is none
+	 */
+	int getInFlightLimit();
+
+	/**
+	 * @return the number of connections waiting for a thread of a sync
+	 *         server
+	 */
+	int getQueued();
+
+	/**
+	 * @return the number of connections refused since the start, past the
+	 *         maximum number of connections
+	 */
+	long getConnectionsRefused();
+
+	/**
+	 * @return the number of requests answered with a 503 since the start,
+	 *         past the in-flight limit
+	 */
+	long getRequestsShed();
+
+	/**
+	 * @return the number of connections closed since the start, past the
+	 *         maximum number of connections waiting for a thread
+	 */
+	long getQueuedShed();
+
+	/**
+	 * @return the report served by {@code /stats}
+	 */
+	String getReport();
+
+	/**
+	 * @param encoding
+	 *            the content coding, "identity", "gzip" or "deflate"
+	 * @return the direct memory (in bytes) held by the file cache for the
+	 *         content coding
+	 */
+	long cacheMemory(String encoding);
+
+	/**
+	 * @param phase
+	 *            the label of the phase, e.g., "lastByte"
+	 * @return the number of durations recorded for the phase
+	 */
+	long count(String phase);
+
+	/**
+	 * @param phase
+	 *            the label of the phase, e.g., "lastByte"
+	 * @param percentile
+	 *            in [0, 100]
+	 * @return the duration in microseconds
+	 */
+	long percentile(String phase, double percentile);
+
+	/**
+	 * @param percentile
+	 *            in [0, 100]
+	 * @return the bytes allocated per request, 0 unless the allocation
+	 *         accounting is enabled
+	 */
+	long allocationPercentile(double percentile);
+
+	/**
+	 * @param percentile
+	 *            in [0, 100]
+	 * @return the bytes allocated per response byte, 0 unless the
+	 *         allocation accounting is enabled
+	 */
+	double allocationPerBytePercentile(double percentile);
+
+	/**
+	 * @param executor
+	 *            the name of the executor, e.g., "workers"
+	 * @param percentile
+	 *            in [0, 100]
+	 * @return the wait of the tasks for a thread in microseconds
+	 */
+	long executorWaitPercentile(String executor, double percentile);
+
+	/**
+	 * @param executor
+	 *            the name of the executor, e.g., "workers"
+	 * @return the number of tasks waiting for a thread
+	 */
+	int executorQueued(String executor);
+
+	/**
+	 * @param executor
+	 *            the name of the executor, e.g., "workers"
+	 * @return the number of workers running a task
+	 */
+	int executorActive(String executor);
+
+	/**
+	 * @param loop
+	 *            the name of the I/O loop, as in the report
+	 * @param percentile
+	 *            in [0, 100]
+	 * @return the lag of the loop in microseconds
+	 */
+	long loopLagPercentile(String loop, double percentile);
+
+	/**
+	 * @return the last slow requests, one line each, see
+	 *         {@link SlowRequestLog}
+	 */
+	String dumpSlowRequests();
+
+	/**
+	 * Clear the histograms, the counters and the slow requests, and open a new window of the
+	 * contention profile, if any
+	 */
+	void reset();
+}
@@ -0,0 +1,120 @@
+/**
+ * JBoss, Home of Professional Open Source. Copyright 2011, Red Hat, Inc., and
+ * individual
+ * contributors as indicated by the @author tags. See the copyright.txt file in
+ * the distribution
+ * for a full listing of individual contributors.
+ * 
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation; either
+ * version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this
+ * software; if not, write to the Free Software Foundation, Inc., 51 Franklin
+ * St, Fifth Floor,
+ * Boston, MA 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.server.monitor;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.jboss.server.common.ServerConfig;
+
+/**
+ * {@code SlowRequestLog}
+ * 
+ * Keeps the last {@link ServerConfig#SLOW_REQUEST_BUFFER} requests which took
+ * more than {@link ServerConfig#SLOW_REQUEST_THRESHOLD} milliseconds, from
+ * the read of the request to the last byte of the response, so that the
+ * outliers hidden by the percentiles can be explained. The entries are
+ * formatted by the {@link RequestTimer} when the request ends, with the
+ * breakdown of its phases, the age of its connection, its bytes and writes
+ * and the threads which read and completed it, and stored in a ring without
+ * locks, the oldest overwritten first. The buffer is dumped to the server log
+ * at shutdown, and on demand by the {@link ServerStatsMBean}.
+ * 
+ * Created on Oct 20, 2026 at 2:07:19 AM
+ */
+public final class SlowRequestLog {
+
+	/**
+	 * The threshold in nanoseconds, 0 if the capture is disabled
+	 */
+	static final long THRESHOLD = ServerConfig.SLOW_REQUEST_BUFFER > 0 ? TimeUnit.MILLISECONDS
+			.toNanos(ServerConfig.SLOW_REQUEST_THRESHOLD) : 0;
+
+	private static final AtomicReferenceArray<String> entries = new AtomicReferenceArray<String>(
+			Math.max(1, ServerConfig.SLOW_REQUEST_BUFFER));
+	// the number of entries recorded since the last reset
+	private static final AtomicLong recorded = new AtomicLong();
+
+	static {
+		if (THRESHOLD > 0) {
+			Runtime.getRuntime().addShutdownHook(new Thread("slow-requests-shutdown") {
+				@Override
+				public void run() {
+					System.out.print(dump());
+				}
+			});
+		}
+	}
+
+	/**
+	 * Create a new instance of {@code SlowRequestLog}
+	 */
+	private SlowRequestLog() {
+		super();
+	}
+
+	/**
+	 * Record a slow request
+	 * 
+	 * @param entry
+	 *            the line of the request
+	 */
+	static void record(String entry) {
+		long n = recorded.getAndIncrement();
+		entries.set((int) (n % entries.length()), entry);
+	}
+
+	/**
+	 * @return the slow requests kept, the oldest first, after a line with the
+	 *         number of slow requests since the start (or the last reset)
+	 */
+	public static String dump() {
+		long n = recorded.get();
+		int size = entries.length();
+		StringBuilder sb = new StringBuilder(256);
+		sb.append("slow requests: ").append(n).append(" over ")
+				.append(ServerConfig.SLOW_REQUEST_THRESHOLD).append("ms, ")
+				.append(Math.min(n, size)).append(" kept\n");
+		for (long i = Math.max(0, n - size); i < n; i++) {
+			String entry = entries.get((int) (i % size));
+			if (entry != null) {
+				sb.append(entry).append('\n');
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Clear the buffer
+	 */
+	static void reset() {
+		recorded.set(0);
+		for (int i = 0; i < entries.length(); i++) {
+			entries.set(i, null);
+		}
+	}
+}
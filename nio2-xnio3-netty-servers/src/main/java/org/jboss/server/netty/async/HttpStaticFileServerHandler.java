@@ -10,6 +10,7 @@ import org.jboss.netty.channel.ChannelFuture;
 import org.jboss.netty.channel.ChannelFutureListener;
 import org.jboss.netty.channel.ChannelFutureProgressListener;
 import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelStateEvent;
 import org.jboss.netty.channel.DefaultFileRegion;
 import org.jboss.netty.channel.ExceptionEvent;
 import org.jboss.netty.channel.FileRegion;
@@ -26,7 +27,6 @@ import org.jboss.netty.util.CharsetUtil;
 
 import javax.activation.MimetypesFileTypeMap;
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.RandomAccessFile;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
@@ -43,10 +43,23 @@ import static org.jboss.netty.handler.codec.http.HttpMethod.*;
 import static org.jboss.netty.handler.codec.http.HttpResponseStatus.*;
 import static org.jboss.netty.handler.codec.http.HttpVersion.*;
 
+import java.io.IOException;
+import java.util.List;
 import java.util.UUID;
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.handler.codec.http.HttpHeaders;
-import org.jboss.server.Server;
+import org.jboss.server.common.AdmissionControl;
+import org.jboss.server.common.AsyncLogger;
+import org.jboss.server.common.ByteRange;
+import org.jboss.server.common.CachedFile;
+import org.jboss.server.common.FileChannelCache;
+import org.jboss.server.common.FileLoader;
+import org.jboss.server.common.HttpResponses;
+import org.jboss.server.common.ServerConfig;
+import org.jboss.server.monitor.FlightEvents;
+import org.jboss.server.monitor.Phase;
+import org.jboss.server.monitor.RequestTimer;
+import org.jboss.server.monitor.ServerStats;
 
 /**
  * A simple handler that serves incoming HTTP requests to send their respective
@@ -99,6 +112,20 @@ public class HttpStaticFileServerHandler extends SimpleChannelUpstreamHandler {
     public static final String HTTP_DATE_FORMAT = "EEE, dd MMM yyyy HH:mm:ss zzz";
     public static final String HTTP_DATE_GMT_TIMEZONE = "GMT";
     public static final int HTTP_CACHE_SECONDS = 60;
+    private static final AsyncLogger log = AsyncLogger.getLogger(HttpStaticFileServerHandler.class);
+    // a handler is created for every connection, see the pipeline factory
+    private boolean admitted;
+    private long opened;
+    private final RequestTimer timer;
+
+    /**
+     * @param timer
+     *            the timer of the requests of the connection, shared with the
+     *            {@link WriteGuardHandler}
+     */
+    public HttpStaticFileServerHandler(RequestTimer timer) {
+        this.timer = timer;
+    }
 
     
     public static String generateSessionId() {
@@ -112,8 +139,10 @@ public class HttpStaticFileServerHandler extends SimpleChannelUpstreamHandler {
 
         // Build the response object.
         HttpResponse response = new DefaultHttpResponse(HTTP_1_1, OK);
+        final String sessionId = generateSessionId();
+        this.timer.setSessionId(sessionId);
         StringBuilder buf = new StringBuilder();
-        buf.append("jSessionId: " + generateSessionId() + "\n");
+        buf.append("jSessionId: " + sessionId + "\n");
         response.setContent(ChannelBuffers.copiedBuffer(buf.toString(), CharsetUtil.UTF_8));
         response.setHeader(CONTENT_TYPE, "text/plain; charset=UTF-8");
 
@@ -124,8 +153,15 @@ public class HttpStaticFileServerHandler extends SimpleChannelUpstreamHandler {
             // - http://www.w3.org/Protocols/HTTP/1.1/draft-ietf-http-v11-spec-01.html#Connection
             response.setHeader(CONNECTION, HttpHeaders.Values.KEEP_ALIVE);
         }
-        // Write the response.
+        // Write the response, the session is ready once it is written
         ChannelFuture future = e.getChannel().write(response);
+        future.addListener(new ChannelFutureListener() {
+            public void operationComplete(ChannelFuture future) {
+                long elapsed = System.nanoTime() - opened;
+                ServerStats.record(Phase.ACCEPT, elapsed);
+                FlightEvents.handshake(sessionId, elapsed);
+            }
+        });
 
         // Close the non-keep-alive connection after the write operation is done.
         if (!keepAlive) {
@@ -133,108 +169,342 @@ public class HttpStaticFileServerHandler extends SimpleChannelUpstreamHandler {
         }
     }
     
+    @Override
+    public void channelOpen(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
+        this.opened = System.nanoTime();
+        super.channelOpen(ctx, e);
+    }
+
+    @Override
+    public void channelConnected(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
+        if (!AdmissionControl.admitConnection()) {
+            // refuse the connection, the fast way
+            e.getChannel().close();
+            return;
+        }
+        this.admitted = true;
+        FlightEvents.accepted();
+        super.channelConnected(ctx, e);
+    }
+
+    @Override
+    public void channelClosed(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
+        if (this.admitted) {
+            this.admitted = false;
+            AdmissionControl.releaseConnection();
+            this.timer.closed();
+        }
+        super.channelClosed(ctx, e);
+    }
+
     @Override
     public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
-        System.err.println("Message received from " + ctx.getChannel().getRemoteAddress().toString());
-        
+        if (log.shouldDebug()) {
+            log.debug("Message received from %s", ctx.getChannel().getRemoteAddress());
+        }
+
         HttpRequest request = (HttpRequest) e.getMessage();
         if (request.getMethod() == POST) {
+            // the session initialization is timed as part of the accept
+            this.timer.cancel();
             handlePostRequest(ctx, e);
             return;
         }
+        // the decoder hands the pipelined requests of a read one after the
+        // other, only the first one started the timer
+        this.timer.pipelined();
+        this.timer.parsed();
         if (request.getMethod() != GET) {
-            sendError(ctx, METHOD_NOT_ALLOWED);
+            timeResponse(sendError(ctx, METHOD_NOT_ALLOWED));
             return;
         }
-
-        final String path = Server.workingDirectory + "/" + sanitizeUri(request.getUri());
-        System.out.println("path= " + path);
-        if (path == null) {
-            sendError(ctx, FORBIDDEN);
+        final long start = AdmissionControl.admitRequest();
+        if (start < 0) {
+            // fast reject path, nothing is looked up
+            timeResponse(e.getChannel().write(
+                    ChannelBuffers.wrappedBuffer(AdmissionControl.serviceUnavailable())));
             return;
         }
-
-        File file = new File(path);
-        if (file.isHidden() || !file.exists()) {
-            sendError(ctx, NOT_FOUND);
-            return;
+        ChannelFuture future = null;
+        try {
+            future = serveFile(ctx, e, request);
+        } finally {
+            if (future == null) {
+                this.timer.failed();
+                AdmissionControl.completeRequest(start);
+            } else {
+                timeResponse(future);
+                // the request is in flight until its response is written
+                future.addListener(new ChannelFutureListener() {
+                    public void operationComplete(ChannelFuture future) {
+                        AdmissionControl.completeRequest(start);
+                    }
+                });
+            }
         }
-        if (!file.isFile()) {
-            sendError(ctx, FORBIDDEN);
-            return;
+    }
+
+    /**
+     * Add the {@code Server-Timing} header of the request, if enabled
+     *
+     * @param response
+     *            the response, just before it is written
+     */
+    private void setServerTiming(HttpResponse response) {
+        if (ServerConfig.SERVER_TIMING) {
+            response.setHeader("Server-Timing", this.timer.getServerTiming());
         }
+    }
+
+    /**
+     * Complete the timing of the request when its response is written
+     *
+     * @param future
+     *            the future of the last write of the response
+     */
+    private void timeResponse(ChannelFuture future) {
+        future.addListener(new ChannelFutureListener() {
+            public void operationComplete(ChannelFuture future) {
+                if (future.isSuccess()) {
+                    timer.completed();
+                } else {
+                    timer.failed();
+                }
+            }
+        });
+    }
 
-        // DO WE NEED THIS ?! if we aim to test the server, then this may affect the results
-        // Cache Validation
-   /*     String ifModifiedSince = request.getHeader(IF_MODIFIED_SINCE);
-        if (ifModifiedSince != null && ifModifiedSince.length() != 0) {
-            SimpleDateFormat dateFormatter = new SimpleDateFormat(HTTP_DATE_FORMAT, Locale.US);
-            Date ifModifiedSinceDate = dateFormatter.parse(ifModifiedSince);
-
-            // Only compare up to the second because the datetime format we send to the client does
-            // not have milliseconds
-            long ifModifiedSinceDateSeconds = ifModifiedSinceDate.getTime() / 1000;
-            long fileLastModifiedSeconds = file.lastModified() / 1000;
-            if (ifModifiedSinceDateSeconds == fileLastModifiedSeconds) {
-                sendNotModified(ctx);
-                return;
+    /**
+     * Serve the file requested by a GET
+     *
+     * @return the future of the last write of the response
+     */
+    private ChannelFuture serveFile(ChannelHandlerContext ctx, MessageEvent e, HttpRequest request)
+            throws Exception {
+        final String uri = sanitizeUri(request.getUri());
+        if (uri == null) {
+            return sendError(ctx, FORBIDDEN);
+        }
+        if (uri.equals(HttpResponses.STATS_PATH.replace('/', File.separatorChar))) {
+            ChannelFuture future = e.getChannel().write(
+                    ChannelBuffers.wrappedBuffer(HttpResponses.stats()));
+            if (!isKeepAlive(request)) {
+                future.addListener(ChannelFutureListener.CLOSE);
             }
-        } */
+            return future;
+        }
+        // resolve the file as the other servers do
+        final String path = FileLoader.resolve(uri);
+        if (log.shouldDebug()) {
+            log.debug("path= %s", path);
+        }
+
+        // Cache Validation: the validators are computed once, when the file is
+        // loaded, so a 304 needs neither a file system access nor a body. The
+        // I/O thread never loads a file: until the loader thread is done, the
+        // file is sent from disk without validators
+        long lookup = System.nanoTime();
+        CachedFile cached = FileLoader.peek(path);
+        if (cached == null) {
+            FileLoader.preload(path);
+        } else if (request.getHeader(RANGE) == null) {
+            // the ranges are always taken from the identity content
+            cached = cached.select(request.getHeader(ACCEPT_ENCODING));
+        }
+        this.timer.lookedUp(System.nanoTime() - lookup);
+        if (cached != null && cached.isNotModified(
+                request.getHeader(IF_NONE_MATCH), request.getHeader(IF_MODIFIED_SINCE))) {
+            return sendNotModified(ctx, request, cached);
+        }
+        if (cached != null && cached.getEncoding() != null) {
+            return writeVariant(e.getChannel(), request, cached);
+        }
 
-        RandomAccessFile raf;
+        File file = new File(path);
+        if (file.isHidden()) {
+            return sendError(ctx, NOT_FOUND);
+        }
+
+        // the channel stays open between the requests, see FileChannelCache
+        final FileChannelCache.Handle handle;
         try {
-            raf = new RandomAccessFile(file, "r");
-        } catch (FileNotFoundException fnfe) {
-            sendError(ctx, NOT_FOUND);
-            return;
+            handle = FileChannelCache.acquire(path);
+        } catch (IOException ioe) {
+            return sendError(ctx, file.isDirectory() ? FORBIDDEN : NOT_FOUND);
+        }
+        long fileLength = handle.size();
+
+        List<ByteRange> ranges = ByteRange.parse(request.getHeader(RANGE), fileLength);
+        if (ranges != null) {
+            return writePartialContent(e.getChannel(), request, file, handle, ranges);
         }
-        long fileLength = raf.length();
 
         HttpResponse response = new DefaultHttpResponse(HTTP_1_1, OK);
-        setContentLength(response, fileLength);
+        // the NUL marking the end of data is part of the content
+        setContentLength(response, fileLength + 1);
         setContentTypeHeader(response, file);
-        setDateAndCacheHeaders(response, file);
+        response.setHeader(ACCEPT_RANGES, "bytes");
+        response.setHeader(VARY, ACCEPT_ENCODING);
+        setDateAndCacheHeaders(response, file, cached);
 
         Channel ch = e.getChannel();
 
         // Write the initial line and the header.
+        setServerTiming(response);
         ch.write(response);
 
         // Write the content.
         ChannelFuture writeFuture;
         if (ch.getPipeline().get(SslHandler.class) != null) {
             // Cannot use zero-copy with HTTPS.
-            writeFuture = ch.write(new ChunkedFile(raf, 0, fileLength, 8192));
+            handle.release();
+            ch.write(new ChunkedFile(new RandomAccessFile(file, "r"), 0, fileLength, 8192));
+            // important, signal this way the end of the request
+            writeFuture = ch.write(ChannelBuffers.wrappedBuffer("\0".getBytes()));
         } else {
-            System.out.println("Use zero-copy for sending out the " + file);
+            if (log.shouldDebug()) {
+                log.debug("Use zero-copy for sending out the %s", file);
+            }
             // No encryption - use zero-copy.
             final FileRegion region =
-                new DefaultFileRegion(raf.getChannel(), 0, fileLength);
+                new DefaultFileRegion(handle.getChannel(), 0, fileLength);
             writeFuture = ch.write(region);
             
             writeFuture.addListener(new ChannelFutureProgressListener() {
                 public void operationComplete(ChannelFuture future) {
-                    System.out.println("OPERATION OF ZERO-COPYING FILE IS COMPLETED ");
+                    if (log.shouldDebug()) {
+                        log.debug("OPERATION OF ZERO-COPYING FILE IS COMPLETED");
+                    }
                     //important, signal this way the end of the request            
                     ChannelBuffer b = ChannelBuffers.buffer(2);
                     b.writeBytes("\0".getBytes());
                     future.getChannel().write(b);
-                    region.releaseExternalResources();
+                    // do not release the region, it would close the cached channel
+                    handle.release();
                 }
 
                 public void operationProgressed(
                         ChannelFuture future, long amount, long current, long total) {
-                    System.out.printf("%s: %d / %d (+%d)%n", path, current, total, amount);
+                    if (log.shouldTrace()) {
+                        log.trace("%s: %d / %d (+%d)", path, current, total, amount);
+                    }
                 }
             });
         }
 
         // Decide whether to close the connection or not.
         if (!isKeepAlive(request)) {
-            System.out.println("CLOSE CONNECTION!");
+            if (log.shouldDebug()) {
+                log.debug("CLOSE CONNECTION!");
+            }
             // Close the connection when the whole content is written out.
             writeFuture.addListener(ChannelFutureListener.CLOSE);
         }
+        return writeFuture;
+    }
+
+    /**
+     * Write a precompressed variant of the file. The variant is already in
+     * memory, NUL marker included, so it is written as a wrapped buffer
+     * without any copy nor compression.
+     */
+    private ChannelFuture writeVariant(Channel ch, HttpRequest request, CachedFile variant) {
+        HttpResponse response = new DefaultHttpResponse(HTTP_1_1, OK);
+        setContentLength(response, variant.getLength());
+        setContentTypeHeader(response, new File(variant.getPath()));
+        response.setHeader(CONTENT_ENCODING, variant.getEncoding());
+        response.setHeader(VARY, ACCEPT_ENCODING);
+        response.setHeader(ACCEPT_RANGES, "bytes");
+        setDateAndCacheHeaders(response, null, variant);
+
+        setServerTiming(response);
+        ch.write(response);
+        ChannelFuture writeFuture = ch.write(ChannelBuffers.wrappedBuffer(variant.body()));
+        if (!isKeepAlive(request)) {
+            writeFuture.addListener(ChannelFutureListener.CLOSE);
+        }
+        return writeFuture;
+    }
+
+    /**
+     * Write a {@code 206 Partial Content} response. A single range is sent as
+     * is, several ranges are sent as a {@code multipart/byteranges} body. Each
+     * range is a region of the file, so zero-copy is used as for the whole
+     * content. No NUL is appended, the content length delimits the response.
+     */
+    private ChannelFuture writePartialContent(Channel ch, HttpRequest request, File file,
+            final FileChannelCache.Handle handle, List<ByteRange> ranges) throws IOException {
+        long fileLength = handle.size();
+        ChannelFuture writeFuture;
+        if (ranges.isEmpty()) {
+            handle.release();
+            HttpResponse response = new DefaultHttpResponse(HTTP_1_1, REQUESTED_RANGE_NOT_SATISFIABLE);
+            response.setHeader(CONTENT_RANGE, "bytes */" + fileLength);
+            setContentLength(response, 0);
+            setServerTiming(response);
+            writeFuture = ch.write(response);
+        } else {
+            HttpResponse response = new DefaultHttpResponse(HTTP_1_1, PARTIAL_CONTENT);
+            if (ranges.size() == 1) {
+                ByteRange range = ranges.get(0);
+                setContentLength(response, range.getLength());
+                setContentTypeHeader(response, file);
+                response.setHeader(CONTENT_RANGE, range.toContentRange(fileLength));
+                setServerTiming(response);
+                ch.write(response);
+                writeFuture = writeRegion(ch, handle, range.getFirst(), range.getLength());
+            } else {
+                String contentType = new MimetypesFileTypeMap().getContentType(file.getPath());
+                ChannelBuffer parts[] = new ChannelBuffer[ranges.size()];
+                long length = 0;
+                for (int i = 0; i < parts.length; i++) {
+                    ByteRange range = ranges.get(i);
+                    parts[i] = ChannelBuffers.copiedBuffer("\r\n--" + HttpResponses.BOUNDARY + "\r\n"
+                            + CONTENT_TYPE + ": " + contentType + "\r\n" + CONTENT_RANGE + ": "
+                            + range.toContentRange(fileLength) + "\r\n\r\n", CharsetUtil.US_ASCII);
+                    length += parts[i].readableBytes() + range.getLength();
+                }
+                ChannelBuffer end = ChannelBuffers.copiedBuffer(
+                        "\r\n--" + HttpResponses.BOUNDARY + "--\r\n", CharsetUtil.US_ASCII);
+                length += end.readableBytes();
+
+                setContentLength(response, length);
+                response.setHeader(CONTENT_TYPE, "multipart/byteranges; boundary=" + HttpResponses.BOUNDARY);
+                setServerTiming(response);
+                ch.write(response);
+                for (int i = 0; i < parts.length; i++) {
+                    ch.write(parts[i]);
+                    writeRegion(ch, handle, ranges.get(i).getFirst(), ranges.get(i).getLength());
+                }
+                writeFuture = ch.write(end);
+            }
+            // the writes complete in order, so the channel is not used anymore
+            writeFuture.addListener(new ChannelFutureListener() {
+                public void operationComplete(ChannelFuture future) throws Exception {
+                    handle.release();
+                }
+            });
+        }
+
+        if (!isKeepAlive(request)) {
+            writeFuture.addListener(ChannelFutureListener.CLOSE);
+        }
+        return writeFuture;
+    }
+
+    /**
+     * Write a region of the file, using zero-copy unless the channel is
+     * encrypted. The chunked inputs move the position of the channel they
+     * read, so they get their own file instead of the shared channel.
+     */
+    private static ChannelFuture writeRegion(Channel ch, FileChannelCache.Handle handle,
+            long offset, long length) throws IOException {
+        if (ch.getPipeline().get(SslHandler.class) != null) {
+            // Cannot use zero-copy with HTTPS.
+            return ch.write(new ChunkedFile(new RandomAccessFile(handle.getPath(), "r"), offset,
+                    length, 8192));
+        }
+        return ch.write(new DefaultFileRegion(handle.getChannel(), offset, length));
     }
 
     @Override
@@ -277,11 +547,11 @@ public class HttpStaticFileServerHandler extends SimpleChannelUpstreamHandler {
         // uri may contain (?jSessionId=...)
         if( uri.indexOf('?') != -1 ) 
             uri = uri.substring(0, uri.indexOf('?'));
-        // Convert to absolute path.
-        return System.getProperty("user.dir") + File.separator + uri;
+        return uri;
     }
 
-    private static void sendError(ChannelHandlerContext ctx, HttpResponseStatus status) {
+    private static ChannelFuture sendError(ChannelHandlerContext ctx, HttpResponseStatus status) {
+        ServerStats.addError();
         HttpResponse response = new DefaultHttpResponse(HTTP_1_1, status);
         response.setHeader(CONTENT_TYPE, "text/plain; charset=UTF-8");
         response.setContent(ChannelBuffers.copiedBuffer(
@@ -289,21 +559,33 @@ public class HttpStaticFileServerHandler extends SimpleChannelUpstreamHandler {
                 CharsetUtil.UTF_8));
 
         // Close the connection as soon as the error message is sent.
-        ctx.getChannel().write(response).addListener(ChannelFutureListener.CLOSE);
+        ChannelFuture future = ctx.getChannel().write(response);
+        future.addListener(ChannelFutureListener.CLOSE);
+        return future;
     }
 
     /**
-     * When file timestamp is the same as what the browser is sending up, send a "304 Not Modified"
+     * When the validators sent by the browser match the file, send a "304 Not Modified"
      *
      * @param ctx
      *            Context
+     * @param request
+     *            the conditional request
+     * @param cached
+     *            the cached file holding the validators
      */
-    private static void sendNotModified(ChannelHandlerContext ctx) {
+    private ChannelFuture sendNotModified(ChannelHandlerContext ctx, HttpRequest request,
+            CachedFile cached) {
         HttpResponse response = new DefaultHttpResponse(HTTP_1_1, NOT_MODIFIED);
-        setDateHeader(response);
+        response.setHeader(ETAG, cached.getETag());
+        response.setHeader(LAST_MODIFIED, cached.getLastModifiedDate());
+        setServerTiming(response);
 
-        // Close the connection as soon as the error message is sent.
-        ctx.getChannel().write(response).addListener(ChannelFutureListener.CLOSE);
+        ChannelFuture future = ctx.getChannel().write(response);
+        if (!isKeepAlive(request)) {
+            future.addListener(ChannelFutureListener.CLOSE);
+        }
+        return future;
     }
 
     /**
@@ -327,8 +609,11 @@ public class HttpStaticFileServerHandler extends SimpleChannelUpstreamHandler {
      *            HTTP response
      * @param fileToCache
      *            file to extract content type
+     * @param cached
+     *            the cached file holding the validators, may be {@code null}
      */
-    private static void setDateAndCacheHeaders(HttpResponse response, File fileToCache) {
+    private static void setDateAndCacheHeaders(HttpResponse response, File fileToCache,
+            CachedFile cached) {
         SimpleDateFormat dateFormatter = new SimpleDateFormat(HTTP_DATE_FORMAT, Locale.US);
         dateFormatter.setTimeZone(TimeZone.getTimeZone(HTTP_DATE_GMT_TIMEZONE));
 
@@ -340,8 +625,13 @@ public class HttpStaticFileServerHandler extends SimpleChannelUpstreamHandler {
         time.add(Calendar.SECOND, HTTP_CACHE_SECONDS);
         response.setHeader(EXPIRES, dateFormatter.format(time.getTime()));
         response.setHeader(CACHE_CONTROL, "private, max-age=" + HTTP_CACHE_SECONDS);
-        response.setHeader(
-                LAST_MODIFIED, dateFormatter.format(new Date(fileToCache.lastModified())));
+        if (cached != null) {
+            response.setHeader(ETAG, cached.getETag());
+            response.setHeader(LAST_MODIFIED, cached.getLastModifiedDate());
+        } else {
+            response.setHeader(
+                    LAST_MODIFIED, dateFormatter.format(new Date(fileToCache.lastModified())));
+        }
     }
 
     /**
@@ -7,28 +7,35 @@ import org.jboss.netty.channel.ChannelPipeline;
 import org.jboss.netty.channel.ChannelPipelineFactory;
 import org.jboss.netty.handler.codec.http.HttpRequestDecoder;
 import org.jboss.netty.handler.codec.http.HttpResponseEncoder;
-
-// Uncomment the following lines if you want HTTPS
-//import javax.net.ssl.SSLEngine;
-//import org.jboss.netty.example.securechat.SecureChatSslContextFactory;
-//import org.jboss.netty.handler.ssl.SslHandler;
+import org.jboss.netty.handler.ssl.SslHandler;
+import org.jboss.netty.handler.stream.ChunkedWriteHandler;
+import org.jboss.server.common.ServerConfig;
+import org.jboss.server.common.TlsContextFactory;
+import org.jboss.server.monitor.RequestTimer;
 
 public class HttpStaticFileServerPipelineFactory implements ChannelPipelineFactory {
     public ChannelPipeline getPipeline() throws Exception {
         // Create a default pipeline implementation.
         ChannelPipeline pipeline = pipeline();
 
-        // Uncomment the following lines if you want HTTPS
-        //SSLEngine engine = SecureChatSslContextFactory.getServerContext().createSSLEngine();
-        //engine.setUseClientMode(false);
-        //pipeline.addLast("ssl", new SslHandler(engine));
+        // first, so that it sees the bytes actually written to the socket
+        RequestTimer timer = new RequestTimer();
+        pipeline.addLast("writeGuard", new WriteGuardHandler(timer));
+
+        // HTTPS when TLS is enabled, all the engines share the same context
+        if (ServerConfig.TLS) {
+            pipeline.addLast("ssl", new SslHandler(TlsContextFactory.createServerEngine()));
+        }
 
         pipeline.addLast("decoder", new HttpRequestDecoder());
        // pipeline.addLast("aggregator", new HttpChunkAggregator(65536));
         pipeline.addLast("encoder", new HttpResponseEncoder());
-//        pipeline.addLast("chunkedWriter", new ChunkedWriteHandler());
+        if (ServerConfig.TLS) {
+            // zero-copy is not possible, the file is written in chunks
+            pipeline.addLast("chunkedWriter", new ChunkedWriteHandler());
+        }
 
-        pipeline.addLast("handler", new HttpStaticFileServerHandler());
+        pipeline.addLast("handler", new HttpStaticFileServerHandler(timer));
         return pipeline;
     }
-}
\ No newline at end of file
+}
@@ -9,6 +9,9 @@ import java.util.concurrent.Executors;
 
 import org.jboss.netty.bootstrap.ServerBootstrap;
 import org.jboss.netty.channel.socket.nio.NioServerSocketChannelFactory;
+import org.jboss.server.common.ServerConfig;
+import org.jboss.server.common.TlsContextFactory;
+import org.jboss.server.monitor.InstrumentedExecutor;
 
 /**
  * An HTTP server that sends back the content of the received HTTP request
@@ -23,11 +26,22 @@ public class NettyHttpServer {
     }
 
     public static void run(int port) {
-        // Configure the server.
+        if (ServerConfig.TLS) {
+            // load the key store before binding, a bad one stops the server
+            // now rather than on the first connection
+            try {
+                TlsContextFactory.getServerContext();
+            } catch (Exception e) {
+                e.printStackTrace();
+                System.exit(2);
+            }
+        }
+        // Configure the server. The boss and I/O threads run for good, their
+        // executors count them as the active workers.
         ServerBootstrap bootstrap = new ServerBootstrap(
                 new NioServerSocketChannelFactory(
-                        Executors.newCachedThreadPool(),
-                        Executors.newCachedThreadPool()));
+                        new InstrumentedExecutor("netty-boss", Executors.newCachedThreadPool()),
+                        new InstrumentedExecutor("netty-io", Executors.newCachedThreadPool())));
 
         // Set up the event pipeline factory.
         //bootstrap.setPipelineFactory(new HttpServerPipelineFactory());
@@ -0,0 +1,151 @@
+/**
+ * JBoss, Home of Professional Open Source. Copyright 2011, Red Hat, Inc., and
+ * individual
+ * contributors as indicated by the @author tags. See the copyright.txt file in
+ * the distribution
+ * for a full listing of individual contributors.
+ * 
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation; either
+ * version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this
+ * software; if not, write to the Free Software Foundation, Inc., 51 Franklin
+ * St, Fifth Floor,
+ * Boston, MA 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.server.netty.async;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelFutureProgressListener;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.FileRegion;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelHandler;
+import org.jboss.server.common.WriteGuard;
+import org.jboss.server.monitor.LoopLagProbe;
+import org.jboss.server.monitor.RequestTimer;
+
+/**
+ * {@code WriteGuardHandler}
+ * 
+ * The first handler of the pipeline, it sees the bytes actually written to
+ * the socket, encrypted ones included, and reports them to the
+ * {@link WriteGuard} of the connection. Netty queues the writes without any
+ * bound, so this is where a client which stops reading is detected. The
+ * written bytes and the arrival of the request bytes, before any decoding,
+ * are reported to the {@link RequestTimer} of the connection too.
+ * 
+ * Created on Oct 19, 2026 at 7:12:05 PM
+ */
+public class WriteGuardHandler extends SimpleChannelHandler {
+
+    // a handler is created for every connection, see the pipeline factory
+    private WriteGuard guard;
+    private final RequestTimer timer;
+    private boolean watched;
+
+    /**
+     * Create a new instance of {@code WriteGuardHandler}
+     * 
+     * @param timer
+     *            the timer of the requests of the connection
+     */
+    public WriteGuardHandler(RequestTimer timer) {
+        this.timer = timer;
+    }
+
+    @Override
+    public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
+        if (!this.watched) {
+            // the I/O thread of the connection, the boss connects it
+            LoopLagProbe.watchCurrentThread();
+            this.watched = true;
+        }
+        this.timer.received();
+        super.messageReceived(ctx, e);
+        // the whole pipeline handled the bytes, the response included
+        this.timer.handled();
+    }
+
+    @Override
+    public void writeRequested(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
+        final long bytes = sizeOf(e.getMessage());
+        if (bytes <= 0) {
+            super.writeRequested(ctx, e);
+            return;
+        }
+        final WriteGuard guard = guard(e.getChannel());
+        final RequestTimer timer = this.timer;
+        if (!guard.queued(bytes)) {
+            // the guard closed the channel
+            e.getFuture().setFailure(new ClosedChannelException());
+            return;
+        }
+        timer.writing(bytes);
+        e.getFuture().addListener(new ChannelFutureProgressListener() {
+            private long reported = 0;
+
+            public void operationProgressed(ChannelFuture future, long amount, long current,
+                    long total) {
+                reported += amount;
+                guard.written(amount);
+                timer.written(amount);
+            }
+
+            public void operationComplete(ChannelFuture future) {
+                // what is left was written at once, or dropped on failure
+                guard.written(bytes - reported);
+                if (future.isSuccess()) {
+                    timer.written(bytes - reported);
+                }
+            }
+        });
+        super.writeRequested(ctx, e);
+    }
+
+    /**
+     * @return the guard of the connection, created on the first write
+     */
+    private WriteGuard guard(final Channel channel) {
+        if (this.guard == null) {
+            this.guard = new WriteGuard(new java.nio.channels.Channel() {
+                public boolean isOpen() {
+                    return channel.isOpen();
+                }
+
+                public void close() throws IOException {
+                    channel.close();
+                }
+            });
+        }
+        return this.guard;
+    }
+
+    /**
+     * @return the number of bytes of the message, 0 if it is unknown
+     */
+    private static long sizeOf(Object message) {
+        if (message instanceof ChannelBuffer) {
+            return ((ChannelBuffer) message).readableBytes();
+        }
+        if (message instanceof FileRegion) {
+            return ((FileRegion) message).getCount();
+        }
+        return 0;
+    }
+}
@@ -35,6 +35,12 @@ import java.util.concurrent.Future;
 
 import org.jboss.logging.Logger;
 import org.jboss.server.common.AbstractServer;
+import org.jboss.server.common.AdmissionControl;
+import org.jboss.server.common.AsyncLogger;
+import org.jboss.server.common.ServerConfig;
+import org.jboss.server.common.TlsContextFactory;
+import org.jboss.server.monitor.LoopLagProbe;
+import org.jboss.server.nio2.common.TlsAsynchronousSocketChannel;
 
 /**
  * {@code NioServer}
@@ -49,6 +55,8 @@ public abstract class NioServer extends AbstractServer {
 	 *
 	 */
 	protected static final Logger logger = Logger.getLogger(NioServer.class.getName());
+	// the per-connection events, off the hot path
+	protected static final AsyncLogger log = AsyncLogger.getLogger(NioServer.class);
 
 	/**
 	 * Create a new instance of {@code NioServer}
@@ -66,11 +74,21 @@ public abstract class NioServer extends AbstractServer {
 	public void run() {
 		String mode = this.async ? "Asynchronous" : "Synchronous";
 		logger.infov("Starting {0} NIO.2 Server on port {1} ...", mode, port);
+		if (ServerConfig.TLS) {
+			logger.info("TLS is enabled");
+		}
 
 		try {
+			if (ServerConfig.TLS) {
+				// load the key store before binding, a bad one stops the
+				// server now rather than on the first connection
+				TlsContextFactory.getServerContext();
+			}
 			// Create an asynchronous channel group
 			AsynchronousChannelGroup threadGroup = AsynchronousChannelGroup
 					.withThreadPool(executor);
+			// the completion handlers run on the threads of the executor
+			LoopLagProbe.watch("nio2-group", executor, true);
 			try (AsynchronousServerSocketChannel listener = AsynchronousServerSocketChannel.open(
 					threadGroup).bind(new InetSocketAddress(addr, port))) {
 				boolean running = true;
@@ -78,8 +96,20 @@ public abstract class NioServer extends AbstractServer {
 
 				while (running) {
 					Future<AsynchronousSocketChannel> future = listener.accept();
-					final AsynchronousSocketChannel channel = future.get();
-                                        System.out.println("Incoming connection from: " + channel.getRemoteAddress());
+					AsynchronousSocketChannel channel = future.get();
+					if (log.shouldDebug()) {
+						log.debug("Incoming connection from: %s", channel.getRemoteAddress());
+					}
+					if (!AdmissionControl.admitConnection()) {
+						// refuse the connection, the fast way
+						channel.close();
+						continue;
+					}
+					if (ServerConfig.TLS) {
+						// the handshake starts with the first read
+						channel = new TlsAsynchronousSocketChannel(channel,
+								TlsContextFactory.createServerEngine());
+					}
                                         
 					// Process the channel (which basically is a request)
 					processChannel(channel);
@@ -114,7 +144,9 @@ public abstract class NioServer extends AbstractServer {
 		buffer.flip();
 		byte bytes[] = new byte[nBytes];
 		buffer.get(bytes);
-		System.out.println("[" + sessionId + "] " + new String(bytes).trim());
+		if (log.shouldDebug()) {
+			log.debug("[%s] %s", sessionId, new String(bytes).trim());
+		}
 		String response = "jSessionId: " + sessionId + CRLF;
 		// write initialization response to client
 		buffer.clear();
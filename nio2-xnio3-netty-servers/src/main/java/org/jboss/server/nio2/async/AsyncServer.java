@@ -33,6 +33,10 @@ import java.nio.channels.AsynchronousSocketChannel;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.CompletionHandler;
 
+import org.jboss.server.common.AdmissionControl;
+import org.jboss.server.monitor.FlightEvents;
+import org.jboss.server.monitor.Phase;
+import org.jboss.server.monitor.ServerStats;
 import org.jboss.server.nio2.NioServer;
 import org.jboss.server.nio2.common.Nio2Utils;
 
@@ -62,6 +66,8 @@ public class AsyncServer extends NioServer {
 	 */
 	public void processChannel(final AsynchronousSocketChannel channel) throws Exception {
 
+		final long accepted = System.nanoTime();
+		FlightEvents.accepted();
 		channel.setOption(StandardSocketOptions.SO_SNDBUF, Nio2Utils.SO_SNDBUF);
 		// assign one session ID to every client (one client can send multiple requests)
                 final String sessionId = generateSessionId();
@@ -78,7 +84,9 @@ public class AsyncServer extends NioServer {
 				if (nBytes > 0) {
 					byte bytes[] = new byte[nBytes];
 					buffer.get(bytes);
-					System.out.println("New session: [" + sessionId + "] " + new String(bytes).trim());
+					if (log.shouldDebug()) {
+						log.debug("New session: [%s] %s", sessionId, new String(bytes).trim());
+					}
 					String response = "jSessionId: " + sessionId + CRLF;
                                         
 					// write initialization response to client
@@ -97,9 +105,12 @@ public class AsyncServer extends NioServer {
 										return;
 									}
 									if (nBytes > 0) {
+										long elapsed = System.nanoTime() - accepted;
+										ServerStats.record(Phase.ACCEPT, elapsed);
+										FlightEvents.handshake(sessionId, elapsed);
 										channel.read(buffer, Nio2Utils.TIMEOUT,
 												Nio2Utils.TIME_UNIT, channel,
-												new ReadCompletionHandler(sessionId, buffer));
+												new ReadCompletionHandler(sessionId, buffer, channel));
 									}
 								}
 
@@ -107,6 +118,7 @@ public class AsyncServer extends NioServer {
 								public void failed(Throwable exc,
 										AsynchronousSocketChannel attachment) {
 									exc.printStackTrace();
+									AdmissionControl.releaseConnection();
 									try {
 										attachment.close();
 									} catch (IOException e) {
@@ -120,6 +132,7 @@ public class AsyncServer extends NioServer {
 			@Override
 			public void failed(Throwable exc, AsynchronousSocketChannel attachment) {
 				exc.printStackTrace();
+				AdmissionControl.releaseConnection();
 				try {
 					attachment.close();
 				} catch (IOException e) {
@@ -25,16 +25,19 @@
  */
 package org.jboss.server.nio2.async;
 
-import java.io.File;
 import java.io.IOException;
-import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.channels.AsynchronousSocketChannel;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.CompletionHandler;
-import java.nio.channels.FileChannel;
 
-import org.jboss.server.Server;
+import org.jboss.server.common.AdmissionControl;
+import org.jboss.server.common.AsyncLogger;
+import org.jboss.server.common.HttpRequestHeader;
+import org.jboss.server.common.HttpResponses;
+import org.jboss.server.common.RequestFramer;
+import org.jboss.server.common.WriteGuard;
+import org.jboss.server.monitor.RequestTimer;
 import org.jboss.server.nio2.common.Nio2Utils;
 
 /**
@@ -46,22 +49,31 @@ import org.jboss.server.nio2.common.Nio2Utils;
  */
 class ReadCompletionHandler implements CompletionHandler<Integer, AsynchronousSocketChannel> {
 
+	private static final AsyncLogger log = AsyncLogger.getLogger(ReadCompletionHandler.class);
+
 	private String sessionId;
 	// The read buffer
 	private ByteBuffer readBuffer;
-	// An array of byte buffers for write operations
-	private ByteBuffer writeBuffers[];
-	private long fileLength;
+	// closes the channel when the client stops reading
+	private final WriteGuard guard;
+	private final RequestTimer timer = new RequestTimer();
+	// splits the bytes read into requests, a client may pipeline them
+	private final RequestFramer framer = new RequestFramer();
 
 	/**
 	 * Create a new instance of {@code ReadCompletionHandler}
 	 * 
 	 * @param sessionId
 	 * @param byteBuffer
+	 * @param channel
+	 *            the channel of the connection
 	 */
-	public ReadCompletionHandler(String sessionId, ByteBuffer byteBuffer) {
+	public ReadCompletionHandler(String sessionId, ByteBuffer byteBuffer,
+			AsynchronousSocketChannel channel) {
 		this.sessionId = sessionId;
+		this.timer.setSessionId(sessionId);
 		this.readBuffer = byteBuffer;
+		this.guard = new WriteGuard(channel);
 	}
 
 	/*
@@ -78,25 +90,48 @@ class ReadCompletionHandler implements CompletionHandler<Integer, AsynchronousSo
 		}
 
 		if (nBytes > 0) {
+			this.timer.received();
 			readBuffer.flip();
-			byte bytes[] = new byte[nBytes];
-			readBuffer.get(bytes);
-                        // get the filename out of the request
-                        // e.g. GET /data/file.txt?jSessionId=d85381bc-da9e-4cee-878f-6f486bb1ecec HTTP/1.1
-                        // retrieve the "/data/file.txt" 
-                        String req = new String(bytes);
-                        req = req.substring(req.indexOf(" ")+1);
-                        req = req.substring(0, req.indexOf("?"));
-                        req = Server.workingDirectory + "/" + req;
-                        //System.out.println("READ BUFFER " + req.substring(1));
-			try {
-				// write response to client; remove the leading '/' from filename
-				writeResponse(channel, req.substring(1));
-			} catch (Exception e) {
-				e.printStackTrace();
-			}
+			this.framer.append(readBuffer);
+		}
+		serve(channel);
+	}
+
+	/**
+	 * Write the response of the next request already read, if any, and read
+	 * again otherwise. The next request is served once the response is
+	 * written, so the pipelined requests are answered in order.
+	 * 
+	 * @param channel
+	 */
+	private void serve(AsynchronousSocketChannel channel) {
+		// get the filename out of the request
+		// e.g. GET /data/file.txt?jSessionId=d85381bc-da9e-4cee-878f-6f486bb1ecec HTTP/1.1
+		// retrieve the "/data/file.txt"
+		HttpRequestHeader request;
+		try {
+			request = this.framer.next();
+		} catch (IOException exp) {
+			failed(exp, channel);
+			return;
 		}
-		// Read again with this CompletionHandler
+		if (request == null) {
+			read(channel);
+			return;
+		}
+		this.timer.pipelined();
+		this.timer.parsed();
+		// write response to client, the next request is served once it is
+		// written
+		writeResponse(channel, request);
+	}
+
+	/**
+	 * Read again with this CompletionHandler
+	 * 
+	 * @param channel
+	 */
+	private void read(AsynchronousSocketChannel channel) {
 		readBuffer.clear();
 		channel.read(readBuffer, Nio2Utils.TIMEOUT, Nio2Utils.TIME_UNIT, channel, this);
 	}
@@ -109,10 +144,18 @@ class ReadCompletionHandler implements CompletionHandler<Integer, AsynchronousSo
 	 */
 	@Override
 	public void failed(Throwable exc, AsynchronousSocketChannel channel) {
-		System.out.println("[" + this.sessionId + "] Read Operation failed");
-		exc.printStackTrace();
+		if (log.shouldDebug()) {
+			log.debug("[%s] Read Operation failed: %s", this.sessionId, exc);
+		}
+		if (!this.guard.isEvicted() && !(exc instanceof ClosedChannelException)) {
+			exc.printStackTrace();
+		}
+		AdmissionControl.releaseConnection();
+		this.timer.closed();
 		try {
-			System.out.println("[" + this.sessionId + "] Closing remote connection");
+			if (log.shouldDebug()) {
+				log.debug("[%s] Closing remote connection", this.sessionId);
+			}
 			channel.close();
 		} catch (IOException e) {
 			e.printStackTrace();
@@ -124,14 +167,28 @@ class ReadCompletionHandler implements CompletionHandler<Integer, AsynchronousSo
 	 * 
 	 * @param channel
 	 *            the {@code AsynchronousSocketChannel} channel to which write
-	 * @throws Exception
+	 * @param request
+	 *            the parsed request header
 	 */
-	protected void writeResponse(AsynchronousSocketChannel channel, String filename) throws Exception {
-		if (this.writeBuffers == null) {
-			initWriteBuffers(filename);
+	protected void writeResponse(AsynchronousSocketChannel channel, HttpRequestHeader request) {
+		long start = AdmissionControl.admitRequest();
+		ByteBuffer buffers[];
+		if (start < 0) {
+			// fast reject path, nothing is looked up
+			buffers = AdmissionControl.serviceUnavailable();
+		} else {
+			try {
+				buffers = HttpResponses.respond(request, this.timer);
+			} catch (Exception exp) {
+				exp.printStackTrace();
+				this.timer.failed();
+				AdmissionControl.completeRequest(start);
+				serve(channel);
+				return;
+			}
 		}
-		// Write the file content to the channel
-		write(channel, this.writeBuffers);
+		// Write the header and the file content to the channel
+		write(channel, buffers, start);
 	}
 
 	/**
@@ -146,108 +203,74 @@ class ReadCompletionHandler implements CompletionHandler<Integer, AsynchronousSo
 	}
 
 	/**
-	 * Read the file from HD and initialize the write byte buffers array.
-	 * 
-	 * @throws IOException
-	 */
-	private void initWriteBuffers(String filename) throws IOException {
-		File file = new File(filename);
-		try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
-			FileChannel fileChannel = raf.getChannel();
-
-			fileLength = fileChannel.size() + Nio2Utils.CRLF.getBytes().length;
-			double tmp = (double) fileLength / Nio2Utils.WRITE_BUFFER_SIZE;
-			int length = (int) Math.ceil(tmp);
-			writeBuffers = new ByteBuffer[length];
-                        //System.out.println("File length: " + fileLength + " no of buffers " + length);
-
-			for (int i = 0; i < writeBuffers.length-1; i++) {
-				writeBuffers[i] = ByteBuffer.allocate(Nio2Utils.WRITE_BUFFER_SIZE);
-			}
-                        // adjust the size of last buffer 
-			int temp = (int) (fileLength % Nio2Utils.WRITE_BUFFER_SIZE);
-			writeBuffers[writeBuffers.length - 1] = ByteBuffer.allocate(temp);   // allocateDirect() seems not to work ... 
-			// Read the whole file in one pass
-			fileChannel.read(writeBuffers);
-                        
-                        /*for (int i = 0; i < writeBuffers.length; i++) {
-                            System.out.println("WriteBuffer " + i + "\n" + new String(writeBuffers[i].array()));
-                        }*/
-		}
-                // IMPORTANT!! CRLF is error-prone as it may be contained in the actual content
-                // put NUL char to mark the end of data
-		writeBuffers[writeBuffers.length - 1].put("\0".getBytes());
-	}
-
-	/**
+	 * Write the response without blocking the thread: each completed write
+	 * starts the next one until the response is out, then the next request
+	 * is served. A client which stops reading is closed by the guard, which
+	 * fails the pending write.
 	 * 
 	 * @param channel
 	 * @param buffers
-	 * @param length
-	 * @throws Exception
+	 * @param start
+	 *            the admission time of the request, -1 if it was rejected
 	 */
-        // WHO CALLS THIS ?!?! I COULD NOT FIND WHERE THIS IS CALLED FROM 
 	protected void write(final AsynchronousSocketChannel channel, final ByteBuffer[] buffers,
-			final long total) throws Exception {
-
-		// Flip all the write byte buffers
-		flipAll(buffers);
-                
-                System.out.println("WRITE RESPONSE TO CLIENT");
-		// Write response to client
-		channel.write(buffers, 0, buffers.length, Nio2Utils.TIMEOUT, Nio2Utils.TIME_UNIT, total,
-				new CompletionHandler<Long, Long>() {
-					private int offset = 0;
-					private long written = 0;
-
-					@Override
-					public void completed(Long nBytes, Long total) {
-						System.out.println("Written = " + nBytes+" of " + total);
-						written += nBytes;
-						if (written < total) {
-							offset = (int) (written / buffers[0].capacity());
-							channel.write(buffers, offset, buffers.length - offset,
-									Nio2Utils.TIMEOUT, Nio2Utils.TIME_UNIT, total, this);
-						}
-					}
+			final long start) {
+		final long total = HttpResponses.remaining(buffers);
+		if (!this.guard.queued(total)) {
+			this.timer.failed();
+			complete(start);
+			failed(new ClosedChannelException(), channel);
+			return;
+		}
+		this.timer.writing(total);
+		if (log.shouldDebug()) {
+			log.debug("[%s] WRITE RESPONSE TO CLIENT (%d bytes)", this.sessionId, total);
+		}
+		CompletionHandler<Long, AsynchronousSocketChannel> handler = new CompletionHandler<Long, AsynchronousSocketChannel>() {
+			private int offset = 0;
+			private long written = 0;
 
-					@Override
-					public void failed(Throwable exc, Long attachment) {
-                                                System.out.println("FAILED !!!");
-						exc.printStackTrace();
+			@Override
+			public void completed(Long nBytes, AsynchronousSocketChannel channel) {
+				written += nBytes;
+				guard.written(nBytes);
+				timer.written(nBytes);
+				if (written < total) {
+					while (!buffers[offset].hasRemaining()) {
+						offset++;
 					}
-				});
-	}
+					channel.write(buffers, offset, buffers.length - offset, 0L,
+							Nio2Utils.TIME_UNIT, channel, this);
+					return;
+				}
+				timer.completed();
+				complete(start);
+				serve(channel);
+			}
 
-	/**
-	 * 
-	 * @param channel
-	 * @param buffers
-	 * @throws Exception
-	 */
-	protected void write(final AsynchronousSocketChannel channel, final ByteBuffer[] buffers) {
-                int cnt = 0;
-                try {
-                    for (ByteBuffer buffer : buffers) {
-                            //System.out.println("WRITE BUFFER " + (++cnt));
-                            write(channel, buffer);
-                    }
-                } catch( Exception e ) { 
-                    e.printStackTrace();
-                }
-	}   
+			@Override
+			public void failed(Throwable exc, AsynchronousSocketChannel channel) {
+				timer.failed();
+				complete(start);
+				ReadCompletionHandler.this.failed(exc, channel);
+			}
+		};
+		// the thread is done with the request once the write is started, the
+		// write may complete on another one
+		this.timer.handled();
+		// Write response to client, without timeout, the guard enforces the
+		// write deadline
+		channel.write(buffers, 0, buffers.length, 0L, Nio2Utils.TIME_UNIT, channel, handler);
+	}
 
 	/**
-	 * Write the byte buffer to the specified channel
+	 * Complete the request, if it was admitted
 	 * 
-	 * @param channel
-	 *            the {@code AsynchronousSocketChannel} channel
-	 * @param byteBuffer
-	 *            the data that will be written to the channel
-	 * @throws IOException
+	 * @param start
 	 */
-	protected int write(AsynchronousSocketChannel channel, ByteBuffer byteBuffer) throws Exception {
-		byteBuffer.flip();
-		return channel.write(byteBuffer).get();
+	private static void complete(long start) {
+		if (start >= 0) {
+			AdmissionControl.completeRequest(start);
+		}
 	}
 }
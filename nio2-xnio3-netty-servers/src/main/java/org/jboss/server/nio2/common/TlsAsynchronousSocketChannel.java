@@ -0,0 +1,527 @@
+/**
+ * JBoss, Home of Professional Open Source. Copyright 2011, Red Hat, Inc., and
+ * individual
+ * contributors as indicated by the @author tags. See the copyright.txt file in
+ * the distribution
+ * for a full listing of individual contributors.
+ * 
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation; either
+ * version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this
+ * software; if not, write to the Free Software Foundation, Inc., 51 Franklin
+ * St, Fifth Floor,
+ * Boston, MA 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.server.nio2.common;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.net.SocketOption;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.CompletionHandler;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLEngineResult.HandshakeStatus;
+import javax.net.ssl.SSLException;
+
+/**
+ * {@code TlsAsynchronousSocketChannel}
+ * 
+ * An {@code AsynchronousSocketChannel} encrypting the data with a JDK
+ * {@code SSLEngine}, so that the NIO.2 servers run unchanged over TLS. The
+ * handshake is driven by the reads, the first request of the client triggering
+ * it.
+ * 
+ * Reads and writes are asynchronous, as on a plain channel. A write encrypts
+ * the data one record at a time, each record being written from the
+ * completion of the previous one, and completes once the last one is
+ * written, so that no thread waits for a slow client. The servers never read
+ * and write concurrently on a connection, which is the only use supported
+ * here.
+ * 
+ * Created on Oct 19, 2026 at 3:41:55 PM
+ */
+public class TlsAsynchronousSocketChannel extends AsynchronousSocketChannel {
+
+	private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+	private final AsynchronousSocketChannel channel;
+	private final SSLEngine engine;
+	// the encrypted data read from the channel, in fill mode
+	private ByteBuffer netIn;
+	// the encrypted data to write to the channel
+	private ByteBuffer netOut;
+	// the decrypted data not yet read by the application, in drain mode
+	private ByteBuffer appIn;
+	private boolean inboundClosed;
+
+	/**
+	 * Create a new instance of {@code TlsAsynchronousSocketChannel}
+	 * 
+	 * @param channel
+	 *            the accepted channel
+	 * @param engine
+	 *            the engine, in server mode
+	 */
+	public TlsAsynchronousSocketChannel(AsynchronousSocketChannel channel, SSLEngine engine) {
+		super(channel.provider());
+		this.channel = channel;
+		this.engine = engine;
+		this.netIn = ByteBuffer.allocateDirect(engine.getSession().getPacketBufferSize());
+		this.netOut = ByteBuffer.allocateDirect(engine.getSession().getPacketBufferSize());
+		this.appIn = ByteBuffer.allocate(engine.getSession().getApplicationBufferSize());
+		this.appIn.flip();
+	}
+
+	@Override
+	public <A> void read(ByteBuffer dst, long timeout, TimeUnit unit, A attachment,
+			final CompletionHandler<Integer, ? super A> handler) {
+		read(new ByteBuffer[] { dst }, 0, 1, timeout, unit, attachment,
+				new CompletionHandler<Long, A>() {
+					@Override
+					public void completed(Long result, A attachment) {
+						handler.completed(result.intValue(), attachment);
+					}
+
+					@Override
+					public void failed(Throwable exc, A attachment) {
+						handler.failed(exc, attachment);
+					}
+				});
+	}
+
+	@Override
+	public Future<Integer> read(ByteBuffer dst) {
+		Result<Integer> result = new Result<Integer>();
+		read(dst, 0L, TimeUnit.MILLISECONDS, null, result);
+		return result;
+	}
+
+	@Override
+	public <A> void read(final ByteBuffer[] dsts, final int offset, final int length,
+			final long timeout, final TimeUnit unit, A attachment,
+			final CompletionHandler<Long, ? super A> handler) {
+		try {
+			for (;;) {
+				if (this.appIn.hasRemaining()) {
+					handler.completed(transfer(this.appIn, dsts, offset, length), attachment);
+					return;
+				}
+				if (this.inboundClosed) {
+					handler.completed(-1L, attachment);
+					return;
+				}
+				HandshakeStatus status = this.engine.getHandshakeStatus();
+				if (status == HandshakeStatus.NEED_TASK) {
+					runDelegatedTasks();
+					continue;
+				}
+				if (status == HandshakeStatus.NEED_WRAP) {
+					// write the handshake data, then read again
+					new Writer<A>(new ByteBuffer[] { EMPTY }, 0, 1, timeout, unit, attachment,
+							new CompletionHandler<Long, A>() {
+								@Override
+								public void completed(Long result, A attachment) {
+									read(dsts, offset, length, timeout, unit, attachment, handler);
+								}
+
+								@Override
+								public void failed(Throwable exc, A attachment) {
+									handler.failed(exc, attachment);
+								}
+							}).next();
+					return;
+				}
+				SSLEngineResult result;
+				this.netIn.flip();
+				this.appIn.compact();
+				try {
+					result = this.engine.unwrap(this.netIn, this.appIn);
+				} finally {
+					this.appIn.flip();
+					this.netIn.compact();
+				}
+				switch (result.getStatus()) {
+					case BUFFER_UNDERFLOW:
+						if (!this.netIn.hasRemaining()) {
+							this.netIn = enlarge(this.netIn, this.engine.getSession()
+									.getPacketBufferSize());
+						}
+						// wait for more encrypted data
+						this.channel.read(this.netIn, timeout, unit, attachment,
+								new CompletionHandler<Integer, A>() {
+									@Override
+									public void completed(Integer nBytes, A attachment) {
+										if (nBytes < 0) {
+											inboundClosed = true;
+										}
+										read(dsts, offset, length, timeout, unit, attachment,
+												handler);
+									}
+
+									@Override
+									public void failed(Throwable exc, A attachment) {
+										handler.failed(exc, attachment);
+									}
+								});
+						return;
+					case BUFFER_OVERFLOW:
+						this.appIn.compact();
+						this.appIn = enlarge(this.appIn, this.engine.getSession()
+								.getApplicationBufferSize());
+						this.appIn.flip();
+						break;
+					case CLOSED:
+						this.inboundClosed = true;
+						break;
+					default:
+						break;
+				}
+			}
+		} catch (Throwable th) {
+			handler.failed(th, attachment);
+		}
+	}
+
+	@Override
+	public <A> void write(ByteBuffer src, long timeout, TimeUnit unit, A attachment,
+			final CompletionHandler<Integer, ? super A> handler) {
+		write(new ByteBuffer[] { src }, 0, 1, timeout, unit, attachment,
+				new CompletionHandler<Long, A>() {
+					@Override
+					public void completed(Long result, A attachment) {
+						handler.completed(result.intValue(), attachment);
+					}
+
+					@Override
+					public void failed(Throwable exc, A attachment) {
+						handler.failed(exc, attachment);
+					}
+				});
+	}
+
+	@Override
+	public Future<Integer> write(ByteBuffer src) {
+		Result<Integer> result = new Result<Integer>();
+		write(src, 0L, TimeUnit.MILLISECONDS, null, result);
+		return result;
+	}
+
+	@Override
+	public <A> void write(ByteBuffer[] srcs, int offset, int length, long timeout, TimeUnit unit,
+			A attachment, CompletionHandler<Long, ? super A> handler) {
+		new Writer<A>(srcs, offset, length, timeout, unit, attachment, handler).next();
+	}
+
+	/**
+	 * {@code Writer}
+	 * 
+	 * Encrypts the data and writes the records to the channel, the pending
+	 * handshake data, if any, included. Each record is encrypted once the
+	 * previous one is written, and the handler of the operation is called
+	 * once the last one is.
+	 * 
+	 * @param <A>
+	 */
+	private class Writer<A> implements CompletionHandler<Integer, Void> {
+
+		private final ByteBuffer	srcs[];
+		private final int			offset;
+		private final int			length;
+		private final long			timeout;
+		private final TimeUnit		unit;
+		private final A				attachment;
+		private final CompletionHandler<Long, ? super A>	handler;
+		// the number of bytes of application data written
+		private long				consumed;
+
+		/**
+		 * Create a new instance of {@code Writer}
+		 */
+		Writer(ByteBuffer[] srcs, int offset, int length, long timeout, TimeUnit unit,
+				A attachment, CompletionHandler<Long, ? super A> handler) {
+			this.srcs = srcs;
+			this.offset = offset;
+			this.length = length;
+			this.timeout = timeout;
+			this.unit = unit;
+			this.attachment = attachment;
+			this.handler = handler;
+		}
+
+		/**
+		 * Encrypt the next record and start writing it
+		 */
+		void next() {
+			try {
+				for (;;) {
+					netOut.clear();
+					SSLEngineResult result = engine.wrap(this.srcs, this.offset, this.length,
+							netOut);
+					this.consumed += result.bytesConsumed();
+					if (result.getHandshakeStatus() == HandshakeStatus.NEED_TASK) {
+						runDelegatedTasks();
+					}
+					switch (result.getStatus()) {
+						case BUFFER_OVERFLOW:
+							netOut = enlarge(netOut, engine.getSession().getPacketBufferSize());
+							continue;
+						case CLOSED:
+							throw new ClosedChannelException();
+						default:
+							break;
+					}
+					if (result.bytesProduced() == 0 && more()) {
+						throw new SSLException("Cannot write before the end of the handshake");
+					}
+					break;
+				}
+			} catch (Throwable th) {
+				this.handler.failed(th, this.attachment);
+				return;
+			}
+			netOut.flip();
+			channel.write(netOut, this.timeout, this.unit, null, this);
+		}
+
+		@Override
+		public void completed(Integer nBytes, Void nothing) {
+			if (nBytes < 0) {
+				failed(new ClosedChannelException(), null);
+				return;
+			}
+			if (netOut.hasRemaining()) {
+				channel.write(netOut, this.timeout, this.unit, null, this);
+				return;
+			}
+			if (more()) {
+				next();
+				return;
+			}
+			this.handler.completed(this.consumed, this.attachment);
+		}
+
+		@Override
+		public void failed(Throwable exc, Void nothing) {
+			this.handler.failed(exc, this.attachment);
+		}
+
+		/**
+		 * @return {@code true} if there is data, application or handshake one,
+		 *         left to write
+		 */
+		private boolean more() {
+			if (engine.getHandshakeStatus() == HandshakeStatus.NEED_WRAP) {
+				return true;
+			}
+			for (int i = this.offset; i < this.offset + this.length; i++) {
+				if (this.srcs[i].hasRemaining()) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * Run the tasks of the engine in the calling thread
+	 */
+	private void runDelegatedTasks() {
+		Runnable task;
+		while ((task = this.engine.getDelegatedTask()) != null) {
+			task.run();
+		}
+	}
+
+	/**
+	 * Copy the data from the source to the destinations
+	 * 
+	 * @param src
+	 * @param dsts
+	 * @param offset
+	 * @param length
+	 * @return the number of bytes copied
+	 */
+	private static long transfer(ByteBuffer src, ByteBuffer[] dsts, int offset, int length) {
+		long n = 0;
+		for (int i = offset; i < offset + length && src.hasRemaining(); i++) {
+			ByteBuffer dst = dsts[i];
+			int count = Math.min(src.remaining(), dst.remaining());
+			ByteBuffer slice = src.duplicate();
+			slice.limit(slice.position() + count);
+			dst.put(slice);
+			src.position(src.position() + count);
+			n += count;
+		}
+		return n;
+	}
+
+	/**
+	 * @param buffer
+	 *            a buffer in fill mode
+	 * @param size
+	 *            the minimum free space
+	 * @return a larger buffer holding the data of the given one
+	 */
+	private static ByteBuffer enlarge(ByteBuffer buffer, int size) {
+		ByteBuffer larger = ByteBuffer.allocateDirect(buffer.position() + size);
+		buffer.flip();
+		larger.put(buffer);
+		return larger;
+	}
+
+	@Override
+	public AsynchronousSocketChannel bind(SocketAddress local) throws IOException {
+		this.channel.bind(local);
+		return this;
+	}
+
+	@Override
+	public <T> AsynchronousSocketChannel setOption(SocketOption<T> name, T value)
+			throws IOException {
+		this.channel.setOption(name, value);
+		return this;
+	}
+
+	@Override
+	public <T> T getOption(SocketOption<T> name) throws IOException {
+		return this.channel.getOption(name);
+	}
+
+	@Override
+	public Set<SocketOption<?>> supportedOptions() {
+		return this.channel.supportedOptions();
+	}
+
+	@Override
+	public AsynchronousSocketChannel shutdownInput() throws IOException {
+		this.channel.shutdownInput();
+		return this;
+	}
+
+	@Override
+	public AsynchronousSocketChannel shutdownOutput() throws IOException {
+		this.engine.closeOutbound();
+		this.channel.shutdownOutput();
+		return this;
+	}
+
+	@Override
+	public SocketAddress getRemoteAddress() throws IOException {
+		return this.channel.getRemoteAddress();
+	}
+
+	@Override
+	public SocketAddress getLocalAddress() throws IOException {
+		return this.channel.getLocalAddress();
+	}
+
+	@Override
+	public <A> void connect(SocketAddress remote, A attachment,
+			CompletionHandler<Void, ? super A> handler) {
+		throw new UnsupportedOperationException("Server side channel");
+	}
+
+	@Override
+	public Future<Void> connect(SocketAddress remote) {
+		throw new UnsupportedOperationException("Server side channel");
+	}
+
+	@Override
+	public boolean isOpen() {
+		return this.channel.isOpen();
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.engine.closeOutbound();
+		this.channel.close();
+	}
+
+	/**
+	 * {@code Result}
+	 * 
+	 * The future of an operation started with a completion handler
+	 * 
+	 * @param <V>
+	 */
+	private static class Result<V> implements Future<V>, CompletionHandler<V, Object> {
+
+		private final CountDownLatch done = new CountDownLatch(1);
+		private V value;
+		private Throwable failure;
+
+		@Override
+		public void completed(V result, Object attachment) {
+			this.value = result;
+			this.done.countDown();
+		}
+
+		@Override
+		public void failed(Throwable exc, Object attachment) {
+			this.failure = exc;
+			this.done.countDown();
+		}
+
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			return false;
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return false;
+		}
+
+		@Override
+		public boolean isDone() {
+			return this.done.getCount() == 0;
+		}
+
+		@Override
+		public V get() throws InterruptedException, ExecutionException {
+			this.done.await();
+			return result();
+		}
+
+		@Override
+		public V get(long timeout, TimeUnit unit) throws InterruptedException,
+				ExecutionException, TimeoutException {
+			if (!this.done.await(timeout, unit)) {
+				throw new TimeoutException();
+			}
+			return result();
+		}
+
+		/**
+		 * @return the value of the completed operation
+		 * @throws ExecutionException
+		 *             if the operation failed
+		 */
+		private V result() throws ExecutionException {
+			if (this.failure != null) {
+				throw new ExecutionException(this.failure);
+			}
+			return this.value;
+		}
+	}
+}
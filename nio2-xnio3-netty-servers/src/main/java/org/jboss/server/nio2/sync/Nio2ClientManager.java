@@ -32,8 +32,10 @@ import java.util.concurrent.ExecutionException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import org.jboss.server.Server;
+import org.jboss.server.common.AsyncLogger;
 import org.jboss.server.common.ClientManager;
+import org.jboss.server.common.FileLoader;
+import org.jboss.server.common.HttpRequestHeader;
 
 /**
  * {@code ClientManager}
@@ -45,6 +47,7 @@ import org.jboss.server.common.ClientManager;
 public class Nio2ClientManager extends ClientManager<AsynchronousSocketChannel> {
 
 	private static final Logger logger = Logger.getLogger(Nio2ClientManager.class.getName());
+	private static final AsyncLogger log = AsyncLogger.getLogger(Nio2ClientManager.class);
 
 	/**
 	 * Create a new instance of {@code ClientManager}
@@ -63,12 +66,8 @@ public class Nio2ClientManager extends ClientManager<AsynchronousSocketChannel>
 	 */
 	@Override
 	public void run() {
-		/*if (!this.intialized) {
-			this.init();
-		}*/
 		try {
 			// Initialization of the communication
-			byte bytes[];
 			do {
 				this.readBuffer.clear();
 				int n = channel.read(this.readBuffer).get();
@@ -77,40 +76,43 @@ public class Nio2ClientManager extends ClientManager<AsynchronousSocketChannel>
 				}
 
 				if (n > 0) {
+					this.timer.received();
 					this.readBuffer.flip();
-					bytes = new byte[n];
-					this.readBuffer.get(bytes);
-                                        
-                                        System.out.println("Client request: "+ new String(bytes));
-                                        // it must be like: GET /data/file.txt?jSessionId=1dd6d040-f71c-4ca5-b2d6-b298dbd12b8a HTTP/1.1
-                                        // get the file from the URI 
-                                        String client_request = new String(bytes); 
-                                        String requested_file = Server.workingDirectory + "/" + client_request.substring(
-                                                client_request.indexOf(' '), client_request.indexOf('?') ).trim();
-                                        System.out.println("Requested filename: " + requested_file);    
-                                        
-                                        //NOTE: this is done only once assuming multiple same requests can be received ...
-                                        // however, the file content may remain in the cache even if we force the read every time
-                                        // read here the requested file
-                                        if (!this.intialized) {
-                                            this.init(requested_file.substring(1));
-                                        }
-                                        
-					try {
-						// write response to client
-						writeResponse(channel);
-					} catch (Exception e) {
-						e.printStackTrace();
+					this.framer.append(this.readBuffer);
+
+					// it must be like: GET /data/file.txt?jSessionId=1dd6d040-f71c-4ca5-b2d6-b298dbd12b8a HTTP/1.1
+					// get the file from the URI; the content is loaded once and cached by the FileLoader.
+					// The read may end in the middle of a request, or carry several pipelined ones
+					HttpRequestHeader request;
+					while (channel.isOpen() && (request = this.framer.next()) != null) {
+						this.timer.pipelined();
+						this.timer.parsed();
+						if (log.shouldDebug()) {
+							log.debug("Client request: %s %s", request.getMethod(), request.getPath());
+							log.debug("Requested filename: %s", FileLoader.resolve(request.getPath()));
+						}
+
+						try {
+							// write response to client
+							writeResponse(channel, request);
+						} catch (Exception e) {
+							e.printStackTrace();
+						}
 					}
 				}
 			} while (channel.isOpen());
 
 		} catch (InterruptedException | ExecutionException exp) {
 			logger.log(Level.SEVERE, "ERROR from client side");
+		} catch (IOException exp) {
+			// a request header too large, the connection is closed
+			logger.log(Level.SEVERE, "ERROR from client side: " + exp.getMessage());
 		} finally {
 			this.close();
 		}
-		logger.log(Level.INFO, "Client Manager shutdown");
+		if (log.shouldDebug()) {
+			log.debug("Client Manager shutdown");
+		}
 	}
 
 	/*
@@ -135,15 +137,15 @@ public class Nio2ClientManager extends ClientManager<AsynchronousSocketChannel>
 	 */
 	@Override
 	protected void write(AsynchronousSocketChannel channel, ByteBuffer buffer) throws Exception {
-		if (buffer.position() > 0) {
-			buffer.flip();
-		}
-
 		while (buffer.hasRemaining()) {
+			// the guard closes the channel, and so fails the write, when the
+			// client stops reading
 			int x = channel.write(buffer).get();
 			if (x < 0) {
 				throw new IOException();
 			}
+			this.guard.written(x);
+			this.timer.written(x);
 		}
 	}
 
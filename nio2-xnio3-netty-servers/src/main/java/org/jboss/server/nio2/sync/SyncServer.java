@@ -30,6 +30,9 @@ import java.net.StandardSocketOptions;
 import java.nio.ByteBuffer;
 import java.nio.channels.AsynchronousSocketChannel;
 
+import org.jboss.server.monitor.FlightEvents;
+import org.jboss.server.monitor.Phase;
+import org.jboss.server.monitor.ServerStats;
 import org.jboss.server.nio2.NioServer;
 import org.jboss.server.nio2.common.Nio2Utils;
 
@@ -58,12 +61,17 @@ public class SyncServer extends NioServer {
 	 */
 	@Override
 	public void processChannel(AsynchronousSocketChannel channel) throws Exception {
+		long accepted = System.nanoTime();
+		FlightEvents.accepted();
 		// Generate a new session id
 		String sessionId = generateSessionId();
 		final ByteBuffer readBuffer = ByteBuffer.allocate(512);
                 
 		// Initialize the session; send back to client the sessionId
 		initSession(channel, readBuffer, sessionId);
+		long elapsed = System.nanoTime() - accepted;
+		ServerStats.record(Phase.ACCEPT, elapsed);
+		FlightEvents.handshake(sessionId, elapsed);
 		
                 // Fix the channel send buffer size
 		channel.setOption(StandardSocketOptions.SO_SNDBUF, Nio2Utils.SO_SNDBUF);
@@ -74,6 +82,6 @@ public class SyncServer extends NioServer {
 		manager.setSessionId(sessionId);
 		
                 // Execute the client manager
-		executor.execute(manager);
+		dispatch(manager);
 	}
 }
@@ -36,16 +36,24 @@ import java.util.concurrent.atomic.AtomicInteger;
 
 import org.jboss.logging.Logger;
 import org.jboss.server.common.AbstractServer;
+import org.jboss.server.common.AsyncLogger;
+import org.jboss.server.common.ServerConfig;
+import org.jboss.server.common.TlsContextFactory;
+import org.jboss.server.monitor.LoopLagProbe;
 import org.jboss.server.xnio3.common.XnioUtils;
 import org.xnio.ChannelListener;
 import org.xnio.ChannelListeners;
+import org.xnio.IoUtils;
 import org.xnio.OptionMap;
 import org.xnio.Options;
 import org.xnio.Xnio;
 import org.xnio.XnioWorker;
 import org.xnio.channels.AcceptingChannel;
+import org.xnio.channels.ConnectedSslStreamChannel;
 import org.xnio.channels.ConnectedStreamChannel;
 import org.xnio.channels.StreamChannel;
+import org.xnio.ssl.JsseXnioSsl;
+import org.xnio.ssl.XnioSsl;
 
 /**
  * {@code Server}
@@ -57,6 +65,8 @@ import org.xnio.channels.StreamChannel;
 public abstract class XnioServer extends AbstractServer {
 
 	protected static final Logger logger = Logger.getLogger(XnioServer.class.getName());
+	// the per-connection events, off the hot path
+	protected static final AsyncLogger log = AsyncLogger.getLogger(XnioServer.class);
 	protected AtomicInteger counter = new AtomicInteger();
 
 	/**
@@ -78,6 +88,11 @@ public abstract class XnioServer extends AbstractServer {
 		String mode = this.async ? "Asynchronous" : "Synchronous";
 		logger.infov("Starting {0} XNIO3 Server on port {1} ...", mode, this.port);
 		try {
+			if (ServerConfig.TLS) {
+				// load the key store before binding, a bad one stops the
+				// server now
+				TlsContextFactory.getServerContext();
+			}
 			// Get the Xnio instance
 			final Xnio xnio = Xnio.getInstance("nio", getClass().getClassLoader());
 			int cores = Runtime.getRuntime().availableProcessors();
@@ -93,38 +108,156 @@ public abstract class XnioServer extends AbstractServer {
 			// configure the number of worker task max threads
 			worker.setOption(Options.WORKER_TASK_MAX_THREADS, 510);
 
-			final AcceptingChannel<? extends ConnectedStreamChannel> server = worker
-					.createStreamServer(address, acceptListener,
-							OptionMap.create(Options.REUSE_ADDRESSES, Boolean.TRUE));
+			final AcceptingChannel<? extends ConnectedStreamChannel> server;
+			if (ServerConfig.TLS) {
+				// the SSL channels are stream channels, the servers are unchanged
+				logger.info("TLS is enabled");
+				XnioSsl ssl = new JsseXnioSsl(xnio, OptionMap.EMPTY,
+						TlsContextFactory.getServerContext());
+				server = ssl.createSslTcpServer(worker, (InetSocketAddress) address,
+						ChannelListeners.<ConnectedSslStreamChannel> openListenerAdapter(
+								getAcceptListener()),
+						OptionMap.create(Options.REUSE_ADDRESSES, Boolean.TRUE));
+			} else {
+				server = worker.createStreamServer(address, acceptListener,
+						OptionMap.create(Options.REUSE_ADDRESSES, Boolean.TRUE));
+			}
 			server.resumeAccepts();
 			logger.infov("{0} XNIO3 Sever started ...", mode);
 		} catch (Throwable th) {
 			th.printStackTrace();
+			System.exit(2);
 		}
 	}
 
 	public abstract ChannelListener<Channel> getAcceptListener();
 
 	/**
+	 * Set up the session of a new connection: read the first message of the
+	 * client and answer with its session id. Nothing blocks, the accept
+	 * listener returns at once and the channel listeners do the work as the
+	 * channel becomes readable or writable, so that neither a slow client nor
+	 * a TLS handshake stalls the I/O thread.
 	 * 
 	 * @param channel
 	 * @param sessionId
-	 * @throws IOException
+	 * @param listener
+	 *            notified once the session is set up, or if it cannot be
 	 */
-	public void initSession(StreamChannel channel, String sessionId) throws IOException {
-		ByteBuffer buffer = ByteBuffer.allocate(512);
-		buffer.clear();
-		int nBytes = channel.read(buffer);
-		buffer.flip();
-		byte bytes[] = new byte[nBytes];
-		buffer.get(bytes);
-		System.out.println("[" + sessionId + "] " + new String(bytes).trim());
-		String response = "jSessionId: " + sessionId + XnioUtils.CRLF;
-		// write initialization response to client
-		buffer.clear();
-		buffer.put(response.getBytes());
-		buffer.flip();
-		channel.awaitWritable();
-		channel.write(buffer);
+	public void initSession(StreamChannel channel, String sessionId, SessionListener listener) {
+		// the I/O threads are known from their channels only
+		LoopLagProbe.watch("xnio-read", channel.getReadThread(), false);
+		LoopLagProbe.watch("xnio-write", channel.getWriteThread(), false);
+		SessionSetup setup = new SessionSetup(sessionId, listener);
+		channel.getReadSetter().set(setup);
+		channel.getWriteSetter().set(setup);
+		channel.resumeReads();
+	}
+
+	/**
+	 * {@code SessionListener} is notified by
+	 * {@link XnioServer#initSession(StreamChannel, String, SessionListener)}
+	 * on an I/O thread of the channel.
+	 * 
+	 * Created on Oct 19, 2026 at 9:12:40 AM
+	 */
+	public interface SessionListener {
+
+		/**
+		 * The session is set up. The channel has no read and write listeners
+		 * anymore, and its reads and writes are suspended.
+		 * 
+		 * @param channel
+		 */
+		void ready(StreamChannel channel);
+
+		/**
+		 * The session could not be set up, the channel is closed
+		 * 
+		 * @param channel
+		 * @param exc
+		 */
+		void failed(StreamChannel channel, IOException exc);
+	}
+
+	/**
+	 * {@code SessionSetup} reads the first message of the client, then writes
+	 * the session id, both without blocking. It is the read and the write
+	 * listener of the channel until the session is set up.
+	 * 
+	 * Created on Oct 19, 2026 at 9:14:05 AM
+	 */
+	private static class SessionSetup implements ChannelListener<StreamChannel> {
+
+		private final String sessionId;
+		private final SessionListener listener;
+		private final ByteBuffer buffer = ByteBuffer.allocate(512);
+		// the first message is read, the session id is being written
+		private boolean writing;
+
+		/**
+		 * Create a new instance of {@code SessionSetup}
+		 * 
+		 * @param sessionId
+		 * @param listener
+		 */
+		SessionSetup(String sessionId, SessionListener listener) {
+			this.sessionId = sessionId;
+			this.listener = listener;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see org.xnio.ChannelListener#handleEvent(java.nio.channels.Channel)
+		 */
+		@Override
+		public void handleEvent(StreamChannel channel) {
+			try {
+				if (!this.writing) {
+					int nBytes = channel.read(this.buffer);
+					if (nBytes < 0) {
+						throw new IOException("The channel is closed");
+					}
+					if (nBytes == 0) {
+						// nothing is readable yet, e.g., during the TLS
+						// handshake
+						return;
+					}
+					this.buffer.flip();
+					byte bytes[] = new byte[nBytes];
+					this.buffer.get(bytes);
+					if (log.shouldDebug()) {
+						log.debug("[%s] %s", this.sessionId, new String(bytes).trim());
+					}
+					String response = "jSessionId: " + this.sessionId + XnioUtils.CRLF;
+					// write initialization response to client
+					this.buffer.clear();
+					this.buffer.put(response.getBytes());
+					this.buffer.flip();
+					this.writing = true;
+					channel.suspendReads();
+				}
+				while (this.buffer.hasRemaining()) {
+					if (channel.write(this.buffer) == 0) {
+						channel.resumeWrites();
+						return;
+					}
+				}
+				// the TLS records of an SSL channel may still be buffered
+				if (!channel.flush()) {
+					channel.resumeWrites();
+					return;
+				}
+				channel.suspendWrites();
+				channel.getReadSetter().set(null);
+				channel.getWriteSetter().set(null);
+			} catch (IOException e) {
+				IoUtils.safeClose(channel);
+				this.listener.failed(channel, e);
+				return;
+			}
+			this.listener.ready(channel);
+		}
 	}
 }
@@ -29,8 +29,14 @@ import java.io.IOException;
 import java.net.Inet4Address;
 import java.nio.channels.Channel;
 
+import org.jboss.server.common.AdmissionControl;
+import org.jboss.server.monitor.FlightEvents;
+import org.jboss.server.monitor.Phase;
+import org.jboss.server.monitor.RequestTimer;
+import org.jboss.server.monitor.ServerStats;
 import org.jboss.server.xnio3.XnioServer;
 import org.xnio.ChannelListener;
+import org.xnio.IoUtils;
 import org.xnio.Options;
 import org.xnio.channels.StreamChannel;
 
@@ -63,6 +69,7 @@ public class AsyncServer extends XnioServer {
 	private class CloseChannelListener implements ChannelListener<StreamChannel> {
 
 		private String sessionId;
+		private RequestTimer timer;
 
 		/*
 		 * (non-Javadoc)
@@ -71,8 +78,13 @@ public class AsyncServer extends XnioServer {
 		 */
 		@Override
 		public void handleEvent(StreamChannel channel) {
-			logger.infof("Closing remote connection for session: [%s] (counter = [%d]) ",
-					this.sessionId, counter.decrementAndGet());
+			int connections = counter.decrementAndGet();
+			if (log.shouldDebug()) {
+				log.debug("Closing remote connection for session: [%s] (counter = [%d])",
+						this.sessionId, connections);
+			}
+			AdmissionControl.releaseConnection();
+			this.timer.closed();
 		}
 	}
 
@@ -93,28 +105,63 @@ public class AsyncServer extends XnioServer {
 			 */
 			@Override
 			public void handleEvent(Channel channel) {
-				counter.incrementAndGet();
 				final StreamChannel streamChannel = (StreamChannel) channel;
-				String sessionId = generateSessionId();
+				if (!AdmissionControl.admitConnection()) {
+					// refuse the connection, the fast way
+					IoUtils.safeClose(streamChannel);
+					return;
+				}
+				counter.incrementAndGet();
+				final long accepted = System.nanoTime();
+				FlightEvents.accepted();
+				final String sessionId = generateSessionId();
 				try {
 					// Fix the size of the send buffer to 8KB
 					streamChannel.setOption(Options.SEND_BUFFER, 8 * 1024);
-					initSession(streamChannel, sessionId);
-					// Setup the read listener
-					ReadChannelListener readListener = new ReadChannelListener();
-					readListener.setSessionId(sessionId);
-					streamChannel.getReadSetter().set(readListener);
-					
-                                        // Setup the close listener
-					CloseChannelListener closeListener = new CloseChannelListener();
-					closeListener.sessionId = sessionId;
-					streamChannel.getCloseSetter().set(closeListener);
-					// Resume reads
-					streamChannel.resumeReads();
 				} catch (IOException e) {
-					e.printStackTrace();
+					release(streamChannel, e);
+					return;
 				}
+				initSession(streamChannel, sessionId, new SessionListener() {
+
+					@Override
+					public void ready(StreamChannel channel) {
+						long elapsed = System.nanoTime() - accepted;
+						ServerStats.record(Phase.ACCEPT, elapsed);
+						FlightEvents.handshake(sessionId, elapsed);
+						// Setup the read listener
+						ReadChannelListener readListener = new ReadChannelListener(channel);
+						readListener.setSessionId(sessionId);
+						channel.getReadSetter().set(readListener);
+
+						// Setup the close listener
+						CloseChannelListener closeListener = new CloseChannelListener();
+						closeListener.sessionId = sessionId;
+						closeListener.timer = readListener.getTimer();
+						channel.getCloseSetter().set(closeListener);
+						// Resume reads
+						channel.resumeReads();
+					}
+
+					@Override
+					public void failed(StreamChannel channel, IOException exc) {
+						release(channel, exc);
+					}
+				});
 			}
 		};
 	}
+
+	/**
+	 * Release a connection which could not be set up
+	 * 
+	 * @param channel
+	 * @param exc
+	 */
+	private void release(StreamChannel channel, IOException exc) {
+		exc.printStackTrace();
+		counter.decrementAndGet();
+		AdmissionControl.releaseConnection();
+		IoUtils.safeClose(channel);
+	}
 }
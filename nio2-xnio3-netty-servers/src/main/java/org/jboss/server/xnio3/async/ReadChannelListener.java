@@ -28,8 +28,12 @@ package org.jboss.server.xnio3.async;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 
-import org.jboss.server.Server;
-import org.jboss.server.common.FileLoader;
+import org.jboss.server.common.AdmissionControl;
+import org.jboss.server.common.HttpRequestHeader;
+import org.jboss.server.common.HttpResponses;
+import org.jboss.server.common.RequestFramer;
+import org.jboss.server.common.WriteGuard;
+import org.jboss.server.monitor.RequestTimer;
 import org.xnio.ChannelListener;
 import org.xnio.channels.StreamChannel;
 
@@ -44,14 +48,42 @@ public class ReadChannelListener implements ChannelListener<StreamChannel> {
 
 	private String sessionId;
 	private ByteBuffer readBuffer;
-	private ByteBuffer writeBuffers[];
-	private long fileLength;
+	// closes the channel when the client stops reading
+	private final WriteGuard guard;
+	private final RequestTimer timer = new RequestTimer();
+	// splits the bytes read into requests, a client may pipeline them
+	private final RequestFramer framer = new RequestFramer();
+	// writes what the channel did not accept at once, reads are suspended
+	// meanwhile
+	private final WriteChannelListener writeListener;
 
 	/**
 	 * Create a new instance of {@code ReadChannelListener}
+	 * 
+	 * @param channel
+	 *            the channel of the connection
 	 */
-	public ReadChannelListener() {
+	public ReadChannelListener(final StreamChannel channel) {
 		this.readBuffer = ByteBuffer.allocateDirect(512);
+		// the channel is closed by its I/O thread, a close from the timer
+		// would neither wake up the selector nor complete the request
+		this.guard = new WriteGuard(new java.nio.channels.Channel() {
+			@Override
+			public boolean isOpen() {
+				return channel.isOpen();
+			}
+
+			@Override
+			public void close() {
+				channel.getWriteThread().execute(new Runnable() {
+					@Override
+					public void run() {
+						writeListener.close(channel);
+					}
+				});
+			}
+		});
+		this.writeListener = new WriteChannelListener(this.guard, this.timer, this);
 	}
 
 	/*
@@ -69,25 +101,11 @@ public class ReadChannelListener implements ChannelListener<StreamChannel> {
 			}
 
 			if (nBytes > 0) {
+				this.timer.received();
 				readBuffer.flip();
-				byte bytes[] = new byte[nBytes];
-				readBuffer.get(bytes);
+				this.framer.append(readBuffer);
 				readBuffer.clear();
-                                
-            // get the filename out of the request
-            // e.g. GET /data/file.txt?jSessionId=d85381bc-da9e-4cee-878f-6f486bb1ecec HTTP/1.1
-            // retrieve the "/data/file.txt" 
-            String req = new String(bytes);
-            if( req.startsWith("GET") ) { 
-               //System.out.println("READ BUFFER " + req);
-        
-               req = req.substring(req.indexOf(" ")+1);
-               req = req.substring(0, req.indexOf("?"));
-               //System.out.println("READ BUFFER " + req.substring(1));
-               req = Server.workingDirectory + req;
-   				// write response to client; remove the leading '/' from filename
-	   			writeResponse(channel, req.substring(1));
-            }
+				serve(channel);
 			}
 		} catch (Exception e) {
 			e.printStackTrace();
@@ -95,70 +113,107 @@ public class ReadChannelListener implements ChannelListener<StreamChannel> {
 	}
 
 	/**
+	 * Serve the requests already read, in order. A client may pipeline them,
+	 * so a read may carry several ones, and a response which is not written
+	 * at once holds the next ones back until the {@link WriteChannelListener}
+	 * is done with it.
 	 * 
 	 * @param channel
-	 * @throws Exception
+	 * @return {@code true} if every request read is served, {@code false} if
+	 *         a response is being written, with the reads suspended, or if
+	 *         the connection is closed
 	 */
-	void writeResponse(StreamChannel channel, String filename) throws Exception {
-            
-            if (this.writeBuffers == null) {
-			init(filename);
-            }
-	    try {
-		// Write the file content to the channel
-		write(channel, writeBuffers, fileLength);
-	    } catch (Exception exp) {
-		exp.printStackTrace();
-	    }
+	boolean serve(StreamChannel channel) {
+		HttpRequestHeader request;
+		for (;;) {
+			try {
+				request = channel.isOpen() ? this.framer.next() : null;
+			} catch (IOException e) {
+				// the request header is too large
+				e.printStackTrace();
+				this.writeListener.close(channel);
+				return false;
+			}
+			if (request == null) {
+				break;
+			}
+			// get the filename out of the request
+			// e.g. GET /data/file.txt?jSessionId=d85381bc-da9e-4cee-878f-6f486bb1ecec HTTP/1.1
+			// retrieve the "/data/file.txt"
+			this.timer.pipelined();
+			this.timer.parsed();
+			try {
+				// write response to client, a "405 Method Not Allowed" to
+				// the methods other than GET, as the other engines
+				writeResponse(channel, request);
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+			if (this.writeListener.getBuffers() != null) {
+				return false;
+			}
+		}
+		return true;
 	}
 
 	/**
 	 * 
 	 * @param channel
-	 * @param buffers
+	 * @param request
+	 *            the parsed request header
 	 * @throws Exception
 	 */
-	protected void write(final StreamChannel channel, final ByteBuffer[] buffers, long total)
-			throws Exception {
-
-		for (ByteBuffer bb : buffers) {
-			bb.flip();
-		}
-
-		long nw = 0, x = 0;
-
-		while (nw < total) {
-                        //TODO: IT BLOCKS HERE !!!!!!!!!1
-                        //System.out.println("BLCOK: " + nw + " total " + total );
-			// Wait until the channel becomes writable again
-			channel.awaitWritable();
-			x = channel.write(buffers);
-			if (x < 0) {
-				throw new IOException("Channel is closed");
-			}
-			nw += x;
+	void writeResponse(StreamChannel channel, HttpRequestHeader request) throws Exception {
+	    long start = AdmissionControl.admitRequest();
+	    ByteBuffer buffers[];
+	    if (start < 0) {
+		// fast reject path, nothing is looked up
+		buffers = AdmissionControl.serviceUnavailable();
+	    } else {
+		try {
+		    buffers = HttpResponses.respond(request, this.timer);
+		} catch (Exception exp) {
+		    exp.printStackTrace();
+		    this.timer.failed();
+		    AdmissionControl.completeRequest(start);
+		    return;
 		}
+	    }
+	    // Write the header and the file content to the channel, the request
+	    // is completed once the whole response is written
+	    write(channel, buffers, HttpResponses.remaining(buffers), start);
 	}
 
 	/**
+	 * Write the response without blocking the I/O thread: what the channel
+	 * does not accept at once is written by the {@link WriteChannelListener}
+	 * when the channel becomes writable, and the reads are suspended until
+	 * then.
 	 * 
 	 * @param channel
-	 * @param buffer
-	 * @throws IOException
-	 */
-	void write(StreamChannel channel, ByteBuffer byteBuffer) throws IOException {
-		byteBuffer.flip();
-		// Wait until the channel becomes writable again
-		channel.awaitWritable();
-		channel.write(byteBuffer);
-	}
-
-	/**
-	 * Read the file from HD and initialize the write byte buffers array.
+	 * @param buffers
+	 * @param total
+	 * @param start
+	 *            the admission time of the request, -1 if it was rejected
 	 */
-	private void init(String filename) {
-		this.writeBuffers = FileLoader.cloneData(filename);
-		this.fileLength = FileLoader.getFileLength();
+	protected void write(final StreamChannel channel, final ByteBuffer[] buffers, long total,
+			long start) {
+		if (!this.guard.queued(total)) {
+			// the guard closed the channel
+			this.timer.failed();
+			if (start >= 0) {
+				AdmissionControl.completeRequest(start);
+			}
+			return;
+		}
+		this.timer.writing(total);
+		this.writeListener.init(buffers, total, start);
+		if (!this.writeListener.write(channel)) {
+			channel.suspendReads();
+			channel.getWriteSetter().set(this.writeListener);
+			channel.resumeWrites();
+		}
+		this.timer.handled();
 	}
 
 	/**
@@ -178,5 +233,15 @@ public class ReadChannelListener implements ChannelListener<StreamChannel> {
 	 */
 	public void setSessionId(String sessionId) {
 		this.sessionId = sessionId;
+		this.timer.setSessionId(sessionId);
+	}
+
+	/**
+	 * Getter for timer
+	 * 
+	 * @return the timer of the requests of the connection
+	 */
+	public RequestTimer getTimer() {
+		return this.timer;
 	}
 }
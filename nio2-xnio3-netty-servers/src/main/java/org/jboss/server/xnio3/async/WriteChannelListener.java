@@ -27,9 +27,12 @@ package org.jboss.server.xnio3.async;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import org.jboss.server.xnio3.common.XnioUtils;
 
+import org.jboss.server.common.AdmissionControl;
+import org.jboss.server.common.WriteGuard;
+import org.jboss.server.monitor.RequestTimer;
 import org.xnio.ChannelListener;
+import org.xnio.IoUtils;
 import org.xnio.channels.StreamChannel;
 
 /**
@@ -46,12 +49,28 @@ public class WriteChannelListener implements ChannelListener<StreamChannel> {
 	private ByteBuffer buffers[];
 	private long total = 0;
 	private String sessionId;
+	// the admission time of the request, -1 if it was rejected
+	private long start = -1;
+	private final WriteGuard guard;
+	private final RequestTimer timer;
+	// serves the pipelined requests left once the response is written
+	private final ReadChannelListener reader;
 
 	/**
 	 * Create a new instance of {@code WriteChannelListener}
+	 * 
+	 * @param guard
+	 *            the guard of the connection, to which the written bytes are
+	 *            reported
+	 * @param timer
+	 *            the timer of the requests of the connection
+	 * @param reader
+	 *            the read listener of the connection
 	 */
-	public WriteChannelListener() {
-		super();
+	public WriteChannelListener(WriteGuard guard, RequestTimer timer, ReadChannelListener reader) {
+		this.guard = guard;
+		this.timer = timer;
+		this.reader = reader;
 	}
 
 	/*
@@ -61,36 +80,92 @@ public class WriteChannelListener implements ChannelListener<StreamChannel> {
 	 */
 	@Override
 	public void handleEvent(StreamChannel channel) {
+		if (write(channel)) {
+			// the response is out, serve the pipelined requests already read
+			// before reading the next ones
+			channel.suspendWrites();
+			if (channel.isOpen() && this.reader.serve(channel)) {
+				channel.resumeReads();
+			}
+		}
+	}
 
-		if (this.total > 0) {
-			if (this.written < this.total) {
-				this.offset = (int) (this.written / XnioUtils.WRITE_BUFFER_SIZE);
-				try {
-					// Update the value of written bytes
-					this.written += channel.write(buffers, offset, buffers.length - offset);
-				} catch (IOException e) {
-					e.printStackTrace();
+	/**
+	 * Write as much of the response as the channel accepts, without blocking
+	 * 
+	 * @param channel
+	 * @return {@code true} if there is nothing left to write, i.e., the
+	 *         response is written and flushed or the channel was closed
+	 */
+	public boolean write(StreamChannel channel) {
+		try {
+			while (this.written < this.total) {
+				while (!this.buffers[this.offset].hasRemaining()) {
+					this.offset++;
+				}
+				long x = channel.write(this.buffers, this.offset, this.buffers.length - this.offset);
+				if (x < 0) {
+					throw new IOException("Channel is closed");
+				}
+				if (x == 0) {
+					return false;
 				}
+				this.written += x;
+				this.guard.written(x);
+				this.timer.written(x);
 			}
-
-			if (this.written == this.total) {
-				reset();
-				channel.suspendWrites();
+			if (!channel.flush()) {
+				return false;
 			}
+			this.timer.completed();
+		} catch (IOException e) {
+			e.printStackTrace();
+			this.timer.failed();
+			IoUtils.safeClose(channel);
 		}
+		complete();
+		return true;
 	}
 
 	/**
-	 * Initialize the Channel listener fields
+	 * Close the channel, dropping the response being written if any
+	 * 
+	 * @param channel
+	 */
+	public void close(StreamChannel channel) {
+		IoUtils.safeClose(channel);
+		if (this.buffers != null) {
+			this.timer.failed();
+		}
+		complete();
+	}
+
+	/**
+	 * Complete the request of the response, if it was admitted, and reset
+	 * the listener
+	 */
+	private void complete() {
+		long start = this.start;
+		reset();
+		if (start >= 0) {
+			AdmissionControl.completeRequest(start);
+		}
+	}
+
+	/**
+	 * Initialize the Channel listener fields for a new response
 	 * 
 	 * @param buffers
 	 * @param total
-	 * @param written
+	 * @param start
+	 *            the admission time of the request, -1 if it was rejected
 	 */
-	public void init(ByteBuffer[] buffers, long total, long written) {
+	public void init(ByteBuffer[] buffers, long total, long start) {
 		this.buffers = buffers;
-		this.written = written;
+		this.written = 0;
+		this.offset = 0;
 		this.total = total;
+		this.start = start;
 	}
 
 	/**
@@ -101,6 +176,7 @@ public class WriteChannelListener implements ChannelListener<StreamChannel> {
 		this.offset = 0;
 		this.written = 0;
 		this.buffers = null;
+		this.start = -1;
 	}
 
 	/**
@@ -25,7 +25,12 @@
  */
 package org.jboss.server.xnio3.common;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.util.concurrent.TimeUnit;
+
+import org.xnio.channels.StreamChannel;
 
 /**
  * {@code XnioUtils}
@@ -48,6 +53,11 @@ public final class XnioUtils {
 	 * The default server port
 	 */
 	public static final int SERVER_PORT = 8080;
+	/**
+	 * The maximum time (in milliseconds) of a single wait for the channel to
+	 * become writable, the channel being closed meanwhile is checked after it
+	 */
+	public static final long AWAIT_WRITABLE_TIMEOUT = 500;
 
 	/**
 	 * Create a new instance of {@code XnioUtils}
@@ -75,4 +85,33 @@ public final class XnioUtils {
 	public static void flip(ByteBuffer buffer) {
 		buffer.flip();
 	}
+
+	/**
+	 * Block until the data buffered by the channel, e.g., the TLS records of
+	 * an SSL channel, is written out
+	 * 
+	 * @param channel
+	 * @throws IOException
+	 */
+	public static void flush(StreamChannel channel) throws IOException {
+		while (!channel.flush()) {
+			awaitWritable(channel);
+		}
+	}
+
+	/**
+	 * Block until the channel becomes writable. The wait is bounded, so that
+	 * the thread is released soon when the channel is closed by another one,
+	 * e.g., by the {@link org.jboss.server.common.WriteGuard}.
+	 * 
+	 * @param channel
+	 * @throws IOException
+	 *             if the channel is closed
+	 */
+	public static void awaitWritable(StreamChannel channel) throws IOException {
+		channel.awaitWritable(AWAIT_WRITABLE_TIMEOUT, TimeUnit.MILLISECONDS);
+		if (!channel.isOpen()) {
+			throw new ClosedChannelException();
+		}
+	}
 }
@@ -31,8 +31,13 @@ import java.nio.channels.Channel;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.jboss.logging.Logger;
+import org.jboss.server.common.AdmissionControl;
+import org.jboss.server.monitor.FlightEvents;
+import org.jboss.server.monitor.Phase;
+import org.jboss.server.monitor.ServerStats;
 import org.jboss.server.xnio3.XnioServer;
 import org.xnio.ChannelListener;
+import org.xnio.IoUtils;
 import org.xnio.Options;
 import org.xnio.channels.StreamChannel;
 
@@ -75,23 +80,47 @@ public class SyncServer extends XnioServer {
 			@Override
 			public void handleEvent(Channel channel) {
 
-				logger.infof("New connection accepted -> total number of connections : %s",
-						counter.incrementAndGet());
+				int connections = counter.incrementAndGet();
+				if (log.shouldDebug()) {
+					log.debug("New connection accepted -> total number of connections : %s",
+							connections);
+				}
 				final StreamChannel streamChannel = (StreamChannel) channel;
-				String sessionId = generateSessionId();
+				if (!AdmissionControl.admitConnection()) {
+					// refuse the connection, the fast way
+					IoUtils.safeClose(streamChannel);
+					return;
+				}
+				final long accepted = System.nanoTime();
+				FlightEvents.accepted();
+				final String sessionId = generateSessionId();
+				// the manager releases the connection when it closes the channel
+				final Xnio3ClientManager manager = new Xnio3ClientManager(streamChannel);
 				try {
 					// Fix the size of the send buffer to 8KB
 					streamChannel.setOption(Options.SEND_BUFFER, 8 * 1024);
-					initSession(streamChannel, sessionId);
-					// Create a new client manager
-					Xnio3ClientManager manager = new Xnio3ClientManager(streamChannel);
-					manager.setSessionId(sessionId);
-                                        // initialization is done after reading the request (the file requested)
-					//manager.init();
-					executor.execute(manager);
 				} catch (IOException e) {
 					e.printStackTrace();
+					manager.close();
+					return;
 				}
+				initSession(streamChannel, sessionId, new SessionListener() {
+
+					@Override
+					public void ready(StreamChannel channel) {
+						long elapsed = System.nanoTime() - accepted;
+						ServerStats.record(Phase.ACCEPT, elapsed);
+						FlightEvents.handshake(sessionId, elapsed);
+						manager.setSessionId(sessionId);
+						dispatch(manager);
+					}
+
+					@Override
+					public void failed(StreamChannel channel, IOException exc) {
+						exc.printStackTrace();
+						manager.close();
+					}
+				});
 			}
 		};
 	}
@@ -28,8 +28,11 @@ package org.jboss.server.xnio3.sync;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 
-import org.jboss.server.Server;
+import org.jboss.server.common.AsyncLogger;
 import org.jboss.server.common.ClientManager;
+import org.jboss.server.common.FileLoader;
+import org.jboss.server.common.HttpRequestHeader;
+import org.jboss.server.xnio3.common.XnioUtils;
 import org.xnio.channels.StreamChannel;
 
 /**
@@ -41,6 +44,8 @@ import org.xnio.channels.StreamChannel;
  */
 public class Xnio3ClientManager extends ClientManager<StreamChannel> {
 
+	private static final AsyncLogger log = AsyncLogger.getLogger(Xnio3ClientManager.class);
+
 	/**
 	 * Create a new instance of {@code ClientManager}
 	 * 
@@ -56,9 +61,6 @@ public class Xnio3ClientManager extends ClientManager<StreamChannel> {
 	 */
 	@Override
 	public void run() {
-		/*if (!this.intialized) {
-			this.init();
-		}*/
 		while (this.channel.isOpen()) {
 			try {
 				// Block until there is some data available to read
@@ -66,35 +68,40 @@ public class Xnio3ClientManager extends ClientManager<StreamChannel> {
 				int nBytes = channel.read(readBuffer);
 				if (nBytes < 0) {
 					// means that the connection was closed remotely
-					channel.close();
+					close();
 					return;
 				}
 
 				if (nBytes > 0) {
+					this.timer.received();
 					readBuffer.flip();
-					byte bytes[] = new byte[nBytes];
-					readBuffer.get(bytes).clear();
-                                        
-                                        System.out.println("Client request: "+ new String(bytes));
-                                        // it must be like: GET /data/file.txt?jSessionId=1dd6d040-f71c-4ca5-b2d6-b298dbd12b8a HTTP/1.1
-                                        // get the file from the URI 
-                                        String client_request = new String(bytes); 
-                                        String requested_file = Server.workingDirectory + "/" + client_request.substring(
-                                                client_request.indexOf(' '), client_request.indexOf('?') ).trim();
-                                        System.out.println("Requested filename: " + requested_file);    
-                                        
-                                        //NOTE: this is done only once assuming multiple same requests can be received ...
-                                        // however, the file content may remain in the cache even if we force the read every time
-                                        // read here the requested file
-                                        if (!this.intialized) {
-                                            this.init(requested_file.substring(1));
-                                        }
-					writeResponse(channel);
+					this.framer.append(readBuffer);
+					readBuffer.clear();
+
+					// it must be like: GET /data/file.txt?jSessionId=1dd6d040-f71c-4ca5-b2d6-b298dbd12b8a HTTP/1.1
+					// get the file from the URI; the content is loaded once and cached by the FileLoader.
+					// The read may end in the middle of a request, or carry several pipelined ones
+					HttpRequestHeader request;
+					while (channel.isOpen() && (request = this.framer.next()) != null) {
+						this.timer.pipelined();
+						this.timer.parsed();
+						if (log.shouldDebug()) {
+							log.debug("Client request: %s %s", request.getMethod(), request.getPath());
+							log.debug("Requested filename: %s", FileLoader.resolve(request.getPath()));
+						}
+						writeResponse(channel, request);
+					}
 				}
+			} catch (IOException e) {
+				// the channel failed, or the request header is too large
+				e.printStackTrace();
+				close();
+				return;
 			} catch (Exception e) {
 				e.printStackTrace();
 			}
 		}
+		close();
 	}
 
 	/*
@@ -111,6 +118,7 @@ public class Xnio3ClientManager extends ClientManager<StreamChannel> {
 		for (ByteBuffer bb : buffers) {
 			write(channel, bb);
 		}
+		XnioUtils.flush(channel);
 	}
 
 	/*
@@ -122,17 +130,17 @@ public class Xnio3ClientManager extends ClientManager<StreamChannel> {
 	 */
 	@Override
 	protected void write(StreamChannel channel, ByteBuffer buffer) throws IOException {
-		if (buffer.position() > 0) {
-			buffer.flip();
-		}
-
 		while (buffer.hasRemaining()) {
-			// Wait until the channel becomes writable again
-			channel.awaitWritable();
 			int x = channel.write(buffer);
 			if (x < 0) {
 				throw new IOException("The channel is closed");
 			}
+			if (x == 0) {
+				// Wait until the channel becomes writable again
+				XnioUtils.awaitWritable(channel);
+			}
+			this.guard.written(x);
+			this.timer.written(x);
 		}
 	}
 
@@ -0,0 +1,106 @@
+/**
+ * JBoss, Home of Professional Open Source. Copyright 2011, Red Hat, Inc., and
+ * individual
+ * contributors as indicated by the @author tags. See the copyright.txt file in
+ * the distribution
+ * for a full listing of individual contributors.
+ * 
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation; either
+ * version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this
+ * software; if not, write to the Free Software Foundation, Inc., 51 Franklin
+ * St, Fifth Floor,
+ * Boston, MA 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.server.common;
+
+import junit.framework.TestCase;
+
+/**
+ * {@code AdaptiveLimiterTest}
+ * 
+ * The limiter is fed by a simulated server which serves {@link #CAPACITY}
+ * requests at once in {@link #SERVICE_TIME}, and queues the other ones.
+ * 
+ * Created on Oct 19, 2026 at 10:26:31 AM
+ */
+public class AdaptiveLimiterTest extends TestCase {
+
+	private static final int CAPACITY = 20;
+	private static final long SERVICE_TIME = 1000000;
+	private static final int WINDOWS = 20 * AdaptiveLimiter.PROBE_WINDOWS;
+	// the windows to settle on a limit
+	private static final int WARMUP = 2 * AdaptiveLimiter.PROBE_WINDOWS;
+
+	private AdaptiveLimiter limiter = new AdaptiveLimiter(20, 1, 10000, 0);
+
+	/**
+	 * Under a steady load the server keeps serving most of it while
+	 * {@code rttNoLoad} is probed, the limit is lowered, not collapsed
+	 */
+	public void testProbeUnderSteadyLoad() {
+		int lowest = Integer.MAX_VALUE;
+		int probes = 0;
+		for (int i = 0; i < WINDOWS; i++) {
+			int admitted = window(2 * CAPACITY);
+			if (i >= WARMUP) {
+				lowest = Math.min(lowest, admitted);
+			}
+			if (this.limiter.update().contains(" probe=")) {
+				probes++;
+			}
+		}
+		assertTrue("no probe", probes > 0);
+		assertTrue("admitted " + lowest + " of " + 2 * CAPACITY, lowest >= CAPACITY / 2);
+	}
+
+	/**
+	 * Under overload the limit stays close to the capacity of the server
+	 * instead of growing with the service time of the queued requests
+	 */
+	public void testOverload() {
+		for (int i = 0; i < WINDOWS; i++) {
+			window(10 * CAPACITY);
+			this.limiter.update();
+			if (i >= WARMUP) {
+				int limit = this.limiter.getLimit();
+				assertTrue("limit " + limit, limit <= 3 * CAPACITY);
+			}
+		}
+	}
+
+	/**
+	 * Run the rounds of requests of a window
+	 * 
+	 * @param clients
+	 *            the number of requests sent at once
+	 * @return the smallest number of requests admitted in a round
+	 */
+	private int window(int clients) {
+		int lowest = Integer.MAX_VALUE;
+		for (int round = 0; round < AdaptiveLimiter.MIN_SAMPLES; round++) {
+			int admitted = 0;
+			while (admitted < clients && this.limiter.tryAcquire()) {
+				admitted++;
+			}
+			// the requests beyond the capacity wait for their turn
+			long rtt = SERVICE_TIME * Math.max(CAPACITY, admitted) / CAPACITY;
+			for (int i = 0; i < admitted; i++) {
+				this.limiter.release(rtt);
+			}
+			lowest = Math.min(lowest, admitted);
+		}
+		return lowest;
+	}
+}
@@ -0,0 +1,132 @@
+/**
+ * JBoss, Home of Professional Open Source. Copyright 2011, Red Hat, Inc., and
+ * individual
+ * contributors as indicated by the @author tags. See the copyright.txt file in
+ * the distribution
+ * for a full listing of individual contributors.
+ * 
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation; either
+ * version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this
+ * software; if not, write to the Free Software Foundation, Inc., 51 Franklin
+ * St, Fifth Floor,
+ * Boston, MA 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.server.common;
+
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * {@code ByteRangeTest}
+ * 
+ * Created on Oct 19, 2026 at 12:41:19 PM
+ */
+public class ByteRangeTest extends TestCase {
+
+	private static final long SIZE = 500;
+
+	/**
+	 * Explicit ranges, the last offset is capped to the size
+	 */
+	public void testFirstLast() {
+		List<ByteRange> ranges = ByteRange.parse("bytes=0-99", SIZE);
+		assertEquals(1, ranges.size());
+		assertRange(0, 99, ranges.get(0));
+		assertEquals(100, ranges.get(0).getLength());
+		assertEquals("bytes 0-99/500", ranges.get(0).toContentRange(SIZE));
+		assertRange(400, 499, ByteRange.parse("bytes=400-999", SIZE).get(0));
+		assertRange(7, 7, ByteRange.parse("bytes=7-7", SIZE).get(0));
+	}
+
+	/**
+	 * {@code -N} asks for the last N bytes, all of them if N exceeds the size
+	 */
+	public void testSuffix() {
+		assertRange(400, 499, ByteRange.parse("bytes=-100", SIZE).get(0));
+		assertRange(499, 499, ByteRange.parse("bytes=-1", SIZE).get(0));
+		assertRange(0, 499, ByteRange.parse("bytes=-1000", SIZE).get(0));
+	}
+
+	/**
+	 * {@code N-} asks for the bytes from N to the end
+	 */
+	public void testOpenEnded() {
+		assertRange(100, 499, ByteRange.parse("bytes=100-", SIZE).get(0));
+		assertRange(499, 499, ByteRange.parse("bytes=499-", SIZE).get(0));
+		assertSame(ByteRange.UNSATISFIABLE, ByteRange.parse("bytes=500-", SIZE));
+	}
+
+	/**
+	 * Several ranges are kept in order, as requested, even overlapping
+	 */
+	public void testSeveralRanges() {
+		List<ByteRange> ranges = ByteRange.parse("bytes=0-9, 5-14 ,-5", SIZE);
+		assertEquals(3, ranges.size());
+		assertRange(0, 9, ranges.get(0));
+		assertRange(5, 14, ranges.get(1));
+		assertRange(495, 499, ranges.get(2));
+	}
+
+	/**
+	 * The unsatisfiable ranges are left out, and a header with none left is
+	 * unsatisfiable
+	 */
+	public void testUnsatisfiable() {
+		assertSame(ByteRange.UNSATISFIABLE, ByteRange.parse("bytes=-0", SIZE));
+		assertSame(ByteRange.UNSATISFIABLE, ByteRange.parse("bytes=600-700", SIZE));
+		assertSame(ByteRange.UNSATISFIABLE, ByteRange.parse("bytes=0-0", 0));
+		List<ByteRange> ranges = ByteRange.parse("bytes=-0,600-700,10-19", SIZE);
+		assertEquals(1, ranges.size());
+		assertRange(10, 19, ranges.get(0));
+	}
+
+	/**
+	 * An invalid header is ignored as a whole, the file is then served in full
+	 */
+	public void testInvalid() {
+		assertNull(ByteRange.parse(null, SIZE));
+		assertNull(ByteRange.parse("items=0-9", SIZE));
+		assertNull(ByteRange.parse("bytes=9-0", SIZE));
+		assertNull(ByteRange.parse("bytes=0-9,20-10", SIZE));
+		assertNull(ByteRange.parse("bytes=10", SIZE));
+		assertNull(ByteRange.parse("bytes=-", SIZE));
+		assertNull(ByteRange.parse("bytes=a-b", SIZE));
+		assertNull(ByteRange.parse("bytes=0-9,x", SIZE));
+	}
+
+	/**
+	 * Too many ranges get the whole content
+	 */
+	public void testTooManyRanges() {
+		StringBuilder value = new StringBuilder("bytes=0-0");
+		for (int i = 1; i < ByteRange.MAX_RANGES; i++) {
+			value.append(',').append(i * 2).append('-').append(i * 2);
+		}
+		assertEquals(ByteRange.MAX_RANGES, ByteRange.parse(value.toString(), SIZE).size());
+		value.append(",100-");
+		assertNull(ByteRange.parse(value.toString(), SIZE));
+	}
+
+	/**
+	 * @param first
+	 * @param last
+	 * @param range
+	 */
+	private static void assertRange(long first, long last, ByteRange range) {
+		assertEquals("first", first, range.getFirst());
+		assertEquals("last", last, range.getLast());
+	}
+}
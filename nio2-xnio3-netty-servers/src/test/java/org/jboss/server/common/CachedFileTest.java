@@ -0,0 +1,222 @@
+/**
+ * JBoss, Home of Professional Open Source. Copyright 2011, Red Hat, Inc., and
+ * individual
+ * contributors as indicated by the @author tags. See the copyright.txt file in
+ * the distribution
+ * for a full listing of individual contributors.
+ * 
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation; either
+ * version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this
+ * software; if not, write to the Free Software Foundation, Inc., 51 Franklin
+ * St, Fifth Floor,
+ * Boston, MA 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.server.common;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * {@code CachedFileTest}
+ * 
+ * Created on Oct 19, 2026 at 12:58:40 PM
+ */
+public class CachedFileTest extends TestCase {
+
+	private static final long LAST_MODIFIED = 1350000000000L;
+	private static final String CONTENT = "abcdefghij";
+
+	private CachedFile file;
+
+	@Override
+	protected void setUp() throws Exception {
+		// chunks of 4 bytes: "abcd" "efgh" "ij\0"
+		this.file = file(CONTENT, 4, 0x1234L, null);
+	}
+
+	/**
+	 * A slice within a chunk is a single buffer
+	 */
+	public void testSliceWithinChunk() {
+		List<ByteBuffer> out = new ArrayList<ByteBuffer>();
+		this.file.slice(4, 7, out);
+		assertEquals(1, out.size());
+		assertEquals("efgh", string(out));
+		out.clear();
+		this.file.slice(5, 5, out);
+		assertEquals("f", string(out));
+	}
+
+	/**
+	 * A slice across chunk boundaries is a buffer per chunk
+	 */
+	public void testSliceAcrossChunks() {
+		List<ByteBuffer> out = new ArrayList<ByteBuffer>();
+		this.file.slice(3, 4, out);
+		assertEquals(2, out.size());
+		assertEquals("de", string(out));
+		out.clear();
+		this.file.slice(2, 9, out);
+		assertEquals(3, out.size());
+		assertEquals("cdefghij", string(out));
+		out.clear();
+		this.file.slice(0, CONTENT.length() - 1, out);
+		assertEquals(CONTENT, string(out));
+	}
+
+	/**
+	 * The slices are independent of the cached buffers
+	 */
+	public void testSliceLeavesData() {
+		List<ByteBuffer> out = new ArrayList<ByteBuffer>();
+		this.file.slice(1, 6, out);
+		for (ByteBuffer buffer : out) {
+			buffer.position(buffer.limit());
+		}
+		out.clear();
+		this.file.slice(1, 6, out);
+		assertEquals("bcdefg", string(out));
+		assertEquals(CONTENT + "\0", string(this.file.body()));
+	}
+
+	/**
+	 * {@code If-None-Match} matches the entity tag, weakly, in a list or with
+	 * {@code *}
+	 */
+	public void testIfNoneMatch() {
+		String etag = this.file.getETag();
+		assertEquals("\"1234\"", etag);
+		assertTrue(this.file.isNotModified(etag, null));
+		assertTrue(this.file.isNotModified("*", null));
+		assertTrue(this.file.isNotModified("W/" + etag, null));
+		assertTrue(this.file.isNotModified("\"abcd\", " + etag, null));
+		assertTrue(this.file.isNotModified("\"abcd\",W/" + etag + " , \"ef\"", null));
+		assertFalse(this.file.isNotModified("\"abcd\"", null));
+		assertFalse(this.file.isNotModified("\"abcd\", W/\"ef\"", null));
+		// the quotes are part of the tag
+		assertFalse(this.file.isNotModified("1234", null));
+	}
+
+	/**
+	 * {@code If-Modified-Since} compares the dates to the second
+	 */
+	public void testIfModifiedSince() {
+		String date = this.file.getLastModifiedDate();
+		assertTrue(this.file.isNotModified(null, date));
+		assertTrue(this.file.isNotModified(null, HttpResponses.formatDate(LAST_MODIFIED + 60000)));
+		assertFalse(this.file.isNotModified(null, HttpResponses.formatDate(LAST_MODIFIED - 1000)));
+		assertFalse(this.file.isNotModified(null, "yesterday"));
+		assertFalse(this.file.isNotModified(null, null));
+	}
+
+	/**
+	 * {@code If-Modified-Since} is ignored when {@code If-None-Match} is
+	 * present
+	 */
+	public void testIfNoneMatchPrecedence() {
+		String date = this.file.getLastModifiedDate();
+		assertFalse(this.file.isNotModified("\"abcd\"", date));
+		assertTrue(this.file.isNotModified(this.file.getETag(),
+				HttpResponses.formatDate(LAST_MODIFIED - 1000)));
+	}
+
+	/**
+	 * The variant of the highest quality is selected, the first listed one on
+	 * a tie, the file itself if none is acceptable
+	 */
+	public void testSelect() {
+		CachedFile gzip = file("gz", 4, 1, "gzip");
+		CachedFile deflate = file("df", 4, 2, "deflate");
+		this.file.addVariant(gzip);
+		this.file.addVariant(deflate);
+		assertSame(this.file, this.file.select(null));
+		assertSame(this.file, this.file.select("identity"));
+		assertSame(this.file, this.file.select("br"));
+		assertSame(gzip, this.file.select("gzip"));
+		assertSame(gzip, this.file.select("GZip"));
+		assertSame(deflate, this.file.select("br, deflate"));
+		assertSame(deflate, this.file.select("gzip;q=0.5, deflate"));
+		assertSame(gzip, this.file.select("gzip; q=0.9, deflate;q=0.8"));
+		assertSame(deflate, this.file.select("deflate;q=0.8, gzip;q=0.8"));
+	}
+
+	/**
+	 * {@code q=0} refuses a coding, and {@code *} stands for gzip
+	 */
+	public void testSelectRefusedAndWildcard() {
+		CachedFile gzip = file("gz", 4, 1, "gzip");
+		this.file.addVariant(gzip);
+		assertSame(this.file, this.file.select("gzip;q=0"));
+		assertSame(this.file, this.file.select("gzip;q=0.0, identity"));
+		assertSame(this.file, this.file.select("gzip;q=abc"));
+		assertSame(gzip, this.file.select("*"));
+		assertSame(gzip, this.file.select("identity;q=0.5, *;q=0.8"));
+		assertSame(this.file, this.file.select("*;q=0"));
+	}
+
+	/**
+	 * A file without variants is always selected
+	 */
+	public void testSelectWithoutVariants() {
+		assertSame(this.file, this.file.select("gzip, deflate"));
+	}
+
+	/**
+	 * @param content
+	 * @param chunkSize
+	 * @param hash
+	 * @param encoding
+	 * @return the cached file of the content, split in read-only chunks and
+	 *         followed by the NUL marker
+	 */
+	private static CachedFile file(String content, int chunkSize, long hash, String encoding) {
+		byte bytes[] = (content + "\0").getBytes();
+		ByteBuffer data[] = new ByteBuffer[(bytes.length + chunkSize - 1) / chunkSize];
+		for (int i = 0; i < data.length; i++) {
+			int length = Math.min(chunkSize, bytes.length - i * chunkSize);
+			data[i] = ByteBuffer.allocateDirect(length);
+			data[i].put(bytes, i * chunkSize, length).flip();
+			data[i] = data[i].asReadOnlyBuffer();
+		}
+		return new CachedFile("/data/" + content, content.length(), LAST_MODIFIED, chunkSize,
+				data, hash, encoding);
+	}
+
+	/**
+	 * @param buffers
+	 * @return the remaining bytes of the buffers
+	 */
+	private static String string(List<ByteBuffer> buffers) {
+		return string(buffers.toArray(new ByteBuffer[buffers.size()]));
+	}
+
+	/**
+	 * @param buffers
+	 * @return the remaining bytes of the buffers
+	 */
+	private static String string(ByteBuffer buffers[]) {
+		StringBuilder sb = new StringBuilder();
+		for (ByteBuffer buffer : buffers) {
+			ByteBuffer b = buffer.duplicate();
+			while (b.hasRemaining()) {
+				sb.append((char) b.get());
+			}
+		}
+		return sb.toString();
+	}
+}
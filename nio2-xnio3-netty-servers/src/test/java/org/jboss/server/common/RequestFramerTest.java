@@ -0,0 +1,171 @@
+/**
+ * JBoss, Home of Professional Open Source. Copyright 2011, Red Hat, Inc., and
+ * individual
+ * contributors as indicated by the @author tags. See the copyright.txt file in
+ * the distribution
+ * for a full listing of individual contributors.
+ * 
+ * This is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation; either
+ * version 2.1 of the
+ * License, or (at your option) any later version.
+ * 
+ * This software is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this
+ * software; if not, write to the Free Software Foundation, Inc., 51 Franklin
+ * St, Fifth Floor,
+ * Boston, MA 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.server.common;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import junit.framework.TestCase;
+
+/**
+ * {@code RequestFramerTest}
+ * 
+ * Created on Oct 19, 2026 at 11:48:06 AM
+ */
+public class RequestFramerTest extends TestCase {
+
+	private RequestFramer framer = new RequestFramer();
+
+	/**
+	 * A request split over several reads is handed over once complete
+	 * 
+	 * @throws IOException
+	 */
+	public void testSplitReads() throws IOException {
+		String request = "GET /data/file.txt?jSessionId=1 HTTP/1.1\r\nConnection: keep-alive\r\n\r\n";
+		this.framer.append(bytes(request.substring(0, 10)));
+		assertNull(this.framer.next());
+		this.framer.append(bytes(request.substring(10, request.length() - 1)));
+		assertNull(this.framer.next());
+		this.framer.append(bytes(request.substring(request.length() - 1)));
+		HttpRequestHeader header = this.framer.next();
+		assertEquals("GET", header.getMethod());
+		assertEquals("/data/file.txt", header.getPath());
+		assertEquals("keep-alive", header.getHeader("Connection"));
+		assertNull(this.framer.next());
+	}
+
+	/**
+	 * The pipelined requests of a read are handed over in order, and the
+	 * start of the next one is kept
+	 * 
+	 * @throws IOException
+	 */
+	public void testSeveralRequestsInOneBuffer() throws IOException {
+		this.framer.append(bytes("GET /a HTTP/1.1\r\n\r\nGET /b HTTP/1.1\r\n\r\nGET /c HTTP/1.1\r\n\r\nGET /d"));
+		assertEquals("/a", this.framer.next().getPath());
+		assertEquals("/b", this.framer.next().getPath());
+		assertEquals("/c", this.framer.next().getPath());
+		assertNull(this.framer.next());
+		this.framer.append(bytes(" HTTP/1.1\r\n\r\n"));
+		assertEquals("/d", this.framer.next().getPath());
+		assertNull(this.framer.next());
+	}
+
+	/**
+	 * The headers end with an empty line, whether the lines end with CRLF,
+	 * with a bare LF or with both, as the clients send them
+	 * 
+	 * @throws IOException
+	 */
+	public void testLineEndings() throws IOException {
+		this.framer.append(bytes("GET /crlf HTTP/1.1\r\nRange: bytes=0-1\r\n\r\n"));
+		this.framer.append(bytes("GET /lf HTTP/1.1\nRange: bytes=2-3\n\n"));
+		this.framer.append(bytes("GET /mixed HTTP/1.1\r\nConnection: keep-alive \n\r\n"));
+		HttpRequestHeader header = this.framer.next();
+		assertEquals("/crlf", header.getPath());
+		assertEquals("bytes=0-1", header.getHeader("range"));
+		header = this.framer.next();
+		assertEquals("/lf", header.getPath());
+		assertEquals("bytes=2-3", header.getHeader("range"));
+		header = this.framer.next();
+		assertEquals("/mixed", header.getPath());
+		assertEquals("keep-alive", header.getHeader("connection"));
+		assertNull(this.framer.next());
+	}
+
+	/**
+	 * The end of a header may be split between two reads
+	 * 
+	 * @throws IOException
+	 */
+	public void testEmptyLineSplitAcrossReads() throws IOException {
+		this.framer.append(bytes("GET /a HTTP/1.1\r\n"));
+		assertNull(this.framer.next());
+		this.framer.append(bytes("\r"));
+		assertNull(this.framer.next());
+		this.framer.append(bytes("\n"));
+		assertEquals("/a", this.framer.next().getPath());
+	}
+
+	/**
+	 * The empty lines before a request are ignored
+	 * 
+	 * @throws IOException
+	 */
+	public void testLeadingBlankLines() throws IOException {
+		this.framer.append(bytes("\r\n\r\n\nGET /a HTTP/1.1\r\n\r\n\r\nGET /b HTTP/1.1\n\n"));
+		assertEquals("/a", this.framer.next().getPath());
+		assertEquals("/b", this.framer.next().getPath());
+		assertNull(this.framer.next());
+		// nothing but blank lines
+		this.framer.append(bytes("\r\n"));
+		assertNull(this.framer.next());
+	}
+
+	/**
+	 * A header larger than the initial buffer is kept whole
+	 * 
+	 * @throws IOException
+	 */
+	public void testLargeHeader() throws IOException {
+		StringBuilder value = new StringBuilder();
+		for (int i = 0; i < 3000; i++) {
+			value.append((char) ('a' + i % 26));
+		}
+		String request = "GET /a HTTP/1.1\r\nX-Large: " + value + "\r\n\r\n";
+		for (int i = 0; i < request.length(); i += 100) {
+			assertNull(this.framer.next());
+			this.framer.append(bytes(request.substring(i, Math.min(request.length(), i + 100))));
+		}
+		assertEquals(value.toString(), this.framer.next().getHeader("x-large"));
+	}
+
+	/**
+	 * A header which does not end within the maximum size is rejected
+	 */
+	public void testHeaderTooLarge() {
+		StringBuilder request = new StringBuilder("GET /a HTTP/1.1\r\n");
+		while (request.length() < RequestFramer.MAX_HEADER_SIZE) {
+			request.append("X-Filler: 0123456789\r\n");
+		}
+		this.framer.append(bytes(request.toString()));
+		try {
+			this.framer.next();
+			fail("The header is larger than " + RequestFramer.MAX_HEADER_SIZE + " bytes");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+	/**
+	 * @param s
+	 * @return the bytes of the string, ready to be read
+	 */
+	private static ByteBuffer bytes(String s) {
+		return ByteBuffer.wrap(s.getBytes());
+	}
+}
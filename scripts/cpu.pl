@@ -8,14 +8,26 @@ $sumsq = 0;
 $i = 0;
 
 while(<STDIN>) {
-	# split into an array
-	@A = split "," , $_;
-	# remove the "%id," from the fourth column
-	$A[3] =~ s/%id,//g;
+	if (/^S /) {
+		# a sample of the server resource sampler, the third column is
+		# the CPU load of the process in percent of the machine
+		@A = split " " , $_;
+		$idle = 100 - $A[2];
+	} elsif (/^[#A-Z] /) {
+		# the header and the other lines of the samplers: threads (T),
+		# executors (E), /proc samples (P, C, N)
+		next;
+	} else {
+		# a "Cpu" line of top: split into an array
+		@A = split "," , $_;
+		# remove the "%id," from the fourth column
+		$A[3] =~ s/%id,//g;
+		$idle = $A[3];
+	}
 	# add to the sum
-	$sum += $A[3];
+	$sum += $idle;
 	# add to the squared sum
-	$sumsq += ($A[3] * $A[3]);
+	$sumsq += ($idle * $idle);
 	# increase the number of entries
 	$i++;
 
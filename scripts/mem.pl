@@ -4,6 +4,19 @@ $i = 0;
 
 while(<STDIN>) {
 	@a = split " ", $_;
+	if ($a[0] eq "S") {
+		# a sample of the server resource sampler: the time in seconds and
+		# the used heap in MB
+		$t = $a[1] / 1000;
+		$m = int($a[4] / 1024);
+		print "$t $m \n";
+		next;
+	}
+	# skip the header and the other lines of the samplers: threads (T),
+	# executors (E), /proc samples (P, C, N)
+	next if ($a[0] =~ /^[#A-Z]$/);
+
+	# a "java" line of top, sampled every 3 seconds
 	$i++;
 	$t = 3 * $i;
 
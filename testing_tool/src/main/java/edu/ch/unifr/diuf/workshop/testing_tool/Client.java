@@ -21,6 +21,8 @@ public class Client extends Machine
     private double restartCond; //percentage of dead clients needed to restart a test
     private int timeoutSec; // after this vlaue, the client is considered dead
     private int lastLogAccessSec;
+    // if set to 'no', the client only keeps the histogram of its response times
+    private String requestLines;
     private Integer clientId;
 
     // set here the name of the tests to be run
@@ -40,6 +42,7 @@ public class Client extends Machine
         this.delay = 1000;
         this.noReq = 1;
         this.clientId = id;
+        this.requestLines = "yes";
     }
     
     /**
@@ -147,6 +150,25 @@ public class Client extends Machine
         return this.timeoutSec;
     }
     
+    /**
+     * 
+     * @param requestLines 
+     */
+    public void setRequestLines(String requestLines) { 
+        if( requestLines.length() == 0 || ! requestLines.equals("no")) 
+            this.requestLines = "yes";
+        else
+            this.requestLines = "no";
+    }
+    
+    /**
+     * 
+     * @return 
+     */
+    public String getRequestLines() { 
+        return this.requestLines;
+    }
+    
     /**
      * 
      * @param relativeSec 
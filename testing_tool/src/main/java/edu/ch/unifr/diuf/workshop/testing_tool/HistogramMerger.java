@@ -0,0 +1,140 @@
+package edu.ch.unifr.diuf.workshop.testing_tool;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Merges the latency histograms written by the clients (--histogram option,
+ * see org.jboss.test.client.LatencyHistogram) into the global percentiles of
+ * the test. The histograms of all the client hosts share the same buckets, so
+ * adding their counts gives exact percentiles, within the resolution of the
+ * buckets (1/32 of the magnitude).
+ *
+ * The serialized form is:
+ *   int magic, int sub_bucket_bits, long count, long sum, long max, int n,
+ *   n * (int index, long count)
+ */
+public class HistogramMerger
+{
+    // "JHIS"
+    public static final int MAGIC = 0x4a484953;
+    public static final double PERCENTILES[] = {
+        50, 75, 90, 95, 99, 99.9, 99.99, 100 };
+
+    private int subBucketBits = -1;
+    private long counts[];
+    private long count;
+    private long sum;
+    private long max;
+
+    /**
+     *
+     * @param filenames the histograms of the clients
+     * @param output the file of the percentiles, one "percentile value_us" per line
+     * @return a summary of the percentiles
+     * @throws IOException
+     */
+    public static String merge(List<String> filenames, String output) throws IOException {
+        HistogramMerger merger = new HistogramMerger();
+        for(Iterator<String> it=filenames.iterator(); it.hasNext(); ) {
+            String filename = it.next();
+            if( ! new File(filename).exists() ) {
+                System.out.println("[WARNING] Missing client histogram " + filename);
+                continue;
+            }
+            merger.add(filename);
+        }
+        long values[] = merger.getPercentiles();
+        StringBuilder sb = new StringBuilder("Response times: ");
+        sb.append(merger.count).append(" requests, mean ");
+        sb.append(merger.count == 0 ? 0 : merger.sum / merger.count / 1000).append("us");
+        try (PrintWriter out = new PrintWriter(output)) {
+            out.println("# requests " + merger.count);
+            out.println("# mean_us " + (merger.count == 0 ? 0 : merger.sum / merger.count / 1000));
+            out.println("# percentile value_us");
+            for( int i=0; i < PERCENTILES.length; ++i ) {
+                out.println(PERCENTILES[i] + " " + values[i] / 1000);
+                sb.append(", p").append(PERCENTILES[i]).append(" ");
+                sb.append(values[i] / 1000).append("us");
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Add the values of a client histogram
+     *
+     * @param filename
+     * @throws IOException if it is not a histogram or its buckets differ
+     */
+    public void add(String filename) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(filename)))) {
+            if( in.readInt() != MAGIC ) {
+                throw new IOException(filename + " is not a latency histogram");
+            }
+            int bits = in.readInt();
+            if( this.subBucketBits == -1 ) {
+                this.subBucketBits = bits;
+                this.counts = new long[(64 - bits) << bits];
+            }
+            else if( bits != this.subBucketBits ) {
+                throw new IOException(filename + " has " + (1 << bits)
+                        + " sub-buckets instead of " + (1 << this.subBucketBits));
+            }
+            this.count += in.readLong();
+            this.sum += in.readLong();
+            this.max = Math.max(this.max, in.readLong());
+            for( int n=in.readInt(); n > 0; --n ) {
+                int index = in.readInt();
+                this.counts[index] += in.readLong();
+            }
+        }
+    }
+
+    /**
+     *
+     * @return the values (ns) of PERCENTILES, each one is the highest value
+     * of its bucket (bounded by the maximum)
+     */
+    public long[] getPercentiles() {
+        long values[] = new long[PERCENTILES.length];
+        if( this.count == 0 ) {
+            return values;
+        }
+        long seen = 0;
+        int p = 0;
+        for( int i=0; i < this.counts.length && p < PERCENTILES.length; ++i ) {
+            seen += this.counts[i];
+            while( p < PERCENTILES.length && seen > 0
+                    && seen >= Math.ceil(PERCENTILES[p] / 100 * this.count) ) {
+                values[p++] = Math.min(highestValue(i), this.max);
+            }
+        }
+        while( p < PERCENTILES.length ) {
+            values[p++] = this.max;
+        }
+        return values;
+    }
+
+    /**
+     *
+     * @param index
+     * @return the highest value of the bucket
+     */
+    private long highestValue(int index) {
+        int subBuckets = 1 << this.subBucketBits;
+        if( index < subBuckets ) {
+            return index;
+        }
+        int shift = (index >>> this.subBucketBits) - 1;
+        long lowest = (long) (subBuckets + (index & (subBuckets - 1))) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
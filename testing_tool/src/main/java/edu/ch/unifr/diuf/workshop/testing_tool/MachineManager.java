@@ -502,6 +502,7 @@ public class MachineManager
         String serverFaultTolerant = config.getString("server.faultTolerant");
         String serverRestartAttempts = config.getString("server.restartAttempts");
         String serverWorkingDir = config.getString("server.workingDirectory");
+        String serverContentionProfile = config.getString("server.contentionProfile", "no");
         StringTokenizer st = null;
         st = new StringTokenizer(serverSSHIpPort, ":");
         if( serverSSHIpPort.contains(":") ) {
@@ -533,6 +534,7 @@ public class MachineManager
         this.server.setWorkingDirectory(serverWorkingDir);
         this.server.setDataFolderPath(serverDataFolder);
         this.server.setFaultTolerant(serverFaultTolerant.trim());
+        this.server.setContentionProfile(serverContentionProfile.trim());
         try {
             int no_rest = Integer.valueOf(serverRestartAttempts);
             if( no_rest < 0 ) {
@@ -581,6 +583,7 @@ public class MachineManager
                         + "Please pass double value to this parameter.");
         }
         List clientsTests = config.getList("clients.tests");
+        String clientsRequestLines = config.getString("clients.requestLines", "yes");
 
         // iterate the list and create the clients
         int counter = -1;
@@ -614,6 +617,7 @@ public class MachineManager
             c.setRestartConditionPropThreadsDead(clients_rest_cond);
             c.setTimeoutSec(clients_timeout_s);
             c.setWorkingDirectory(clientsWorkingDir);
+            c.setRequestLines(clientsRequestLines.trim());
             
             // add tests
             for( Iterator it2=clientsTests.iterator(); it2.hasNext(); ) {
@@ -908,11 +912,11 @@ public class MachineManager
     public void killServer() throws TransportException, IOException { 
         server.killServer(sshClients.get(0));
         try {
+            // let the server write its last resource sample
             Thread.sleep(2000);
         } catch (InterruptedException e) {
             e.printStackTrace();
         }
-        server.killTop(sshClients.get(0));
     }
     
     /**
@@ -965,40 +969,57 @@ public class MachineManager
                 Utils.getServerLocalFilename(server,testNum), sshClients.get(0));
         System.out.println("[INFO] Server log file " + Utils.getServerLocalFilename(server,testNum) +
                 " is locally downloaded. Please check it." );
-        SSHCommands.downloadRemoteFile(server, Utils.getServerLogTopRemoteFilename(server),
-                Utils.getServerLocalTopFilename(server,testNum), sshClients.get(0));
-        // also parse the server file and create two for CPU and mem
+        SSHCommands.downloadRemoteFile(server, Utils.getServerLogResourcesRemoteFilename(server),
+                Utils.getServerLocalResourcesFilename(server,testNum), sshClients.get(0));
+        if( server.getContentionProfile().equals("yes") ) {
+            SSHCommands.downloadRemoteFile(server, Utils.getServerLogContentionRemoteFilename(server),
+                    Utils.getServerLocalContentionFilename(server,testNum), sshClients.get(0));
+            System.out.println("[INFO] Server contention report " 
+                    + Utils.getServerLocalContentionFilename(server,testNum) 
+                    + " is locally downloaded." );
+        }
+        // also extract the process samples (the "S" lines) for the CPU and
+        // mem scripts, the per-thread "T" lines are left in the resources file
         Runtime.getRuntime().exec(new String[]{"bash","-c",
                     "cat " + currentDir +"/"
-                    + Utils.getServerLocalTopFilename(server, testNum)
-                    + " | grep Cpu  > " 
+                    + Utils.getServerLocalResourcesFilename(server, testNum)
+                    + " | grep '^S '  > " 
                     + currentDir + "/"
                     + Utils.getServerLocalCPUFilename(testNum, clients.get(0).getDelay())})
                 .waitFor();
         
        Runtime.getRuntime().exec(new String[]{"bash", "-c", 
                     "cat " + currentDir +"/"
-                    + Utils.getServerLocalTopFilename(server, testNum)
-                    + " | grep java > " 
+                    + Utils.getServerLocalResourcesFilename(server, testNum)
+                    + " | grep '^S ' > " 
                     + currentDir + "/"
                     + Utils.getServerLocalMEMFilename(testNum, clients.get(0).getDelay())})
                .waitFor();
        
         int counter=-1;
+        List<String> histograms = new ArrayList<String>();
         for(Iterator it=clients.iterator(); it.hasNext(); ) { 
             Client c = (Client)it.next();
             SSHCommands.downloadRemoteFile(c, Utils.getClientLogRemoteFilename(c),
                     Utils.getClientLocalFilename(c, ++counter, testNum), 
                     sshClients.get(c.getId()+1));
+            SSHCommands.downloadRemoteFile(c, Utils.getClientHistogramRemoteFilename(c),
+                    Utils.getClientLocalHistogramFilename(c, counter, testNum), 
+                    sshClients.get(c.getId()+1));
+            histograms.add(currentDir + "/" + Utils.getClientLocalHistogramFilename(c, counter, testNum));
          
             // also parse the file a bit
             Runtime.getRuntime().exec(new String[]{"bash","-c",
                     "cat " + currentDir + "/" 
                     + Utils.getClientLocalFilename(c, counter, testNum)
-                    + " | egrep -x '^WRITE [0-9]+ READ [0-9]+' > "
+                    + " | egrep -x '^WRITE [0-9]+ READ [0-9]+( SENT [0-9]+)?( SERVER( [0-9]+){4})?' > "
                     + currentDir + "/" 
                     + Utils.getClientLocalParsedFilename(c, counter, testNum)});
         }
+        // the global percentiles of the response times of all the clients
+        String latencyFilename = Utils.getLocalLatencyFilename(clients.get(0), testNum);
+        System.out.println("[INFO] " + HistogramMerger.merge(histograms, 
+                currentDir + "/" + latencyFilename) + " (" + latencyFilename + ")");
         testNum++;
     }
     
@@ -184,6 +184,12 @@ public class SSHCommands
             sb.append(client.getNoReq());
             sb.append(" "); 
             sb.append(client.getWorkingDirectory());
+            // the histogram of the response times, merged by the coordinator
+            sb.append(" --histogram ");
+            sb.append(Utils.getClientHistogramRemoteFilename(client));
+            if( client.getRequestLines().equals("no") ) {
+                sb.append(" --lines off");
+            }
             // output to a log file 
             sb.append(" &> ");
             sb.append(Utils.getClientLogRemoteFilename(client));
@@ -214,7 +220,16 @@ public class SSHCommands
         final Session session = ssh.startSession();
         try {
             StringBuilder sb = new StringBuilder();
-            sb.append("java -jar "); 
+            sb.append("java ");
+            // the server samples its own CPU, memory, GC and threads
+            sb.append("-Dorg.jboss.server.resourceSampleFile=");
+            sb.append(Utils.getServerLogResourcesRemoteFilename(server));
+            if( server.getContentionProfile().equals("yes") ) {
+                // and reports its lock contention at shutdown
+                sb.append(" -Dorg.jboss.server.contentionFile=");
+                sb.append(Utils.getServerLogContentionRemoteFilename(server));
+            }
+            sb.append(" -jar ");
             sb.append(Utils.getServerProgramRemoteFilename(server));
             sb.append(" ");
             sb.append(server.getServerType());
@@ -245,33 +260,6 @@ public class SSHCommands
         }
     }
     
-    /**
-     * 
-     * @param server
-     * @param ssh
-     * @return
-     * @throws TransportException
-     * @throws IOException
-     * @throws InterruptedException 
-     */
-    public static int startServerTop(Server server, SSHClient ssh) 
-            throws TransportException, IOException, InterruptedException {
-        final Session session = ssh.startSession();
-        try {
-            StringBuilder sb = new StringBuilder();
-            sb.append("top -b -p ").append(server.getPID());
-            sb.append(" 1> ").append(Utils.getServerLogTopRemoteFilename(server));
-            sb.append(" & ");
-            //System.out.println("Run TOP command: " + sb.toString());
-            final Command cmd = session.exec(sb.toString());
-            cmd.join();
-            return cmd.getExitStatus();
-        } finally {
-            // whatever happens, do not forget to close the session
-            session.close();
-        }
-    }
-    
     /**
      * 
      * @param machine
@@ -297,31 +285,6 @@ public class SSHCommands
         }
     }
     
-    /**
-     * 
-     * @param machine
-     * @param ssh
-     * @return
-     * @throws TransportException
-     * @throws IOException 
-     */
-    public static int killTopProgram(Machine machine, SSHClient ssh) 
-            throws TransportException, IOException {
-        final Session session = ssh.startSession();
-        try {
-            StringBuilder sb = new StringBuilder();
-            // well, ideally it should kill only the top created by use, not all of them 
-            // but lets do it right now as getting top PID could not be achieved
-            sb.append("pkill top"); 
-            final Command cmd = session.exec(sb.toString());
-            cmd.join();
-            return cmd.getExitStatus();
-        } finally {
-            // whatever happens, do not forget to close the session
-            session.close();
-        }
-    }
-    
     /**
      * 
      * @param server
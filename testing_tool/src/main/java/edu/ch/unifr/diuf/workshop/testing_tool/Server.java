@@ -26,6 +26,8 @@ public class Server extends Machine
      private String faultTolerant;
      // number of max retrials in case of failure
      private int restartAttempts;
+     // if set to 'yes', the server reports its lock contention at shutdown
+     private String contentionProfile;
     
      public Server(String ipAddress, int port, String sshUsername) 
             throws WrongIpAddressException, WrongPortNumberException {
@@ -38,6 +40,7 @@ public class Server extends Machine
         this.serverMode = "sync";
         this.serverListenIp = "0.0.0.0";
         this.serverPort = 8088;
+        this.contentionProfile = "no";
      }
      
      /**
@@ -157,6 +160,25 @@ public class Server extends Machine
         return this.faultTolerant;
     }
     
+    /**
+     * 
+     * @param contentionProfile 
+     */
+    public void setContentionProfile(String contentionProfile) { 
+        if( contentionProfile.length() == 0 || ! contentionProfile.equals("yes")) 
+            this.contentionProfile = "no";
+        else
+            this.contentionProfile = "yes";
+    }
+    
+    /**
+     * 
+     * @return 
+     */
+    public String getContentionProfile() { 
+        return this.contentionProfile;
+    }
+    
     /**
      * 
      * @param restartAttempts 
@@ -199,15 +221,8 @@ public class Server extends Machine
             getServerLogAndPrintIt(ssh_client);
             return -1;
         }
+        // the server samples its resources itself, no top to start
         this.setPID(SSHCommands.getProgramPID(this, ssh_client));
-        // now start top on server 
-        r = SSHCommands.startServerTop(this, ssh_client);
-        if( r != 0 ) {
-            System.out.println("[ERROR] Could not start top on the server PID " 
-                    + this.getPID());
-            getServerLogAndPrintIt(ssh_client);
-            return -1;
-        }
         return 0;
     }
     
@@ -279,18 +294,6 @@ public class Server extends Machine
             return SSHCommands.killProgram(this, ssh_client);
         return 1;
     }
-    
-    /**
-     * 
-     * @param ssh_client
-     * @return
-     * @throws TransportException
-     * @throws IOException 
-     */
-    public int killTop(SSHClient ssh_client) 
-            throws TransportException, IOException { 
-        return SSHCommands.killTopProgram(this, ssh_client);
-    }
 }
 
 class ServerNotProperlyInitException extends Exception 
@@ -88,12 +88,28 @@ public class Utils
         return "log-RESP_TIME-client"+no_c+ "-test" + testNum + "-" + c.getNoThreads() + "-" + c.getDelay() + "-" +c.getNoReq() + "-log.data";
     }
     
+    public static String getClientHistogramRemoteFilename(Machine c) {
+        return c.getWorkingDirectory()+"/log-LAT-"+c.getUUID()+".data";
+    }
+    
+    public static String getClientLocalHistogramFilename(Client c, int no_c, int testNum) {
+        return "log-LAT-client"+no_c+ "-" + testNum + ".data";
+    }
+    
+    public static String getLocalLatencyFilename(Client c, int testNum) {
+        return "log-LATENCY-test" + testNum + "-" + c.getNoThreads() + "-" + c.getDelay() + "-" +c.getNoReq() + "-log.data";
+    }
+    
     public static String getServerLogRemoteFilename(Machine s) {
         return s.getWorkingDirectory()+"/log-"+s.getIpAddress()+"-"+s.getPort()+".data";
     }
     
-    public static String getServerLogTopRemoteFilename(Machine s) {
-        return s.getWorkingDirectory()+"/log-TOP-"+s.getIpAddress()+"-"+s.getPort()+".data";
+    public static String getServerLogResourcesRemoteFilename(Machine s) {
+        return s.getWorkingDirectory()+"/log-RES-"+s.getIpAddress()+"-"+s.getPort()+".data";
+    }
+    
+    public static String getServerLogContentionRemoteFilename(Machine s) {
+        return s.getWorkingDirectory()+"/log-LOCK-"+s.getIpAddress()+"-"+s.getPort()+".data";
     }
     
     public static String getServerLocalFilename(Machine s, int testNum) {
@@ -108,8 +124,12 @@ public class Utils
         return "log-MEM-server" + "-test" + testNum + "-delay" + delay + ".data";
     }
     
-    public static String getServerLocalTopFilename(Machine s, int testNum) {
-        return "log-TOP-server" + testNum + ".data";
+    public static String getServerLocalResourcesFilename(Machine s, int testNum) {
+        return "log-RES-server" + testNum + ".data";
+    }
+    
+    public static String getServerLocalContentionFilename(Machine s, int testNum) {
+        return "log-LOCK-server" + testNum + ".data";
     }
     
     public static String getClientRemoteSynchThreadsFilename(Client c) {